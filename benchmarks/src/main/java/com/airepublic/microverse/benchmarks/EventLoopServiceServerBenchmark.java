@@ -0,0 +1,180 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.airepublic.microverse.eventloop.server.EventLoopServiceServer;
+import com.airepublic.microverse.standalone.server.StandaloneServiceServer;
+
+/**
+ * Compares the throughput of the {@link EventLoopServiceServer} with the
+ * {@link StandaloneServiceServer} for small requests on persistent connections. Each benchmark
+ * thread holds a connection and sends batches of pipelined heartbeat requests and reads their
+ * responses, so the result reflects the overhead of the transports and not of a service. Run it
+ * with <code>java -jar benchmarks/target/microverse-benchmarks.jar EventLoopServiceServerBenchmark
+ * </code> and change the number of connections with <code>-t</code>.
+ * <p>
+ * No results have been measured with this benchmark yet, so it makes no claim about the relative
+ * throughput of the servers.
+ * </p>
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EventLoopServiceServerBenchmark {
+	/** The number of requests sent before reading their responses. */
+	private static final int PIPELINE_DEPTH = 8;
+	private static final byte[] REQUEST = "GET /heartbeat HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+	@Param({ "standalone", "eventloop" })
+	private String server;
+	private Runnable shutDown;
+	private int port;
+
+
+	@Setup(Level.Trial)
+	public void startServer() throws Exception {
+		if ("standalone".equals(server)) {
+			port = 18081;
+			shutDown = StandaloneServiceServer.create(port, false)::shutDown;
+		} else {
+			port = 18082;
+			shutDown = EventLoopServiceServer.create(port)::shutDown;
+		}
+	}
+
+
+	@TearDown(Level.Trial)
+	public void stopServer() {
+		shutDown.run();
+	}
+
+	/**
+	 * A persistent connection of a benchmark thread.
+	 */
+	@State(Scope.Thread)
+	public static class Connection {
+		private final byte[] batch = new byte[REQUEST.length * PIPELINE_DEPTH];
+		private Socket socket;
+		private OutputStream out;
+		private InputStream in;
+
+
+		@Setup(Level.Trial)
+		public void connect(final EventLoopServiceServerBenchmark benchmark) throws IOException {
+			for (int i = 0; i < PIPELINE_DEPTH; i++) {
+				System.arraycopy(REQUEST, 0, batch, i * REQUEST.length, REQUEST.length);
+			}
+
+			socket = new Socket("localhost", benchmark.port);
+			socket.setTcpNoDelay(true);
+			out = socket.getOutputStream();
+			in = new BufferedInputStream(socket.getInputStream());
+		}
+
+
+		@TearDown(Level.Trial)
+		public void close() throws IOException {
+			socket.close();
+		}
+	}
+
+
+	/**
+	 * Sends a batch of pipelined requests and reads their responses.
+	 *
+	 * @param connection the {@link Connection} of the benchmark thread
+	 * @throws IOException if a response is incomplete or not successful
+	 */
+	@Benchmark
+	@Threads(32)
+	@OperationsPerInvocation(PIPELINE_DEPTH)
+	public void pipelinedHeartbeats(final Connection connection) throws IOException {
+		connection.out.write(connection.batch);
+		connection.out.flush();
+
+		for (int i = 0; i < PIPELINE_DEPTH; i++) {
+			readResponse(connection.in);
+		}
+	}
+
+
+	/**
+	 * Reads a response and skips its content.
+	 *
+	 * @param in the input stream of the connection
+	 * @throws IOException if the response is incomplete or not successful
+	 */
+	private static void readResponse(final InputStream in) throws IOException {
+		final StringBuilder line = new StringBuilder();
+		boolean statusLine = true;
+		long contentLength = 0;
+		int c;
+
+		while ((c = in.read()) >= 0) {
+			if (c == '\n') {
+				final String header = line.toString().trim();
+				line.setLength(0);
+
+				if (statusLine) {
+					if (!header.startsWith("HTTP/1.1 200")) {
+						throw new IOException("Unexpected response: " + header);
+					}
+
+					statusLine = false;
+				} else if (header.isEmpty()) {
+					while (contentLength > 0) {
+						contentLength -= in.skip(contentLength);
+					}
+
+					return;
+				} else if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+					contentLength = Long.parseLong(header.substring(15).trim());
+				}
+			} else {
+				line.append((char) c);
+			}
+		}
+
+		throw new IOException("Connection closed");
+	}
+}
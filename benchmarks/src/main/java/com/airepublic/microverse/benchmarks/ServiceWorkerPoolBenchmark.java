@@ -0,0 +1,123 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.benchmarks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.airepublic.microverse.core.common.VirtualThreads;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.server.ServiceWorkerPool;
+import com.airepublic.microverse.core.service.api.Priority;
+
+/**
+ * Compares the throughput of a {@link ServiceWorkerPool} with platform worker threads and one with
+ * virtual worker threads for an I/O-bound service which blocks on a downstream call for each
+ * request. The virtual threads run fails on JVMs which do not support virtual threads, so build
+ * the benchmarks with <code>mvn -Pbenchmarks,virtual-threads package</code> and run them on Java 21
+ * with <code>java -jar benchmarks/target/microverse-benchmarks.jar ServiceWorkerPoolBenchmark</code>
+ * to get both results.
+ * <p>
+ * No results have been measured with this benchmark yet, so it makes no claim about the benefit of
+ * virtual worker threads.
+ * </p>
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ServiceWorkerPoolBenchmark {
+	/** The number of requests submitted at once per invocation. */
+	private static final int REQUESTS = 2000;
+	@Param({ "false", "true" })
+	private boolean virtualThreads;
+	@Param({ "10" })
+	private long blockMillis;
+	private ServiceWorkerPool pool;
+	private final AtomicLong rejected = new AtomicLong();
+
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		if (virtualThreads && !VirtualThreads.isSupported()) {
+			throw new IllegalStateException("Virtual threads are not supported by this JVM - run the benchmark on Java 21!");
+		}
+
+		// virtual workers are cheap, so there can be as many as requests are blocking
+		final int workers = virtualThreads ? 1000 : Runtime.getRuntime().availableProcessors() * 2;
+		final ServiceDescriptor serviceDescriptor = ServiceDescriptor.create("Benchmark", "1.0", "Benchmark", "IBenchmark");
+		// admission control is effectively disabled to measure the raw throughput
+		pool = new ServiceWorkerPool(serviceDescriptor, workers, REQUESTS, TimeUnit.HOURS.toMillis(1), TimeUnit.HOURS.toMillis(1), virtualThreads);
+	}
+
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		pool.shutdown();
+
+		if (rejected.get() > 0) {
+			throw new IllegalStateException(rejected.get() + " requests were rejected - the throughput is not comparable!");
+		}
+	}
+
+
+	/**
+	 * Submits the requests at once and waits until they are processed.
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	@Benchmark
+	@OperationsPerInvocation(REQUESTS)
+	public void blockingRequests() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(REQUESTS);
+
+		for (int i = 0; i < REQUESTS; i++) {
+			pool.execute(() -> {
+				try {
+					Thread.sleep(blockMillis);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+
+				latch.countDown();
+			}, Priority.NORMAL, e -> {
+				rejected.incrementAndGet();
+				latch.countDown();
+			});
+		}
+
+		latch.await();
+	}
+}
@@ -13,21 +13,29 @@
 */
 package com.airepublic.microverse.core.service;
 
-import java.io.Closeable;
 import java.io.IOException;
 import java.io.Serializable;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.enterprise.inject.Instance;
 
 import org.apache.commons.lang3.SerializationUtils;
 import org.jboss.weld.environment.se.Weld;
+import org.jboss.weld.environment.se.WeldContainer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.airepublic.microverse.core.descriptor.ConcurrencyModel;
 import com.airepublic.microverse.core.descriptor.MethodCall;
 import com.airepublic.microverse.core.descriptor.MethodDescriptor;
 import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
 import com.airepublic.microverse.core.exception.ServiceException;
+import com.airepublic.microverse.core.service.api.IServiceInvoker;
+import com.airepublic.microverse.core.service.api.ResultStream;
 
 /**
  * The service class to connect with.
@@ -35,12 +43,15 @@ import com.airepublic.microverse.core.exception.ServiceException;
  * @author Torsten Oltmanns TODO Create own ServiceContainer using own classloader and base-install
  *         package with weld,etc.
  */
-public class Service implements Serializable, Closeable {
+public class Service implements IServiceInvoker, Serializable {
 	private static final long serialVersionUID = 4100978577535571632L;
 	private static Logger LOG = LoggerFactory.getLogger(Service.class);
 	private ServiceDescriptor serviceDescriptor;
-	private Object serviceDelegate;
+	private ServiceInstances serviceInstances;
 	private Weld weld;
+	private ServiceMethod[] methodsByIndex = new ServiceMethod[0];
+	private final Map<String, ServiceMethod> methodsBySignature = new HashMap<>();
+	private final Map<String, List<ServiceMethod>> methodsByName = new HashMap<>();
 
 
 	/**
@@ -61,16 +72,40 @@ public class Service implements Serializable, Closeable {
 				throw new ServiceException("The service-class is an interface. It must be a class to build a " + ServiceDescriptor.class.getSimpleName());
 			}
 
-			for (final Method method : serviceInterface.getMethods()) {
-				serviceDescriptor.addMethod(MethodDescriptor.create(method));
-			}
-
 			final Class<?> serviceClass = getClass().getClassLoader().loadClass(serviceDescriptor.getServiceClass());
 			weld = new Weld(serviceDescriptor.getServiceClass() + "#" + System.currentTimeMillis());
 			weld.setClassLoader(getClass().getClassLoader());
 
-			LOG.info("Creating service-class: " + serviceClass.getName());
-			serviceDelegate = weld.initialize().select(serviceClass).get();
+			LOG.info("Creating service-class: " + serviceClass.getName() + " (" + serviceDescriptor.getConcurrencyModel() + ")");
+			final WeldContainer weldContainer = weld.initialize();
+			serviceInstances = createServiceInstances(weldContainer.select(serviceClass));
+
+			// create the first instance right away to detect errors when the service is deployed
+			if (serviceDescriptor.getConcurrencyModel() != ConcurrencyModel.THREAD) {
+				serviceInstances.release(serviceInstances.acquire());
+			}
+
+			// build the dispatch table for the service-interface methods in the order of their index
+			final Map<String, Method> methodMap = new HashMap<>();
+
+			for (final Method method : serviceInterface.getMethods()) {
+				methodMap.put(MethodDescriptor.getSignature(method), method);
+			}
+
+			serviceDescriptor.addMethods(serviceInterface.getMethods());
+			methodsByIndex = new ServiceMethod[serviceDescriptor.getMethods().size()];
+
+			for (final MethodDescriptor methodDescriptor : serviceDescriptor.getMethods()) {
+				if (methodDescriptor.getIndex() < 0) {
+					continue;
+				}
+
+				final ServiceMethod serviceMethod = ServiceMethod.create(methodMap.get(methodDescriptor.getSignature()), methodDescriptor);
+
+				methodsByIndex[methodDescriptor.getIndex()] = serviceMethod;
+				methodsBySignature.put(methodDescriptor.getSignature(), serviceMethod);
+				methodsByName.computeIfAbsent(methodDescriptor.getMethodName(), name -> new ArrayList<>()).add(serviceMethod);
+			}
 		} catch (final Exception e) {
 			throw new ServiceException("Could not create service-class for service-descriptor: " + serviceDescriptor + ". Make sure the service-class has a default constructor and implements the service-interface.", e);
 		}
@@ -78,84 +113,185 @@ public class Service implements Serializable, Closeable {
 
 
 	/**
-	 * Gets the {@link ServiceDescriptor}.
+	 * Creates the {@link ServiceInstances} for the {@link ConcurrencyModel} of the service. The
+	 * instances are destroyed through CDI when they are no longer used, so their dependent objects
+	 * are released as well.
 	 *
-	 * @return the {@link ServiceDescriptor}
+	 * @param beans the {@link Instance} providing the service-class instances
+	 * @return the {@link ServiceInstances}
 	 */
-	public ServiceDescriptor getServiceDescriptor() {
-		return serviceDescriptor;
+	private <T> ServiceInstances createServiceInstances(final Instance<T> beans) {
+		@SuppressWarnings("unchecked")
+		final ServiceInstances serviceInstances = ServiceInstances.create(serviceDescriptor.getConcurrencyModel(), serviceDescriptor.getPoolSize(), getWorkerThreadPrefix(), beans::get, instance -> beans.destroy((T) instance));
+
+		return serviceInstances;
 	}
 
 
 	/**
-	 * Gets the serialized {@link ServiceDescriptor}.
+	 * Gets the name prefix of the worker threads the service-server runs the service on, see
+	 * <code>ServiceWorkerPool</code>.
 	 *
-	 * @return the serialized {@link ServiceDescriptor}
+	 * @return the prefix
 	 */
-	public byte[] getSerializedServiceDescriptor() {
-		return SerializationUtils.serialize(serviceDescriptor);
+	private String getWorkerThreadPrefix() {
+		return "microverse-" + serviceDescriptor.getId() + "-" + serviceDescriptor.getVersion() + "-worker-";
 	}
 
 
-	public Serializable invoke(final byte[] methodCall) throws ServiceException, Throwable {
-		final MethodCall call = SerializationUtils.deserialize(methodCall);
-		return invoke(call);
+	/**
+	 * Gets the {@link ServiceDescriptor}.
+	 *
+	 * @return the {@link ServiceDescriptor}
+	 */
+	public ServiceDescriptor getServiceDescriptor() {
+		return serviceDescriptor;
+	}
+
+
+	@Override
+	public byte[] getSerializedServiceDescriptor() {
+		return SerializationUtils.serialize(serviceDescriptor);
 	}
 
 
 	/**
-	 * Invokes the specified method on the delegate service-class and returns the result.
+	 * Invokes the specified {@link MethodCall} on the delegate service-class and returns the
+	 * result.
 	 *
 	 * @param call the {@link MethodCall}
 	 * @return the result (which must be {@link Serializable}
-	 * @throws Exception
+	 * @throws ServiceException if the method could not be resolved or threw a checked exception
 	 */
-	public Serializable invoke(final MethodCall call) throws ServiceException, Throwable {
-		LOG.debug("Method " + call + " invoked");
-		Class<?>[] parameterTypes;
-		Object[] parameters;
+	public Serializable invoke(final MethodCall call) throws ServiceException {
+		return invoke(call.getMethodIndex(), call.getSignatureHash(), call.getMethodName(), call.getSignature(), call.getParameters());
+	}
+
+
+	@Override
+	public Serializable invoke(final int methodIndex, final int signatureHash, final String methodName, final String signature, final List<byte[]> serializedParameters) throws ServiceException {
+		final Object[] parameters;
 
 		// check if parameters need to be set
-		if (call.getParameters() != null) {
-			parameterTypes = new Class[call.getParameters().size()];
-			parameters = new Object[call.getParameters().size()];
-
-			for (int i = 0; i < call.getParameters().size(); i++) {
-				final Object obj = SerializationUtils.deserialize(call.getParameters().get(i));
-				parameterTypes[i] = obj.getClass();
-				parameters[i] = obj;
+		if (serializedParameters != null) {
+			parameters = new Object[serializedParameters.size()];
+
+			for (int i = 0; i < parameters.length; i++) {
+				parameters[i] = SerializationUtils.deserialize(serializedParameters.get(i));
 			}
 		} else {
-			// otherwise empty parameter class array for the method invoke call
-			parameterTypes = new Class[0];
-			parameters = null;
+			parameters = new Object[0];
 		}
 
-		Method method;
+		return invokeDirect(methodIndex, signatureHash, methodName, signature, parameters);
+	}
 
-		try {
-			// get the corresponding method of the service-delegate
-			method = serviceDelegate.getClass().getMethod(call.getMethodName(), parameterTypes);
-		} catch (final NoSuchMethodException e) {
-			throw new ServiceException("The service-class '" + serviceDelegate.getClass().getName() + "' doesn't have an accessible method: " + call, e);
-		}
+
+	@Override
+	public Serializable invokeDirect(final int methodIndex, final int signatureHash, final String methodName, final String signature, final Object[] parameters) throws ServiceException {
+		LOG.debug("Method " + describe(methodIndex, methodName, signature) + " invoked");
+		final ServiceMethod method = resolveMethod(methodIndex, signatureHash, methodName, signature, parameters);
+		final Object instance = serviceInstances.acquire();
 
 		try {
 			// invoke the method with the specified parameters
-			return (Serializable) method.invoke(serviceDelegate, parameters);
-		} catch (final IllegalAccessException e) {
-			throw new ServiceException("The service-class '" + serviceDelegate.getClass().getName() + "' doesn't have an accessible method: " + call, e);
-		} catch (final InvocationTargetException e) {
-			throw new ServiceException("The service-class '" + serviceDelegate.getClass().getName() + "' doesn't have an accessible method: " + call, e);
+			final Object result = method.invoke(instance, parameters);
+
+			// element streams are wrapped to be written element by element
+			if (method.getMethodDescriptor().isStreaming()) {
+				return ResultStream.of(result);
+			}
+
+			return (Serializable) result;
+		} catch (final ClassCastException | NullPointerException e) {
+			if (!method.accepts(parameters)) {
+				throw new ServiceException("The parameters don't match the method '" + method.getMethodDescriptor().getSignature() + "' of service-class '" + serviceDescriptor.getServiceClass() + "'", e);
+			}
+
+			throw e;
+		} catch (final RuntimeException | Error e) {
+			// unchecked exceptions of the service method are passed on as they are
+			throw e;
 		} catch (final Throwable t) {
-			throw t;
+			throw new ServiceException("Error invoking method '" + method.getMethodDescriptor().getSignature() + "' of service-class '" + serviceDescriptor.getServiceClass() + "'", t);
+		} finally {
+			serviceInstances.release(instance);
 		}
 	}
 
 
+	@Override
+	public Map<String, Long> getInstanceStatistics() {
+		return serviceInstances.getStatistics();
+	}
+
+
+	/**
+	 * Resolves the {@link ServiceMethod} from the dispatch table. Calls carrying a method index are
+	 * resolved by array access after checking the signature hash, calls carrying a signature are
+	 * resolved directly and calls only carrying a method name are matched against the parameters.
+	 *
+	 * @param methodIndex the method index or -1
+	 * @param signatureHash the signature hash of the method with the method index
+	 * @param methodName the method name
+	 * @param signature the method signature
+	 * @param parameters the deserialized parameters
+	 * @return the {@link ServiceMethod}
+	 * @throws ServiceException if no matching method could be found
+	 */
+	private ServiceMethod resolveMethod(final int methodIndex, final int signatureHash, final String methodName, final String signature, final Object[] parameters) throws ServiceException {
+		if (methodIndex >= 0) {
+			if (methodIndex < methodsByIndex.length) {
+				final ServiceMethod method = methodsByIndex[methodIndex];
+
+				if (method != null && method.getMethodDescriptor().getSignatureHash() == signatureHash) {
+					return method;
+				}
+			}
+
+			throw new ServiceException("The method index " + methodIndex + " doesn't match the service-interface of service-class '" + serviceDescriptor.getServiceClass() + "'. The client is probably using an outdated " + ServiceDescriptor.class.getSimpleName() + "!");
+		} else if (signature != null) {
+			final ServiceMethod method = methodsBySignature.get(signature);
+
+			if (method != null) {
+				return method;
+			}
+		} else {
+			final List<ServiceMethod> candidates = methodsByName.get(methodName);
+
+			if (candidates != null) {
+				for (final ServiceMethod method : candidates) {
+					if (method.accepts(parameters)) {
+						return method;
+					}
+				}
+			}
+		}
+
+		throw new ServiceException("The service-class '" + serviceDescriptor.getServiceClass() + "' doesn't have an accessible method: " + describe(methodIndex, methodName, signature));
+	}
+
+
+	private String describe(final int methodIndex, final String methodName, final String signature) {
+		if (methodIndex >= 0) {
+			return "#" + methodIndex;
+		}
+
+		return signature != null ? signature : methodName;
+	}
+
+
 	@Override
 	public void close() throws IOException {
-		serviceDelegate = null;
+		methodsByIndex = new ServiceMethod[0];
+		methodsBySignature.clear();
+		methodsByName.clear();
+
+		if (serviceInstances != null) {
+			serviceInstances.close();
+			serviceInstances = null;
+		}
+
 		serviceDescriptor = null;
 
 		try {
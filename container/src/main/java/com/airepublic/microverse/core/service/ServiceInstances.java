@@ -0,0 +1,412 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.service;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.airepublic.microverse.core.descriptor.ConcurrencyModel;
+import com.airepublic.microverse.core.exception.ServiceException;
+import com.airepublic.microverse.core.exception.ServiceTimeoutException;
+import com.airepublic.microverse.core.service.api.IServiceInvoker;
+import com.airepublic.microverse.core.service.api.InvocationContext;
+
+/**
+ * Provides the instances of the service-class processing the requests according to the
+ * {@link ConcurrencyModel} of the service. An instance is acquired for each invocation and
+ * released afterwards. Instances which are no longer used are passed to the destroyer, so the
+ * container can dispose of them and their dependencies.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public abstract class ServiceInstances {
+	protected final Supplier<Object> factory;
+	protected final Consumer<Object> destroyer;
+	protected final AtomicInteger instances = new AtomicInteger();
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param factory the factory creating new instances of the service-class
+	 * @param destroyer the destroyer of instances which are no longer used
+	 */
+	protected ServiceInstances(final Supplier<Object> factory, final Consumer<Object> destroyer) {
+		this.factory = factory;
+		this.destroyer = destroyer;
+	}
+
+
+	/**
+	 * Creates the {@link ServiceInstances} for the {@link ConcurrencyModel}.
+	 *
+	 * @param concurrencyModel the {@link ConcurrencyModel}
+	 * @param poolSize the maximum number of instances if the model is
+	 *        {@link ConcurrencyModel#POOLED}
+	 * @param factory the factory creating new instances of the service-class
+	 * @param destroyer the destroyer of instances which are no longer used
+	 * @return the {@link ServiceInstances}
+	 */
+	public static ServiceInstances create(final ConcurrencyModel concurrencyModel, final int poolSize, final Supplier<Object> factory, final Consumer<Object> destroyer) {
+		return create(concurrencyModel, poolSize, null, factory, destroyer);
+	}
+
+
+	/**
+	 * Creates the {@link ServiceInstances} for the {@link ConcurrencyModel}. With the model
+	 * {@link ConcurrencyModel#THREAD} only the platform threads whose name starts with the worker
+	 * thread prefix keep their own instance.
+	 *
+	 * @param concurrencyModel the {@link ConcurrencyModel}
+	 * @param poolSize the maximum number of instances if the model is
+	 *        {@link ConcurrencyModel#POOLED}
+	 * @param workerThreadPrefix the name prefix of the worker threads of the service or
+	 *        <code>null</code> to let all platform threads keep their own instance
+	 * @param factory the factory creating new instances of the service-class
+	 * @param destroyer the destroyer of instances which are no longer used
+	 * @return the {@link ServiceInstances}
+	 */
+	public static ServiceInstances create(final ConcurrencyModel concurrencyModel, final int poolSize, final String workerThreadPrefix, final Supplier<Object> factory, final Consumer<Object> destroyer) {
+		switch (concurrencyModel != null ? concurrencyModel : ConcurrencyModel.SINGLETON) {
+			case POOLED:
+				return new Pooled(factory, destroyer, Math.max(1, poolSize));
+			case THREAD:
+				return new ThreadConfined(factory, destroyer, workerThreadPrefix);
+			default:
+				return new Singleton(factory, destroyer);
+		}
+	}
+
+
+	/**
+	 * Acquires an instance of the service-class to process a request.
+	 *
+	 * @return the instance
+	 * @throws ServiceException if no instance is available before the deadline of the invocation
+	 */
+	public abstract Object acquire() throws ServiceException;
+
+
+	/**
+	 * Releases the instance after the request has been processed.
+	 *
+	 * @param instance the instance
+	 */
+	public void release(final Object instance) {
+	}
+
+
+	/**
+	 * Gets the statistics of the instances.
+	 *
+	 * @return the statistics keyed as defined by {@link IServiceInvoker}
+	 */
+	public Map<String, Long> getStatistics() {
+		final Map<String, Long> statistics = new HashMap<>();
+		statistics.put(IServiceInvoker.STATISTICS_INSTANCES, (long) instances.get());
+
+		return statistics;
+	}
+
+
+	/**
+	 * Destroys all instances. The {@link ServiceInstances} must not be used afterwards.
+	 */
+	public abstract void close();
+
+
+	protected Object create() {
+		final Object instance = factory.get();
+		instances.incrementAndGet();
+
+		return instance;
+	}
+
+
+	protected void destroy(final Object instance) {
+		instances.decrementAndGet();
+		destroyer.accept(instance);
+	}
+
+	/**
+	 * A single instance shared by all requests.
+	 */
+	private static class Singleton extends ServiceInstances {
+		private volatile Object instance;
+
+
+		Singleton(final Supplier<Object> factory, final Consumer<Object> destroyer) {
+			super(factory, destroyer);
+		}
+
+
+		@Override
+		public Object acquire() {
+			Object result = instance;
+
+			if (result == null) {
+				synchronized (this) {
+					result = instance;
+
+					if (result == null) {
+						instance = result = create();
+					}
+				}
+			}
+
+			return result;
+		}
+
+
+		@Override
+		public synchronized void close() {
+			if (instance != null) {
+				destroy(instance);
+				instance = null;
+			}
+		}
+	}
+
+	/**
+	 * A bounded pool of instances which are created on demand and each processes one request at a
+	 * time.
+	 */
+	private static class Pooled extends ServiceInstances {
+		private final BlockingQueue<Object> idle;
+		private final int poolSize;
+		private final AtomicInteger busy = new AtomicInteger();
+		private final AtomicLong waits = new AtomicLong();
+
+
+		Pooled(final Supplier<Object> factory, final Consumer<Object> destroyer, final int poolSize) {
+			super(factory, destroyer);
+			this.poolSize = poolSize;
+			idle = new ArrayBlockingQueue<>(poolSize);
+		}
+
+
+		@Override
+		public Object acquire() throws ServiceException {
+			Object instance = idle.poll();
+
+			if (instance == null) {
+				instance = createIfBelowPoolSize();
+			}
+
+			if (instance == null) {
+				waits.incrementAndGet();
+				instance = await();
+			}
+
+			busy.incrementAndGet();
+
+			return instance;
+		}
+
+
+		@Override
+		public void release(final Object instance) {
+			busy.decrementAndGet();
+			idle.offer(instance);
+		}
+
+
+		@Override
+		public Map<String, Long> getStatistics() {
+			final Map<String, Long> statistics = super.getStatistics();
+			statistics.put(IServiceInvoker.STATISTICS_BUSY_INSTANCES, (long) busy.get());
+			statistics.put(IServiceInvoker.STATISTICS_INSTANCE_WAITS, waits.get());
+
+			return statistics;
+		}
+
+
+		@Override
+		public void close() {
+			// instances still busy are destroyed when the CDI-Container is shut down
+			Object instance;
+
+			while ((instance = idle.poll()) != null) {
+				destroy(instance);
+			}
+		}
+
+
+		private Object createIfBelowPoolSize() {
+			int count;
+
+			while ((count = instances.get()) < poolSize) {
+				if (instances.compareAndSet(count, count + 1)) {
+					try {
+						return factory.get();
+					} catch (final RuntimeException e) {
+						instances.decrementAndGet();
+						throw e;
+					}
+				}
+			}
+
+			return null;
+		}
+
+
+		/**
+		 * Waits for a released instance until the deadline of the invocation.
+		 *
+		 * @return the instance
+		 * @throws ServiceException if the deadline has passed or the thread was interrupted
+		 */
+		private Object await() throws ServiceException {
+			try {
+				final long remaining = InvocationContext.getRemaining(TimeUnit.NANOSECONDS);
+				final Object instance = remaining == Long.MAX_VALUE ? idle.take() : idle.poll(remaining, TimeUnit.NANOSECONDS);
+
+				if (instance == null) {
+					throw new ServiceTimeoutException("No instance of the service-class became available before the deadline!");
+				}
+
+				return instance;
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ServiceException("Interrupted while waiting for an instance of the service-class!", e);
+			}
+		}
+	}
+
+	/**
+	 * An instance for each worker thread. Worker threads terminate when they have been idle, so the
+	 * instances of terminated threads are destroyed whenever a new instance is created.
+	 * <p>
+	 * Only the platform worker threads of the service keep their own instance. Virtual threads and
+	 * the threads of callers in the same JVM are created per request or unbounded in number, so
+	 * they borrow an instance which is used by one thread at a time and returned on release
+	 * instead.
+	 * </p>
+	 */
+	private static class ThreadConfined extends ServiceInstances {
+		private static final Method IS_VIRTUAL = getIsVirtual();
+		private final Map<Thread, Object> instancesByThread = new ConcurrentHashMap<>();
+		private final Queue<Object> borrowable = new ConcurrentLinkedQueue<>();
+		private final String workerThreadPrefix;
+
+
+		ThreadConfined(final Supplier<Object> factory, final Consumer<Object> destroyer, final String workerThreadPrefix) {
+			super(factory, destroyer);
+			this.workerThreadPrefix = workerThreadPrefix;
+		}
+
+
+		@Override
+		public Object acquire() {
+			final Thread thread = Thread.currentThread();
+
+			if (!isWorker(thread)) {
+				final Object instance = borrowable.poll();
+
+				return instance != null ? instance : create();
+			}
+
+			Object instance = instancesByThread.get(thread);
+
+			if (instance == null) {
+				destroyTerminated();
+				instance = create();
+				instancesByThread.put(thread, instance);
+			}
+
+			return instance;
+		}
+
+
+		@Override
+		public void release(final Object instance) {
+			if (!isWorker(Thread.currentThread())) {
+				borrowable.offer(instance);
+			}
+		}
+
+
+		@Override
+		public void close() {
+			for (final Map.Entry<Thread, Object> entry : instancesByThread.entrySet()) {
+				if (instancesByThread.remove(entry.getKey(), entry.getValue())) {
+					destroy(entry.getValue());
+				}
+			}
+
+			// instances still borrowed are destroyed when the CDI-Container is shut down
+			Object instance;
+
+			while ((instance = borrowable.poll()) != null) {
+				destroy(instance);
+			}
+		}
+
+
+		/**
+		 * Checks whether the thread is a platform worker thread of the service which keeps its own
+		 * instance.
+		 *
+		 * @param thread the {@link Thread}
+		 * @return <code>true</code> if the thread keeps its own instance
+		 */
+		private boolean isWorker(final Thread thread) {
+			return (workerThreadPrefix == null || thread.getName().startsWith(workerThreadPrefix)) && !isVirtual(thread);
+		}
+
+
+		private static boolean isVirtual(final Thread thread) {
+			try {
+				return IS_VIRTUAL != null && (Boolean) IS_VIRTUAL.invoke(thread);
+			} catch (final ReflectiveOperationException e) {
+				return false;
+			}
+		}
+
+
+		private static Method getIsVirtual() {
+			try {
+				return Thread.class.getMethod("isVirtual");
+			} catch (final NoSuchMethodException e) {
+				// virtual threads are not supported by this JVM
+				return null;
+			}
+		}
+
+
+		/**
+		 * Destroys the instances of the threads which have terminated.
+		 */
+		private void destroyTerminated() {
+			for (final Map.Entry<Thread, Object> entry : instancesByThread.entrySet()) {
+				// only one thread removes and destroys each instance
+				if (!entry.getKey().isAlive() && instancesByThread.remove(entry.getKey(), entry.getValue())) {
+					destroy(entry.getValue());
+				}
+			}
+		}
+	}
+}
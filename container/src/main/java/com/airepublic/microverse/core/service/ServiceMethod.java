@@ -0,0 +1,121 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.service;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+import org.apache.commons.lang3.ClassUtils;
+
+import com.airepublic.microverse.core.descriptor.MethodDescriptor;
+import com.airepublic.microverse.core.exception.ServiceException;
+
+/**
+ * An entry of the dispatch table of a {@link Service}. It holds a {@link MethodHandle} for a
+ * service-interface method which is invoked on the instance of the service-class passed with the
+ * call, so that invocations don't need any reflective lookup.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class ServiceMethod {
+	private final MethodDescriptor methodDescriptor;
+	private final Class<?>[] parameterTypes;
+	private final MethodHandle handle;
+
+
+	/**
+	 * Creates a {@link ServiceMethod} for the service-interface method which is invoked on the
+	 * instance of the service-class passed with each call.
+	 *
+	 * @param method the service-interface method
+	 * @param methodDescriptor the {@link MethodDescriptor} of the method
+	 * @return the {@link ServiceMethod}
+	 * @throws ServiceException if the method is not accessible
+	 */
+	public static ServiceMethod create(final Method method, final MethodDescriptor methodDescriptor) throws ServiceException {
+		try {
+			final MethodHandle handle = MethodHandles.publicLookup().unreflect(method).asSpreader(Object[].class, method.getParameterCount()).asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+
+			return new ServiceMethod(methodDescriptor, method.getParameterTypes(), handle);
+		} catch (final IllegalAccessException e) {
+			throw new ServiceException("The service-interface method is not accessible: " + methodDescriptor.getSignature(), e);
+		}
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param methodDescriptor the {@link MethodDescriptor}
+	 * @param parameterTypes the parameter types
+	 * @param handle the spread {@link MethodHandle} taking the instance as first argument
+	 */
+	private ServiceMethod(final MethodDescriptor methodDescriptor, final Class<?>[] parameterTypes, final MethodHandle handle) {
+		this.methodDescriptor = methodDescriptor;
+		this.parameterTypes = parameterTypes;
+		this.handle = handle;
+	}
+
+
+	/**
+	 * Gets the {@link MethodDescriptor}.
+	 *
+	 * @return the {@link MethodDescriptor}
+	 */
+	public MethodDescriptor getMethodDescriptor() {
+		return methodDescriptor;
+	}
+
+
+	/**
+	 * Checks whether the specified arguments can be passed to this method. Primitive parameters
+	 * accept their wrapper types but not <code>null</code>.
+	 *
+	 * @param args the arguments
+	 * @return <code>true</code> if the arguments match the parameter types
+	 */
+	public boolean accepts(final Object[] args) {
+		if (args.length != parameterTypes.length) {
+			return false;
+		}
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i] == null) {
+				if (parameterTypes[i].isPrimitive()) {
+					return false;
+				}
+			} else if (!ClassUtils.isAssignable(args[i].getClass(), parameterTypes[i], true)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Invokes the method on the specified instance of the service-class.
+	 *
+	 * @param instance the instance of the service-class
+	 * @param args the arguments
+	 * @return the result or <code>null</code> for void methods
+	 * @throws Throwable any exception thrown by the service method
+	 */
+	public Object invoke(final Object instance, final Object[] args) throws Throwable {
+		return handle.invokeExact(instance, args);
+	}
+}
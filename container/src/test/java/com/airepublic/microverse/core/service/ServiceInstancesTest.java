@@ -0,0 +1,122 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.airepublic.microverse.core.descriptor.ConcurrencyModel;
+import com.airepublic.microverse.core.exception.ServiceException;
+import com.airepublic.microverse.core.service.api.IServiceInvoker;
+
+public class ServiceInstancesTest {
+	private final List<Object> destroyed = new ArrayList<>();
+
+
+	@Test
+	public void testThreadInstancesOfTerminatedThreadsAreDestroyed() throws Exception {
+		final ServiceInstances serviceInstances = ServiceInstances.create(ConcurrencyModel.THREAD, 0, Object::new, this::destroy);
+		final Object[] threadInstance = new Object[1];
+		final Thread thread = new Thread(() -> {
+			try {
+				threadInstance[0] = serviceInstances.acquire();
+			} catch (final ServiceException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		thread.start();
+		thread.join();
+
+		final Object instance = serviceInstances.acquire();
+
+		assertThat(serviceInstances.acquire()).isSameAs(instance);
+		assertThat(destroyed).containsExactly(threadInstance[0]);
+		assertThat(serviceInstances.getStatistics().get(IServiceInvoker.STATISTICS_INSTANCES)).isEqualTo(1L);
+
+		serviceInstances.close();
+
+		assertThat(destroyed).containsExactly(threadInstance[0], instance);
+	}
+
+
+	@Test
+	public void testThreadsOtherThanWorkersBorrowThreadInstances() throws Exception {
+		final ServiceInstances serviceInstances = ServiceInstances.create(ConcurrencyModel.THREAD, 0, "worker-", Object::new, this::destroy);
+		final Object instance = serviceInstances.acquire();
+
+		// another caller doesn't get the borrowed instance while it is in use
+		final Object other = serviceInstances.acquire();
+		assertThat(other).isNotSameAs(instance);
+
+		serviceInstances.release(instance);
+		assertThat(serviceInstances.acquire()).isSameAs(instance);
+		serviceInstances.release(instance);
+		serviceInstances.release(other);
+
+		final Object[] workerInstances = new Object[2];
+		final Thread worker = new Thread(() -> {
+			try {
+				workerInstances[0] = serviceInstances.acquire();
+				serviceInstances.release(workerInstances[0]);
+				workerInstances[1] = serviceInstances.acquire();
+			} catch (final ServiceException e) {
+				throw new IllegalStateException(e);
+			}
+		}, "worker-1");
+		worker.start();
+		worker.join();
+
+		assertThat(workerInstances[1]).isSameAs(workerInstances[0]).isNotSameAs(instance).isNotSameAs(other);
+		assertThat(serviceInstances.getStatistics().get(IServiceInvoker.STATISTICS_INSTANCES)).isEqualTo(3L);
+
+		serviceInstances.close();
+
+		assertThat(destroyed).containsOnly(instance, other, workerInstances[0]);
+	}
+
+
+	@Test
+	public void testCloseDestroysIdlePooledInstances() throws Exception {
+		final ServiceInstances serviceInstances = ServiceInstances.create(ConcurrencyModel.POOLED, 2, Object::new, this::destroy);
+		final Object instance1 = serviceInstances.acquire();
+		final Object instance2 = serviceInstances.acquire();
+		serviceInstances.release(instance1);
+		serviceInstances.release(instance2);
+
+		serviceInstances.close();
+
+		assertThat(destroyed).containsExactly(instance1, instance2);
+		assertThat(serviceInstances.getStatistics().get(IServiceInvoker.STATISTICS_INSTANCES)).isEqualTo(0L);
+	}
+
+
+	@Test
+	public void testCloseDestroysSingleton() throws Exception {
+		final ServiceInstances serviceInstances = ServiceInstances.create(ConcurrencyModel.SINGLETON, 0, Object::new, this::destroy);
+		final Object instance = serviceInstances.acquire();
+
+		serviceInstances.close();
+
+		assertThat(destroyed).containsExactly(instance);
+	}
+
+
+	private synchronized void destroy(final Object instance) {
+		destroyed.add(instance);
+	}
+}
@@ -0,0 +1,102 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+import com.airepublic.microverse.core.descriptor.MethodDescriptor;
+
+public class ServiceMethodTest {
+	public interface Calculator {
+		int add(int a, int b);
+
+
+		String add(String a, String b);
+
+
+		void reset();
+	}
+
+	public static class CalculatorImpl implements Calculator {
+		boolean reset = false;
+
+
+		@Override
+		public int add(final int a, final int b) {
+			return a + b;
+		}
+
+
+		@Override
+		public String add(final String a, final String b) {
+			return a + b;
+		}
+
+
+		@Override
+		public void reset() {
+			reset = true;
+		}
+	}
+
+
+	@Test
+	public void testInvokeOverloadedMethodsWithPrimitives() throws Throwable {
+		final CalculatorImpl calculator = new CalculatorImpl();
+		final ServiceMethod intAdd = create(Calculator.class.getMethod("add", int.class, int.class));
+		final ServiceMethod stringAdd = create(Calculator.class.getMethod("add", String.class, String.class));
+		final ServiceMethod reset = create(Calculator.class.getMethod("reset"));
+
+		assertThat(intAdd.getMethodDescriptor().getSignature()).isEqualTo("add(int,int)");
+		assertThat(intAdd.invoke(calculator, new Object[] { 1, 2 })).isEqualTo(3);
+		assertThat(stringAdd.invoke(calculator, new Object[] { "1", "2" })).isEqualTo("12");
+		assertThat(reset.invoke(calculator, new Object[0])).isNull();
+		assertThat(calculator.reset).isTrue();
+	}
+
+
+	@Test
+	public void testAccepts() throws Exception {
+		final ServiceMethod intAdd = create(Calculator.class.getMethod("add", int.class, int.class));
+		final ServiceMethod stringAdd = create(Calculator.class.getMethod("add", String.class, String.class));
+
+		assertThat(intAdd.accepts(new Object[] { 1, 2 })).isTrue();
+		assertThat(intAdd.accepts(new Object[] { null, 2 })).isFalse();
+		assertThat(intAdd.accepts(new Object[] { "1", "2" })).isFalse();
+		assertThat(stringAdd.accepts(new Object[] { null, "2" })).isTrue();
+		assertThat(stringAdd.accepts(new Object[] { "1" })).isFalse();
+	}
+
+
+	@Test
+	public void testInvokeOnInstance() throws Throwable {
+		final ServiceMethod reset = create(Calculator.class.getMethod("reset"));
+		final CalculatorImpl calculator1 = new CalculatorImpl();
+		final CalculatorImpl calculator2 = new CalculatorImpl();
+
+		reset.invoke(calculator2, new Object[0]);
+
+		assertThat(calculator1.reset).isFalse();
+		assertThat(calculator2.reset).isTrue();
+	}
+
+
+	private ServiceMethod create(final Method method) throws Exception {
+		return ServiceMethod.create(method, MethodDescriptor.create(method));
+	}
+}
@@ -0,0 +1,274 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.microverse.core.common.BinaryFrame;
+import com.airepublic.microverse.core.common.Configuration;
+import com.airepublic.microverse.core.common.VirtualThreads;
+import com.airepublic.microverse.core.exception.ServiceException;
+import com.airepublic.microverse.core.exception.ServiceTimeoutException;
+
+/**
+ * A persistent connection to the binary endpoint of a service-server. Calls of all threads are
+ * multiplexed over the connection: each request frame gets a new request-id and the calling
+ * thread waits for the response frame with the same id, which a reader thread dispatches as the
+ * responses arrive in any order. The connections are shared by all service-clients and are opened
+ * per service-server on first use. If a service-server can't be reached, no connection to it is
+ * attempted again until an exponentially growing delay has passed, so the clients use HTTP
+ * meanwhile without waiting for the connect timeout on every call.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class BinaryConnection implements Closeable {
+	private final static Logger LOG = LoggerFactory.getLogger(BinaryConnection.class);
+	private static final Map<String, BinaryConnection[]> CONNECTIONS = new ConcurrentHashMap<>();
+	private static final Map<String, Unreachable> UNREACHABLE = new ConcurrentHashMap<>();
+	private static final long MIN_RETRY_DELAY = 1000L;
+	private static final long MAX_RETRY_DELAY = 60000L;
+	private final String key;
+	private final Socket socket;
+	private final OutputStream out;
+	private final Map<Integer, CompletableFuture<BinaryFrame>> pendingCalls = new ConcurrentHashMap<>();
+	private final AtomicInteger nextRequestId = new AtomicInteger();
+	private volatile boolean closed;
+
+
+	/**
+	 * Gets one of the connections to the binary endpoint of the service-server. The connections
+	 * are opened on first use and replaced when they have been closed.
+	 *
+	 * @param host the host of the service-server
+	 * @param port the binary port of the service-server
+	 * @return the {@link BinaryConnection}
+	 * @throws IOException if the connection could not be opened or the service-server has been
+	 *         unreachable before and the retry delay hasn't passed yet
+	 */
+	public static BinaryConnection get(final String host, final int port) throws IOException {
+		final String key = host + ":" + port;
+		final BinaryConnection[] connections = CONNECTIONS.computeIfAbsent(key, k -> new BinaryConnection[Math.max(1, Configuration.getClientBinaryConnections())]);
+		final int index = ThreadLocalRandom.current().nextInt(connections.length);
+		BinaryConnection connection = connections[index];
+
+		if (connection == null || connection.closed) {
+			synchronized (connections) {
+				connection = connections[index];
+
+				if (connection == null || connection.closed) {
+					connection = connect(key, host, port);
+					connections[index] = connection;
+				}
+			}
+		}
+
+		return connection;
+	}
+
+
+	/**
+	 * Opens a new connection unless the service-server has been unreachable before and the retry
+	 * delay hasn't passed yet.
+	 *
+	 * @param key the key of the connection
+	 * @param host the host of the service-server
+	 * @param port the binary port of the service-server
+	 * @return the {@link BinaryConnection}
+	 * @throws IOException if the connection could not be opened
+	 */
+	private static BinaryConnection connect(final String key, final String host, final int port) throws IOException {
+		final Unreachable unreachable = UNREACHABLE.get(key);
+
+		if (unreachable != null && System.nanoTime() - unreachable.retryTime < 0) {
+			throw new ConnectException("Binary endpoint " + key + " is unreachable");
+		}
+
+		try {
+			final BinaryConnection connection = new BinaryConnection(key, host, port);
+			UNREACHABLE.remove(key);
+
+			return connection;
+		} catch (final IOException e) {
+			final int failures = unreachable != null ? unreachable.failures + 1 : 1;
+			final long delay = Math.min(MAX_RETRY_DELAY, MIN_RETRY_DELAY << Math.min(failures - 1, 6));
+			UNREACHABLE.put(key, new Unreachable(failures, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay)));
+			LOG.warn("Binary endpoint " + key + " could not be reached - using HTTP for the next " + delay + "ms: " + e.getMessage());
+
+			throw e;
+		}
+	}
+
+
+	/**
+	 * Constructor. Opens the connection and starts the reader thread.
+	 *
+	 * @param key the key of the connection
+	 * @param host the host of the service-server
+	 * @param port the binary port of the service-server
+	 * @throws IOException if the connection could not be opened
+	 */
+	private BinaryConnection(final String key, final String host, final int port) throws IOException {
+		this.key = key;
+		socket = new Socket();
+		socket.connect(new InetSocketAddress(host, port), 5000);
+		socket.setTcpNoDelay(true);
+		out = new BufferedOutputStream(socket.getOutputStream());
+
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		VirtualThreads.newThreadFactory("microverse-binary-client-", r -> {
+			final Thread thread = new Thread(r, "microverse-binary-client-" + key);
+			thread.setDaemon(true);
+			return thread;
+		}).newThread(() -> read(in)).start();
+	}
+
+
+	/**
+	 * Sends the request and waits for its response until the timeout has elapsed.
+	 *
+	 * @param attributes the attributes of the request
+	 * @param timeout the timeout in milliseconds or -1 for no timeout
+	 * @param content the content of the request
+	 * @return the response {@link BinaryFrame}
+	 * @throws ServiceTimeoutException if the response didn't arrive within the timeout
+	 * @throws ServiceException if the connection failed
+	 */
+	public BinaryFrame call(final String[] attributes, final long timeout, final byte[] content) throws ServiceException {
+		return call(BinaryFrame.REQUEST, attributes, timeout, content);
+	}
+
+
+	/**
+	 * Sends a request frame of the specified type and waits for its response until the timeout has
+	 * elapsed.
+	 *
+	 * @param type the frame type of the request
+	 * @param attributes the attributes of the request
+	 * @param timeout the timeout in milliseconds or -1 for no timeout
+	 * @param content the content of the request
+	 * @return the response {@link BinaryFrame}
+	 * @throws ServiceTimeoutException if the response didn't arrive within the timeout
+	 * @throws ServiceException if the connection failed
+	 */
+	public BinaryFrame call(final byte type, final String[] attributes, final long timeout, final byte[] content) throws ServiceException {
+		final int requestId = nextRequestId.incrementAndGet();
+		final CompletableFuture<BinaryFrame> response = new CompletableFuture<>();
+		pendingCalls.put(requestId, response);
+
+		try {
+			if (closed) {
+				throw new IOException("Connection has been closed");
+			}
+
+			synchronized (out) {
+				new BinaryFrame(requestId, type, attributes, timeout, content).write(out);
+				out.flush();
+			}
+
+			return timeout >= 0 ? response.get(timeout, TimeUnit.MILLISECONDS) : response.get();
+		} catch (final TimeoutException e) {
+			throw new ServiceTimeoutException("No response within " + timeout + "ms from binary endpoint " + key);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ServiceException("Interrupted while waiting for the response from binary endpoint " + key, e);
+		} catch (final ExecutionException e) {
+			throw new ServiceException("Binary connection to " + key + " failed!", e.getCause());
+		} catch (final IOException e) {
+			close();
+			throw new ServiceException("Binary connection to " + key + " failed!", e);
+		} finally {
+			pendingCalls.remove(requestId);
+		}
+	}
+
+
+	/**
+	 * Reads the response frames and completes the waiting calls until the connection is closed.
+	 *
+	 * @param in the input-stream of the connection
+	 */
+	private void read(final DataInputStream in) {
+		final long maxLength = Configuration.getClientResponseMaxSize();
+
+		try {
+			while (!closed) {
+				final BinaryFrame response = BinaryFrame.read(in, maxLength);
+				final CompletableFuture<BinaryFrame> call = pendingCalls.get(response.getRequestId());
+
+				if (call != null) {
+					call.complete(response);
+				}
+			}
+		} catch (final IOException e) {
+			if (!closed) {
+				LOG.debug("Binary connection to " + key + " closed: " + e.getMessage());
+			}
+
+			// calls registered from now on see the closed flag
+			closed = true;
+
+			for (final CompletableFuture<BinaryFrame> call : pendingCalls.values()) {
+				call.completeExceptionally(e);
+			}
+		} finally {
+			close();
+		}
+	}
+
+
+	@Override
+	public void close() {
+		closed = true;
+
+		try {
+			socket.close();
+		} catch (final IOException e) {
+			// close quietly
+		}
+	}
+
+	/**
+	 * The failed connection attempts to an unreachable service-server.
+	 */
+	private static final class Unreachable {
+		private final int failures;
+		private final long retryTime;
+
+
+		Unreachable(final int failures, final long retryTime) {
+			this.failures = failures;
+			this.retryTime = retryTime;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provider of the {@link IClientInterceptor}s discovered via {@link ServiceLoader}. The
+ * interceptors are called in the order they are listed, followed by the ones added
+ * programmatically. Changes only apply to service-clients created afterwards.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class ClientInterceptors {
+	private final static Logger LOG = LoggerFactory.getLogger(ClientInterceptors.class);
+	private static ServiceLoader<IClientInterceptor> loader = ServiceLoader.load(IClientInterceptor.class, ClientInterceptors.class.getClassLoader());
+	private static List<IClientInterceptor> interceptors = new CopyOnWriteArrayList<>();
+
+	static {
+		try {
+			final Iterator<IClientInterceptor> iterator = loader.iterator();
+
+			while (iterator.hasNext()) {
+				interceptors.add(iterator.next());
+			}
+		} catch (final ServiceConfigurationError serviceError) {
+			LOG.error("Could not load the registered IClientInterceptors!", serviceError);
+		}
+	}
+
+
+	/**
+	 * Gets the registered {@link IClientInterceptor}s in the order they are called.
+	 *
+	 * @return the {@link IClientInterceptor}s
+	 */
+	public static IClientInterceptor[] get() {
+		return interceptors.toArray(new IClientInterceptor[0]);
+	}
+
+
+	/**
+	 * Adds an {@link IClientInterceptor} to be called after the registered ones.
+	 *
+	 * @param interceptor the {@link IClientInterceptor}
+	 */
+	public static void addInterceptor(final IClientInterceptor interceptor) {
+		interceptors.add(interceptor);
+	}
+
+
+	/**
+	 * Removes all registered {@link IClientInterceptor}s.
+	 */
+	public static void clear() {
+		interceptors.clear();
+	}
+}
@@ -0,0 +1,133 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import java.lang.reflect.Method;
+
+import com.airepublic.microverse.core.descriptor.MethodDescriptor;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+
+/**
+ * A link of the chain of {@link IClientInterceptor}s around the calls of a service method. The
+ * chain is built once per method when the service-client is created, so a call passes through
+ * the interceptors without creating any objects.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public final class ClientInvocation {
+	private final ServiceDescriptor serviceDescriptor;
+	private final Method method;
+	private final MethodDescriptor methodDescriptor;
+	private final IClientInterceptor interceptor;
+	private final ClientInvocation next;
+	private final Target target;
+
+	/**
+	 * The call of the service method at the end of the chain.
+	 */
+	interface Target {
+		Object invoke(Method method, Object[] args) throws Throwable;
+	}
+
+
+	/**
+	 * Builds the chain of the specified interceptors around the target.
+	 *
+	 * @param serviceDescriptor the {@link ServiceDescriptor} of the called service
+	 * @param method the service-interface method
+	 * @param methodDescriptor the {@link MethodDescriptor} of the method or <code>null</code>
+	 * @param interceptors the {@link IClientInterceptor}s in the order they are called
+	 * @param target the call of the service method
+	 * @return the first link of the chain
+	 */
+	static ClientInvocation create(final ServiceDescriptor serviceDescriptor, final Method method, final MethodDescriptor methodDescriptor, final IClientInterceptor[] interceptors, final Target target) {
+		ClientInvocation chain = new ClientInvocation(serviceDescriptor, method, methodDescriptor, null, null, target);
+
+		for (int i = interceptors.length - 1; i >= 0; i--) {
+			chain = new ClientInvocation(serviceDescriptor, method, methodDescriptor, interceptors[i], chain, target);
+		}
+
+		return chain;
+	}
+
+
+	private ClientInvocation(final ServiceDescriptor serviceDescriptor, final Method method, final MethodDescriptor methodDescriptor, final IClientInterceptor interceptor, final ClientInvocation next, final Target target) {
+		this.serviceDescriptor = serviceDescriptor;
+		this.method = method;
+		this.methodDescriptor = methodDescriptor;
+		this.interceptor = interceptor;
+		this.next = next;
+		this.target = target;
+	}
+
+
+	/**
+	 * Gets the {@link ServiceDescriptor} of the called service.
+	 *
+	 * @return the {@link ServiceDescriptor}
+	 */
+	public ServiceDescriptor getServiceDescriptor() {
+		return serviceDescriptor;
+	}
+
+
+	/**
+	 * Gets the called service-interface method.
+	 *
+	 * @return the {@link Method}
+	 */
+	public Method getMethod() {
+		return method;
+	}
+
+
+	/**
+	 * Gets the {@link MethodDescriptor} of the called method.
+	 *
+	 * @return the {@link MethodDescriptor} or <code>null</code> if the service doesn't describe the
+	 *         method
+	 */
+	public MethodDescriptor getMethodDescriptor() {
+		return methodDescriptor;
+	}
+
+
+	/**
+	 * Continues the call with the next interceptor or calls the service method.
+	 *
+	 * @param args the arguments of the call
+	 * @return the result of the call
+	 * @throws Throwable if the call failed
+	 */
+	public Object proceed(final Object[] args) throws Throwable {
+		return next.invoke(args);
+	}
+
+
+	/**
+	 * Calls the interceptor of this link or the service method at the end of the chain.
+	 *
+	 * @param args the arguments of the call
+	 * @return the result of the call
+	 * @throws Throwable if the call failed
+	 */
+	Object invoke(final Object[] args) throws Throwable {
+		if (interceptor == null) {
+			return target.invoke(method, args);
+		}
+
+		return interceptor.intercept(this, args);
+	}
+}
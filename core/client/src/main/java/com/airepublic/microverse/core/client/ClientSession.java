@@ -0,0 +1,537 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.microverse.core.common.BinaryFrame;
+import com.airepublic.microverse.core.common.Configuration;
+import com.airepublic.microverse.core.common.ServiceUtils;
+import com.airepublic.microverse.core.common.VirtualThreads;
+import com.airepublic.microverse.core.common.WebSocket;
+import com.airepublic.microverse.core.common.marshaller.IMarshaller;
+import com.airepublic.microverse.core.common.marshaller.MarshallerFactory;
+import com.airepublic.microverse.core.descriptor.MethodCall;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.exception.ServiceException;
+import com.airepublic.microverse.core.exception.ServiceTimeoutException;
+import com.airepublic.microverse.core.exception.ServiceUnavailableException;
+import com.airepublic.microverse.core.service.api.InvocationContext;
+import com.airepublic.microverse.core.service.api.Priority;
+import com.airepublic.microverse.core.service.api.ResultStream;
+
+/**
+ * A WebSocket session with a service. Calls made through the service-client of the session are
+ * multiplexed over the session connection, methods returning an element stream receive their
+ * elements as they are produced and events pushed by the service are delivered to the event
+ * listener.
+ * <p>
+ * Element streams and events are flow controlled: the service only sends as many elements and
+ * events as the client has granted credits for, and the client grants new credits as the elements
+ * and events are consumed.
+ * </p>
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class ClientSession implements Closeable {
+	private final static Logger LOG = LoggerFactory.getLogger(ClientSession.class);
+	private static final BinaryFrame CLOSED = new BinaryFrame(0, BinaryFrame.ERROR, new String[] { "Session has been closed" }, 0L, null);
+	private final ServiceDescriptor serviceDescriptor;
+	private final IMarshaller marshaller;
+	private final int window = Math.max(1, Configuration.getClientSessionWindow());
+	private final Socket socket;
+	private final WebSocket webSocket;
+	private final Map<Integer, CompletableFuture<BinaryFrame>> pendingCalls = new ConcurrentHashMap<>();
+	private final Map<Integer, BlockingQueue<BinaryFrame>> streams = new ConcurrentHashMap<>();
+	private final BlockingQueue<BinaryFrame> events = new ArrayBlockingQueue<>(window);
+	private final AtomicInteger nextRequestId = new AtomicInteger();
+	private volatile boolean closed;
+	private Thread eventThread;
+
+
+	/**
+	 * Opens a session with the service on the WebSocket endpoint of its service-server.
+	 *
+	 * @param serviceDescriptor the {@link ServiceDescriptor} of the service
+	 * @return the {@link ClientSession}
+	 * @throws ServiceException if the service-server doesn't offer sessions, the service uses SSL
+	 *         or the session could not be opened
+	 */
+	public static ClientSession open(final ServiceDescriptor serviceDescriptor) throws ServiceException {
+		// sessions are not encrypted
+		if (serviceDescriptor.getWebSocketPort() <= 0 || serviceDescriptor.isUseSSL()) {
+			throw new ServiceException("The service-server doesn't offer sessions with service: " + serviceDescriptor);
+		}
+
+		try {
+			return new ClientSession(serviceDescriptor, ServiceUtils.determineCommonMimeType(serviceDescriptor.getSupportedMimeTypes()));
+		} catch (final IOException e) {
+			throw new ServiceException("Could not open a session with service: " + serviceDescriptor, e);
+		}
+	}
+
+
+	/**
+	 * Constructor. Performs the WebSocket handshake and starts the reader thread.
+	 *
+	 * @param serviceDescriptor the {@link ServiceDescriptor} of the service
+	 * @param marshaller the marshaller to serialize the calls with
+	 * @throws IOException if the session could not be opened
+	 */
+	private ClientSession(final ServiceDescriptor serviceDescriptor, final IMarshaller marshaller) throws IOException {
+		this.serviceDescriptor = serviceDescriptor;
+		this.marshaller = marshaller;
+		socket = new Socket();
+
+		try {
+			socket.connect(new InetSocketAddress(serviceDescriptor.getHost(), serviceDescriptor.getWebSocketPort()), 5000);
+			socket.setTcpNoDelay(true);
+
+			final InputStream in = new BufferedInputStream(socket.getInputStream());
+			final OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+			final String key = WebSocket.createKey();
+
+			out.write(("GET /" + serviceDescriptor.getServiceUri().getUri() + " HTTP/1.1\r\nHost: " + serviceDescriptor.getHost() + ":" + serviceDescriptor.getWebSocketPort() + "\r\nUpgrade: websocket\r\nConnection: Upgrade\r\nSec-WebSocket-Key: " + key + "\r\nSec-WebSocket-Version: 13\r\nAccept: " + marshaller.getMimeType() + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+
+			final String statusLine = readLine(in);
+			String acceptKey = null;
+			String line;
+
+			while (!(line = readLine(in)).isEmpty()) {
+				if (line.toLowerCase().startsWith("sec-websocket-accept:")) {
+					acceptKey = line.substring(line.indexOf(':') + 1).trim();
+				}
+			}
+
+			if (!statusLine.contains(" 101 ") || !WebSocket.acceptKey(key).equals(acceptKey)) {
+				throw new IOException("Session was rejected: " + statusLine);
+			}
+
+			webSocket = new WebSocket(in, out, true);
+		} catch (final IOException e) {
+			socket.close();
+			throw e;
+		}
+
+		VirtualThreads.newThreadFactory("microverse-session-client-", r -> {
+			final Thread thread = new Thread(r, "microverse-session-client");
+			thread.setDaemon(true);
+			return thread;
+		}).newThread(this::read).start();
+	}
+
+
+	private static String readLine(final InputStream in) throws IOException {
+		final ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+		int b;
+
+		while ((b = in.read()) != '\n') {
+			if (b < 0) {
+				throw new EOFException("Connection closed during the WebSocket handshake");
+			}
+
+			if (b != '\r') {
+				line.write(b);
+			}
+		}
+
+		return line.toString(StandardCharsets.US_ASCII.name());
+	}
+
+
+	/**
+	 * Gets a service-client whose calls are sent over this session.
+	 *
+	 * @param <T> the service-interface
+	 * @return the service-client
+	 * @throws ServiceException if the service-interface could not be loaded
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getServiceClient() throws ServiceException {
+		try {
+			final Class<?> serviceInterface = Class.forName(serviceDescriptor.getServiceInterface());
+
+			return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { serviceInterface }, (proxy, method, args) -> invoke(method, args));
+		} catch (final ClassNotFoundException e) {
+			throw new ServiceException("Could not create service-client!", e);
+		}
+	}
+
+
+	/**
+	 * Sets the listener for the events pushed by the service. The service can't push events
+	 * before a listener is set. Events are delivered one after another on a separate thread and
+	 * the service is granted new credits as the listener returns.
+	 *
+	 * @param <E> the event type
+	 * @param eventType the class the events are deserialized to
+	 * @param listener the listener
+	 */
+	public synchronized <E> void setEventListener(final Class<E> eventType, final Consumer<? super E> listener) {
+		if (eventThread != null) {
+			throw new IllegalStateException("The event listener has already been set!");
+		}
+
+		eventThread = VirtualThreads.newThreadFactory("microverse-session-events-", r -> {
+			final Thread thread = new Thread(r, "microverse-session-events");
+			thread.setDaemon(true);
+			return thread;
+		}).newThread(() -> deliverEvents(eventType, listener));
+		eventThread.start();
+
+		send(new BinaryFrame(0, BinaryFrame.CREDIT, new String[0], window, null));
+	}
+
+
+	/**
+	 * Delivers the events to the listener until the session is closed.
+	 *
+	 * @param eventType the class the events are deserialized to
+	 * @param listener the listener
+	 */
+	private <E> void deliverEvents(final Class<E> eventType, final Consumer<? super E> listener) {
+		int consumed = 0;
+
+		try {
+			while (true) {
+				final BinaryFrame event = events.take();
+
+				if (event == CLOSED) {
+					return;
+				}
+
+				try {
+					listener.accept(MarshallerFactory.get(event.getAttribute(0)).deserialize(new ByteArrayInputStream(event.getContent()), eventType));
+				} catch (final Exception e) {
+					LOG.error("Error delivering event of session with service " + serviceDescriptor.getServiceUri(), e);
+				}
+
+				if (++consumed >= Math.max(1, window / 2)) {
+					send(new BinaryFrame(0, BinaryFrame.CREDIT, new String[0], consumed, null));
+					consumed = 0;
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/**
+	 * Sends the call of the method over the session within the deadline of the current
+	 * {@link InvocationContext}.
+	 *
+	 * @param method the called method
+	 * @param args the arguments
+	 * @return the result
+	 * @throws ServiceException if the call failed
+	 */
+	private Object invoke(final Method method, final Object[] args) throws ServiceException {
+		final Priority priority = InvocationContext.getPriority();
+		long timeout = InvocationContext.getRemaining(TimeUnit.MILLISECONDS);
+
+		if (timeout == Long.MAX_VALUE) {
+			timeout = -1L;
+		} else if (timeout <= 0) {
+			throw new ServiceTimeoutException("Deadline has passed before calling: " + serviceDescriptor.getServiceUri());
+		}
+
+		final int requestId = nextRequestId.incrementAndGet();
+		final String[] attributes = { "/" + serviceDescriptor.getServiceUri().getUri(), marshaller.getMimeType(), marshaller.getMimeType(), priority != null ? priority.name() : "", String.valueOf(window) };
+		final BinaryFrame request = new BinaryFrame(requestId, BinaryFrame.REQUEST, attributes, timeout, marshaller.serialize(MethodCall.create(method, args)));
+
+		if (ResultStream.isStreamType(method.getReturnType().getName())) {
+			final SessionStream stream = new SessionStream(requestId, ServiceClientInvocationHandler.getElementType(method));
+			streams.put(requestId, stream.frames);
+
+			if (!send(request)) {
+				stream.close();
+				throw new ServiceException("Session with service " + serviceDescriptor.getServiceUri() + " has been closed!");
+			}
+
+			return ServiceClientInvocationHandler.adaptResultStream(method, stream, stream);
+		}
+
+		final BinaryFrame response = call(requestId, request, timeout);
+
+		switch (response.getType()) {
+			case BinaryFrame.RESULT:
+				final String mimeType = response.getAttribute(0);
+				return mimeType != null ? MarshallerFactory.get(mimeType).deserialize(new ByteArrayInputStream(response.getContent()), method.getReturnType()) : null;
+			case BinaryFrame.TIMEOUT:
+				throw new ServiceTimeoutException(response.getAttribute(0));
+			case BinaryFrame.UNAVAILABLE:
+				throw new ServiceUnavailableException(response.getAttribute(0), (int) response.getValue());
+			default:
+				throw new ServiceException(response.getAttribute(0));
+		}
+	}
+
+
+	/**
+	 * Sends the request and waits for its response until the timeout has elapsed.
+	 *
+	 * @param requestId the request-id
+	 * @param request the request frame
+	 * @param timeout the timeout in milliseconds or -1 for no timeout
+	 * @return the response frame
+	 * @throws ServiceException if the session failed or no response arrived in time
+	 */
+	private BinaryFrame call(final int requestId, final BinaryFrame request, final long timeout) throws ServiceException {
+		final CompletableFuture<BinaryFrame> response = new CompletableFuture<>();
+		pendingCalls.put(requestId, response);
+
+		try {
+			if (!send(request)) {
+				throw new ServiceException("Session with service " + serviceDescriptor.getServiceUri() + " has been closed!");
+			}
+
+			return timeout >= 0 ? response.get(timeout, TimeUnit.MILLISECONDS) : response.get();
+		} catch (final TimeoutException e) {
+			throw new ServiceTimeoutException("No response within " + timeout + "ms from session with service " + serviceDescriptor.getServiceUri());
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ServiceException("Interrupted while waiting for the response from session with service " + serviceDescriptor.getServiceUri(), e);
+		} catch (final ExecutionException e) {
+			throw new ServiceException("Session with service " + serviceDescriptor.getServiceUri() + " failed!", e.getCause());
+		} finally {
+			pendingCalls.remove(requestId);
+		}
+	}
+
+
+	/**
+	 * Sends the frame to the service.
+	 *
+	 * @param frame the {@link BinaryFrame}
+	 * @return <code>false</code> if the session has been closed
+	 */
+	private boolean send(final BinaryFrame frame) {
+		try {
+			webSocket.write(frame.toByteArray());
+			return true;
+		} catch (final IOException e) {
+			LOG.debug("Session with service " + serviceDescriptor.getServiceUri() + " failed: " + e.getMessage());
+			close();
+			return false;
+		}
+	}
+
+
+	/**
+	 * Reads the frames of the service and dispatches them to the waiting calls, element streams
+	 * and the event listener until the session is closed.
+	 */
+	private void read() {
+		try {
+			final long maxLength = Configuration.getClientResponseMaxSize();
+			byte[] message;
+
+			while (!closed && (message = webSocket.read(maxLength)) != null) {
+				final BinaryFrame frame = BinaryFrame.read(message);
+
+				if (frame.getType() == BinaryFrame.EVENT) {
+					if (!events.offer(frame)) {
+						LOG.warn("Dropped event exceeding the granted credits of session with service " + serviceDescriptor.getServiceUri());
+					}
+					continue;
+				}
+
+				final BlockingQueue<BinaryFrame> stream = streams.get(frame.getRequestId());
+
+				if (stream != null) {
+					stream.offer(frame);
+				} else {
+					final CompletableFuture<BinaryFrame> call = pendingCalls.get(frame.getRequestId());
+
+					if (call != null) {
+						call.complete(frame);
+					}
+				}
+			}
+		} catch (final IOException e) {
+			if (!closed) {
+				LOG.debug("Session with service " + serviceDescriptor.getServiceUri() + " closed: " + e.getMessage());
+			}
+		} finally {
+			close();
+		}
+	}
+
+
+	/**
+	 * Checks whether the session is still open.
+	 *
+	 * @return <code>true</code> if the session is open
+	 */
+	public boolean isOpen() {
+		return !closed;
+	}
+
+
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+		webSocket.close();
+
+		try {
+			socket.close();
+		} catch (final IOException e) {
+			// close quietly
+		}
+
+		final IOException cause = new EOFException("Session has been closed");
+
+		for (final CompletableFuture<BinaryFrame> call : pendingCalls.values()) {
+			call.completeExceptionally(cause);
+		}
+
+		for (final BlockingQueue<BinaryFrame> stream : streams.values()) {
+			stream.offer(CLOSED);
+		}
+
+		events.clear();
+		events.offer(CLOSED);
+	}
+
+
+	/**
+	 * The elements of an element stream received over the session. New credits are granted to the
+	 * service once half of the window has been consumed and the stream is cancelled if it is
+	 * closed before its end.
+	 */
+	private class SessionStream implements Iterator<Object>, Closeable {
+		private final int requestId;
+		private final Class<?> elementType;
+		private final BlockingQueue<BinaryFrame> frames = new LinkedBlockingQueue<>();
+		private BinaryFrame next;
+		private boolean finished;
+		private int consumed;
+
+
+		/**
+		 * Constructor.
+		 *
+		 * @param requestId the request-id of the call
+		 * @param elementType the element type
+		 */
+		SessionStream(final int requestId, final Class<?> elementType) {
+			this.requestId = requestId;
+			this.elementType = elementType;
+		}
+
+
+		@Override
+		public boolean hasNext() {
+			if (next == null && !finished) {
+				final BinaryFrame frame;
+
+				try {
+					frame = frames.take();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					close();
+					throw new IllegalStateException("Interrupted while waiting for the next element!", e);
+				}
+
+				if (frame.getType() == BinaryFrame.ELEMENT) {
+					next = frame;
+				} else {
+					finish();
+
+					if (frame.getType() != BinaryFrame.END) {
+						throw new IllegalStateException("The remote result stream failed: " + frame.getAttribute(0));
+					}
+				}
+			}
+
+			return next != null;
+		}
+
+
+		@Override
+		public Object next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			final BinaryFrame frame = next;
+			next = null;
+
+			if (++consumed >= Math.max(1, window / 2)) {
+				send(new BinaryFrame(requestId, BinaryFrame.CREDIT, new String[0], consumed, null));
+				consumed = 0;
+			}
+
+			try {
+				return MarshallerFactory.get(frame.getAttribute(0)).deserialize(new ByteArrayInputStream(frame.getContent()), elementType);
+			} catch (final ServiceException e) {
+				throw new IllegalStateException("Could not deserialize element of the result stream!", e);
+			}
+		}
+
+
+		private void finish() {
+			finished = true;
+			streams.remove(requestId);
+		}
+
+
+		@Override
+		public void close() {
+			if (!finished) {
+				finish();
+
+				if (!closed) {
+					send(new BinaryFrame(requestId, BinaryFrame.CANCEL, new String[0], 0L, null));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,377 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.microverse.core.common.Configuration;
+import com.airepublic.microverse.core.common.VirtualThreads;
+import com.airepublic.microverse.core.descriptor.MethodCall;
+import com.airepublic.microverse.core.descriptor.MethodDescriptor;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.exception.ServiceException;
+import com.airepublic.microverse.core.service.api.EventBus;
+import com.airepublic.microverse.core.service.api.IEventPublisher;
+import com.airepublic.microverse.core.service.api.InvocationContext;
+import com.airepublic.microverse.core.service.api.Priority;
+import com.airepublic.microverse.core.service.api.Subscribe;
+
+/**
+ * Dispatches the events published with the {@link EventBus} to the subscribers of their topic.
+ * Published events are queued in a bounded buffer, from which a dispatcher thread delivers them as
+ * one-way calls of the subscribed methods to every instance of the subscribed services. The
+ * {@link OneWaySender} of each instance batches the events over its persistent connection. The
+ * dispatcher never waits: an event which doesn't fit into the queue of a subscriber is dropped
+ * and counted, so a slow subscriber doesn't hold up the others.
+ * <p>
+ * The subscribers of a topic are the services registered with a method annotated with
+ * {@link Subscribe} for the topic. They are requested from the registries by a separate thread and
+ * cached for the refresh interval. Events of a topic whose subscribers haven't been requested yet
+ * wait for them, events of a topic whose subscribers are being refreshed are delivered to the
+ * cached subscribers. If the registries can't be reached, the request is repeated after a second
+ * at the latest while the events keep waiting or the cached subscribers are kept.
+ * </p>
+ * <p>
+ * There is one publisher per JVM. It is installed by the service lookup and provided to the
+ * {@link EventBus} via {@link java.util.ServiceLoader}, so service-servers find it if this module
+ * is on their classpath.
+ * </p>
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class EventPublisher implements IEventPublisher {
+	private final static Logger LOG = LoggerFactory.getLogger(EventPublisher.class);
+	private static final long LOOKUP_RETRY_DELAY = 1000L;
+	private static final EventPublisher INSTANCE = new EventPublisher();
+	private final int capacity = Math.max(1, Configuration.getEventsCapacity());
+	private final BlockingQueue<PublishedEvent> queue = new ArrayBlockingQueue<>(capacity);
+	private final long refreshNanos = TimeUnit.MILLISECONDS.toNanos(Configuration.getEventsSubscribersRefresh());
+	private final Map<String, Subscribers> subscribersByTopic = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService subscriberLookup = Executors.newSingleThreadScheduledExecutor(VirtualThreads.newThreadFactory("microverse-event-subscribers-", r -> {
+		final Thread thread = new Thread(r, "microverse-event-subscribers");
+		thread.setDaemon(true);
+		return thread;
+	}));
+	private final AtomicBoolean started = new AtomicBoolean();
+	private final AtomicLong droppedEvents = new AtomicLong();
+	private volatile Lookup lookup = topic -> ServiceLookup.create().getSubscribers(topic);
+
+	/**
+	 * Requests the services subscribed to a topic.
+	 */
+	@FunctionalInterface
+	interface Lookup {
+		/**
+		 * Requests the services with a method subscribed to the topic.
+		 *
+		 * @param topic the topic
+		 * @return the list of {@link ServiceDescriptor}s
+		 * @throws ServiceException if the subscribers could not be requested
+		 */
+		List<ServiceDescriptor> getSubscribers(String topic) throws ServiceException;
+	}
+
+	/**
+	 * Provides the publisher of this JVM to the {@link java.util.ServiceLoader}.
+	 */
+	public static final class Provider implements IEventPublisher {
+		@Override
+		public boolean publish(final String topic, final byte[] serializedEvent) {
+			return INSTANCE.publish(topic, serializedEvent);
+		}
+	}
+
+
+	/**
+	 * Gets the publisher of this JVM.
+	 *
+	 * @return the {@link EventPublisher}
+	 */
+	public static EventPublisher get() {
+		return INSTANCE;
+	}
+
+
+	/**
+	 * Installs the publisher of this JVM with the {@link EventBus} unless another publisher has
+	 * been installed already.
+	 */
+	public static void install() {
+		if (!EventBus.hasPublisher()) {
+			EventBus.setPublisher(INSTANCE);
+		}
+	}
+
+
+	/**
+	 * Constructor.
+	 */
+	private EventPublisher() {
+	}
+
+
+	/**
+	 * Queues the event with the {@link Priority} of the current {@link InvocationContext}. The
+	 * dispatcher thread is started with the first event.
+	 */
+	@Override
+	public boolean publish(final String topic, final byte[] serializedEvent) {
+		if (!started.get() && started.compareAndSet(false, true)) {
+			VirtualThreads.newThreadFactory("microverse-event-dispatcher-", r -> {
+				final Thread thread = new Thread(r, "microverse-event-dispatcher");
+				thread.setDaemon(true);
+				return thread;
+			}).newThread(this::run).start();
+		}
+
+		if (queue.offer(new PublishedEvent(topic, serializedEvent, InvocationContext.getPriority()))) {
+			return true;
+		}
+
+		drop(topic, "Event queue is full");
+
+		return false;
+	}
+
+
+	/**
+	 * Gets the number of events which were dropped as the queue of the publisher or of a
+	 * subscriber was full.
+	 *
+	 * @return the number of dropped events
+	 */
+	public long getDroppedEvents() {
+		return droppedEvents.get();
+	}
+
+
+	/**
+	 * Sets the function requesting the subscribers of a topic, e.g. to test without registries. The
+	 * cached subscribers are discarded.
+	 *
+	 * @param lookup the {@link Lookup} or <code>null</code> to request the registries
+	 */
+	void setLookup(final Lookup lookup) {
+		this.lookup = lookup != null ? lookup : topic -> ServiceLookup.create().getSubscribers(topic);
+		subscribersByTopic.clear();
+	}
+
+
+	/**
+	 * Dispatches the queued events until the thread is interrupted.
+	 */
+	private void run() {
+		try {
+			while (true) {
+				dispatch(queue.take());
+			}
+		} catch (final InterruptedException e) {
+			LOG.warn("Event dispatcher was interrupted - " + queue.size() + " events are dropped");
+		}
+	}
+
+
+	/**
+	 * Sends the event to the cached subscribers of its topic. The subscribers are requested in the
+	 * background if they are older than the refresh interval. If they haven't been requested yet,
+	 * the event is sent once they have arrived.
+	 *
+	 * @param event the {@link PublishedEvent}
+	 */
+	private void dispatch(final PublishedEvent event) {
+		final Subscribers subscribers = subscribersByTopic.computeIfAbsent(event.topic, Subscribers::new);
+		final List<Subscriber> list;
+
+		synchronized (subscribers) {
+			if (subscribers.list == null) {
+				if (subscribers.pending.size() < capacity) {
+					subscribers.pending.add(event);
+				} else {
+					drop(event.topic, "Too many events are waiting for the subscribers");
+				}
+
+				refresh(subscribers);
+				return;
+			}
+
+			if (System.nanoTime() - subscribers.time >= refreshNanos) {
+				refresh(subscribers);
+			}
+
+			list = subscribers.list;
+		}
+
+		deliver(event, list);
+	}
+
+
+	/**
+	 * Requests the subscribers of the topic in the background unless they are already being
+	 * requested. Must be called holding the lock of the {@link Subscribers}.
+	 *
+	 * @param subscribers the {@link Subscribers} of the topic
+	 */
+	private void refresh(final Subscribers subscribers) {
+		if (!subscribers.refreshing) {
+			subscribers.refreshing = true;
+			subscriberLookup.execute(() -> lookup(subscribers));
+		}
+	}
+
+
+	/**
+	 * Requests the subscribers of the topic from the registries and sends the events which have
+	 * been waiting for them. If the request fails, it is repeated after the retry delay or the
+	 * refresh interval if that is shorter, while the events keep waiting or the cached subscribers
+	 * are still used.
+	 *
+	 * @param subscribers the {@link Subscribers} of the topic
+	 */
+	private void lookup(final Subscribers subscribers) {
+		final List<Subscriber> list = new ArrayList<>();
+
+		try {
+			for (final ServiceDescriptor serviceDescriptor : lookup.getSubscribers(subscribers.topic)) {
+				for (final MethodDescriptor methodDescriptor : serviceDescriptor.getMethods()) {
+					if (subscribers.topic.equals(methodDescriptor.getTopic())) {
+						list.add(new Subscriber(serviceDescriptor, methodDescriptor));
+					}
+				}
+			}
+		} catch (final ServiceException | RuntimeException e) {
+			final long retryDelay = Math.min(LOOKUP_RETRY_DELAY, TimeUnit.NANOSECONDS.toMillis(refreshNanos));
+			LOG.error("Could not request the subscribers of topic: " + subscribers.topic + " - retrying in " + retryDelay + "ms", e);
+			// the subscribers stay marked as refreshing until the request succeeds
+			subscriberLookup.schedule(() -> lookup(subscribers), retryDelay, TimeUnit.MILLISECONDS);
+			return;
+		}
+
+		// the waiting events are sent before the dispatcher sends further events of the topic
+		synchronized (subscribers) {
+			subscribers.list = Collections.unmodifiableList(list);
+			subscribers.time = System.nanoTime();
+			subscribers.refreshing = false;
+
+			PublishedEvent event;
+
+			while ((event = subscribers.pending.poll()) != null) {
+				deliver(event, subscribers.list);
+			}
+		}
+	}
+
+
+	/**
+	 * Queues the event as one-way call to each subscriber without waiting for their senders.
+	 *
+	 * @param event the {@link PublishedEvent}
+	 * @param subscribers the {@link Subscriber}s of its topic
+	 */
+	private void deliver(final PublishedEvent event, final List<Subscriber> subscribers) {
+		final ArrayList<byte[]> parameters = new ArrayList<>(1);
+		parameters.add(event.serializedEvent);
+
+		for (final Subscriber subscriber : subscribers) {
+			final MethodDescriptor method = subscriber.methodDescriptor;
+
+			try {
+				if (!OneWaySender.getForInstance(subscriber.serviceDescriptor).offer(MethodCall.create(method.getIndex(), method.getSignatureHash(), method.getMethodName(), method.getSignature(), parameters), event.priority)) {
+					drop(event.topic, "One-way queue of subscriber " + subscriber.serviceDescriptor.getId() + ":" + subscriber.serviceDescriptor.getVersion() + " is full");
+				}
+			} catch (final ServiceException e) {
+				LOG.error("Event of topic '" + event.topic + "' could not be sent to: " + subscriber.serviceDescriptor, e);
+			}
+		}
+	}
+
+
+	/**
+	 * Counts the dropped event and logs every thousandth drop.
+	 *
+	 * @param topic the topic of the event
+	 * @param reason the reason the event was dropped
+	 */
+	private void drop(final String topic, final String reason) {
+		final long dropped = droppedEvents.incrementAndGet();
+
+		if (dropped % 1000 == 1) {
+			LOG.warn(reason + " - dropped " + dropped + " events so far, last of topic: " + topic);
+		}
+	}
+
+
+	/**
+	 * An event waiting to be dispatched.
+	 */
+	private static class PublishedEvent {
+		private final String topic;
+		private final byte[] serializedEvent;
+		private final Priority priority;
+
+
+		PublishedEvent(final String topic, final byte[] serializedEvent, final Priority priority) {
+			this.topic = topic;
+			this.serializedEvent = serializedEvent;
+			this.priority = priority;
+		}
+	}
+
+	/**
+	 * A subscribed method of a service instance.
+	 */
+	private static class Subscriber {
+		private final ServiceDescriptor serviceDescriptor;
+		private final MethodDescriptor methodDescriptor;
+
+
+		Subscriber(final ServiceDescriptor serviceDescriptor, final MethodDescriptor methodDescriptor) {
+			this.serviceDescriptor = serviceDescriptor;
+			this.methodDescriptor = methodDescriptor;
+		}
+	}
+
+	/**
+	 * The cached subscribers of a topic with the time they were requested and the events waiting
+	 * for the first request, guarded by itself.
+	 */
+	private static class Subscribers {
+		private final String topic;
+		private final Deque<PublishedEvent> pending = new ArrayDeque<>();
+		private List<Subscriber> list;
+		private long time;
+		private boolean refreshing;
+
+
+		Subscribers(final String topic) {
+			this.topic = topic;
+		}
+	}
+}
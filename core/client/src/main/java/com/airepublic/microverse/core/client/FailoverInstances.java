@@ -0,0 +1,108 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.microverse.core.common.Configuration;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.exception.ServiceException;
+
+/**
+ * Cache of the instances of the services known to the registries which calls rejected by an
+ * overloaded instance fail over to. The registries return all services, so requesting them on
+ * every rejection would multiply the load on the registries by the rejection rate of the service.
+ * The instances of a service are requested again once they are older than
+ * {@link Configuration#getClientFailoverInstancesTtl()} and only by one thread at a time. If the
+ * registries can't be reached, no instances are known until then.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+final class FailoverInstances {
+	private final static Logger LOG = LoggerFactory.getLogger(FailoverInstances.class);
+	private final static Map<String, Instances> INSTANCES = new ConcurrentHashMap<>();
+	private static BiFunction<String, String, List<ServiceDescriptor>> lookup = FailoverInstances::request;
+
+
+	private FailoverInstances() {
+	}
+
+
+	/**
+	 * Gets the instances of the specified service.
+	 *
+	 * @param serviceId the service-id
+	 * @param serviceVersion the service-version
+	 * @return a modifiable copy of the list of {@link ServiceDescriptor}s (may be empty)
+	 */
+	static List<ServiceDescriptor> get(final String serviceId, final String serviceVersion) {
+		return INSTANCES.computeIfAbsent(serviceId + ":" + serviceVersion, key -> new Instances()).get(serviceId, serviceVersion);
+	}
+
+
+	/**
+	 * Sets the function requesting the instances of a service, e.g. to test without registries.
+	 *
+	 * @param lookup the function requesting the instances by service-id and service-version
+	 */
+	static void setLookup(final BiFunction<String, String, List<ServiceDescriptor>> lookup) {
+		FailoverInstances.lookup = lookup != null ? lookup : FailoverInstances::request;
+		INSTANCES.clear();
+	}
+
+
+	/**
+	 * Requests the instances of the specified service from the registries.
+	 *
+	 * @param serviceId the service-id
+	 * @param serviceVersion the service-version
+	 * @return the list of {@link ServiceDescriptor}s (may be empty)
+	 */
+	private static List<ServiceDescriptor> request(final String serviceId, final String serviceVersion) {
+		try {
+			return ServiceLookup.create().getServiceDescriptors(serviceId, serviceVersion);
+		} catch (final ServiceException e) {
+			LOG.debug("Could not request the instances of " + serviceId + ":" + serviceVersion + ": " + e.getMessage());
+			return Collections.emptyList();
+		}
+	}
+
+	/**
+	 * The instances of a service and when they expire.
+	 */
+	private final static class Instances {
+		private List<ServiceDescriptor> serviceDescriptors;
+		private long expiryTime;
+
+
+		synchronized List<ServiceDescriptor> get(final String serviceId, final String serviceVersion) {
+			if (serviceDescriptors == null || System.nanoTime() - expiryTime >= 0) {
+				serviceDescriptors = lookup.apply(serviceId, serviceVersion);
+				expiryTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Configuration.getClientFailoverInstancesTtl());
+			}
+
+			return new ArrayList<>(serviceDescriptors);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+
+/**
+ * The result of a scatter-gather call across the instances of a service. It holds the reduced
+ * results of the instances which answered successfully as well as the instances which failed or
+ * didn't answer before the timeout or before the quorum was reached.
+ *
+ * @author Torsten Oltmanns
+ *
+ * @param <A> the type of the reduced result
+ */
+public final class GatheredResult<A> {
+	private final A result;
+	private final int instances;
+	private final int succeeded;
+	private final Map<ServiceDescriptor, Throwable> failures;
+	private final List<ServiceDescriptor> missing;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param result the reduced result
+	 * @param instances the number of called instances
+	 * @param succeeded the number of instances which answered successfully
+	 * @param failures the failures by instance
+	 * @param missing the instances which didn't answer in time
+	 */
+	GatheredResult(final A result, final int instances, final int succeeded, final Map<ServiceDescriptor, Throwable> failures, final List<ServiceDescriptor> missing) {
+		this.result = result;
+		this.instances = instances;
+		this.succeeded = succeeded;
+		this.failures = Collections.unmodifiableMap(failures);
+		this.missing = Collections.unmodifiableList(missing);
+	}
+
+
+	/**
+	 * Gets the result of the reducer applied to the results of all instances which answered
+	 * successfully.
+	 *
+	 * @return the reduced result
+	 */
+	public A getResult() {
+		return result;
+	}
+
+
+	/**
+	 * Gets the number of instances which have been called.
+	 *
+	 * @return the number of instances
+	 */
+	public int getInstances() {
+		return instances;
+	}
+
+
+	/**
+	 * Gets the number of instances whose results have been reduced.
+	 *
+	 * @return the number of successful instances
+	 */
+	public int getSucceeded() {
+		return succeeded;
+	}
+
+
+	/**
+	 * Gets the exceptions of the instances whose call failed.
+	 *
+	 * @return the failures by {@link ServiceDescriptor} of the instance
+	 */
+	public Map<ServiceDescriptor, Throwable> getFailures() {
+		return failures;
+	}
+
+
+	/**
+	 * Gets the instances which didn't answer before the timeout or before the quorum was reached.
+	 *
+	 * @return the {@link ServiceDescriptor}s of the instances
+	 */
+	public List<ServiceDescriptor> getMissing() {
+		return missing;
+	}
+
+
+	/**
+	 * Checks whether all instances answered successfully.
+	 *
+	 * @return <code>true</code> if the result contains the results of all instances
+	 */
+	public boolean isComplete() {
+		return succeeded == instances;
+	}
+
+
+	@Override
+	public String toString() {
+		return "GatheredResult [result=" + result + ", instances=" + instances + ", succeeded=" + succeeded + ", failures=" + failures.size() + ", missing=" + missing.size() + "]";
+	}
+}
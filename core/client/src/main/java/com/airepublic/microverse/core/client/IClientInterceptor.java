@@ -0,0 +1,40 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import java.util.ServiceLoader;
+
+/**
+ * Interceptor around the calls of a service-client. Implementations are discovered via
+ * {@link ServiceLoader} by listing them in
+ * <code>META-INF/services/com.airepublic.microverse.core.client.IClientInterceptor</code> or are
+ * added with {@link ClientInterceptors#addInterceptor(IClientInterceptor)}. Interceptors are
+ * shared by all service-clients and called concurrently, so they must be thread-safe.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public interface IClientInterceptor {
+	/**
+	 * Intercepts the call of a service method. The call is continued by
+	 * {@link ClientInvocation#proceed(Object[])}, which may be skipped to answer the call without
+	 * calling the service.
+	 *
+	 * @param invocation the {@link ClientInvocation} of the called method
+	 * @param args the arguments of the call
+	 * @return the result of the call
+	 * @throws Throwable if the call failed
+	 */
+	Object intercept(ClientInvocation invocation, Object[] args) throws Throwable;
+}
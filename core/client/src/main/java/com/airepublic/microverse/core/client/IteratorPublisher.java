@@ -0,0 +1,176 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.microverse.core.common.VirtualThreads;
+
+/**
+ * {@link Flow.Publisher} of the elements of a remote element stream. The elements are read from the
+ * {@link Iterator} only as far as the subscriber has requested them, so the server is slowed down
+ * by the flow control of the connection if the subscriber doesn't keep up. Elements are delivered
+ * on a separate thread, as reading them blocks on the connection. Only a single subscriber is
+ * supported.
+ *
+ * @author Torsten Oltmanns
+ *
+ * @param <T> the element type
+ */
+public class IteratorPublisher<T> implements Flow.Publisher<T> {
+	private final static Logger LOG = LoggerFactory.getLogger(IteratorPublisher.class);
+	private final static ExecutorService EXECUTOR = Executors.newCachedThreadPool(VirtualThreads.newThreadFactory("microverse-stream-publisher-", r -> {
+		final Thread thread = new Thread(r, "microverse-stream-publisher");
+		thread.setDaemon(true);
+		return thread;
+	}));
+	private final Iterator<T> iterator;
+	private final Closeable resource;
+	private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param iterator the {@link Iterator} over the elements
+	 * @param resource the resource to close if the subscription is cancelled
+	 */
+	public IteratorPublisher(final Iterator<T> iterator, final Closeable resource) {
+		this.iterator = iterator;
+		this.resource = resource;
+	}
+
+
+	@Override
+	public void subscribe(final Flow.Subscriber<? super T> subscriber) {
+		if (!subscribed.compareAndSet(false, true)) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(final long n) {
+				}
+
+
+				@Override
+				public void cancel() {
+				}
+			});
+			subscriber.onError(new IllegalStateException("The remote element stream can only be subscribed once!"));
+			return;
+		}
+
+		subscriber.onSubscribe(new IteratorSubscription(subscriber));
+	}
+
+	/**
+	 * Subscription delivering the requested elements on a thread of the executor. Only one thread
+	 * delivers elements at a time.
+	 */
+	private class IteratorSubscription implements Flow.Subscription {
+		private final Flow.Subscriber<? super T> subscriber;
+		private final AtomicLong demand = new AtomicLong();
+		private final AtomicInteger pending = new AtomicInteger();
+		private volatile boolean done = false;
+
+
+		/**
+		 * Constructor.
+		 *
+		 * @param subscriber the subscriber
+		 */
+		IteratorSubscription(final Flow.Subscriber<? super T> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+
+		@Override
+		public void request(final long n) {
+			if (done) {
+				return;
+			}
+
+			if (n <= 0) {
+				cancel();
+				subscriber.onError(new IllegalArgumentException("The requested number of elements must be positive!"));
+				return;
+			}
+
+			demand.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+
+			if (pending.getAndIncrement() == 0) {
+				EXECUTOR.execute(this::deliver);
+			}
+		}
+
+
+		@Override
+		public void cancel() {
+			if (!done) {
+				done = true;
+				close();
+			}
+		}
+
+
+		/**
+		 * Delivers elements while there is demand.
+		 */
+		private void deliver() {
+			int missed = 1;
+
+			do {
+				try {
+					while (!done && demand.get() > 0) {
+						if (!iterator.hasNext()) {
+							done = true;
+							subscriber.onComplete();
+							return;
+						}
+
+						demand.decrementAndGet();
+						subscriber.onNext(iterator.next());
+					}
+				} catch (final Throwable t) {
+					if (!done) {
+						done = true;
+						close();
+						subscriber.onError(t);
+					}
+
+					return;
+				}
+
+				missed = pending.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+
+		private void close() {
+			try {
+				resource.close();
+			} catch (final Exception e) {
+				LOG.warn("Error closing the remote element stream!", e);
+			}
+		}
+	}
+}
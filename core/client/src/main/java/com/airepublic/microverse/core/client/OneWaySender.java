@@ -0,0 +1,654 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.SerializationException;
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.microverse.core.common.BinaryFrame;
+import com.airepublic.microverse.core.common.Configuration;
+import com.airepublic.microverse.core.common.ServiceUtils;
+import com.airepublic.microverse.core.common.VirtualThreads;
+import com.airepublic.microverse.core.common.marshaller.IMarshaller;
+import com.airepublic.microverse.core.descriptor.MethodCall;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.exception.ServiceException;
+import com.airepublic.microverse.core.exception.ServiceTimeoutException;
+import com.airepublic.microverse.core.exception.ServiceUnavailableException;
+import com.airepublic.microverse.core.service.api.InvocationContext;
+import com.airepublic.microverse.core.service.api.OneWay;
+import com.airepublic.microverse.core.service.api.Priority;
+
+/**
+ * Sends the calls of {@link OneWay} methods to a service in the background. The calls are queued
+ * in a bounded buffer and a sender thread coalesces the queued calls with the same
+ * {@link Priority} into batches, which are sent in one request each over the binary connection to
+ * the service-server if it offers one, otherwise via HTTP. The service-server
+ * acknowledges a batch as soon as it has been queued for execution, so neither the caller nor the
+ * sender wait for the service methods. A batch the service is unable to accept or which can't be
+ * sent is retried a few times before its calls are dropped. The senders are shared by all
+ * service-clients and are started per service on first use. A sender which had no calls to send
+ * for the idle timeout stops its thread, closes its outbox and is started again on the next call.
+ *
+ * <p>
+ * The sender of a service is keyed by its service-id and version. If the instance it sends to
+ * rejects a batch or can't be reached, the batch is retried on another instance of the service
+ * known to the registries. Events are sent to every instance subscribed to their topic, so they
+ * use a sender per instance which doesn't fail over. Such a sender drops a batch the instance
+ * didn't accept if the registries no longer know the instance, so it becomes idle and is stopped.
+ * </p>
+ *
+ * <p>
+ * If an outbox directory is configured, the calls are written to a durable {@link SegmentLog} per
+ * service instead of being queued in memory. A batch is then retried until the service accepts it
+ * and the calls are acknowledged in the log afterwards, so calls are delivered in order at least
+ * once even if the service or all of its instances are unreachable for a while. Calls which were not acknowledged when the
+ * client stopped are sent when the sender for the service is started again.
+ * </p>
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+class OneWaySender {
+	private final static Logger LOG = LoggerFactory.getLogger(OneWaySender.class);
+	private static final Map<String, OneWaySender> SENDERS = new ConcurrentHashMap<>();
+	private static final int MAX_ATTEMPTS = 3;
+	private static final long RETRY_DELAY = 100L;
+	private static final int MAX_BACKOFF_SHIFT = 8;
+	private static final int RETIRED = -1;
+	private final String key;
+	private final ServiceDescriptor origin;
+	private final boolean failover;
+	private final SegmentLog outbox;
+	private final Thread closeHook;
+	/** The number of callers queueing a call or {@link #RETIRED} once the sender stopped. */
+	private final AtomicInteger callers = new AtomicInteger();
+	private final BlockingQueue<QueuedCall> queue;
+	private final int batchSize = Math.max(1, Configuration.getClientOneWayBatchSize());
+	private final long lingerNanos = TimeUnit.MILLISECONDS.toNanos(Configuration.getClientOneWayLinger());
+	private final boolean binary = Configuration.isClientBinary();
+	private final long idleNanos = Configuration.getClientOneWayIdleTimeout() > 0L ? TimeUnit.MILLISECONDS.toNanos(Configuration.getClientOneWayIdleTimeout()) : Long.MAX_VALUE;
+	/** The instance the batches are sent to, only used by the sender thread. */
+	private ServiceDescriptor serviceDescriptor;
+
+
+	/**
+	 * Gets the sender for the service, which fails over to other instances of the service. It is
+	 * started on first use.
+	 *
+	 * @param serviceDescriptor the {@link ServiceDescriptor} of an instance of the service
+	 * @return the {@link OneWaySender}
+	 */
+	static OneWaySender get(final ServiceDescriptor serviceDescriptor) {
+		return SENDERS.computeIfAbsent(serviceDescriptor.getId() + ":" + serviceDescriptor.getVersion(), key -> new OneWaySender(key, serviceDescriptor, true));
+	}
+
+
+	/**
+	 * Gets the sender for the specified instance of the service, which doesn't fail over to other
+	 * instances. It is started on first use.
+	 *
+	 * @param serviceDescriptor the {@link ServiceDescriptor} of the instance
+	 * @return the {@link OneWaySender}
+	 */
+	static OneWaySender getForInstance(final ServiceDescriptor serviceDescriptor) {
+		return SENDERS.computeIfAbsent(ServiceUtils.getServiceURL(serviceDescriptor), key -> new OneWaySender(key, serviceDescriptor, false));
+	}
+
+
+	/**
+	 * Constructor. Starts the sender thread.
+	 *
+	 * @param key the service-id and version or the URL of the instance
+	 * @param serviceDescriptor the {@link ServiceDescriptor} of the instance to send to first
+	 * @param failover flag, whether to retry batches on other instances of the service
+	 */
+	private OneWaySender(final String key, final ServiceDescriptor serviceDescriptor, final boolean failover) {
+		this.key = key;
+		origin = serviceDescriptor;
+		this.serviceDescriptor = serviceDescriptor;
+		this.failover = failover;
+		outbox = openOutbox(key);
+		queue = outbox == null ? new ArrayBlockingQueue<>(Math.max(1, Configuration.getClientOneWayCapacity())) : null;
+		closeHook = outbox != null ? new Thread(outbox::close, "microverse-oneway-outbox-close") : null;
+
+		if (closeHook != null) {
+			Runtime.getRuntime().addShutdownHook(closeHook);
+		}
+
+		VirtualThreads.newThreadFactory("microverse-oneway-", r -> {
+			final Thread thread = new Thread(r, "microverse-oneway-" + key);
+			thread.setDaemon(true);
+			return thread;
+		}).newThread(this::run).start();
+	}
+
+
+	/**
+	 * Opens the outbox of the service if an outbox directory is configured.
+	 *
+	 * @param key the service-id and version or the URL of the instance
+	 * @return the {@link SegmentLog} or <code>null</code> if the calls are queued in memory
+	 */
+	private static SegmentLog openOutbox(final String key) {
+		final String outboxDir = Configuration.getClientOneWayOutbox();
+
+		if (outboxDir == null) {
+			return null;
+		}
+
+		final Path dir = Paths.get(outboxDir, key.replaceAll("[^A-Za-z0-9.-]", "_"));
+
+		try {
+			return SegmentLog.open(dir, Configuration.getClientOneWayOutboxSegmentSize(), SegmentLog.FsyncPolicy.valueOf(Configuration.getClientOneWayOutboxFsync().toUpperCase()), Configuration.getClientOneWayOutboxFsyncInterval());
+		} catch (final IOException | IllegalArgumentException e) {
+			LOG.error("Could not open the one-way outbox " + dir + " - queueing one-way calls in memory!", e);
+			return null;
+		}
+	}
+
+
+	/**
+	 * Queues the call to be sent with the {@link Priority} of the current
+	 * {@link InvocationContext}. If the queue is full the caller waits for the sender until its
+	 * deadline has passed. With an outbox the call is written to the outbox instead.
+	 *
+	 * @param call the {@link MethodCall}
+	 * @throws ServiceUnavailableException if the queue stayed full until the deadline
+	 * @throws ServiceException if the caller was interrupted or the call could not be written to
+	 *         the outbox
+	 */
+	void send(final MethodCall call) throws ServiceException {
+		if (!enter()) {
+			replacement().send(call);
+			return;
+		}
+
+		try {
+			final Priority priority = InvocationContext.getPriority();
+
+			if (enqueue(call, priority)) {
+				return;
+			}
+
+			final QueuedCall queuedCall = new QueuedCall(call, priority, -1L);
+			final long remaining = InvocationContext.getRemaining(TimeUnit.NANOSECONDS);
+
+			try {
+				if (remaining == Long.MAX_VALUE) {
+					queue.put(queuedCall);
+					return;
+				}
+
+				if (remaining > 0 && queue.offer(queuedCall, remaining, TimeUnit.NANOSECONDS)) {
+					return;
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ServiceException("Interrupted while queueing one-way call to: " + key, e);
+			}
+
+			throw new ServiceUnavailableException("One-way queue of service is full: " + key, 0);
+		} finally {
+			exit();
+		}
+	}
+
+
+	/**
+	 * Queues the call to be sent with the {@link Priority} without waiting for the sender. With an
+	 * outbox the call is written to the outbox instead.
+	 *
+	 * @param call the {@link MethodCall}
+	 * @param priority the {@link Priority} or <code>null</code>
+	 * @return <code>false</code> if the queue is full and the call was not queued
+	 * @throws ServiceException if the call could not be written to the outbox
+	 */
+	boolean offer(final MethodCall call, final Priority priority) throws ServiceException {
+		if (!enter()) {
+			return replacement().offer(call, priority);
+		}
+
+		try {
+			return enqueue(call, priority);
+		} finally {
+			exit();
+		}
+	}
+
+
+	/**
+	 * Queues the call or writes it to the outbox while the caller is registered.
+	 *
+	 * @param call the {@link MethodCall}
+	 * @param priority the {@link Priority} or <code>null</code>
+	 * @return <code>false</code> if the queue is full and the call was not queued
+	 * @throws ServiceException if the call could not be written to the outbox
+	 */
+	private boolean enqueue(final MethodCall call, final Priority priority) throws ServiceException {
+		if (outbox != null) {
+			try {
+				outbox.append(encode(call, priority));
+				return true;
+			} catch (final IOException e) {
+				throw new ServiceException("One-way call could not be written to the outbox of: " + key, e);
+			}
+		}
+
+		return queue.offer(new QueuedCall(call, priority, -1L));
+	}
+
+
+	/**
+	 * Registers a caller which is about to queue a call, so the sender is not stopped meanwhile.
+	 *
+	 * @return <code>false</code> if the sender has been stopped
+	 */
+	private boolean enter() {
+		while (true) {
+			final int current = callers.get();
+
+			if (current == RETIRED) {
+				return false;
+			}
+
+			if (callers.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+
+	/**
+	 * Unregisters a caller after it queued its call.
+	 */
+	private void exit() {
+		callers.decrementAndGet();
+	}
+
+
+	/**
+	 * Gets the sender which replaces this stopped sender.
+	 *
+	 * @return the {@link OneWaySender}
+	 */
+	private OneWaySender replacement() {
+		// the stopped sender may not have been removed yet
+		Thread.yield();
+
+		return failover ? get(origin) : getForInstance(origin);
+	}
+
+
+	/**
+	 * Stops the sender if no caller is queueing a call and no call is waiting to be sent. The
+	 * outbox is closed and the sender is removed, so the next call starts a new one.
+	 *
+	 * @return <code>true</code> if the sender has been stopped
+	 */
+	private boolean retire() {
+		if (!callers.compareAndSet(0, RETIRED)) {
+			return false;
+		}
+
+		if (outbox != null ? outbox.hasUnread() : !queue.isEmpty()) {
+			callers.set(0);
+			return false;
+		}
+
+		if (outbox != null) {
+			// the outbox is released before a new sender may open it
+			outbox.close();
+
+			try {
+				Runtime.getRuntime().removeShutdownHook(closeHook);
+			} catch (final IllegalStateException e) {
+				// the shutdown has already started
+			}
+		}
+
+		SENDERS.remove(key, this);
+
+		LOG.debug("Stopped idle one-way sender for: " + key);
+		return true;
+	}
+
+
+	/**
+	 * Takes the queued calls, coalesces them into batches and sends them. A batch is sent when it
+	 * is full, the next call has another {@link Priority} or no further call arrived within the
+	 * linger time. Calls from the outbox are acknowledged once their batch has been sent. The
+	 * sender stops if no call arrived within the idle timeout.
+	 */
+	private void run() {
+		final List<MethodCall> batch = new ArrayList<>(batchSize);
+		QueuedCall next = null;
+
+		try {
+			while (true) {
+				final QueuedCall first = next != null ? next : poll(idleNanos);
+
+				if (first == null) {
+					if (outbox != null && outbox.isClosed()) {
+						SENDERS.remove(key, this);
+						return;
+					}
+
+					if (retire()) {
+						return;
+					}
+
+					continue;
+				}
+
+				final long lingerEnd = System.nanoTime() + lingerNanos;
+				QueuedCall last = first;
+				next = null;
+				batch.add(first.call);
+
+				while (batch.size() < batchSize) {
+					final QueuedCall queuedCall = poll(lingerEnd - System.nanoTime());
+
+					if (queuedCall == null) {
+						break;
+					}
+
+					if (queuedCall.priority != first.priority) {
+						next = queuedCall;
+						break;
+					}
+
+					batch.add(queuedCall.call);
+					last = queuedCall;
+				}
+
+				deliver(batch.toArray(new MethodCall[batch.size()]), first.priority);
+				batch.clear();
+
+				if (outbox != null) {
+					outbox.acknowledge(last.offset);
+				}
+			}
+		} catch (final InterruptedException e) {
+			if (outbox != null) {
+				LOG.warn("One-way sender for " + key + " was interrupted - the unsent calls stay in the outbox");
+			} else {
+				LOG.warn("One-way sender for " + key + " was interrupted - " + (queue.size() + batch.size()) + " calls are dropped");
+			}
+		} catch (final IOException e) {
+			LOG.error("One-way sender for " + key + " stopped as the outbox could not be read!", e);
+		}
+	}
+
+
+	/**
+	 * Takes the next call from the queue or the outbox, waiting for it until the timeout has
+	 * elapsed. Calls in the outbox which can't be decoded are skipped.
+	 *
+	 * @param timeout the timeout in nanoseconds or {@link Long#MAX_VALUE} to wait until a call is
+	 *        sent
+	 * @return the {@link QueuedCall} or <code>null</code> if none was sent in time
+	 * @throws InterruptedException if the sender was interrupted while waiting
+	 * @throws IOException if the outbox could not be read
+	 */
+	private QueuedCall poll(final long timeout) throws InterruptedException, IOException {
+		if (outbox == null) {
+			return timeout == Long.MAX_VALUE ? queue.take() : queue.poll(timeout, TimeUnit.NANOSECONDS);
+		}
+
+		final long start = System.nanoTime();
+
+		while (true) {
+			final SegmentLog.Record record = outbox.read(timeout == Long.MAX_VALUE ? timeout : timeout - (System.nanoTime() - start));
+
+			if (record == null) {
+				return null;
+			}
+
+			try {
+				return decode(record);
+			} catch (final SerializationException e) {
+				LOG.error("Skipping one-way call at offset " + record.getOffset() + " of the outbox of " + key + " which could not be decoded!", e);
+			}
+		}
+	}
+
+
+	/**
+	 * Encodes the call with its {@link Priority} as record of the outbox.
+	 *
+	 * @param call the {@link MethodCall}
+	 * @param priority the {@link Priority} or <code>null</code>
+	 * @return the record content
+	 */
+	private static byte[] encode(final MethodCall call, final Priority priority) {
+		final byte[] serializedCall = SerializationUtils.serialize(call);
+		final byte[] content = new byte[serializedCall.length + 1];
+		content[0] = (byte) (priority != null ? priority.ordinal() : -1);
+		System.arraycopy(serializedCall, 0, content, 1, serializedCall.length);
+
+		return content;
+	}
+
+
+	/**
+	 * Decodes the call with its {@link Priority} from a record of the outbox.
+	 *
+	 * @param record the {@link SegmentLog.Record}
+	 * @return the {@link QueuedCall}
+	 * @throws SerializationException if the call could not be deserialized
+	 */
+	private static QueuedCall decode(final SegmentLog.Record record) {
+		final byte[] content = record.getContent();
+		final MethodCall call = SerializationUtils.deserialize(new ByteArrayInputStream(content, 1, content.length - 1));
+		final Priority priority = content[0] >= 0 && content[0] < Priority.values().length ? Priority.values()[content[0]] : null;
+
+		return new QueuedCall(call, priority, record.getOffset());
+	}
+
+
+	/**
+	 * Sends the batch of calls to the service. If the service is unavailable or unreachable the
+	 * batch is sent again after the time the service asked for or an increasing delay, otherwise
+	 * the calls are dropped. Retries go to another instance of the service if the sender fails
+	 * over. Batches from the outbox are retried until they have been sent. A sender which doesn't
+	 * fail over drops the batch if the registries no longer know its instance.
+	 *
+	 * @param calls the calls
+	 * @param priority the {@link Priority} of the calls or <code>null</code>
+	 * @throws InterruptedException if the sender was interrupted while waiting to retry
+	 */
+	private void deliver(final MethodCall[] calls, final Priority priority) throws InterruptedException {
+		InvocationContext.setPriority(priority);
+
+		try {
+			for (int attempt = 1;; attempt++) {
+				try {
+					send(calls, priority);
+					return;
+				} catch (final ServiceException e) {
+					if (!isRetryable(e)) {
+						LOG.error("Dropped " + calls.length + " one-way calls which could not be sent to: " + key, e);
+						return;
+					}
+
+					if (outbox == null && attempt >= MAX_ATTEMPTS) {
+						LOG.error("Dropped " + calls.length + " one-way calls as the service is unavailable: " + key, e);
+						return;
+					}
+
+					if (!failover && !isKnownInstance()) {
+						LOG.warn("Dropped " + calls.length + " one-way calls as the instance is no longer known to the registries: " + key);
+						return;
+					}
+
+					if (attempt == 1) {
+						LOG.warn("Retrying " + calls.length + " one-way calls to " + key + ": " + e.getMessage());
+					}
+
+					if (failover) {
+						failover();
+					}
+
+					final int retryAfter = e instanceof ServiceUnavailableException ? ((ServiceUnavailableException) e).getRetryAfter() : 0;
+					Thread.sleep(Math.max(TimeUnit.SECONDS.toMillis(retryAfter), RETRY_DELAY << Math.min(attempt, MAX_BACKOFF_SHIFT)));
+				}
+			}
+		} finally {
+			InvocationContext.setPriority(null);
+		}
+	}
+
+
+	/**
+	 * Switches to another instance of the service known to the registries if there is one.
+	 */
+	private void failover() {
+		final List<ServiceDescriptor> instances = FailoverInstances.get(serviceDescriptor.getId(), serviceDescriptor.getVersion());
+		// spread the senders of all clients over the instances
+		Collections.shuffle(instances);
+
+		for (final ServiceDescriptor instance : instances) {
+			if (!isSameInstance(instance, serviceDescriptor)) {
+				LOG.debug("Sending one-way calls to " + key + " to other service instance: " + instance.getHost() + ":" + instance.getPort());
+				serviceDescriptor = instance;
+				return;
+			}
+		}
+	}
+
+
+	/**
+	 * Checks whether the registries still know the instance the batches are sent to. If the
+	 * registries know no instance of the service at all or can't be reached, the instance is
+	 * considered known.
+	 *
+	 * @return <code>true</code> if the instance is known
+	 */
+	private boolean isKnownInstance() {
+		final List<ServiceDescriptor> instances = FailoverInstances.get(serviceDescriptor.getId(), serviceDescriptor.getVersion());
+
+		return instances.isEmpty() || instances.stream().anyMatch(instance -> isSameInstance(instance, serviceDescriptor));
+	}
+
+
+	/**
+	 * Checks whether the {@link ServiceDescriptor}s describe the same instance of a service.
+	 *
+	 * @param instance the {@link ServiceDescriptor} of an instance
+	 * @param other the other {@link ServiceDescriptor}
+	 * @return <code>true</code> if host, port and service-URI are equal
+	 */
+	private static boolean isSameInstance(final ServiceDescriptor instance, final ServiceDescriptor other) {
+		return instance.getHost().equals(other.getHost()) && instance.getPort() == other.getPort() && instance.getServiceUri().equals(other.getServiceUri());
+	}
+
+
+	/**
+	 * Sends the batch of calls over the persistent binary connection to the service-server if it
+	 * offers one and the service doesn't use SSL. The batch is sent via HTTP(S) otherwise or if the
+	 * binary endpoint can't be reached or the connection fails.
+	 *
+	 * @param calls the calls
+	 * @param priority the {@link Priority} of the calls or <code>null</code>
+	 * @throws ServiceException if the batch was not accepted
+	 */
+	private void send(final MethodCall[] calls, final Priority priority) throws ServiceException {
+		if (binary && serviceDescriptor.getBinaryPort() > 0 && !serviceDescriptor.isUseSSL()) {
+			BinaryFrame response = null;
+
+			try {
+				final BinaryConnection connection = BinaryConnection.get(serviceDescriptor.getHost(), serviceDescriptor.getBinaryPort());
+				final IMarshaller marshaller = ServiceUtils.determineCommonMimeType(serviceDescriptor.getSupportedMimeTypes());
+				final String[] attributes = { "/" + serviceDescriptor.getServiceUri().getUri(), marshaller.getMimeType(), priority != null ? priority.name() : "" };
+				response = connection.call(BinaryFrame.ONE_WAY, attributes, -1L, marshaller.serialize(calls));
+			} catch (final IOException e) {
+				LOG.debug("Binary endpoint " + serviceDescriptor.getHost() + ":" + serviceDescriptor.getBinaryPort() + " not available - using HTTP: " + e.getMessage());
+			} catch (final ServiceException e) {
+				if (!(e.getCause() instanceof IOException)) {
+					throw e;
+				}
+
+				// the calls may have been queued already, so they can be delivered twice
+				LOG.warn("Binary connection to " + serviceDescriptor.getHost() + ":" + serviceDescriptor.getBinaryPort() + " failed - using HTTP: " + e.getCause().getMessage());
+			}
+
+			if (response != null) {
+				switch (response.getType()) {
+					case BinaryFrame.RESULT:
+						return;
+					case BinaryFrame.UNAVAILABLE:
+						throw new ServiceUnavailableException(response.getAttribute(0), (int) response.getValue());
+					default:
+						throw new ServiceException(response.getAttribute(0));
+				}
+			}
+		}
+
+		final HttpUriRequest request = ServiceUtils.createRequest(serviceDescriptor.getHost(), serviceDescriptor.getPort(), serviceDescriptor.isUseSSL(), serviceDescriptor.getServiceUri(), serviceDescriptor.getSupportedMimeTypes(), calls);
+		request.addHeader(ServiceUtils.HEADER_ONE_WAY, String.valueOf(calls.length));
+		final HttpResponse response = ServiceUtils.executeRequest(request, serviceDescriptor.isUseSSL());
+		EntityUtils.consumeQuietly(response.getEntity());
+	}
+
+
+	/**
+	 * Checks whether sending the batch may succeed later, because the service was unavailable,
+	 * didn't answer in time or could not be reached. A service which didn't answer in time may
+	 * have queued the calls already, so calls can be delivered twice.
+	 *
+	 * @param e the {@link ServiceException}
+	 * @return <code>true</code> if the batch should be sent again
+	 */
+	private static boolean isRetryable(final ServiceException e) {
+		return e instanceof ServiceUnavailableException || e instanceof ServiceTimeoutException || e.getCause() instanceof IOException;
+	}
+
+
+	/**
+	 * A call waiting in the queue with the {@link Priority} of its caller and its offset in the
+	 * outbox.
+	 */
+	private static class QueuedCall {
+		private final MethodCall call;
+		private final Priority priority;
+		private final long offset;
+
+
+		QueuedCall(final MethodCall call, final Priority priority, final long offset) {
+			this.call = call;
+			this.priority = priority;
+			this.offset = offset;
+		}
+	}
+}
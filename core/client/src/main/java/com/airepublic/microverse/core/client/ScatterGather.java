@@ -0,0 +1,218 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.microverse.core.common.VirtualThreads;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.exception.ServiceException;
+import com.airepublic.microverse.core.service.api.InvocationContext;
+import com.airepublic.microverse.core.service.api.Priority;
+
+/**
+ * Fans a call out to all instances of a service in parallel and reduces their results. The
+ * gathering stops as soon as all instances have answered, the quorum of successful answers has
+ * been reached or the timeout has elapsed. Calls still running then are cancelled and, as they
+ * carry the deadline of the scatter-gather call, are dropped by their service-servers.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+final class ScatterGather {
+	private final static Logger LOG = LoggerFactory.getLogger(ScatterGather.class);
+	private final static ExecutorService EXECUTOR = Executors.newCachedThreadPool(VirtualThreads.newThreadFactory("microverse-scatter-gather-", r -> {
+		final Thread thread = new Thread(r, "microverse-scatter-gather");
+		thread.setDaemon(true);
+		return thread;
+	}));
+
+
+	private ScatterGather() {
+	}
+
+
+	/**
+	 * Calls all instances in parallel and reduces the results of the successful calls in the
+	 * order of the instances.
+	 *
+	 * @param <T> the service-interface
+	 * @param <R> the result type of the call
+	 * @param <A> the type of the reduced result
+	 * @param instances the {@link ServiceDescriptor}s of the instances
+	 * @param clientFactory creates the service-client for an instance
+	 * @param call the call to make on each service-client
+	 * @param reducer the {@link Collector} reducing the results
+	 * @param timeout the timeout in nanoseconds or 0 for the deadline of the calling thread
+	 * @param quorum the number of successful answers to wait for or 0 to wait for all instances
+	 * @return the {@link GatheredResult}
+	 * @throws ServiceException if a service-client could not be created or the thread was
+	 *         interrupted
+	 */
+	static <T, R, A> GatheredResult<A> execute(final List<ServiceDescriptor> instances, final ClientFactory<T> clientFactory, final Function<? super T, ? extends R> call, final Collector<? super R, ?, A> reducer, final long timeout, final int quorum) throws ServiceException {
+		final Long callerDeadline = InvocationContext.getDeadline();
+		final Priority priority = InvocationContext.getPriority();
+		Long deadline = callerDeadline;
+
+		if (timeout > 0) {
+			final long timeoutDeadline = System.nanoTime() + timeout;
+
+			if (deadline == null || timeoutDeadline - deadline < 0) {
+				deadline = timeoutDeadline;
+			}
+		}
+
+		final int required = quorum > 0 ? Math.min(quorum, instances.size()) : instances.size();
+		final Object[] results = new Object[instances.size()];
+		final boolean[] succeeded = new boolean[instances.size()];
+		final boolean[] received = new boolean[instances.size()];
+		final BlockingQueue<Integer> done = new LinkedBlockingQueue<>();
+		final List<Future<?>> futures = new ArrayList<>();
+		final Long callDeadline = deadline;
+		int answered = 0;
+		int successes = 0;
+
+		try {
+			for (int i = 0; i < instances.size(); i++) {
+				final int index = i;
+				final T client = clientFactory.create(instances.get(i));
+
+				futures.add(EXECUTOR.submit(() -> {
+					InvocationContext.setDeadline(callDeadline);
+					InvocationContext.setPriority(priority);
+
+					try {
+						results[index] = call.apply(client);
+						succeeded[index] = true;
+					} catch (final Throwable t) {
+						results[index] = unwrap(t);
+					} finally {
+						InvocationContext.clear();
+						done.add(index);
+					}
+				}));
+			}
+
+			while (answered < instances.size() && successes < required) {
+				final Integer index;
+
+				if (deadline != null) {
+					index = done.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+					if (index == null) {
+						LOG.debug("Scatter-gather call timed out after " + answered + " of " + instances.size() + " answers");
+						break;
+					}
+				} else {
+					index = done.take();
+				}
+
+				answered++;
+				received[index] = true;
+
+				if (succeeded[index]) {
+					successes++;
+				}
+			}
+
+			// take the answers which arrived in the meantime before the other calls are cancelled
+			Integer index;
+
+			while ((index = done.poll()) != null) {
+				received[index] = true;
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ServiceException("Interrupted while gathering the results of the service instances!", e);
+		} finally {
+			for (final Future<?> future : futures) {
+				future.cancel(true);
+			}
+		}
+
+		// results of calls which haven't answered are not read as they may still be written
+		final List<R> gathered = new ArrayList<>(successes);
+		final Map<ServiceDescriptor, Throwable> failures = new HashMap<>();
+		final List<ServiceDescriptor> missing = new ArrayList<>();
+
+		for (int i = 0; i < instances.size(); i++) {
+			if (!received[i]) {
+				missing.add(instances.get(i));
+			} else if (succeeded[i]) {
+				gathered.add(cast(results[i]));
+			} else {
+				failures.put(instances.get(i), (Throwable) results[i]);
+			}
+		}
+
+		return new GatheredResult<>(gathered.stream().collect(reducer), instances.size(), gathered.size(), failures, missing);
+	}
+
+
+	@SuppressWarnings("unchecked")
+	private static <R> R cast(final Object result) {
+		return (R) result;
+	}
+
+
+	/**
+	 * Unwraps the exception thrown by the service-client proxy.
+	 *
+	 * @param t the exception
+	 * @return the cause of the failure
+	 */
+	private static Throwable unwrap(final Throwable t) {
+		if (t instanceof UndeclaredThrowableException) {
+			return unwrap(((UndeclaredThrowableException) t).getUndeclaredThrowable());
+		} else if (t instanceof InvocationTargetException) {
+			return unwrap(((InvocationTargetException) t).getTargetException());
+		}
+
+		return t;
+	}
+
+
+	/**
+	 * Creates the service-client for an instance of the service.
+	 *
+	 * @param <T> the service-interface
+	 */
+	@FunctionalInterface
+	interface ClientFactory<T> {
+		/**
+		 * Creates the service-client for the instance.
+		 *
+		 * @param serviceDescriptor the {@link ServiceDescriptor} of the instance
+		 * @return the service-client
+		 * @throws ServiceException if the service-client could not be created
+		 */
+		T create(ServiceDescriptor serviceDescriptor) throws ServiceException;
+	}
+}
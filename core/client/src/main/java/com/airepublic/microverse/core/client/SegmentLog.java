@@ -0,0 +1,471 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only log of records in memory-mapped segment files. Records are appended by any
+ * thread and read in order by a single reader, which acknowledges them once they have been
+ * processed. The offset of the first record which has not been acknowledged is stored in the file
+ * <code>ack</code>, so after a restart the reader resumes with this record. Segments whose records
+ * have all been acknowledged are deleted.
+ *
+ * <p>
+ * The segments are named by the offset of their first record and have a fixed size. A record
+ * consists of its length, its CRC32 checksum and its content. A new segment is started if a record
+ * doesn't fit into the current one. A record which was only partly written when the process or
+ * the system crashed fails its checksum and is discarded with the rest of the segment when the log
+ * is opened again. When the writes are forced to disk is determined by the {@link FsyncPolicy}.
+ * The log is locked against use by other processes.
+ * </p>
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+class SegmentLog implements Closeable {
+	private final static Logger LOG = LoggerFactory.getLogger(SegmentLog.class);
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final int HEADER_SIZE = 8;
+	private final Path dir;
+	private final int segmentSize;
+	private final FsyncPolicy fsyncPolicy;
+	private final long fsyncIntervalNanos;
+	private final FileChannel ackChannel;
+	private final FileLock lock;
+	private final MappedByteBuffer ackBuffer;
+	private final TreeMap<Long, Path> segments = new TreeMap<>();
+	private MappedByteBuffer writeBuffer;
+	private long writeBase;
+	private long nextOffset;
+	private ByteBuffer readBuffer;
+	private long readBase;
+	private long readOffset;
+	private long acknowledged;
+	private long lastForce = System.nanoTime();
+	private boolean dirty;
+	private boolean closed;
+
+	/**
+	 * Determines when the writes to the log are forced to disk. Writes which are not forced yet
+	 * survive a crash of the process, but not of the operating system.
+	 */
+	enum FsyncPolicy {
+		/** Every write is forced before it returns. */
+		ALWAYS,
+		/** Writes are forced at the latest after the fsync interval. */
+		INTERVAL,
+		/** Writes are left to the operating system. */
+		NEVER
+	}
+
+	/**
+	 * A record read from the log.
+	 */
+	static class Record {
+		private final long offset;
+		private final byte[] content;
+
+
+		Record(final long offset, final byte[] content) {
+			this.offset = offset;
+			this.content = content;
+		}
+
+
+		/**
+		 * Gets the offset of the record in the log.
+		 *
+		 * @return the offset
+		 */
+		long getOffset() {
+			return offset;
+		}
+
+
+		/**
+		 * Gets the content of the record.
+		 *
+		 * @return the content
+		 */
+		byte[] getContent() {
+			return content;
+		}
+	}
+
+
+	/**
+	 * Opens the log in the directory, which is created if it doesn't exist. The reader is
+	 * positioned at the first record which has not been acknowledged.
+	 *
+	 * @param dir the directory of the log
+	 * @param segmentSize the size of the segment files in bytes
+	 * @param fsyncPolicy the {@link FsyncPolicy}
+	 * @param fsyncInterval the fsync interval in milliseconds for {@link FsyncPolicy#INTERVAL}
+	 * @return the {@link SegmentLog}
+	 * @throws IOException if the log could not be opened or is used by another process
+	 */
+	static SegmentLog open(final Path dir, final int segmentSize, final FsyncPolicy fsyncPolicy, final long fsyncInterval) throws IOException {
+		Files.createDirectories(dir);
+		return new SegmentLog(dir, segmentSize, fsyncPolicy, fsyncInterval);
+	}
+
+
+	/**
+	 * Constructor. Recovers the segments and the acknowledged offset.
+	 *
+	 * @param dir the directory of the log
+	 * @param segmentSize the size of the segment files in bytes
+	 * @param fsyncPolicy the {@link FsyncPolicy}
+	 * @param fsyncInterval the fsync interval in milliseconds
+	 * @throws IOException if the log could not be opened or is used by another process
+	 */
+	private SegmentLog(final Path dir, final int segmentSize, final FsyncPolicy fsyncPolicy, final long fsyncInterval) throws IOException {
+		this.dir = dir;
+		this.segmentSize = segmentSize;
+		this.fsyncPolicy = fsyncPolicy;
+		fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncInterval);
+		ackChannel = FileChannel.open(dir.resolve("ack"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		try {
+			lock = ackChannel.tryLock();
+
+			if (lock == null) {
+				throw new IOException("The log is used by another process: " + dir);
+			}
+
+			ackBuffer = ackChannel.map(MapMode.READ_WRITE, 0, Long.BYTES);
+			acknowledged = ackBuffer.getLong(0);
+
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SEGMENT_SUFFIX)) {
+				for (final Path file : files) {
+					final String name = file.getFileName().toString();
+					segments.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), file);
+				}
+			}
+
+			deleteAcknowledgedSegments();
+
+			if (segments.isEmpty()) {
+				writeBase = acknowledged;
+				writeBuffer = createSegment(writeBase);
+				nextOffset = writeBase;
+			} else {
+				writeBase = segments.lastKey();
+				writeBuffer = map(segments.lastEntry().getValue());
+				nextOffset = writeBase + skip(writeBuffer, Long.MAX_VALUE);
+
+				// clear the header of a torn record at the end, so it isn't read when the position is reused
+				for (int i = writeBuffer.position(); i < writeBuffer.limit() && i < writeBuffer.position() + HEADER_SIZE; i++) {
+					writeBuffer.put(i, (byte) 0);
+				}
+			}
+
+			acknowledged = Math.min(Math.max(acknowledged, segments.firstKey()), nextOffset);
+			readBase = segments.floorKey(acknowledged);
+			readBuffer = readBase == writeBase ? writeBuffer.duplicate().position(0) : map(segments.get(readBase));
+			readOffset = readBase + skip(readBuffer, acknowledged - readBase);
+		} catch (final IOException | RuntimeException e) {
+			ackChannel.close();
+			throw e;
+		}
+	}
+
+
+	/**
+	 * Appends the record to the log.
+	 *
+	 * @param content the content of the record
+	 * @return the offset of the record
+	 * @throws IOException if the record is larger than a segment or could not be written
+	 */
+	synchronized long append(final byte[] content) throws IOException {
+		if (closed) {
+			throw new IOException("The log has been closed: " + dir);
+		}
+
+		if (HEADER_SIZE + content.length > segmentSize) {
+			throw new IOException("The record of " + content.length + " bytes is larger than the segments of the log: " + dir);
+		}
+
+		if (writeBuffer.remaining() < HEADER_SIZE + content.length) {
+			roll();
+		}
+
+		final CRC32 crc = new CRC32();
+		crc.update(content);
+
+		// the length is written last, so an incomplete record is never read
+		final int position = writeBuffer.position();
+		writeBuffer.position(position + HEADER_SIZE);
+		writeBuffer.put(content);
+		writeBuffer.putInt(position + Integer.BYTES, (int) crc.getValue());
+		writeBuffer.putInt(position, content.length);
+		dirty = true;
+		force(false);
+		notifyAll();
+
+		return nextOffset++;
+	}
+
+
+	/**
+	 * Reads the next record, waiting for it until the timeout has elapsed.
+	 *
+	 * @param timeout the timeout in nanoseconds or {@link Long#MAX_VALUE} to wait until a record
+	 *        is appended
+	 * @return the {@link Record} or <code>null</code> if none was appended in time or the log has
+	 *         been closed
+	 * @throws InterruptedException if the reader was interrupted while waiting
+	 * @throws IOException if the log is corrupt
+	 */
+	synchronized Record read(final long timeout) throws InterruptedException, IOException {
+		final long start = System.nanoTime();
+
+		while (!closed) {
+			if (readOffset < nextOffset) {
+				final byte[] content = readRecord(readBuffer);
+
+				if (content != null) {
+					return new Record(readOffset++, content);
+				}
+
+				// the rest of the segment is empty, so the reader continues with the next one
+				final Map.Entry<Long, Path> next = segments.higherEntry(readBase);
+
+				if (next == null) {
+					throw new IOException("The log is corrupt at offset " + readOffset + ": " + dir);
+				}
+
+				readBase = next.getKey();
+				readOffset = readBase;
+				readBuffer = readBase == writeBase ? writeBuffer.duplicate().position(0) : map(next.getValue());
+				continue;
+			}
+
+			// writes are forced by the reader while no records are appended
+			force(false);
+
+			final long remaining = timeout == Long.MAX_VALUE ? Long.MAX_VALUE : timeout - (System.nanoTime() - start);
+
+			if (remaining <= 0) {
+				return null;
+			}
+
+			TimeUnit.NANOSECONDS.timedWait(this, dirty && fsyncPolicy == FsyncPolicy.INTERVAL ? Math.min(remaining, fsyncIntervalNanos) : remaining);
+		}
+
+		return null;
+	}
+
+
+	/**
+	 * Checks whether records have been appended which were not read yet.
+	 *
+	 * @return <code>true</code> if the next {@link #read(long)} returns a record without waiting
+	 */
+	synchronized boolean hasUnread() {
+		return !closed && readOffset < nextOffset;
+	}
+
+
+	/**
+	 * Checks whether the log has been closed.
+	 *
+	 * @return <code>true</code> if the log has been closed
+	 */
+	synchronized boolean isClosed() {
+		return closed;
+	}
+
+
+	/**
+	 * Acknowledges the record with the offset and all records before it, so they are not read
+	 * again after a restart.
+	 *
+	 * @param offset the offset of the processed record
+	 */
+	synchronized void acknowledge(final long offset) {
+		if (closed || offset < acknowledged) {
+			return;
+		}
+
+		acknowledged = offset + 1;
+		ackBuffer.putLong(0, acknowledged);
+		dirty = true;
+		force(false);
+		deleteAcknowledgedSegments();
+	}
+
+
+	/**
+	 * Forces all writes to disk and releases the log.
+	 */
+	@Override
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+		force(true);
+		notifyAll();
+
+		try {
+			lock.release();
+			ackChannel.close();
+		} catch (final IOException e) {
+			LOG.warn("Error closing log " + dir + ": " + e.getMessage());
+		}
+	}
+
+
+	/**
+	 * Forces the writes to disk if the {@link FsyncPolicy} requires it.
+	 *
+	 * @param always whether to force the writes regardless of the policy
+	 */
+	private void force(final boolean always) {
+		if (!dirty || !always && fsyncPolicy == FsyncPolicy.NEVER) {
+			return;
+		}
+
+		final long now = System.nanoTime();
+
+		if (always || fsyncPolicy == FsyncPolicy.ALWAYS || now - lastForce >= fsyncIntervalNanos) {
+			writeBuffer.force();
+			ackBuffer.force();
+			lastForce = now;
+			dirty = false;
+		}
+	}
+
+
+	/**
+	 * Starts a new segment with the next offset. The rest of the current segment stays empty.
+	 *
+	 * @throws IOException if the segment could not be created
+	 */
+	private void roll() throws IOException {
+		final MappedByteBuffer previous = writeBuffer;
+		writeBuffer = createSegment(nextOffset);
+		writeBase = nextOffset;
+
+		if (fsyncPolicy != FsyncPolicy.NEVER) {
+			previous.force();
+		}
+	}
+
+
+	/**
+	 * Deletes the segments whose records have all been acknowledged. The last segment is kept for
+	 * appending.
+	 */
+	private void deleteAcknowledgedSegments() {
+		while (segments.size() > 1 && segments.higherKey(segments.firstKey()) <= acknowledged) {
+			final Path file = segments.pollFirstEntry().getValue();
+
+			try {
+				Files.deleteIfExists(file);
+			} catch (final IOException e) {
+				LOG.warn("Could not delete acknowledged segment " + file + ": " + e.getMessage());
+			}
+		}
+	}
+
+
+	private MappedByteBuffer createSegment(final long baseOffset) throws IOException {
+		final Path file = dir.resolve(String.format("%020d", baseOffset) + SEGMENT_SUFFIX);
+		segments.put(baseOffset, file);
+
+		return map(file);
+	}
+
+
+	private MappedByteBuffer map(final Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			return channel.map(MapMode.READ_WRITE, 0, segmentSize);
+		}
+	}
+
+
+	/**
+	 * Skips the valid records at the position of the buffer.
+	 *
+	 * @param buffer the buffer of a segment
+	 * @param count the maximum number of records to skip
+	 * @return the number of skipped records
+	 */
+	private static long skip(final ByteBuffer buffer, final long count) {
+		long skipped = 0;
+
+		while (skipped < count && readRecord(buffer) != null) {
+			skipped++;
+		}
+
+		return skipped;
+	}
+
+
+	/**
+	 * Reads the record at the position of the buffer and advances the position behind it.
+	 *
+	 * @param buffer the buffer of a segment
+	 * @return the content or <code>null</code> if there is no valid record at the position
+	 */
+	private static byte[] readRecord(final ByteBuffer buffer) {
+		final int position = buffer.position();
+
+		if (buffer.remaining() < HEADER_SIZE) {
+			return null;
+		}
+
+		final int length = buffer.getInt(position);
+
+		if (length <= 0 || length > buffer.remaining() - HEADER_SIZE) {
+			return null;
+		}
+
+		final byte[] content = new byte[length];
+		buffer.position(position + HEADER_SIZE);
+		buffer.get(content);
+
+		final CRC32 crc = new CRC32();
+		crc.update(content);
+
+		if ((int) crc.getValue() != buffer.getInt(position + Integer.BYTES)) {
+			buffer.position(position);
+			return null;
+		}
+
+		return content;
+	}
+}
@@ -13,20 +13,57 @@
 */
 package com.airepublic.microverse.core.client;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import org.apache.commons.lang3.SerializationException;
+import org.apache.commons.lang3.SerializationUtils;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.airepublic.microverse.core.common.BinaryFrame;
+import com.airepublic.microverse.core.common.Configuration;
 import com.airepublic.microverse.core.common.ServiceUtils;
+import com.airepublic.microverse.core.common.StreamFrames;
 import com.airepublic.microverse.core.common.marshaller.IMarshaller;
 import com.airepublic.microverse.core.common.marshaller.MarshallerFactory;
 import com.airepublic.microverse.core.descriptor.MethodCall;
+import com.airepublic.microverse.core.descriptor.MethodDescriptor;
 import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
 import com.airepublic.microverse.core.exception.ServiceException;
+import com.airepublic.microverse.core.exception.ServiceTimeoutException;
+import com.airepublic.microverse.core.exception.ServiceUnavailableException;
+import com.airepublic.microverse.core.service.api.IServiceInvoker;
+import com.airepublic.microverse.core.service.api.InvocationContext;
+import com.airepublic.microverse.core.service.api.LocalServices;
+import com.airepublic.microverse.core.service.api.OneWay;
+import com.airepublic.microverse.core.service.api.Priority;
+import com.airepublic.microverse.core.service.api.ResultStream;
+import com.airepublic.microverse.core.service.api.ServicePriority;
 
 /**
  * {@link InvocationHandler} to proxy service calls.
@@ -37,41 +74,486 @@ import com.airepublic.microverse.core.exception.ServiceException;
 public class ServiceClientInvocationHandler implements InvocationHandler {
 	private final static Logger LOG = LoggerFactory.getLogger(ServiceClientInvocationHandler.class);
 	private final ServiceDescriptor serviceDescriptor;
+	private final Map<String, MethodDescriptor> methodsBySignature = new HashMap<>();
+	private final Map<Method, MethodDescriptor> methodDescriptors = new ConcurrentHashMap<>();
+	private final Map<Method, ClientInvocation> interceptorChains = new HashMap<>();
+	private volatile long timeout = Configuration.getClientTimeout();
+	private volatile Priority priority;
+	private volatile boolean failover = true;
+	private final boolean binary = Configuration.isClientBinary();
+	private final boolean local = Configuration.isClientLocal();
 
 
 	/**
-	 * Constructor.
+	 * Constructor. The chains of the registered {@link IClientInterceptor}s are built for all
+	 * methods of the service-interface.
 	 *
 	 * @param serviceDescriptor the {@link ServiceDescriptor} of the service to proxy
+	 * @param serviceInterface the service-interface
 	 * @param marshaller the {@link IMarshaller} used to serialize request content
 	 */
-	public ServiceClientInvocationHandler(final ServiceDescriptor serviceDescriptor, final IMarshaller marshaller) {
+	public ServiceClientInvocationHandler(final ServiceDescriptor serviceDescriptor, final Class<?> serviceInterface, final IMarshaller marshaller) {
 		this.serviceDescriptor = serviceDescriptor;
+
+		for (final MethodDescriptor methodDescriptor : serviceDescriptor.getMethods()) {
+			if (methodDescriptor.getIndex() >= 0) {
+				methodsBySignature.put(methodDescriptor.getSignature(), methodDescriptor);
+			}
+		}
+
+		final IClientInterceptor[] interceptors = ClientInterceptors.get();
+
+		if (interceptors.length > 0) {
+			for (final Method method : serviceInterface.getMethods()) {
+				interceptorChains.put(method, ClientInvocation.create(serviceDescriptor, method, methodsBySignature.get(MethodDescriptor.getSignature(method)), interceptors, this::invoke));
+			}
+		}
+	}
+
+
+	/**
+	 * Sets the timeout of the calls made through this handler. If the calling thread already has
+	 * an earlier deadline in its {@link InvocationContext}, that deadline is used.
+	 *
+	 * @param timeout the timeout or 0 for no timeout
+	 * @param unit the {@link TimeUnit} of the timeout
+	 */
+	public void setTimeout(final long timeout, final TimeUnit unit) {
+		this.timeout = unit.toMillis(timeout);
+	}
+
+
+	/**
+	 * Sets the {@link Priority} of the calls made through this handler. It overrides the
+	 * {@link ServicePriority} annotations of the service-interface, but not a priority already set
+	 * in the {@link InvocationContext} of the calling thread.
+	 *
+	 * @param priority the {@link Priority} or <code>null</code> to use the annotations
+	 */
+	public void setPriority(final Priority priority) {
+		this.priority = priority;
+	}
+
+
+	/**
+	 * Sets whether calls rejected by the overloaded service are retried on other instances of the
+	 * service. Clients addressing a specific instance, e.g. for a scatter-gather call, disable the
+	 * failover.
+	 *
+	 * @param failover flag, whether to retry rejected calls on other instances
+	 */
+	public void setFailover(final boolean failover) {
+		this.failover = failover;
 	}
 
 
 	@Override
 	public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
-		// create a method call
-		final MethodCall call = MethodCall.create(method.getName(), args);
+		final Long callerDeadline = InvocationContext.getDeadline();
+		final Priority callerPriority = InvocationContext.getPriority();
+
+		try {
+			if (callerPriority == null) {
+				InvocationContext.setPriority(getPriority(method));
+			}
+
+			if (timeout > 0) {
+				final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+				if (callerDeadline == null || deadline - callerDeadline < 0) {
+					InvocationContext.setDeadline(deadline);
+				}
+			}
+
+			final ClientInvocation interceptorChain = interceptorChains.get(method);
+
+			if (interceptorChain != null) {
+				return interceptorChain.invoke(args);
+			}
+
+			return invoke(method, args);
+		} finally {
+			InvocationContext.setDeadline(callerDeadline);
+			InvocationContext.setPriority(callerPriority);
+		}
+	}
+
+
+	/**
+	 * Gets the {@link Priority} for calls of the method, which is the priority set on this handler
+	 * or the {@link ServicePriority} annotation of the method or its service-interface.
+	 *
+	 * @param method the called method
+	 * @return the {@link Priority} or <code>null</code> if none is specified
+	 */
+	private Priority getPriority(final Method method) {
+		if (priority != null) {
+			return priority;
+		}
+
+		ServicePriority annotation = method.getAnnotation(ServicePriority.class);
+
+		if (annotation == null) {
+			annotation = method.getDeclaringClass().getAnnotation(ServicePriority.class);
+		}
+
+		return annotation != null ? annotation.value() : null;
+	}
+
+
+	/**
+	 * Invokes the method on the remote service within the deadline of the current
+	 * {@link InvocationContext}.
+	 *
+	 * @param method the called method
+	 * @param args the arguments
+	 * @return the result
+	 * @throws Throwable if the call failed
+	 */
+	private Object invoke(final Method method, final Object[] args) throws Throwable {
+		// resolve the method descriptor if the service has indexed the method
+		MethodDescriptor methodDescriptor = methodDescriptors.get(method);
+
+		if (methodDescriptor == null) {
+			methodDescriptor = methodsBySignature.get(MethodDescriptor.getSignature(method));
+
+			if (methodDescriptor != null) {
+				methodDescriptors.put(method, methodDescriptor);
+			}
+		}
+
+		// queue one-way calls to be sent in the background, only to this instance without failover
+		if (methodDescriptor != null ? methodDescriptor.isOneWay() : method.getReturnType() == void.class && method.isAnnotationPresent(OneWay.class)) {
+			(failover ? OneWaySender.get(serviceDescriptor) : OneWaySender.getForInstance(serviceDescriptor)).send(createMethodCall(method, methodDescriptor, args));
+			return null;
+		}
+
+		// call the service directly if it is served in this JVM, the service-server only
+		// serializes the arguments if the service-container doesn't share their classes
+		if (local && !ResultStream.isStreamType(method.getReturnType().getName())) {
+			final IServiceInvoker invoker = LocalServices.get(serviceDescriptor.getHost(), serviceDescriptor.getPort(), serviceDescriptor.getServiceUri().getUri());
+
+			if (invoker != null) {
+				try {
+					if (methodDescriptor != null) {
+						return toCallerClasses(method, invoker.invokeDirect(methodDescriptor.getIndex(), methodDescriptor.getSignatureHash(), null, null, args));
+					}
+
+					return toCallerClasses(method, invoker.invokeDirect(-1, 0, method.getName(), MethodDescriptor.getSignature(method), args));
+				} catch (final ServiceUnavailableException e) {
+					return readResult(method, failover(createMethodCall(method, methodDescriptor, args), e));
+				} catch (final ServiceException e) {
+					throw e;
+				} catch (final Exception e) {
+					throw new ServiceException("Error calling service method!", e);
+				}
+			}
+		}
+
+		final MethodCall call = createMethodCall(method, methodDescriptor, args);
+
+		// prefer the binary endpoint if the service-server offers one and the service needn't be
+		// called via SSL
+		if (binary && serviceDescriptor.getBinaryPort() > 0 && !serviceDescriptor.isUseSSL()) {
+			try {
+				final BinaryFrame response = invokeBinary(call);
+
+				if (response != null) {
+					return readResult(method, response.getAttribute(0), new ByteArrayInputStream(response.getContent()), () -> {
+					});
+				}
+			} catch (final ServiceUnavailableException e) {
+				return readResult(method, failover(call, e));
+			}
+		}
 
 		// send the request to the remote service
-		final HttpResponse response = ServiceUtils.executeRequest(serviceDescriptor, serviceDescriptor.getServiceUri(), call);
+		HttpResponse response;
+
+		try {
+			response = ServiceUtils.executeRequest(serviceDescriptor, serviceDescriptor.getServiceUri(), call);
+		} catch (final ServiceUnavailableException e) {
+			response = failover(call, e);
+		}
+
+		return readResult(method, response);
+	}
+
+
+	/**
+	 * Creates the {@link MethodCall} by index if the service has indexed the method, otherwise by
+	 * its name and signature.
+	 *
+	 * @param method the called method
+	 * @param methodDescriptor the {@link MethodDescriptor} of the method or <code>null</code>
+	 * @param args the arguments
+	 * @return the {@link MethodCall}
+	 */
+	private static MethodCall createMethodCall(final Method method, final MethodDescriptor methodDescriptor, final Object[] args) {
+		return methodDescriptor != null ? MethodCall.create(methodDescriptor, args) : MethodCall.create(method, args);
+	}
+
+
+	/**
+	 * Adapts the result of a service called in the same JVM to the classloader of the caller.
+	 * Immutable JDK values and objects of classes the caller shares with the service are returned
+	 * as they are. All other results are copied via serialization, resolving their classes with the
+	 * classloader of the service-interface.
+	 *
+	 * @param method the called method
+	 * @param result the result of the service
+	 * @return the result usable by the caller
+	 * @throws ServiceException if the result could not be copied
+	 */
+	private Object toCallerClasses(final Method method, final Serializable result) throws ServiceException {
+		if (result == null) {
+			return null;
+		}
 
-		if (response.getEntity() != null && response.getEntity().getContentLength() > 0 && response.getHeaders(HttpHeaders.CONTENT_TYPE) != null && response.getHeaders(HttpHeaders.CONTENT_TYPE).length > 0) {
-			// deserialize with the marshaller for the response content-type
-			final String mimeType = ServiceUtils.getMimeTypeFromResponse(response);
-			final IMarshaller responseMarshaller = MarshallerFactory.get(mimeType);
+		final ClassLoader classLoader = method.getDeclaringClass().getClassLoader();
 
-			if (responseMarshaller == null) {
-				LOG.error("Could not find a marshaller for the response content-type: " + mimeType);
-				throw new ServiceException("Could not find a marshaller for the response content-type: " + mimeType);
+		if (LocalServices.isShared(result, classLoader)) {
+			return result;
+		}
+
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(SerializationUtils.serialize(result))) {
+			@Override
+			protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+				try {
+					return Class.forName(desc.getName(), false, classLoader);
+				} catch (final ClassNotFoundException e) {
+					return super.resolveClass(desc);
+				}
 			}
+		}) {
+			return in.readObject();
+		} catch (final IOException | ClassNotFoundException | SerializationException e) {
+			throw new ServiceException("The result of the service could not be copied to the classloader of the caller: " + result.getClass().getName(), e);
+		}
+	}
+
 
-			return responseMarshaller.deserialize(response.getEntity().getContent(), method.getReturnType());
+	/**
+	 * Sends the {@link MethodCall} to the binary endpoint of the service-server. If the endpoint
+	 * can't be reached or the connection fails during the call, the call is left to HTTP. The
+	 * endpoint is tried again once the retry delay of the {@link BinaryConnection} has passed.
+	 *
+	 * @param call the {@link MethodCall}
+	 * @return the result frame or <code>null</code> if the call must be sent via HTTP
+	 * @throws ServiceUnavailableException if the service rejected the call
+	 * @throws ServiceTimeoutException if the deadline has passed
+	 * @throws ServiceException if the call failed
+	 */
+	private BinaryFrame invokeBinary(final MethodCall call) throws ServiceException {
+		final BinaryConnection connection;
+
+		try {
+			connection = BinaryConnection.get(serviceDescriptor.getHost(), serviceDescriptor.getBinaryPort());
+		} catch (final IOException e) {
+			LOG.debug("Binary endpoint " + serviceDescriptor.getHost() + ":" + serviceDescriptor.getBinaryPort() + " not available - using HTTP: " + e.getMessage());
+			return null;
+		}
+
+		final IMarshaller marshaller = ServiceUtils.determineCommonMimeType(serviceDescriptor.getSupportedMimeTypes());
+		final Priority priority = InvocationContext.getPriority();
+		long timeout = InvocationContext.getRemaining(TimeUnit.MILLISECONDS);
+
+		if (timeout == Long.MAX_VALUE) {
+			timeout = -1L;
+		} else if (timeout <= 0) {
+			throw new ServiceTimeoutException("Deadline has passed before calling: " + serviceDescriptor.getServiceUri());
+		}
+
+		final String[] attributes = { "/" + serviceDescriptor.getServiceUri().getUri(), marshaller.getMimeType(), marshaller.getMimeType(), priority != null ? priority.name() : "" };
+		final BinaryFrame response;
+
+		try {
+			response = connection.call(attributes, timeout, marshaller.serialize(call));
+		} catch (final ServiceTimeoutException e) {
+			throw e;
+		} catch (final ServiceException e) {
+			if (e.getCause() instanceof IOException) {
+				LOG.warn("Binary connection to " + serviceDescriptor.getHost() + ":" + serviceDescriptor.getBinaryPort() + " failed during the call - using HTTP: " + e.getCause().getMessage());
+				return null;
+			}
+
+			throw e;
+		}
+
+		switch (response.getType()) {
+			case BinaryFrame.RESULT:
+				return response;
+			case BinaryFrame.TIMEOUT:
+				throw new ServiceTimeoutException(response.getAttribute(0));
+			case BinaryFrame.UNAVAILABLE:
+				throw new ServiceUnavailableException(response.getAttribute(0), (int) response.getValue());
+			default:
+				throw new ServiceException(response.getAttribute(0));
+		}
+	}
+
+
+	/**
+	 * Reads the result from the HTTP response.
+	 *
+	 * @param method the called method
+	 * @param response the {@link HttpResponse}
+	 * @return the result
+	 * @throws IOException if the response content could not be read
+	 * @throws ServiceException if the result could not be deserialized
+	 */
+	private Object readResult(final Method method, final HttpResponse response) throws IOException, ServiceException {
+		// results are streamed by the server, so the content-length is unknown
+		if (response.getEntity() != null && response.getEntity().getContentLength() != 0 && response.getHeaders(HttpHeaders.CONTENT_TYPE) != null && response.getHeaders(HttpHeaders.CONTENT_TYPE).length > 0) {
+			final Closeable resource = () -> {
+				if (response instanceof Closeable) {
+					((Closeable) response).close();
+				} else {
+					EntityUtils.consume(response.getEntity());
+				}
+			};
+
+			return readResult(method, ServiceUtils.getMimeTypeFromResponse(response), response.getEntity().getContent(), resource);
 		}
 
 		return null;
 	}
 
+
+	/**
+	 * Deserializes the result with the marshaller for the response content-type.
+	 *
+	 * @param method the called method
+	 * @param mimeType the content-type of the result or <code>null</code> if there is no result
+	 * @param content the serialized result
+	 * @param resource the resource to close once an element stream has been read
+	 * @return the result
+	 * @throws IOException if the content could not be read
+	 * @throws ServiceException if the result could not be deserialized
+	 */
+	private Object readResult(final Method method, final String mimeType, final InputStream content, final Closeable resource) throws IOException, ServiceException {
+		if (mimeType == null) {
+			return null;
+		}
+
+		final IMarshaller responseMarshaller = MarshallerFactory.get(mimeType);
+
+		if (responseMarshaller == null) {
+			LOG.error("Could not find a marshaller for the response content-type: " + mimeType);
+			throw new ServiceException("Could not find a marshaller for the response content-type: " + mimeType);
+		}
+
+		if (ResultStream.isStreamType(method.getReturnType().getName())) {
+			return readResultStream(method, content, responseMarshaller, resource);
+		}
+
+		return responseMarshaller.deserialize(content, method.getReturnType());
+	}
+
+
+	/**
+	 * Reads the element stream from the response content lazily and adapts it to the return type of
+	 * the method. The response is closed once all elements have been read or the stream is closed
+	 * or cancelled.
+	 *
+	 * @param method the called method
+	 * @param content the response content
+	 * @param marshaller the marshaller to deserialize the elements
+	 * @param resource the resource to close with the stream
+	 * @return the {@link Iterator}, {@link Stream} or {@link Flow.Publisher} of the elements
+	 * @throws IOException if the response content could not be read
+	 */
+	private Object readResultStream(final Method method, final InputStream content, final IMarshaller marshaller, final Closeable resource) throws IOException {
+		return adaptResultStream(method, StreamFrames.read(content, marshaller, getElementType(method), resource), resource);
+	}
+
+
+	/**
+	 * Gets the element type of the element stream returned by the method.
+	 *
+	 * @param method the method returning an element stream
+	 * @return the element type or {@link Object} if it can't be determined
+	 */
+	static Class<?> getElementType(final Method method) {
+		if (method.getGenericReturnType() instanceof ParameterizedType) {
+			final Type typeArgument = ((ParameterizedType) method.getGenericReturnType()).getActualTypeArguments()[0];
+
+			if (typeArgument instanceof Class) {
+				return (Class<?>) typeArgument;
+			} else if (typeArgument instanceof ParameterizedType && ((ParameterizedType) typeArgument).getRawType() instanceof Class) {
+				return (Class<?>) ((ParameterizedType) typeArgument).getRawType();
+			}
+		}
+
+		return Object.class;
+	}
+
+
+	/**
+	 * Adapts the {@link Iterator} over the elements of a remote element stream to the return type
+	 * of the method.
+	 *
+	 * @param method the called method
+	 * @param iterator the {@link Iterator} over the elements
+	 * @param resource the resource to close with the stream
+	 * @return the {@link Iterator}, {@link Stream} or {@link Flow.Publisher} of the elements
+	 */
+	static Object adaptResultStream(final Method method, final Iterator<?> iterator, final Closeable resource) {
+		if (method.getReturnType() == Stream.class) {
+			return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false).onClose(() -> {
+				try {
+					resource.close();
+				} catch (final IOException e) {
+					LOG.warn("Error closing the remote element stream!", e);
+				}
+			});
+		} else if (method.getReturnType() == Flow.Publisher.class) {
+			return new IteratorPublisher<>(iterator, resource);
+		}
+
+		return iterator;
+	}
+
+
+	/**
+	 * Retries the {@link MethodCall} on other instances of the service after the service rejected
+	 * the call because it is overloaded.
+	 *
+	 * @param call the {@link MethodCall}
+	 * @param cause the {@link ServiceUnavailableException} of the rejected call
+	 * @return the response of the first instance which accepted the call
+	 * @throws ServiceException if no other instance accepted the call
+	 */
+	private HttpResponse failover(final MethodCall call, final ServiceUnavailableException cause) throws ServiceException {
+		ServiceUnavailableException lastException = cause;
+		int attempts = failover ? Configuration.getClientFailoverAttempts() : 0;
+
+		if (attempts > 0) {
+			final List<ServiceDescriptor> instances = FailoverInstances.get(serviceDescriptor.getId(), serviceDescriptor.getVersion());
+			// spread the retries of all clients over the instances
+			Collections.shuffle(instances);
+
+			for (final ServiceDescriptor instance : instances) {
+				if (attempts == 0) {
+					break;
+				}
+
+				if (instance.getHost().equals(serviceDescriptor.getHost()) && instance.getPort() == serviceDescriptor.getPort() && instance.getServiceUri().equals(serviceDescriptor.getServiceUri())) {
+					continue;
+				}
+
+				attempts--;
+
+				try {
+					LOG.debug("Retrying call on other service instance: " + instance.getHost() + ":" + instance.getPort());
+					return ServiceUtils.executeRequest(instance, instance.getServiceUri(), call);
+				} catch (final ServiceUnavailableException e) {
+					lastException = e;
+				}
+			}
+		}
+
+		throw lastException;
+	}
+
 }
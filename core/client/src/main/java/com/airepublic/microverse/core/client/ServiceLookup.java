@@ -18,7 +18,13 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
 
 import javax.inject.Singleton;
 
@@ -34,6 +40,9 @@ import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
 import com.airepublic.microverse.core.descriptor.WebCall;
 import com.airepublic.microverse.core.discovery.RegistryDiscovererService;
 import com.airepublic.microverse.core.exception.ServiceException;
+import com.airepublic.microverse.core.service.api.EventBus;
+import com.airepublic.microverse.core.service.api.Priority;
+import com.airepublic.microverse.core.service.api.ServicePriority;
 
 /**
  * Lookup class for a {@linkplain RestServiceRegistryBinary}.
@@ -48,11 +57,14 @@ public class ServiceLookup implements Serializable, Closeable {
 
 
 	/**
-	 * Creates a new {@link ServiceLookup}.
+	 * Creates a new {@link ServiceLookup}. The {@link EventPublisher} is installed with the
+	 * {@link EventBus} if no other publisher has been installed, so service-clients can publish
+	 * events.
 	 *
 	 * @throws ServiceException
 	 */
 	public static ServiceLookup create() throws ServiceException {
+		EventPublisher.install();
 		return new ServiceLookup();
 	}
 
@@ -170,6 +182,71 @@ public class ServiceLookup implements Serializable, Closeable {
 	}
 
 
+	/**
+	 * Gets the {@link ServiceDescriptor}s of all instances of the specified service known to the
+	 * registries.
+	 *
+	 * @param serviceId the service-id
+	 * @param serviceVersion the service-version
+	 * @return the list of {@link ServiceDescriptor}s (may be empty)
+	 */
+	public final List<ServiceDescriptor> getServiceDescriptors(final String serviceId, final String serviceVersion) {
+		return getServiceDescriptors(serviceDescriptor -> serviceDescriptor.getId().equals(serviceId) && serviceDescriptor.getVersion().equals(serviceVersion));
+	}
+
+
+	/**
+	 * Gets the {@link ServiceDescriptor}s of all service instances known to the registries which
+	 * subscribed a method to the topic.
+	 *
+	 * @param topic the topic
+	 * @return the list of {@link ServiceDescriptor}s (may be empty)
+	 */
+	public final List<ServiceDescriptor> getSubscribers(final String topic) {
+		return getServiceDescriptors(serviceDescriptor -> serviceDescriptor.getMethods().stream().anyMatch(method -> topic.equals(method.getTopic())));
+	}
+
+
+	/**
+	 * Gets the {@link ServiceDescriptor}s of all service instances known to the registries which
+	 * match the filter.
+	 *
+	 * @param filter the filter
+	 * @return the list of {@link ServiceDescriptor}s (may be empty)
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private List<ServiceDescriptor> getServiceDescriptors(final Predicate<ServiceDescriptor> filter) {
+		final List<ServiceDescriptor> serviceDescriptors = new ArrayList<>();
+
+		// query all know registries about the services
+		for (final RegistryDescriptor registryDescriptor : RegistryDiscovererService.requestRegistries()) {
+			try {
+				// execute the request
+				final HttpResponse response = ServiceUtils.executeRequest(registryDescriptor, registryDescriptor.getAllServicesUri(), null);
+
+				// deserialize with the marshaller for the response content-type (a binary
+				// marshaller returns the list, a JSON marshaller the array)
+				final String mimeType = ServiceUtils.getMimeTypeFromResponse(response);
+				final IMarshaller responseMarshaller = MarshallerFactory.get(mimeType);
+				final Object result = responseMarshaller.deserialize(response.getEntity().getContent(), (Class) ServiceDescriptor[].class);
+				final Collection<?> allServiceDescriptors = result instanceof Object[] ? Arrays.asList((Object[]) result) : (Collection<?>) result;
+
+				for (final Object descriptor : allServiceDescriptors) {
+					final ServiceDescriptor serviceDescriptor = (ServiceDescriptor) descriptor;
+
+					if (filter.test(serviceDescriptor) && !serviceDescriptors.contains(serviceDescriptor)) {
+						serviceDescriptors.add(serviceDescriptor);
+					}
+				}
+			} catch (final Exception e) {
+				LOG.debug("Unable to get the services from " + registryDescriptor, e);
+			}
+		}
+
+		return serviceDescriptors;
+	}
+
+
 	/**
 	 * Gets a service client for the specified service interface.
 	 *
@@ -191,7 +268,9 @@ public class ServiceLookup implements Serializable, Closeable {
 
 
 	/**
-	 * Gets a service client for the specified service interface.
+	 * Gets a service client for the specified service interface. If the service is served by a
+	 * service-server in the same JVM, the client dispatches its calls directly into the
+	 * service-container instead of sending them over the network.
 	 *
 	 * @param serviceInterface the service-interface providing the service functionality
 	 * @param serviceClass the underlying service-class for the service-interface
@@ -209,6 +288,166 @@ public class ServiceLookup implements Serializable, Closeable {
 	}
 
 
+	/**
+	 * Opens a WebSocket session with the specified service. Calls of the service-client of the
+	 * session share one connection and the service can push events to the client.
+	 *
+	 * @param serviceId the service-id
+	 * @param serviceVersion the service-version
+	 * @return the {@link ClientSession}
+	 * @throws ServiceException if the service could not be found or doesn't offer sessions
+	 */
+	public final ClientSession openSession(final String serviceId, final String serviceVersion) throws ServiceException {
+		return openSession(getServiceDescriptor(serviceId, serviceVersion));
+	}
+
+
+	/**
+	 * Opens a WebSocket session with the service described by the {@link ServiceDescriptor}.
+	 *
+	 * @param serviceDescriptor the {@link ServiceDescriptor}
+	 * @return the {@link ClientSession}
+	 * @throws ServiceException if the service-server doesn't offer sessions or the session could
+	 *         not be opened
+	 */
+	public final ClientSession openSession(final ServiceDescriptor serviceDescriptor) throws ServiceException {
+		return ClientSession.open(serviceDescriptor);
+	}
+
+
+	/**
+	 * Calls all instances of the specified service in parallel and reduces their results with the
+	 * reducer, e.g. one of the {@link java.util.stream.Collectors}. The call waits for the answers
+	 * of all instances within the deadline of the calling thread.
+	 *
+	 * @param serviceId the service-id
+	 * @param serviceVersion the service-version
+	 * @param call the call to make on the service-client of each instance
+	 * @param reducer the {@link Collector} reducing the results of the instances
+	 * @return the {@link GatheredResult}
+	 * @throws ServiceException if no instance of the service could be found
+	 */
+	public final <T, R, A> GatheredResult<A> scatterGather(final String serviceId, final String serviceVersion, final Function<? super T, ? extends R> call, final Collector<? super R, ?, A> reducer) throws ServiceException {
+		return scatterGather(serviceId, serviceVersion, call, reducer, 0L, TimeUnit.MILLISECONDS, 0);
+	}
+
+
+	/**
+	 * Calls all instances of the specified service in parallel and reduces their results with the
+	 * reducer. The results gathered so far are reduced as soon as the quorum of successful answers
+	 * has been reached or the timeout has elapsed, the {@link GatheredResult} tells which instances
+	 * failed or are missing.
+	 *
+	 * @param serviceId the service-id
+	 * @param serviceVersion the service-version
+	 * @param call the call to make on the service-client of each instance
+	 * @param reducer the {@link Collector} reducing the results of the instances
+	 * @param timeout the timeout or 0 to use the deadline of the calling thread
+	 * @param unit the {@link TimeUnit} of the timeout
+	 * @param quorum the number of successful answers to wait for or 0 to wait for all instances
+	 * @return the {@link GatheredResult}
+	 * @throws ServiceException if no instance of the service could be found
+	 */
+	public final <T, R, A> GatheredResult<A> scatterGather(final String serviceId, final String serviceVersion, final Function<? super T, ? extends R> call, final Collector<? super R, ?, A> reducer, final long timeout, final TimeUnit unit, final int quorum) throws ServiceException {
+		final List<ServiceDescriptor> instances = getServiceDescriptors(serviceId, serviceVersion);
+
+		if (instances.isEmpty()) {
+			LOG.error("Unable to find any instance of the service '" + serviceId + ":" + serviceVersion + "' on any registries!");
+			throw new ServiceException("Unable to find any instance of the service '" + serviceId + ":" + serviceVersion + "' on any registries!");
+		}
+
+		return scatterGather(instances, call, reducer, timeout, unit, quorum);
+	}
+
+
+	/**
+	 * Calls the specified instances of a service in parallel and reduces their results with the
+	 * reducer, e.g. to address a subset of the shards of a service. Calls rejected by an instance
+	 * are not failed over to other instances, so each instance answers at most once.
+	 *
+	 * @param instances the {@link ServiceDescriptor}s of the instances
+	 * @param call the call to make on the service-client of each instance
+	 * @param reducer the {@link Collector} reducing the results of the instances
+	 * @param timeout the timeout or 0 to use the deadline of the calling thread
+	 * @param unit the {@link TimeUnit} of the timeout
+	 * @param quorum the number of successful answers to wait for or 0 to wait for all instances
+	 * @return the {@link GatheredResult}
+	 * @throws ServiceException if a service-client could not be created
+	 */
+	public final <T, R, A> GatheredResult<A> scatterGather(final List<ServiceDescriptor> instances, final Function<? super T, ? extends R> call, final Collector<? super R, ?, A> reducer, final long timeout, final TimeUnit unit, final int quorum) throws ServiceException {
+		return ScatterGather.execute(instances, this::getInstanceClient, call, reducer, unit.toNanos(timeout), quorum);
+	}
+
+
+	/**
+	 * Gets a service client calling only the specified instance of the service.
+	 *
+	 * @param serviceDescriptor the {@link ServiceDescriptor} of the instance
+	 * @return the service client without failover
+	 * @throws ServiceException if the service-client could not be created
+	 */
+	private <T> T getInstanceClient(final ServiceDescriptor serviceDescriptor) throws ServiceException {
+		final T serviceClient = getServiceClient(serviceDescriptor);
+		setFailover(serviceClient, false);
+
+		return serviceClient;
+	}
+
+
+	/**
+	 * Sets the timeout for all calls of the specified service-client. The remaining time is sent
+	 * with each call, so the service-server drops the call once the caller has stopped waiting.
+	 *
+	 * @param serviceClient the service-client created by this {@link ServiceLookup}
+	 * @param timeout the timeout or 0 for no timeout
+	 * @param unit the {@link TimeUnit} of the timeout
+	 * @throws ServiceException if the object is not a service-client
+	 */
+	public static void setTimeout(final Object serviceClient, final long timeout, final TimeUnit unit) throws ServiceException {
+		if (!Proxy.isProxyClass(serviceClient.getClass()) || !(Proxy.getInvocationHandler(serviceClient) instanceof ServiceClientInvocationHandler)) {
+			throw new ServiceException("The object is not a service-client: " + serviceClient.getClass().getName());
+		}
+
+		((ServiceClientInvocationHandler) Proxy.getInvocationHandler(serviceClient)).setTimeout(timeout, unit);
+	}
+
+
+	/**
+	 * Sets the {@link Priority} for all calls of the specified service-client. Service-servers
+	 * schedule queued calls by their priority class, so higher priority calls get a larger share
+	 * of the worker threads when a service is busy.
+	 *
+	 * @param serviceClient the service-client created by this {@link ServiceLookup}
+	 * @param priority the {@link Priority} or <code>null</code> to use the {@link ServicePriority}
+	 *        annotations of the service-interface
+	 * @throws ServiceException if the object is not a service-client
+	 */
+	public static void setPriority(final Object serviceClient, final Priority priority) throws ServiceException {
+		if (!Proxy.isProxyClass(serviceClient.getClass()) || !(Proxy.getInvocationHandler(serviceClient) instanceof ServiceClientInvocationHandler)) {
+			throw new ServiceException("The object is not a service-client: " + serviceClient.getClass().getName());
+		}
+
+		((ServiceClientInvocationHandler) Proxy.getInvocationHandler(serviceClient)).setPriority(priority);
+	}
+
+
+	/**
+	 * Sets whether calls of the specified service-client which are rejected by the overloaded
+	 * service are retried on other instances of the service. The failover is enabled by default.
+	 *
+	 * @param serviceClient the service-client created by this {@link ServiceLookup}
+	 * @param failover flag, whether to retry rejected calls on other instances
+	 * @throws ServiceException if the object is not a service-client
+	 */
+	public static void setFailover(final Object serviceClient, final boolean failover) throws ServiceException {
+		if (!Proxy.isProxyClass(serviceClient.getClass()) || !(Proxy.getInvocationHandler(serviceClient) instanceof ServiceClientInvocationHandler)) {
+			throw new ServiceException("The object is not a service-client: " + serviceClient.getClass().getName());
+		}
+
+		((ServiceClientInvocationHandler) Proxy.getInvocationHandler(serviceClient)).setFailover(failover);
+	}
+
+
 	/**
 	 * Create a service client which proxies the calls to the service server.
 	 *
@@ -232,7 +471,7 @@ public class ServiceLookup implements Serializable, Closeable {
 			// get compatible marshaller to serialize the request content
 			final IMarshaller marshaller = MarshallerFactory.get(supportedMimeTypes.get(0));
 
-			return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { serviceInterface }, new ServiceClientInvocationHandler(serviceDescriptor, marshaller));
+			return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { serviceInterface }, new ServiceClientInvocationHandler(serviceDescriptor, serviceInterface, marshaller));
 		} catch (final Exception e) {
 			throw new ServiceException("Could not create service-client!", e);
 		}
@@ -0,0 +1,142 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.airepublic.microverse.core.common.Configuration;
+import com.airepublic.microverse.core.common.marshaller.MarshallerFactory;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.descriptor.WebCall;
+import com.airepublic.microverse.core.exception.ServiceException;
+
+public class BinaryConnectionTest {
+	public interface Api {
+		String echo(String value);
+	}
+
+	@After
+	public void tearDown() {
+		System.clearProperty(Configuration.CLIENT_RESPONSE_MAX_SIZE);
+	}
+
+
+	@Test
+	public void testUnreachableEndpointIsNotRetriedBeforeDelay() throws Exception {
+		final int port;
+
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			port = serverSocket.getLocalPort();
+		}
+
+		try {
+			BinaryConnection.get("localhost", port);
+			fail("The endpoint is not listening");
+		} catch (final IOException e) {
+			assertThat(e.getMessage()).doesNotContain("is unreachable");
+		}
+
+		try {
+			BinaryConnection.get("localhost", port);
+			fail("The endpoint is not listening");
+		} catch (final ConnectException e) {
+			assertThat(e.getMessage()).isEqualTo("Binary endpoint localhost:" + port + " is unreachable");
+		}
+	}
+
+
+	@Test
+	public void testResponseExceedingMaxSizeFailsCall() throws Exception {
+		System.setProperty(Configuration.CLIENT_RESPONSE_MAX_SIZE, "1024");
+
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			final Thread server = new Thread(() -> {
+				try (Socket socket = serverSocket.accept()) {
+					// announce a response frame of 2GB
+					final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+					out.writeInt(Integer.MAX_VALUE);
+					out.writeInt(1);
+					out.flush();
+					socket.getInputStream().read();
+				} catch (final IOException e) {
+					// the client closed the connection
+				}
+			});
+			server.start();
+
+			final BinaryConnection connection = BinaryConnection.get("localhost", serverSocket.getLocalPort());
+
+			try {
+				connection.call(new String[0], 5000L, new byte[0]);
+				fail("The response exceeds the maximum size");
+			} catch (final ServiceException e) {
+				assertThat(e.getCause()).isInstanceOf(IOException.class);
+			}
+
+			server.join(5000L);
+		}
+	}
+
+
+	@Test
+	public void testServiceUsingSslIsNotCalledViaTheBinaryPort() throws Exception {
+		final int port;
+
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			port = serverSocket.getLocalPort();
+		}
+
+		try (ServerSocket binaryServerSocket = new ServerSocket(0)) {
+			final ServiceDescriptor serviceDescriptor = ServiceDescriptor.create("api", "1", "ApiImpl", Api.class.getName());
+			serviceDescriptor.addMethods(Api.class.getMethods());
+			serviceDescriptor.setHost("localhost");
+			serviceDescriptor.setPort(port);
+			serviceDescriptor.setUseSSL(true);
+			serviceDescriptor.setBinaryPort(binaryServerSocket.getLocalPort());
+			serviceDescriptor.setServiceUri(WebCall.create("api/1", "POST"));
+			serviceDescriptor.setSupportedMimeTypes(MarshallerFactory.getSupportedMimeTypes());
+
+			final ServiceClientInvocationHandler handler = new ServiceClientInvocationHandler(serviceDescriptor, Api.class, null);
+			handler.setFailover(false);
+			final Api api = (Api) Proxy.newProxyInstance(Api.class.getClassLoader(), new Class<?>[] { Api.class }, handler);
+
+			try {
+				api.echo("a");
+				fail("The HTTPS endpoint is not listening");
+			} catch (final RuntimeException e) {
+				// the service is called via HTTPS
+			}
+
+			binaryServerSocket.setSoTimeout(200);
+
+			try (Socket socket = binaryServerSocket.accept()) {
+				fail("The binary port must not be used for a service using SSL");
+			} catch (final SocketTimeoutException e) {
+				// expected
+			}
+		}
+	}
+}
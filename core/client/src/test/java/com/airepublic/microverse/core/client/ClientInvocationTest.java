@@ -0,0 +1,130 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.airepublic.microverse.core.descriptor.MethodDescriptor;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+
+public class ClientInvocationTest {
+	public interface Api {
+		String echo(String value);
+
+
+		int ping(int count);
+	}
+
+	/** Records the calls passing through and continues them. */
+	private static class RecordingInterceptor implements IClientInterceptor {
+		private final String name;
+		private final List<String> log;
+
+
+		RecordingInterceptor(final String name, final List<String> log) {
+			this.name = name;
+			this.log = log;
+		}
+
+
+		@Override
+		public Object intercept(final ClientInvocation invocation, final Object[] args) throws Throwable {
+			log.add(name + " before");
+			final Object result = invocation.proceed(args);
+			log.add(name + " after");
+
+			return result;
+		}
+	}
+
+
+	private static ServiceDescriptor createServiceDescriptor() {
+		final ServiceDescriptor serviceDescriptor = ServiceDescriptor.create("api", "1", "ApiImpl", Api.class.getName());
+		serviceDescriptor.addMethods(Api.class.getMethods());
+
+		return serviceDescriptor;
+	}
+
+
+	private static MethodDescriptor method(final ServiceDescriptor serviceDescriptor, final String methodName) {
+		return serviceDescriptor.getMethods().stream().filter(m -> m.getMethodName().equals(methodName)).findFirst().get();
+	}
+
+
+	@After
+	public void tearDown() {
+		ClientInterceptors.clear();
+	}
+
+
+	@Test
+	public void testProceedPassesTheArgumentsOfTheInterceptor() throws Throwable {
+		final ServiceDescriptor serviceDescriptor = createServiceDescriptor();
+		final Method echo = Api.class.getMethod("echo", String.class);
+		final List<Object> received = new ArrayList<>();
+		final IClientInterceptor[] interceptors = { (invocation, args) -> invocation.proceed(new Object[] { args[0] + "b" }) };
+		final ClientInvocation chain = ClientInvocation.create(serviceDescriptor, echo, method(serviceDescriptor, "echo"), interceptors, (method, args) -> {
+			received.addAll(Arrays.asList(args));
+			return args[0];
+		});
+
+		assertThat(chain.invoke(new Object[] { "a" })).isEqualTo("ab");
+		assertThat(received).containsExactly("ab");
+	}
+
+
+	@Test
+	public void testExposesTheCalledMethod() throws Throwable {
+		final ServiceDescriptor serviceDescriptor = createServiceDescriptor();
+		final Method ping = Api.class.getMethod("ping", int.class);
+		final List<ClientInvocation> invocations = new ArrayList<>();
+		final IClientInterceptor[] interceptors = { (invocation, args) -> {
+			invocations.add(invocation);
+			return invocation.proceed(args);
+		} };
+		final ClientInvocation chain = ClientInvocation.create(serviceDescriptor, ping, method(serviceDescriptor, "ping"), interceptors, (method, args) -> args[0]);
+
+		assertThat(chain.invoke(new Object[] { 3 })).isEqualTo(3);
+		assertThat(invocations).hasSize(1);
+		assertThat(invocations.get(0).getServiceDescriptor()).isSameAs(serviceDescriptor);
+		assertThat(invocations.get(0).getMethod()).isEqualTo(ping);
+		assertThat(invocations.get(0).getMethodDescriptor()).isSameAs(method(serviceDescriptor, "ping"));
+	}
+
+
+	@Test
+	public void testHandlerCallsTheRegisteredInterceptors() {
+		final ServiceDescriptor serviceDescriptor = createServiceDescriptor();
+		final List<String> log = new ArrayList<>();
+		ClientInterceptors.addInterceptor(new RecordingInterceptor("outer", log));
+		ClientInterceptors.addInterceptor((invocation, args) -> {
+			log.add(invocation.getMethodDescriptor().getMethodName() + " " + args[0]);
+			return "cached";
+		});
+
+		final Api api = (Api) Proxy.newProxyInstance(Api.class.getClassLoader(), new Class<?>[] { Api.class }, new ServiceClientInvocationHandler(serviceDescriptor, Api.class, null));
+
+		assertThat(api.echo("a")).isEqualTo("cached");
+		assertThat(log).containsExactly("outer before", "echo a", "outer after");
+	}
+}
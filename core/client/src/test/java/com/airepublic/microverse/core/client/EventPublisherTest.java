@@ -0,0 +1,233 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.airepublic.microverse.core.common.Configuration;
+import com.airepublic.microverse.core.common.marshaller.MarshallerFactory;
+import com.airepublic.microverse.core.descriptor.MethodCall;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.descriptor.WebCall;
+import com.airepublic.microverse.core.exception.ServiceException;
+import com.airepublic.microverse.core.service.api.EventBus;
+import com.airepublic.microverse.core.service.api.Subscribe;
+import com.sun.net.httpserver.HttpServer;
+
+public class EventPublisherTest {
+	public interface Listener {
+		@Subscribe("events-ordered")
+		void onOrdered(String event);
+
+
+		@Subscribe("events-retried")
+		void onRetried(String event);
+
+
+		@Subscribe("events-dropped")
+		void onDropped(String event);
+	}
+
+	/** The events received by the subscriber in the order they arrived. */
+	private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+	private final AtomicInteger lookups = new AtomicInteger();
+	private final CountDownLatch accepting = new CountDownLatch(1);
+	private volatile boolean blocking;
+	private HttpServer server;
+
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", exchange -> {
+			try (InputStream is = exchange.getRequestBody()) {
+				final MethodCall[] calls = MarshallerFactory.get(exchange.getRequestHeaders().getFirst("Content-Type")).deserialize(is, MethodCall[].class);
+
+				for (final MethodCall call : calls) {
+					events.add(SerializationUtils.deserialize(call.getParameters().get(0)));
+				}
+
+				if (blocking) {
+					accepting.await(5L, TimeUnit.SECONDS);
+				}
+			} catch (final ServiceException | InterruptedException e) {
+				exchange.sendResponseHeaders(500, -1);
+				exchange.close();
+				return;
+			}
+
+			exchange.sendResponseHeaders(202, -1);
+			exchange.close();
+		});
+		server.start();
+	}
+
+
+	@After
+	public void tearDown() {
+		accepting.countDown();
+		server.stop(0);
+		EventPublisher.get().setLookup(null);
+		System.clearProperty(Configuration.CLIENT_ONEWAY_CAPACITY);
+		System.clearProperty(Configuration.CLIENT_ONEWAY_BATCH_SIZE);
+	}
+
+
+	private List<ServiceDescriptor> subscriber(final String topic) {
+		lookups.incrementAndGet();
+
+		final ServiceDescriptor serviceDescriptor = ServiceDescriptor.create("listener-" + topic, "1", "ListenerImpl", Listener.class.getName());
+		serviceDescriptor.setHost("127.0.0.1");
+		serviceDescriptor.setPort(server.getAddress().getPort());
+		serviceDescriptor.setServiceUri(WebCall.create("listener/1", "POST"));
+		serviceDescriptor.setSupportedMimeTypes(MarshallerFactory.getSupportedMimeTypes());
+		serviceDescriptor.addMethods(Listener.class.getMethods());
+
+		return new ArrayList<>(Arrays.asList(serviceDescriptor));
+	}
+
+
+	private List<String> receive(final int count) throws InterruptedException {
+		final List<String> received = new ArrayList<>();
+
+		while (received.size() < count) {
+			final String event = events.poll(5L, TimeUnit.SECONDS);
+
+			if (event == null) {
+				break;
+			}
+
+			received.add(event);
+		}
+
+		return received;
+	}
+
+
+	@Test
+	public void testProvidedToTheEventBus() {
+		// no publisher is installed, so the event bus finds the one of this module
+		assertThat(EventBus.hasPublisher()).isTrue();
+	}
+
+
+	@Test
+	public void testPublishDoesNotWaitForTheSubscribers() {
+		final long dropped = EventPublisher.get().getDroppedEvents();
+		final long start = System.nanoTime();
+
+		for (int i = 0; i < 100; i++) {
+			assertThat(EventBus.publish("events-test", "event " + i)).isTrue();
+		}
+
+		assertThat(System.nanoTime() - start).isLessThan(5_000_000_000L);
+		assertThat(EventPublisher.get().getDroppedEvents()).isEqualTo(dropped);
+	}
+
+
+	@Test
+	public void testDeliversEventsWaitingForTheSubscribersInOrder() throws Exception {
+		final CountDownLatch lookedUp = new CountDownLatch(1);
+		EventPublisher.get().setLookup(topic -> {
+			try {
+				lookedUp.await(5L, TimeUnit.SECONDS);
+			} catch (final InterruptedException e) {
+				throw new ServiceException("interrupted", e);
+			}
+
+			return subscriber(topic);
+		});
+		final long dropped = EventPublisher.get().getDroppedEvents();
+
+		for (int i = 0; i < 5; i++) {
+			assertThat(EventBus.publish("events-ordered", "event " + i)).isTrue();
+		}
+
+		// the events wait for the subscribers
+		assertThat(events.poll(200L, TimeUnit.MILLISECONDS)).isNull();
+		lookedUp.countDown();
+
+		for (int i = 5; i < 10; i++) {
+			assertThat(EventBus.publish("events-ordered", "event " + i)).isTrue();
+		}
+
+		assertThat(receive(10)).containsExactly("event 0", "event 1", "event 2", "event 3", "event 4", "event 5", "event 6", "event 7", "event 8", "event 9");
+		assertThat(lookups.get()).isEqualTo(1);
+		assertThat(EventPublisher.get().getDroppedEvents()).isEqualTo(dropped);
+	}
+
+
+	@Test
+	public void testKeepsEventsWaitingUntilTheSubscribersCouldBeRequested() throws Exception {
+		final AtomicInteger failures = new AtomicInteger();
+		EventPublisher.get().setLookup(topic -> {
+			if (failures.getAndIncrement() == 0) {
+				throw new ServiceException("registry unavailable");
+			}
+
+			return subscriber(topic);
+		});
+		final long dropped = EventPublisher.get().getDroppedEvents();
+
+		EventBus.publish("events-retried", "event 0");
+		EventBus.publish("events-retried", "event 1");
+
+		assertThat(receive(2)).containsExactly("event 0", "event 1");
+		assertThat(failures.get()).isEqualTo(2);
+		assertThat(EventPublisher.get().getDroppedEvents()).isEqualTo(dropped);
+	}
+
+
+	@Test
+	public void testCountsEventsDroppedByAFullSubscriber() throws Exception {
+		System.setProperty(Configuration.CLIENT_ONEWAY_CAPACITY, "1");
+		System.setProperty(Configuration.CLIENT_ONEWAY_BATCH_SIZE, "1");
+		EventPublisher.get().setLookup(this::subscriber);
+		blocking = true;
+		final long dropped = EventPublisher.get().getDroppedEvents();
+
+		for (int i = 0; i < 10; i++) {
+			EventBus.publish("events-dropped", "event " + i);
+		}
+
+		// the subscriber holds the first event and at most one more waits in its queue
+		assertThat(events.poll(5L, TimeUnit.SECONDS)).isEqualTo("event 0");
+		accepting.countDown();
+		final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+
+		while (1 + events.size() + EventPublisher.get().getDroppedEvents() - dropped < 10L && System.nanoTime() < end) {
+			Thread.sleep(10L);
+		}
+
+		assertThat(1 + events.size() + EventPublisher.get().getDroppedEvents() - dropped).isEqualTo(10L);
+		assertThat(EventPublisher.get().getDroppedEvents() - dropped).isGreaterThanOrEqualTo(8L);
+	}
+}
@@ -0,0 +1,72 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.airepublic.microverse.core.common.Configuration;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+
+public class FailoverInstancesTest {
+	private final AtomicInteger requests = new AtomicInteger();
+
+
+	private List<ServiceDescriptor> request(final String serviceId, final String serviceVersion) {
+		requests.incrementAndGet();
+		return new ArrayList<>(Arrays.asList(ServiceDescriptor.create(serviceId, serviceVersion, "Impl1", "Api"), ServiceDescriptor.create(serviceId, serviceVersion, "Impl2", "Api")));
+	}
+
+
+	@After
+	public void tearDown() {
+		System.clearProperty(Configuration.CLIENT_FAILOVER_INSTANCES_TTL);
+		FailoverInstances.setLookup(null);
+	}
+
+
+	@Test
+	public void testReusesTheInstancesWithinTheTimeToLive() {
+		FailoverInstances.setLookup(this::request);
+
+		final List<ServiceDescriptor> instances = FailoverInstances.get("api", "1");
+		instances.clear();
+
+		assertThat(FailoverInstances.get("api", "1")).hasSize(2);
+		assertThat(requests.get()).isEqualTo(1);
+
+		assertThat(FailoverInstances.get("api", "2")).hasSize(2);
+		assertThat(requests.get()).isEqualTo(2);
+	}
+
+
+	@Test
+	public void testRequestsTheInstancesAgainOnceExpired() throws Exception {
+		System.setProperty(Configuration.CLIENT_FAILOVER_INSTANCES_TTL, "10");
+		FailoverInstances.setLookup(this::request);
+
+		FailoverInstances.get("api", "1");
+		Thread.sleep(20L);
+		FailoverInstances.get("api", "1");
+
+		assertThat(requests.get()).isEqualTo(2);
+	}
+}
@@ -0,0 +1,170 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class IteratorPublisherTest {
+	private final AtomicInteger closed = new AtomicInteger();
+
+	/**
+	 * Subscriber recording the signals.
+	 */
+	private static class RecordingSubscriber implements Flow.Subscriber<String> {
+		private final List<String> elements = new CopyOnWriteArrayList<>();
+		private final CountDownLatch terminated = new CountDownLatch(1);
+		private volatile CountDownLatch received;
+		private volatile Flow.Subscription subscription;
+		private volatile Throwable error;
+		private volatile boolean completed;
+
+
+		RecordingSubscriber(final int expectedElements) {
+			received = new CountDownLatch(expectedElements);
+		}
+
+
+		@Override
+		public void onSubscribe(final Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+
+		@Override
+		public void onNext(final String item) {
+			elements.add(item);
+			received.countDown();
+		}
+
+
+		@Override
+		public void onError(final Throwable throwable) {
+			error = throwable;
+			terminated.countDown();
+		}
+
+
+		@Override
+		public void onComplete() {
+			completed = true;
+			terminated.countDown();
+		}
+
+
+		void awaitElements() throws InterruptedException {
+			assertThat(received.await(5, TimeUnit.SECONDS)).isTrue();
+		}
+
+
+		void awaitTermination() throws InterruptedException {
+			assertThat(terminated.await(5, TimeUnit.SECONDS)).isTrue();
+		}
+	}
+
+
+	@Test
+	public void testDeliversOnlyRequestedElements() throws Exception {
+		final IteratorPublisher<String> publisher = new IteratorPublisher<>(Arrays.asList("a", "b", "c").iterator(), closed::incrementAndGet);
+		final RecordingSubscriber subscriber = new RecordingSubscriber(2);
+		publisher.subscribe(subscriber);
+
+		subscriber.subscription.request(2);
+		subscriber.awaitElements();
+		TimeUnit.MILLISECONDS.sleep(50L);
+
+		assertThat(subscriber.elements).containsExactly("a", "b");
+		assertThat(subscriber.completed).isFalse();
+
+		subscriber.subscription.request(5);
+		subscriber.awaitTermination();
+
+		assertThat(subscriber.elements).containsExactly("a", "b", "c");
+		assertThat(subscriber.completed).isTrue();
+		assertThat(subscriber.error).isNull();
+	}
+
+
+	@Test
+	public void testCancelClosesTheStream() throws Exception {
+		final IteratorPublisher<String> publisher = new IteratorPublisher<>(Arrays.asList("a", "b").iterator(), closed::incrementAndGet);
+		final RecordingSubscriber subscriber = new RecordingSubscriber(1);
+		publisher.subscribe(subscriber);
+
+		subscriber.subscription.request(1);
+		subscriber.awaitElements();
+		subscriber.subscription.cancel();
+		subscriber.subscription.cancel();
+		subscriber.subscription.request(1);
+		TimeUnit.MILLISECONDS.sleep(50L);
+
+		assertThat(closed.get()).isEqualTo(1);
+		assertThat(subscriber.elements).containsExactly("a");
+		assertThat(subscriber.completed).isFalse();
+	}
+
+
+	@Test
+	public void testFailingStreamSignalsErrorAndCloses() throws Exception {
+		final Iterator<String> failing = new Iterator<String>() {
+			@Override
+			public boolean hasNext() {
+				throw new IllegalStateException("The remote result stream failed: boom");
+			}
+
+
+			@Override
+			public String next() {
+				return null;
+			}
+		};
+		final IteratorPublisher<String> publisher = new IteratorPublisher<>(failing, closed::incrementAndGet);
+		final RecordingSubscriber subscriber = new RecordingSubscriber(0);
+		publisher.subscribe(subscriber);
+
+		subscriber.subscription.request(1);
+		subscriber.awaitTermination();
+
+		assertThat(subscriber.error).isInstanceOf(IllegalStateException.class).hasMessageContaining("boom");
+		assertThat(closed.get()).isEqualTo(1);
+	}
+
+
+	@Test
+	public void testRejectsNonPositiveRequestsAndSecondSubscriber() throws Exception {
+		final IteratorPublisher<String> publisher = new IteratorPublisher<>(Arrays.asList("a").iterator(), closed::incrementAndGet);
+		final RecordingSubscriber subscriber = new RecordingSubscriber(0);
+		publisher.subscribe(subscriber);
+
+		subscriber.subscription.request(0);
+
+		assertThat(subscriber.error).isInstanceOf(IllegalArgumentException.class);
+		assertThat(closed.get()).isEqualTo(1);
+
+		final RecordingSubscriber second = new RecordingSubscriber(0);
+		publisher.subscribe(second);
+
+		assertThat(second.error).isInstanceOf(IllegalStateException.class);
+	}
+}
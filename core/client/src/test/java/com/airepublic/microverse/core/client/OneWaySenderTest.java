@@ -0,0 +1,231 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.airepublic.microverse.core.common.Configuration;
+import com.airepublic.microverse.core.common.ServiceUtils;
+import com.airepublic.microverse.core.common.marshaller.MarshallerFactory;
+import com.airepublic.microverse.core.descriptor.MethodCall;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.descriptor.WebCall;
+import com.airepublic.microverse.core.service.api.Priority;
+import com.sun.net.httpserver.HttpServer;
+
+public class OneWaySenderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	/** The batches received by the server as priority and number of calls. */
+	private final BlockingQueue<String> batches = new LinkedBlockingQueue<>();
+	/** The status codes the server answers with, 202 once it is empty. */
+	private final BlockingQueue<Integer> statuses = new LinkedBlockingQueue<>();
+	private HttpServer server;
+
+
+	@Before
+	public void setUp() throws IOException {
+		// no registry knows other instances to fail over to
+		FailoverInstances.setLookup((serviceId, serviceVersion) -> new ArrayList<>());
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", exchange -> {
+			try (InputStream is = exchange.getRequestBody()) {
+				while (is.read() != -1) {
+					// consume the calls
+				}
+			}
+
+			batches.add(exchange.getRequestHeaders().getFirst(ServiceUtils.HEADER_PRIORITY) + ":" + exchange.getRequestHeaders().getFirst(ServiceUtils.HEADER_ONE_WAY));
+			final Integer status = statuses.poll();
+			exchange.getResponseHeaders().add("Retry-After", "0");
+			exchange.sendResponseHeaders(status != null ? status : 202, -1);
+			exchange.close();
+		});
+		server.start();
+	}
+
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+		System.clearProperty(Configuration.CLIENT_ONEWAY_BATCH_SIZE);
+		System.clearProperty(Configuration.CLIENT_ONEWAY_LINGER);
+		System.clearProperty(Configuration.CLIENT_ONEWAY_OUTBOX);
+		System.clearProperty(Configuration.CLIENT_ONEWAY_IDLE_TIMEOUT);
+		FailoverInstances.setLookup(null);
+	}
+
+
+	private ServiceDescriptor instance(final String serviceId) {
+		final ServiceDescriptor serviceDescriptor = ServiceDescriptor.create(serviceId, "1", "LogImpl", "Log");
+		serviceDescriptor.setHost("127.0.0.1");
+		serviceDescriptor.setPort(server.getAddress().getPort());
+		serviceDescriptor.setServiceUri(WebCall.create(serviceId + "/1", "POST"));
+		serviceDescriptor.setSupportedMimeTypes(MarshallerFactory.getSupportedMimeTypes());
+
+		return serviceDescriptor;
+	}
+
+
+	private static MethodCall call(final int i) {
+		return MethodCall.create(0, 0, "log", "(Ljava/lang/String;)V", new ArrayList<>(Arrays.asList(new byte[] { (byte) i })));
+	}
+
+
+	private List<String> receive(final int count) throws InterruptedException {
+		final List<String> received = new ArrayList<>();
+
+		while (received.size() < count) {
+			final String batch = batches.poll(5L, TimeUnit.SECONDS);
+
+			if (batch == null) {
+				break;
+			}
+
+			received.add(batch);
+		}
+
+		return received;
+	}
+
+
+	private static void awaitStopped(final OneWaySender sender, final ServiceDescriptor serviceDescriptor) throws InterruptedException {
+		final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+
+		while (OneWaySender.get(serviceDescriptor) == sender && System.nanoTime() < end) {
+			Thread.sleep(10L);
+		}
+	}
+
+
+	@Test
+	public void testCoalescesCallsIntoBatches() throws Exception {
+		System.setProperty(Configuration.CLIENT_ONEWAY_BATCH_SIZE, "3");
+		System.setProperty(Configuration.CLIENT_ONEWAY_LINGER, "500");
+		final OneWaySender sender = OneWaySender.get(instance("batches"));
+
+		for (int i = 0; i < 7; i++) {
+			assertThat(sender.offer(call(i), Priority.NORMAL)).isTrue();
+		}
+
+		assertThat(receive(3)).containsExactly("NORMAL:3", "NORMAL:3", "NORMAL:1");
+	}
+
+
+	@Test
+	public void testSplitsBatchesByPriority() throws Exception {
+		System.setProperty(Configuration.CLIENT_ONEWAY_LINGER, "500");
+		final OneWaySender sender = OneWaySender.get(instance("priorities"));
+
+		sender.offer(call(0), Priority.NORMAL);
+		sender.offer(call(1), Priority.NORMAL);
+		sender.offer(call(2), Priority.HIGH);
+		sender.offer(call(3), Priority.HIGH);
+		sender.offer(call(4), Priority.NORMAL);
+
+		assertThat(receive(3)).containsExactly("NORMAL:2", "HIGH:2", "NORMAL:1");
+	}
+
+
+	@Test
+	public void testRetriesBatchesTheServiceDidNotAccept() throws Exception {
+		System.setProperty(Configuration.CLIENT_ONEWAY_LINGER, "100");
+		statuses.add(503);
+		final OneWaySender sender = OneWaySender.get(instance("retries"));
+
+		sender.offer(call(0), Priority.LOW);
+		sender.offer(call(1), Priority.LOW);
+
+		assertThat(receive(2)).containsExactly("LOW:2", "LOW:2");
+		assertThat(batches.poll(500L, TimeUnit.MILLISECONDS)).isNull();
+	}
+
+
+	@Test
+	public void testDropsBatchesForInstancesNoLongerKnown() throws Exception {
+		final ServiceDescriptor other = instance("unknown");
+		other.setPort(1);
+		FailoverInstances.setLookup((serviceId, serviceVersion) -> new ArrayList<>(Arrays.asList(other)));
+		statuses.add(503);
+		statuses.add(503);
+		statuses.add(503);
+		final OneWaySender sender = OneWaySender.getForInstance(instance("unknown"));
+
+		sender.offer(call(0), Priority.LOW);
+
+		assertThat(receive(1)).containsExactly("LOW:1");
+		assertThat(batches.poll(1L, TimeUnit.SECONDS)).isNull();
+	}
+
+
+	@Test
+	public void testAcknowledgesSentCallsAndClosesTheIdleOutbox() throws Exception {
+		System.setProperty(Configuration.CLIENT_ONEWAY_OUTBOX, folder.getRoot().getAbsolutePath());
+		System.setProperty(Configuration.CLIENT_ONEWAY_IDLE_TIMEOUT, "100");
+		statuses.add(503);
+		final ServiceDescriptor serviceDescriptor = instance("outbox");
+		final OneWaySender sender = OneWaySender.get(serviceDescriptor);
+
+		sender.offer(call(0), Priority.NORMAL);
+		sender.offer(call(1), Priority.NORMAL);
+
+		assertThat(receive(2)).containsExactly("NORMAL:2", "NORMAL:2");
+		// the sender which replaces the stopped one must not open the outbox again
+		System.clearProperty(Configuration.CLIENT_ONEWAY_OUTBOX);
+		awaitStopped(sender, serviceDescriptor);
+
+		// the outbox has been released and holds no unacknowledged calls
+		final Path dir = folder.getRoot().toPath().resolve("outbox_1");
+
+		try (SegmentLog outbox = SegmentLog.open(dir, 1024 * 1024, SegmentLog.FsyncPolicy.NEVER, 0L)) {
+			assertThat(outbox.read(0L)).isNull();
+		}
+	}
+
+
+	@Test
+	public void testStartsANewSenderAfterTheIdleOneStopped() throws Exception {
+		System.setProperty(Configuration.CLIENT_ONEWAY_IDLE_TIMEOUT, "100");
+		final ServiceDescriptor serviceDescriptor = instance("idle");
+		final OneWaySender sender = OneWaySender.get(serviceDescriptor);
+
+		sender.offer(call(0), Priority.NORMAL);
+		assertThat(receive(1)).containsExactly("NORMAL:1");
+		awaitStopped(sender, serviceDescriptor);
+
+		final OneWaySender restarted = OneWaySender.get(serviceDescriptor);
+		assertThat(restarted).isNotSameAs(sender);
+
+		// calls to the stopped sender are passed on to its replacement
+		sender.offer(call(1), Priority.NORMAL);
+		assertThat(receive(1)).containsExactly("NORMAL:1");
+	}
+}
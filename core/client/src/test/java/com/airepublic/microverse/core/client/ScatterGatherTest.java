@@ -0,0 +1,191 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.airepublic.microverse.core.common.marshaller.MarshallerFactory;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.descriptor.WebCall;
+import com.airepublic.microverse.core.exception.ServiceUnavailableException;
+import com.sun.net.httpserver.HttpServer;
+
+public class ScatterGatherTest {
+	public interface Echo {
+		String echo(String value);
+	}
+
+
+	private static ServiceDescriptor instance(final int port) {
+		final ServiceDescriptor serviceDescriptor = ServiceDescriptor.create("echo", "1", "EchoImpl", Echo.class.getName());
+		serviceDescriptor.setHost("127.0.0.1");
+		serviceDescriptor.setPort(port);
+		serviceDescriptor.setServiceUri(WebCall.create("echo/1", "POST"));
+		serviceDescriptor.setSupportedMimeTypes(MarshallerFactory.getSupportedMimeTypes());
+
+		return serviceDescriptor;
+	}
+
+
+	/**
+	 * Answers with the port of the instance after sleeping the milliseconds given by the instance
+	 * or fails if the instance has a negative delay.
+	 */
+	private static String answer(final ServiceDescriptor instance, final long delay) {
+		if (delay < 0) {
+			throw new UndeclaredThrowableException(new IOException("instance " + instance.getPort() + " failed"));
+		}
+
+		try {
+			Thread.sleep(delay);
+		} catch (final InterruptedException e) {
+			throw new IllegalStateException("cancelled");
+		}
+
+		return String.valueOf(instance.getPort());
+	}
+
+
+	@Test
+	public void testReducesResultsInTheOrderOfTheInstances() throws Exception {
+		final List<ServiceDescriptor> instances = Arrays.asList(instance(1), instance(2), instance(3));
+		final long[] delays = { 50L, 0L, 20L };
+
+		final GatheredResult<List<String>> result = ScatterGather.execute(instances, i -> i, (final ServiceDescriptor i) -> answer(i, delays[i.getPort() - 1]), Collectors.toList(), 0L, 0);
+
+		assertThat(result.getResult()).containsExactly("1", "2", "3");
+		assertThat(result.getInstances()).isEqualTo(3);
+		assertThat(result.getSucceeded()).isEqualTo(3);
+		assertThat(result.isComplete()).isTrue();
+	}
+
+
+	@Test
+	public void testStopsWhenTheQuorumIsReached() throws Exception {
+		final List<ServiceDescriptor> instances = Arrays.asList(instance(1), instance(2), instance(3));
+		final long[] delays = { 10000L, 0L, 0L };
+		final long start = System.nanoTime();
+
+		final GatheredResult<List<String>> result = ScatterGather.execute(instances, i -> i, (final ServiceDescriptor i) -> answer(i, delays[i.getPort() - 1]), Collectors.toList(), 0L, 2);
+
+		assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5000L);
+		assertThat(result.getResult()).containsExactly("2", "3");
+		assertThat(result.getMissing()).containsExactly(instances.get(0));
+		assertThat(result.getFailures()).isEmpty();
+		assertThat(result.isComplete()).isFalse();
+	}
+
+
+	@Test
+	public void testFailuresDoNotCountForTheQuorum() throws Exception {
+		final List<ServiceDescriptor> instances = Arrays.asList(instance(1), instance(2), instance(3));
+		final long[] delays = { -1L, 100L, 200L };
+
+		final GatheredResult<List<String>> result = ScatterGather.execute(instances, i -> i, (final ServiceDescriptor i) -> answer(i, delays[i.getPort() - 1]), Collectors.toList(), 0L, 2);
+
+		assertThat(result.getResult()).containsExactly("2", "3");
+		assertThat(result.getFailures()).hasSize(1);
+		assertThat(result.getFailures().get(instances.get(0))).isInstanceOf(IOException.class).hasMessage("instance 1 failed");
+		assertThat(result.getMissing()).isEmpty();
+	}
+
+
+	@Test
+	public void testReturnsPartialResultsAfterTheTimeout() throws Exception {
+		final List<ServiceDescriptor> instances = Arrays.asList(instance(1), instance(2), instance(3));
+		final long[] delays = { 0L, 10000L, -1L };
+		final long start = System.nanoTime();
+
+		final GatheredResult<String> result = ScatterGather.execute(instances, i -> i, (final ServiceDescriptor i) -> answer(i, delays[i.getPort() - 1]), Collectors.joining(","), TimeUnit.MILLISECONDS.toNanos(200L), 0);
+
+		assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isBetween(150L, 5000L);
+		assertThat(result.getResult()).isEqualTo("1");
+		assertThat(result.getSucceeded()).isEqualTo(1);
+		assertThat(result.getFailures()).containsOnlyKeys(instances.get(2));
+		assertThat(result.getMissing()).containsExactly(instances.get(1));
+	}
+
+
+	@Test
+	public void testCancelsTheCallsStillRunning() throws Exception {
+		final List<ServiceDescriptor> instances = Arrays.asList(instance(1), instance(2));
+		final CountDownLatch running = new CountDownLatch(1);
+		final CountDownLatch cancelled = new CountDownLatch(1);
+
+		final GatheredResult<List<String>> result = ScatterGather.execute(instances, i -> i, (final ServiceDescriptor i) -> {
+			if (i.getPort() == 1) {
+				// answer once the other call is running, so it is cancelled and not just skipped
+				try {
+					running.await(5, TimeUnit.SECONDS);
+				} catch (final InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+
+				return "1";
+			}
+
+			running.countDown();
+
+			try {
+				Thread.sleep(10000L);
+			} catch (final InterruptedException e) {
+				cancelled.countDown();
+			}
+
+			return "2";
+		}, Collectors.toList(), 0L, 1);
+
+		assertThat(result.getResult()).containsExactly("1");
+		assertThat(cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+
+	@Test
+	public void testInstanceClientsDoNotFailOver() throws Exception {
+		final AtomicInteger requests = new AtomicInteger();
+		final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", exchange -> {
+			requests.incrementAndGet();
+			exchange.getResponseHeaders().add("Retry-After", "1");
+			exchange.sendResponseHeaders(503, -1);
+			exchange.close();
+		});
+		server.start();
+
+		try {
+			final ServiceDescriptor instance = instance(server.getAddress().getPort());
+			instance.addMethods(Echo.class.getMethods());
+
+			final GatheredResult<List<String>> result = ServiceLookup.create().scatterGather(Arrays.asList(instance), (final Echo echo) -> echo.echo("x"), Collectors.toList(), 5L, TimeUnit.SECONDS, 0);
+
+			assertThat(result.getSucceeded()).isZero();
+			assertThat(result.getFailures().get(instance)).isInstanceOf(ServiceUnavailableException.class);
+			assertThat(requests.get()).isEqualTo(1);
+		} finally {
+			server.stop(0);
+		}
+	}
+}
@@ -0,0 +1,232 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.airepublic.microverse.core.client.SegmentLog.FsyncPolicy;
+
+public class SegmentLogTest {
+	private static final int SEGMENT_SIZE = 64;
+	private static final long NO_WAIT = TimeUnit.MILLISECONDS.toNanos(10L);
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+
+	private SegmentLog open(final Path dir) throws IOException {
+		return SegmentLog.open(dir, SEGMENT_SIZE, FsyncPolicy.ALWAYS, 0L);
+	}
+
+
+	/** Creates a record content of 20 bytes, so two records fit into a segment. */
+	private static byte[] record(final int i) {
+		return String.format("record-%013d", i).getBytes(StandardCharsets.US_ASCII);
+	}
+
+
+	private static String read(final SegmentLog log) throws Exception {
+		final SegmentLog.Record record = log.read(NO_WAIT);
+
+		return record != null ? record.getOffset() + ":" + new String(record.getContent(), StandardCharsets.US_ASCII) : null;
+	}
+
+
+	private static List<String> segments(final Path dir) throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.map(file -> file.getFileName().toString()).filter(name -> name.endsWith(".log")).sorted().collect(Collectors.toList());
+		}
+	}
+
+
+	@Test
+	public void testAppendAndRead() throws Exception {
+		try (SegmentLog log = open(folder.getRoot().toPath())) {
+			assertThat(log.append(record(0))).isEqualTo(0L);
+			assertThat(log.append(record(1))).isEqualTo(1L);
+
+			assertThat(read(log)).isEqualTo("0:" + new String(record(0), StandardCharsets.US_ASCII));
+			assertThat(read(log)).isEqualTo("1:" + new String(record(1), StandardCharsets.US_ASCII));
+			assertThat(read(log)).isNull();
+		}
+	}
+
+
+	@Test
+	public void testRollsSegments() throws Exception {
+		final Path dir = folder.getRoot().toPath();
+
+		try (SegmentLog log = open(dir)) {
+			for (int i = 0; i < 5; i++) {
+				log.append(record(i));
+			}
+
+			assertThat(segments(dir)).containsExactly("00000000000000000000.log", "00000000000000000002.log", "00000000000000000004.log");
+
+			for (int i = 0; i < 5; i++) {
+				assertThat(read(log)).startsWith(i + ":");
+			}
+
+			assertThat(read(log)).isNull();
+		}
+	}
+
+
+	@Test(expected = IOException.class)
+	public void testRejectsRecordsLargerThanASegment() throws Exception {
+		try (SegmentLog log = open(folder.getRoot().toPath())) {
+			log.append(new byte[SEGMENT_SIZE]);
+		}
+	}
+
+
+	@Test
+	public void testResumesAfterTheAcknowledgedRecordWhenReopened() throws Exception {
+		final Path dir = folder.getRoot().toPath();
+
+		try (SegmentLog log = open(dir)) {
+			for (int i = 0; i < 3; i++) {
+				log.append(record(i));
+			}
+
+			read(log);
+			read(log);
+			log.acknowledge(1L);
+		}
+
+		try (SegmentLog log = open(dir)) {
+			assertThat(read(log)).startsWith("2:");
+			assertThat(read(log)).isNull();
+			assertThat(log.append(record(3))).isEqualTo(3L);
+			assertThat(read(log)).startsWith("3:");
+		}
+	}
+
+
+	@Test
+	public void testDeletesAcknowledgedSegments() throws Exception {
+		final Path dir = folder.getRoot().toPath();
+
+		try (SegmentLog log = open(dir)) {
+			for (int i = 0; i < 5; i++) {
+				log.append(record(i));
+			}
+
+			for (int i = 0; i < 4; i++) {
+				read(log);
+			}
+
+			// the segment of the unacknowledged record 3 is kept
+			log.acknowledge(2L);
+			assertThat(segments(dir)).containsExactly("00000000000000000002.log", "00000000000000000004.log");
+
+			log.acknowledge(3L);
+			assertThat(segments(dir)).containsExactly("00000000000000000004.log");
+		}
+
+		try (SegmentLog log = open(dir)) {
+			assertThat(read(log)).startsWith("4:");
+		}
+	}
+
+
+	@Test
+	public void testKeepsTheLastSegmentWhenAllRecordsAreAcknowledged() throws Exception {
+		final Path dir = folder.getRoot().toPath();
+
+		try (SegmentLog log = open(dir)) {
+			for (int i = 0; i < 4; i++) {
+				log.append(record(i));
+				read(log);
+			}
+
+			log.acknowledge(3L);
+			assertThat(segments(dir)).containsExactly("00000000000000000002.log");
+		}
+
+		try (SegmentLog log = open(dir)) {
+			assertThat(read(log)).isNull();
+			assertThat(log.append(record(4))).isEqualTo(4L);
+		}
+	}
+
+
+	@Test
+	public void testDiscardsTornRecordAtTheEnd() throws Exception {
+		final Path dir = folder.getRoot().toPath();
+
+		try (SegmentLog log = open(dir)) {
+			log.append(record(0));
+			log.append(record(1));
+		}
+
+		// corrupt the content of the second record as if it was only partly written
+		try (FileChannel channel = FileChannel.open(dir.resolve("00000000000000000000.log"), StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 0 }), 28 + 8 + 16);
+		}
+
+		try (SegmentLog log = open(dir)) {
+			assertThat(read(log)).startsWith("0:");
+			assertThat(read(log)).isNull();
+
+			// the torn record is overwritten by the next record
+			assertThat(log.append(record(2))).isEqualTo(1L);
+			assertThat(read(log)).isEqualTo("1:" + new String(record(2), StandardCharsets.US_ASCII));
+		}
+
+		try (SegmentLog log = open(dir)) {
+			assertThat(read(log)).startsWith("0:");
+			assertThat(read(log)).startsWith("1:record-0000000000002");
+		}
+	}
+
+
+	@Test
+	public void testDiscardsRecordWithTornHeader() throws Exception {
+		final Path dir = folder.getRoot().toPath();
+
+		try (SegmentLog log = open(dir)) {
+			log.append(record(0));
+		}
+
+		// a length was written without the record
+		try (FileChannel channel = FileChannel.open(dir.resolve("00000000000000000000.log"), StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 20 }), 28);
+		}
+
+		try (SegmentLog log = open(dir)) {
+			assertThat(read(log)).startsWith("0:");
+			assertThat(read(log)).isNull();
+
+			// a shorter record at the same position must not be mistaken for the torn one
+			assertThat(log.append(new byte[] { 1, 2, 3 })).isEqualTo(1L);
+			assertThat(log.read(NO_WAIT).getContent()).containsExactly((byte) 1, (byte) 2, (byte) 3);
+		}
+	}
+}
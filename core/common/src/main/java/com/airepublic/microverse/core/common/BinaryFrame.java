@@ -0,0 +1,253 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A frame of the binary service protocol. Service calls are sent as request frames over
+ * persistent connections and are answered by a response frame with the same request-id, so many
+ * calls can be multiplexed over one connection and answered in any order. A frame is written as
+ * its length (4 bytes, big endian) followed by the request-id, the type, the attributes as UTF-8
+ * strings prefixed by their length (2 bytes), a numeric value and the content:
+ * <ul>
+ * <li>{@link #REQUEST}: attributes service-URI, content-type, accepted mime-type and priority,
+ * value is the timeout in milliseconds or -1, content is the serialized method call</li>
+ * <li>{@link #RESULT}: attribute content-type (empty if there is no result), content is the
+ * serialized result</li>
+ * <li>{@link #ERROR} and {@link #TIMEOUT}: attribute message</li>
+ * <li>{@link #UNAVAILABLE}: attribute message, value is the retry-after in seconds</li>
+ * <li>{@link #ONE_WAY}: attributes service-URI, content-type and priority, content is the
+ * serialized batch of one-way method calls, answered by an empty {@link #RESULT} once the calls
+ * have been queued</li>
+ * </ul>
+ * Service sessions over WebSocket carry one frame per message and additionally use:
+ * <ul>
+ * <li>{@link #REQUEST}: a fifth attribute with the number of elements of an element stream the
+ * client accepts before it grants more</li>
+ * <li>{@link #ELEMENT}: content is one serialized element of an element stream</li>
+ * <li>{@link #END}: the element stream of the request has ended</li>
+ * <li>{@link #CREDIT}: value is the number of further elements the client accepts for the request
+ * or, with request-id 0, the number of further events</li>
+ * <li>{@link #CANCEL}: the client is no longer interested in the element stream of the request</li>
+ * <li>{@link #EVENT}: request-id 0, attribute content-type, content is the serialized event
+ * pushed by the service</li>
+ * </ul>
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public final class BinaryFrame {
+	public static final byte REQUEST = 1;
+	public static final byte RESULT = 2;
+	public static final byte ERROR = 3;
+	public static final byte TIMEOUT = 4;
+	public static final byte UNAVAILABLE = 5;
+	public static final byte ELEMENT = 6;
+	public static final byte END = 7;
+	public static final byte CREDIT = 8;
+	public static final byte CANCEL = 9;
+	public static final byte EVENT = 10;
+	public static final byte ONE_WAY = 11;
+	private static final byte[] NO_CONTENT = new byte[0];
+	private final int requestId;
+	private final byte type;
+	private final String[] attributes;
+	private final long value;
+	private final byte[] content;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param requestId the request-id
+	 * @param type the frame type
+	 * @param attributes the attributes
+	 * @param value the numeric value
+	 * @param content the content or <code>null</code>
+	 */
+	public BinaryFrame(final int requestId, final byte type, final String[] attributes, final long value, final byte[] content) {
+		this.requestId = requestId;
+		this.type = type;
+		this.attributes = attributes;
+		this.value = value;
+		this.content = content != null ? content : NO_CONTENT;
+	}
+
+
+	/**
+	 * Gets the request-id.
+	 *
+	 * @return the request-id
+	 */
+	public int getRequestId() {
+		return requestId;
+	}
+
+
+	/**
+	 * Gets the frame type.
+	 *
+	 * @return the frame type
+	 */
+	public byte getType() {
+		return type;
+	}
+
+
+	/**
+	 * Gets the attribute with the specified index.
+	 *
+	 * @param index the index
+	 * @return the attribute or <code>null</code> if it is empty or missing
+	 */
+	public String getAttribute(final int index) {
+		return index < attributes.length && !attributes[index].isEmpty() ? attributes[index] : null;
+	}
+
+
+	/**
+	 * Gets the numeric value.
+	 *
+	 * @return the value
+	 */
+	public long getValue() {
+		return value;
+	}
+
+
+	/**
+	 * Gets the content.
+	 *
+	 * @return the content (never <code>null</code>)
+	 */
+	public byte[] getContent() {
+		return content;
+	}
+
+
+	/**
+	 * Writes the frame to the output-stream. Threads writing frames to the same output-stream
+	 * concurrently must synchronize on it, so the frames don't interleave.
+	 *
+	 * @param outputStream the output-stream
+	 * @throws IOException if the frame could not be written
+	 */
+	public void write(final OutputStream outputStream) throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+		final DataOutputStream out = new DataOutputStream(buffer);
+		out.writeInt(0);
+		out.writeInt(requestId);
+		out.writeByte(type);
+		out.writeByte(attributes.length);
+
+		for (final String attribute : attributes) {
+			final byte[] bytes = (attribute != null ? attribute : "").getBytes(StandardCharsets.UTF_8);
+			final int length = Math.min(bytes.length, 0xFFFF);
+			out.writeShort(length);
+			out.write(bytes, 0, length);
+		}
+
+		out.writeLong(value);
+
+		final byte[] head = buffer.toByteArray();
+		final int length = head.length - 4 + content.length;
+		head[0] = (byte) (length >>> 24);
+		head[1] = (byte) (length >>> 16);
+		head[2] = (byte) (length >>> 8);
+		head[3] = (byte) length;
+
+		outputStream.write(head);
+		outputStream.write(content);
+	}
+
+
+	/**
+	 * Gets the frame as written by {@link #write(OutputStream)}.
+	 *
+	 * @return the bytes of the frame
+	 */
+	public byte[] toByteArray() {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 + content.length);
+
+		try {
+			write(buffer);
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+
+		return buffer.toByteArray();
+	}
+
+
+	/**
+	 * Reads the frame from the bytes written by {@link #write(OutputStream)}.
+	 *
+	 * @param bytes the bytes of the frame
+	 * @return the {@link BinaryFrame}
+	 * @throws IOException if the bytes don't contain a valid frame
+	 */
+	public static BinaryFrame read(final byte[] bytes) throws IOException {
+		return read(new DataInputStream(new ByteArrayInputStream(bytes)), bytes.length);
+	}
+
+
+	/**
+	 * Reads the next frame from the input-stream.
+	 *
+	 * @param in the input-stream
+	 * @param maxLength the maximum length of a frame
+	 * @return the {@link BinaryFrame}
+	 * @throws java.io.EOFException if the stream ended
+	 * @throws IOException if the frame could not be read or exceeds the maximum length
+	 */
+	public static BinaryFrame read(final DataInputStream in, final long maxLength) throws IOException {
+		final int length = in.readInt();
+
+		if (length < 14 || length > maxLength) {
+			throw new StreamCorruptedException("Invalid frame length: " + length);
+		}
+
+		final int requestId = in.readInt();
+		final byte type = in.readByte();
+		final String[] attributes = new String[in.readUnsignedByte()];
+		int remaining = length - 14;
+
+		for (int i = 0; i < attributes.length; i++) {
+			final int attributeLength = in.readUnsignedShort();
+			remaining -= 2 + attributeLength;
+
+			if (remaining < 0) {
+				throw new StreamCorruptedException("Invalid frame attribute length: " + attributeLength);
+			}
+
+			final byte[] bytes = new byte[attributeLength];
+			in.readFully(bytes);
+			attributes[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		final long value = in.readLong();
+		final byte[] content = new byte[remaining];
+		in.readFully(content);
+
+		return new BinaryFrame(requestId, type, attributes, value, content);
+	}
+}
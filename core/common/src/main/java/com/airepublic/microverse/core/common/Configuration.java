@@ -40,6 +40,38 @@ public class Configuration {
 	public static final String SERVER_HEARTBEAT_INTERVAL = "microverse.server.hearbeat.interval";
 	public static final String SERVER_PORT = "microverse.server.port";
 	public static final String SERVER_USESSL = "microverse.server.useSSL";
+	public static final String SERVER_WORKER_THREADS = "microverse.server.worker.threads";
+	public static final String SERVER_WORKER_QUEUE_SIZE = "microverse.server.worker.queue.size";
+	public static final String SERVER_ADMISSION_TARGET = "microverse.server.admission.target";
+	public static final String SERVER_ADMISSION_INTERVAL = "microverse.server.admission.interval";
+	public static final String SERVER_DRAIN_TIMEOUT = "microverse.server.drain.timeout";
+	public static final String SERVER_WARMUP_TIMEOUT = "microverse.server.warmup.timeout";
+	public static final String SERVER_WARMUP_ROUNDS = "microverse.server.warmup.rounds";
+	public static final String SERVER_REQUEST_MAX_SIZE = "microverse.server.request.maxsize";
+	public static final String SERVER_CACHE_SIZE = "microverse.server.cache.size";
+	public static final String SERVER_EVENTLOOP_THREADS = "microverse.server.eventloop.threads";
+	public static final String SERVER_BINARY_PORT = "microverse.server.binary.port";
+	public static final String SERVER_WEBSOCKET_PORT = "microverse.server.websocket.port";
+	public static final String SERVER_WEBSOCKET_EVENTS_CAPACITY = "microverse.server.websocket.events.capacity";
+	public static final String THREADS_VIRTUAL = "microverse.threads.virtual";
+	public static final String CLIENT_FAILOVER_ATTEMPTS = "microverse.client.failover.attempts";
+	public static final String CLIENT_FAILOVER_INSTANCES_TTL = "microverse.client.failover.instances.ttl";
+	public static final String CLIENT_TIMEOUT = "microverse.client.timeout";
+	public static final String CLIENT_BINARY = "microverse.client.binary";
+	public static final String CLIENT_BINARY_CONNECTIONS = "microverse.client.binary.connections";
+	public static final String CLIENT_RESPONSE_MAX_SIZE = "microverse.client.response.maxsize";
+	public static final String CLIENT_LOCAL = "microverse.client.local";
+	public static final String CLIENT_SESSION_WINDOW = "microverse.client.session.window";
+	public static final String CLIENT_ONEWAY_CAPACITY = "microverse.client.oneway.capacity";
+	public static final String CLIENT_ONEWAY_BATCH_SIZE = "microverse.client.oneway.batch.size";
+	public static final String CLIENT_ONEWAY_LINGER = "microverse.client.oneway.linger";
+	public static final String CLIENT_ONEWAY_OUTBOX = "microverse.client.oneway.outbox";
+	public static final String CLIENT_ONEWAY_OUTBOX_SEGMENT_SIZE = "microverse.client.oneway.outbox.segment.size";
+	public static final String CLIENT_ONEWAY_OUTBOX_FSYNC = "microverse.client.oneway.outbox.fsync";
+	public static final String CLIENT_ONEWAY_OUTBOX_FSYNC_INTERVAL = "microverse.client.oneway.outbox.fsync.interval";
+	public static final String CLIENT_ONEWAY_IDLE_TIMEOUT = "microverse.client.oneway.idle.timeout";
+	public static final String EVENTS_CAPACITY = "microverse.events.capacity";
+	public static final String EVENTS_SUBSCRIBERS_REFRESH = "microverse.events.subscribers.refresh";
 
 
 	public static String getServiceDeployDir() {
@@ -102,6 +134,358 @@ public class Configuration {
 	}
 
 
+	/**
+	 * Gets the number of worker threads each service gets to process its requests. If virtual
+	 * threads are used the default is much higher, as blocked virtual threads don't occupy a
+	 * platform thread.
+	 *
+	 * @return the number of worker threads per service
+	 */
+	public static int getServerWorkerThreads() {
+		return getInt(SERVER_WORKER_THREADS, VirtualThreads.isEnabled() ? 1000 : Runtime.getRuntime().availableProcessors() * 2);
+	}
+
+
+	/**
+	 * Gets the maximum number of requests per service waiting for a worker thread.
+	 *
+	 * @return the queue size per service
+	 */
+	public static int getServerWorkerQueueSize() {
+		return getInt(SERVER_WORKER_QUEUE_SIZE, 100);
+	}
+
+
+	/**
+	 * Gets the queueing delay in milliseconds a request may wait for a worker thread while the
+	 * service is overloaded.
+	 *
+	 * @return the target queueing delay in milliseconds
+	 */
+	public static long getServerAdmissionTarget() {
+		return getLong(SERVER_ADMISSION_TARGET, 5L);
+	}
+
+
+	/**
+	 * Gets the interval in milliseconds in which the request queue of a service must have been
+	 * empty once, otherwise the service is considered overloaded. It is also the maximum queueing
+	 * delay of a request while the service is not overloaded.
+	 *
+	 * @return the interval in milliseconds
+	 */
+	public static long getServerAdmissionInterval() {
+		return getLong(SERVER_ADMISSION_INTERVAL, 100L);
+	}
+
+
+	/**
+	 * Gets the time in milliseconds a replaced or removed service may take to finish its in-flight
+	 * requests before it is closed.
+	 *
+	 * @return the drain timeout in milliseconds
+	 */
+	public static long getServerDrainTimeout() {
+		return getLong(SERVER_DRAIN_TIMEOUT, 30000L);
+	}
+
+
+	/**
+	 * Gets the maximum time in milliseconds a newly deployed service is warmed up before it
+	 * receives traffic.
+	 *
+	 * @return the warm-up timeout in milliseconds or 0 to disable the warm-up
+	 */
+	public static long getServerWarmUpTimeout() {
+		return getLong(SERVER_WARMUP_TIMEOUT, 10000L);
+	}
+
+
+	/**
+	 * Gets the maximum number of rounds of warm-up calls for a newly deployed service.
+	 *
+	 * @return the maximum number of warm-up rounds
+	 */
+	public static int getServerWarmUpRounds() {
+		return getInt(SERVER_WARMUP_ROUNDS, 10000);
+	}
+
+
+	/**
+	 * Gets the maximum content length in bytes of a service request or a service-bundle upload.
+	 *
+	 * @return the maximum request size in bytes
+	 */
+	public static long getServerRequestMaxSize() {
+		return getLong(SERVER_REQUEST_MAX_SIZE, 16L * 1024 * 1024);
+	}
+
+
+	/**
+	 * Gets the maximum number of bytes of serialized results cached per service.
+	 *
+	 * @return the maximum cache size in bytes or 0 to disable caching
+	 */
+	public static long getServerCacheSize() {
+		return getLong(SERVER_CACHE_SIZE, 16L * 1024 * 1024);
+	}
+
+
+	/**
+	 * Gets the number of event-loop threads of the event-loop service-server which accept
+	 * connections and read and write their requests and responses.
+	 *
+	 * @return the number of event-loop threads
+	 */
+	public static int getServerEventLoopThreads() {
+		return getInt(SERVER_EVENTLOOP_THREADS, Runtime.getRuntime().availableProcessors());
+	}
+
+
+	/**
+	 * Gets the port on which the service-server serves its services via the binary protocol in
+	 * addition to HTTP. The binary protocol is not encrypted, so services using SSL are only
+	 * served via HTTPS.
+	 *
+	 * @return the binary port or 0 to disable the binary protocol
+	 */
+	public static int getServerBinaryPort() {
+		return getInt(SERVER_BINARY_PORT, 0);
+	}
+
+
+	/**
+	 * Gets the port on which the service-server accepts WebSocket sessions with its services. The
+	 * sessions are not encrypted, so they are not offered for services using SSL.
+	 *
+	 * @return the WebSocket port or 0 to disable service sessions
+	 */
+	public static int getServerWebSocketPort() {
+		return getInt(SERVER_WEBSOCKET_PORT, 0);
+	}
+
+
+	/**
+	 * Gets the number of events a service session queues while the client hasn't granted credits
+	 * for them. Further events are rejected until the client catches up.
+	 *
+	 * @return the capacity of the event queue of a session
+	 */
+	public static int getServerWebSocketEventsCapacity() {
+		return getInt(SERVER_WEBSOCKET_EVENTS_CAPACITY, 256);
+	}
+
+
+	/**
+	 * Checks whether requests and client calls should be processed on virtual threads. This only
+	 * takes effect if the JVM supports virtual threads.
+	 *
+	 * @return <code>true</code> if virtual threads should be used
+	 */
+	public static boolean isThreadsVirtual() {
+		return getBoolean(THREADS_VIRTUAL, false);
+	}
+
+
+	/**
+	 * Gets the number of other service instances a client tries if a service is unavailable.
+	 *
+	 * @return the number of failover attempts
+	 */
+	public static int getClientFailoverAttempts() {
+		return getInt(CLIENT_FAILOVER_ATTEMPTS, 2);
+	}
+
+
+	/**
+	 * Gets the time in milliseconds the instances of a service requested from the registries to
+	 * fail over rejected calls are reused, so the rejections of an overloaded service don't
+	 * multiply the requests to the registries.
+	 *
+	 * @return the time to live in milliseconds
+	 */
+	public static long getClientFailoverInstancesTtl() {
+		return getLong(CLIENT_FAILOVER_INSTANCES_TTL, 5000L);
+	}
+
+
+	/**
+	 * Gets the default timeout in milliseconds of service calls made by service-clients.
+	 *
+	 * @return the timeout in milliseconds or 0 for no timeout
+	 */
+	public static long getClientTimeout() {
+		return getLong(CLIENT_TIMEOUT, 0L);
+	}
+
+
+	/**
+	 * Checks whether service-clients call services via the binary protocol if the service-server
+	 * offers it. Services using SSL are always called via HTTPS.
+	 *
+	 * @return <code>true</code> if the binary protocol should be used
+	 */
+	public static boolean isClientBinary() {
+		return getBoolean(CLIENT_BINARY, true);
+	}
+
+
+	/**
+	 * Gets the number of binary connections a client opens to a service-server. All calls to the
+	 * service-server are multiplexed over these connections.
+	 *
+	 * @return the number of connections per service-server
+	 */
+	public static int getClientBinaryConnections() {
+		return getInt(CLIENT_BINARY_CONNECTIONS, 2);
+	}
+
+
+	/**
+	 * Gets the maximum length in bytes of a response frame or message a client reads from a binary
+	 * connection or a service session.
+	 *
+	 * @return the maximum response size in bytes
+	 */
+	public static long getClientResponseMaxSize() {
+		return getLong(CLIENT_RESPONSE_MAX_SIZE, 64L * 1024 * 1024);
+	}
+
+
+	/**
+	 * Checks whether service-clients call services served by a service-server in the same JVM
+	 * directly instead of sending the calls over the network. Direct calls run on the calling
+	 * thread: they are rejected while the service is overloaded or runs as many calling threads as
+	 * it has worker threads, but they don't wait in its queue and bypass its result cache.
+	 *
+	 * @return <code>true</code> if local services should be called directly
+	 */
+	public static boolean isClientLocal() {
+		return getBoolean(CLIENT_LOCAL, true);
+	}
+
+
+	/**
+	 * Gets the number of elements of an element stream or events a client accepts on a service
+	 * session before the service has to wait for the client to consume them.
+	 *
+	 * @return the flow control window of service sessions
+	 */
+	public static int getClientSessionWindow() {
+		return getInt(CLIENT_SESSION_WINDOW, 16);
+	}
+
+
+	/**
+	 * Gets the number of one-way calls a client queues per service before callers have to wait
+	 * for the background sender.
+	 *
+	 * @return the capacity of the one-way queue
+	 */
+	public static int getClientOneWayCapacity() {
+		return getInt(CLIENT_ONEWAY_CAPACITY, 1024);
+	}
+
+
+	/**
+	 * Gets the maximum number of one-way calls sent to a service in one request.
+	 *
+	 * @return the batch size
+	 */
+	public static int getClientOneWayBatchSize() {
+		return getInt(CLIENT_ONEWAY_BATCH_SIZE, 64);
+	}
+
+
+	/**
+	 * Gets the milliseconds the one-way sender waits for further calls to fill a batch.
+	 *
+	 * @return the linger time in milliseconds
+	 */
+	public static long getClientOneWayLinger() {
+		return getLong(CLIENT_ONEWAY_LINGER, 5L);
+	}
+
+
+	/**
+	 * Gets the directory of the durable outbox for one-way calls. If it is set, one-way calls are
+	 * written to a log in this directory until the service has accepted them, so they survive
+	 * unreachable services and restarts of the client.
+	 *
+	 * @return the outbox directory or <code>null</code> to queue one-way calls in memory
+	 */
+	public static String getClientOneWayOutbox() {
+		return getString(CLIENT_ONEWAY_OUTBOX, null);
+	}
+
+
+	/**
+	 * Gets the size in bytes of the segment files of the one-way outbox. A new segment is started
+	 * when a call doesn't fit into the current one.
+	 *
+	 * @return the segment size in bytes
+	 */
+	public static int getClientOneWayOutboxSegmentSize() {
+		return getInt(CLIENT_ONEWAY_OUTBOX_SEGMENT_SIZE, 16 * 1024 * 1024);
+	}
+
+
+	/**
+	 * Gets when the one-way outbox forces its writes to disk: <code>always</code> before a call
+	 * returns, at the latest after the fsync <code>interval</code> or <code>never</code>, leaving it
+	 * to the operating system.
+	 *
+	 * @return the fsync policy
+	 */
+	public static String getClientOneWayOutboxFsync() {
+		return getString(CLIENT_ONEWAY_OUTBOX_FSYNC, "interval");
+	}
+
+
+	/**
+	 * Gets the maximum milliseconds writes to the one-way outbox stay unforced with the fsync
+	 * policy <code>interval</code>.
+	 *
+	 * @return the fsync interval in milliseconds
+	 */
+	public static long getClientOneWayOutboxFsyncInterval() {
+		return getLong(CLIENT_ONEWAY_OUTBOX_FSYNC_INTERVAL, 100L);
+	}
+
+
+	/**
+	 * Gets the milliseconds a one-way sender waits for calls before it stops its thread and closes
+	 * its outbox. A sender is started again with the next call to the service.
+	 *
+	 * @return the idle timeout in milliseconds or 0 to keep the senders running
+	 */
+	public static long getClientOneWayIdleTimeout() {
+		return getLong(CLIENT_ONEWAY_IDLE_TIMEOUT, 60000L);
+	}
+
+
+	/**
+	 * Gets the number of published events queued for dispatching before further events are
+	 * dropped.
+	 *
+	 * @return the capacity of the event queue
+	 */
+	public static int getEventsCapacity() {
+		return getInt(EVENTS_CAPACITY, 4096);
+	}
+
+
+	/**
+	 * Gets the milliseconds the subscribers of a topic are cached before they are requested from
+	 * the registries again.
+	 *
+	 * @return the refresh interval in milliseconds
+	 */
+	public static long getEventsSubscribersRefresh() {
+		return getLong(EVENTS_SUBSCRIBERS_REFRESH, 5000L);
+	}
+
+
 	private static String getString(final String key, final String defaultValue) {
 		final String value = System.getProperty(key);
 
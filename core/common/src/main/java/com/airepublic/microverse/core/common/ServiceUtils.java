@@ -14,9 +14,11 @@
 package com.airepublic.microverse.core.common;
 
 import java.io.Serializable;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLContext;
 
@@ -28,9 +30,11 @@ import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.EntityBuilder;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
@@ -44,6 +48,10 @@ import com.airepublic.microverse.core.descriptor.AbstractDescriptor;
 import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
 import com.airepublic.microverse.core.descriptor.WebCall;
 import com.airepublic.microverse.core.exception.ServiceException;
+import com.airepublic.microverse.core.exception.ServiceTimeoutException;
+import com.airepublic.microverse.core.exception.ServiceUnavailableException;
+import com.airepublic.microverse.core.service.api.InvocationContext;
+import com.airepublic.microverse.core.service.api.Priority;
 
 /**
  * Common methods used by various classes.
@@ -54,6 +62,12 @@ import com.airepublic.microverse.core.exception.ServiceException;
 public class ServiceUtils {
 	public final static String MULTICAST_GROUP_ADDRESS = "224.0.0.0";
 	public final static int MULTICAST_PORT = 5000;
+	/** Request header containing the milliseconds the caller is willing to wait for the response. */
+	public final static String HEADER_TIMEOUT = "X-Microverse-Timeout";
+	/** Request header containing the {@link Priority} of the call. */
+	public final static String HEADER_PRIORITY = "X-Microverse-Priority";
+	/** Request header marking a batch of one-way calls and containing the number of calls. */
+	public final static String HEADER_ONE_WAY = "X-Microverse-One-Way";
 	private final static Logger LOG = LoggerFactory.getLogger(ServiceUtils.class);
 
 
@@ -176,20 +190,48 @@ public class ServiceUtils {
 
 
 	/**
-	 * Validates the response if the status OK was returned, otherwise it will throw a
-	 * {@link ServiceException}.
+	 * Validates the response if the status OK or ACCEPTED was returned, otherwise it will throw a
+	 * {@link ServiceException}. If the service was unavailable a
+	 * {@link ServiceUnavailableException} is thrown to signal that the request may be retried.
 	 *
 	 * @param httpResponse the response
 	 * @throws ServiceException
 	 */
 	public static void validateResponse(final HttpRequest httpRequest, final HttpResponse httpResponse) throws ServiceException {
-		if (httpResponse.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+		if (httpResponse.getStatusLine().getStatusCode() == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+			LOG.warn("Service unavailable " + httpRequest.getRequestLine() + ": received HttpStatus: " + httpResponse.getStatusLine());
+			throw new ServiceUnavailableException("Service unavailable " + httpRequest.getRequestLine() + ": received HttpStatus: " + httpResponse.getStatusLine(), getRetryAfter(httpResponse));
+		} else if (httpResponse.getStatusLine().getStatusCode() == HttpStatus.SC_GATEWAY_TIMEOUT) {
+			LOG.warn("Deadline passed " + httpRequest.getRequestLine() + ": received HttpStatus: " + httpResponse.getStatusLine());
+			throw new ServiceTimeoutException("Deadline passed " + httpRequest.getRequestLine() + ": received HttpStatus: " + httpResponse.getStatusLine());
+		} else if (httpResponse.getStatusLine().getStatusCode() != HttpStatus.SC_OK && httpResponse.getStatusLine().getStatusCode() != HttpStatus.SC_ACCEPTED) {
 			LOG.error("Error communicating with " + httpRequest.getRequestLine() + ": received HttpStatus: " + httpResponse.getStatusLine());
 			throw new ServiceException("Error communicating with " + httpRequest.getRequestLine() + ": received HttpStatus: " + httpResponse.getStatusLine());
 		}
 	}
 
 
+	/**
+	 * Gets the seconds of the 'Retry-After' header of the response.
+	 *
+	 * @param httpResponse the response
+	 * @return the seconds or 0 if no valid header was found
+	 */
+	public static int getRetryAfter(final HttpResponse httpResponse) {
+		final Header retryAfter = httpResponse.getFirstHeader(HttpHeaders.RETRY_AFTER);
+
+		if (retryAfter != null) {
+			try {
+				return Integer.parseInt(retryAfter.getValue().trim());
+			} catch (final NumberFormatException e) {
+				// HTTP-dates are not supported
+			}
+		}
+
+		return 0;
+	}
+
+
 	/**
 	 * Gets the fully qualified URL string to the service.
 	 *
@@ -239,6 +281,27 @@ public class ServiceUtils {
 
 
 	public static HttpResponse executeRequest(final String host, final int port, final boolean useSSL, final WebCall webCall, final List<String> remoteSupportedMimeTypes, final Serializable entity) throws ServiceException {
+		return executeRequest(createRequest(host, port, useSSL, webCall, remoteSupportedMimeTypes, entity), useSSL);
+	}
+
+
+	/**
+	 * Creates the request for the web-call with the entity serialized by a marshaller supported by
+	 * the remote server. The priority and the remaining time of the current
+	 * {@link InvocationContext} are passed on in the {@link #HEADER_PRIORITY} and
+	 * {@link #HEADER_TIMEOUT} headers.
+	 *
+	 * @param host the host
+	 * @param port the port
+	 * @param useSSL the flag whether to use SSL
+	 * @param webCall the {@link WebCall}
+	 * @param remoteSupportedMimeTypes the mime-types supported by the remote server
+	 * @param entity the entity to send or <code>null</code>
+	 * @return the request
+	 * @throws ServiceTimeoutException if the deadline has passed
+	 * @throws ServiceException if the request could not be created
+	 */
+	public static HttpUriRequest createRequest(final String host, final int port, final boolean useSSL, final WebCall webCall, final List<String> remoteSupportedMimeTypes, final Serializable entity) throws ServiceException {
 		HttpUriRequest request = null;
 		IMarshaller marshaller = null;
 
@@ -268,7 +331,49 @@ public class ServiceUtils {
 
 		request.addHeader(HttpHeaders.ACCEPT, getAcceptedMimeTypes());
 
-		return executeRequest(request, useSSL);
+		// pass the priority and the remaining time of the current invocation on to the remote
+		// server
+		final Priority priority = InvocationContext.getPriority();
+
+		if (priority != null) {
+			request.addHeader(HEADER_PRIORITY, priority.name());
+		}
+
+		final long timeout = InvocationContext.getRemaining(TimeUnit.MILLISECONDS);
+
+		if (timeout != Long.MAX_VALUE) {
+			if (timeout <= 0) {
+				throw new ServiceTimeoutException("Deadline has passed before calling: " + webCall);
+			}
+
+			request.addHeader(HEADER_TIMEOUT, String.valueOf(timeout));
+			((HttpRequestBase) request).setConfig(RequestConfig.custom().setConnectTimeout((int) Math.min(timeout, Integer.MAX_VALUE)).setSocketTimeout((int) Math.min(timeout, Integer.MAX_VALUE)).build());
+		}
+
+		return request;
+	}
+
+
+	/**
+	 * Gets the deadline of a request from its timeout header relative to the specified time of
+	 * receipt.
+	 *
+	 * @param timeoutHeader the value of the {@link #HEADER_TIMEOUT} header (may be
+	 *        <code>null</code>)
+	 * @param receivedTime the {@link System#nanoTime()} the request was received
+	 * @return the deadline as {@link System#nanoTime()} value or <code>null</code> if the request
+	 *         has no valid timeout
+	 */
+	public static Long getDeadline(final String timeoutHeader, final long receivedTime) {
+		if (timeoutHeader != null) {
+			try {
+				return receivedTime + TimeUnit.MILLISECONDS.toNanos(Long.parseLong(timeoutHeader.trim()));
+			} catch (final NumberFormatException e) {
+				LOG.warn("Ignoring invalid " + HEADER_TIMEOUT + " header: " + timeoutHeader);
+			}
+		}
+
+		return null;
 	}
 
 
@@ -310,6 +415,10 @@ public class ServiceUtils {
 			validateResponse(request, response);
 
 			return response;
+		} catch (final ServiceUnavailableException | ServiceTimeoutException e) {
+			throw e;
+		} catch (final SocketTimeoutException e) {
+			throw new ServiceTimeoutException("Timeout executing request: " + request.getRequestLine(), e);
 		} catch (final Exception e) {
 			throw new ServiceException(e);
 		}
@@ -0,0 +1,220 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.microverse.core.common.marshaller.IMarshaller;
+import com.airepublic.microverse.core.exception.ServiceException;
+
+/**
+ * Encodes element streams returned by service methods as length-prefixed frames. Each element is
+ * serialized separately with the marshaller and written as a frame of its length (4 bytes, big
+ * endian) followed by the serialized element. The stream is terminated by an end frame or, if the
+ * element stream failed, by an error frame followed by a frame with the error message.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public final class StreamFrames {
+	private static final Logger LOG = LoggerFactory.getLogger(StreamFrames.class);
+	/** Length of the frame terminating the stream. */
+	public static final int END = -1;
+	/** Length of the frame terminating a failed stream. */
+	public static final int ERROR = -2;
+
+
+	private StreamFrames() {
+	}
+
+
+	/**
+	 * Writes all elements as frames to the output-stream. The first frame is flushed immediately
+	 * so the receiver gets the first element as soon as possible.
+	 *
+	 * @param elements the elements
+	 * @param marshaller the marshaller to serialize the elements
+	 * @param outputStream the output-stream
+	 * @throws IOException if the frames could not be written
+	 */
+	public static void write(final Iterator<?> elements, final IMarshaller marshaller, final OutputStream outputStream) throws IOException {
+		boolean first = true;
+
+		try {
+			while (elements.hasNext()) {
+				final Object element = elements.next();
+
+				if (element != null && !(element instanceof Serializable)) {
+					throw new ServiceException("Element of the result stream is not serializable: " + element.getClass().getName());
+				}
+
+				writeFrame(marshaller.serialize((Serializable) element), outputStream);
+
+				if (first) {
+					outputStream.flush();
+					first = false;
+				}
+			}
+		} catch (final IOException e) {
+			throw e;
+		} catch (final Exception e) {
+			LOG.error("Error producing result stream!", e);
+			writeLength(ERROR, outputStream);
+			writeFrame(String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8), outputStream);
+			outputStream.flush();
+			return;
+		}
+
+		writeLength(END, outputStream);
+		outputStream.flush();
+	}
+
+
+	/**
+	 * Reads the elements lazily from the frames in the input-stream. The resource is closed once
+	 * the stream has been read completely or failed.
+	 *
+	 * @param <T> the element type
+	 * @param inputStream the input-stream
+	 * @param marshaller the marshaller to deserialize the elements
+	 * @param elementType the element type
+	 * @param resource the resource to close at the end of the stream
+	 * @return the {@link Iterator} over the elements
+	 */
+	public static <T> Iterator<T> read(final InputStream inputStream, final IMarshaller marshaller, final Class<T> elementType, final Closeable resource) {
+		return new Iterator<T>() {
+			private byte[] next;
+			private boolean finished = false;
+
+
+			@Override
+			public boolean hasNext() {
+				if (next == null && !finished) {
+					try {
+						final int length = readLength(inputStream);
+
+						if (length == END) {
+							finish();
+						} else if (length == ERROR) {
+							final String message = new String(readFrame(readLength(inputStream), inputStream), StandardCharsets.UTF_8);
+							finish();
+							throw new IllegalStateException("The remote result stream failed: " + message);
+						} else {
+							next = readFrame(length, inputStream);
+						}
+					} catch (final IOException e) {
+						finish();
+						throw new UncheckedIOException("Could not read the result stream!", e);
+					}
+				}
+
+				return next != null;
+			}
+
+
+			@Override
+			public T next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				final byte[] frame = next;
+				next = null;
+
+				try {
+					return marshaller.deserialize(new ByteArrayInputStream(frame), elementType);
+				} catch (final ServiceException e) {
+					throw new IllegalStateException("Could not deserialize element of the result stream!", e);
+				}
+			}
+
+
+			private void finish() {
+				finished = true;
+
+				try {
+					resource.close();
+				} catch (final IOException e) {
+					LOG.warn("Error closing the result stream!", e);
+				}
+			}
+		};
+	}
+
+
+	private static void writeFrame(final byte[] frame, final OutputStream outputStream) throws IOException {
+		writeLength(frame.length, outputStream);
+		outputStream.write(frame);
+	}
+
+
+	private static void writeLength(final int length, final OutputStream outputStream) throws IOException {
+		outputStream.write(length >>> 24);
+		outputStream.write(length >>> 16);
+		outputStream.write(length >>> 8);
+		outputStream.write(length);
+	}
+
+
+	private static int readLength(final InputStream inputStream) throws IOException {
+		int length = 0;
+
+		for (int i = 0; i < 4; i++) {
+			final int b = inputStream.read();
+
+			if (b < 0) {
+				throw new EOFException("The result stream ended unexpectedly!");
+			}
+
+			length = length << 8 | b;
+		}
+
+		return length;
+	}
+
+
+	private static byte[] readFrame(final int length, final InputStream inputStream) throws IOException {
+		if (length < 0) {
+			throw new IOException("Invalid frame length: " + length);
+		}
+
+		final byte[] frame = new byte[length];
+		int read = 0;
+
+		while (read < length) {
+			final int count = inputStream.read(frame, read, length - read);
+
+			if (count < 0) {
+				throw new EOFException("The result stream ended unexpectedly!");
+			}
+
+			read += count;
+		}
+
+		return frame;
+	}
+}
@@ -0,0 +1,129 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.common;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates virtual threads if they are enabled by {@link Configuration#THREADS_VIRTUAL} and
+ * supported by the JVM. Virtual threads are created reflectively, so the code still compiles and
+ * runs on Java 11 where platform threads are used instead.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public final class VirtualThreads {
+	private static final Logger LOG = LoggerFactory.getLogger(VirtualThreads.class);
+	private static final Method OF_VIRTUAL;
+	private static final Method NAME;
+	private static final Method FACTORY;
+	private static final AtomicBoolean WARNED = new AtomicBoolean();
+
+	static {
+		Method ofVirtual = null;
+		Method name = null;
+		Method factory = null;
+
+		try {
+			final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			name = builderClass.getMethod("name", String.class, long.class);
+			factory = builderClass.getMethod("factory");
+			// fails if virtual threads are only a preview feature which is not enabled
+			ofVirtual.invoke(null);
+		} catch (final ReflectiveOperationException | RuntimeException e) {
+			// virtual threads are not supported by this JVM
+			ofVirtual = null;
+		}
+
+		OF_VIRTUAL = ofVirtual;
+		NAME = name;
+		FACTORY = factory;
+	}
+
+
+	private VirtualThreads() {
+	}
+
+
+	/**
+	 * Checks whether the JVM supports virtual threads.
+	 *
+	 * @return <code>true</code> if virtual threads are supported
+	 */
+	public static boolean isSupported() {
+		return OF_VIRTUAL != null;
+	}
+
+
+	/**
+	 * Checks whether virtual threads are enabled and supported by the JVM.
+	 *
+	 * @return <code>true</code> if virtual threads should be used
+	 */
+	public static boolean isEnabled() {
+		if (!Configuration.isThreadsVirtual()) {
+			return false;
+		}
+
+		if (!isSupported()) {
+			// only warn once as this is checked for every new thread pool
+			if (WARNED.compareAndSet(false, true)) {
+				LOG.warn("Virtual threads are enabled by '" + Configuration.THREADS_VIRTUAL + "' but not supported by this JVM - using platform threads!");
+			}
+
+			return false;
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Creates a {@link ThreadFactory} for virtual threads named with the prefix and a counter if
+	 * virtual threads are enabled, otherwise the fallback is returned.
+	 *
+	 * @param namePrefix the prefix of the thread names
+	 * @param fallback the {@link ThreadFactory} for platform threads
+	 * @return the {@link ThreadFactory}
+	 */
+	public static ThreadFactory newThreadFactory(final String namePrefix, final ThreadFactory fallback) {
+		return isEnabled() ? newVirtualThreadFactory(namePrefix) : fallback;
+	}
+
+
+	/**
+	 * Creates a {@link ThreadFactory} for virtual threads named with the prefix and a counter.
+	 *
+	 * @param namePrefix the prefix of the thread names
+	 * @return the {@link ThreadFactory}
+	 * @throws UnsupportedOperationException if virtual threads are not supported
+	 */
+	public static ThreadFactory newVirtualThreadFactory(final String namePrefix) {
+		if (!isSupported()) {
+			throw new UnsupportedOperationException("Virtual threads are not supported by this JVM!");
+		}
+
+		try {
+			return (ThreadFactory) FACTORY.invoke(NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 1L));
+		} catch (final ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Could not create virtual thread factory!", e);
+		}
+	}
+}
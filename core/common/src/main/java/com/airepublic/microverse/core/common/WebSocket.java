@@ -0,0 +1,263 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A WebSocket connection (RFC 6455) over blocking streams after the HTTP upgrade handshake. Only
+ * binary messages are exchanged: fragmented messages are reassembled, pings are answered and a
+ * close frame ends the connection. Frames sent by the client are masked as required by the
+ * protocol.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public final class WebSocket implements Closeable {
+	private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+	private static final int CONTINUATION = 0x0;
+	private static final int TEXT = 0x1;
+	private static final int BINARY = 0x2;
+	private static final int CLOSE = 0x8;
+	private static final int PING = 0x9;
+	private static final int PONG = 0xA;
+	private final DataInputStream in;
+	private final OutputStream out;
+	private final boolean client;
+	private volatile boolean closed;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param inputStream the input-stream of the upgraded connection
+	 * @param outputStream the output-stream of the upgraded connection
+	 * @param client flag, whether this is the client side which masks its frames
+	 */
+	public WebSocket(final InputStream inputStream, final OutputStream outputStream, final boolean client) {
+		in = new DataInputStream(inputStream);
+		out = outputStream;
+		this.client = client;
+	}
+
+
+	/**
+	 * Computes the value of the <code>Sec-WebSocket-Accept</code> header for the
+	 * <code>Sec-WebSocket-Key</code> of the handshake.
+	 *
+	 * @param key the <code>Sec-WebSocket-Key</code>
+	 * @return the <code>Sec-WebSocket-Accept</code> value
+	 */
+	public static String acceptKey(final String key) {
+		try {
+			final byte[] digest = MessageDigest.getInstance("SHA-1").digest((key.trim() + GUID).getBytes(StandardCharsets.US_ASCII));
+			return Base64.getEncoder().encodeToString(digest);
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 is not supported!", e);
+		}
+	}
+
+
+	/**
+	 * Creates a random <code>Sec-WebSocket-Key</code> for the handshake of a client.
+	 *
+	 * @return the <code>Sec-WebSocket-Key</code>
+	 */
+	public static String createKey() {
+		final byte[] key = new byte[16];
+		ThreadLocalRandom.current().nextBytes(key);
+
+		return Base64.getEncoder().encodeToString(key);
+	}
+
+
+	/**
+	 * Reads the next message.
+	 *
+	 * @param maxLength the maximum length of a message
+	 * @return the payload of the message or <code>null</code> if the connection was closed by the
+	 *         peer
+	 * @throws IOException if the message could not be read or exceeds the maximum length
+	 */
+	public byte[] read(final long maxLength) throws IOException {
+		ByteArrayOutputStream message = null;
+
+		while (true) {
+			final int head = in.readUnsignedByte();
+			final boolean fin = (head & 0x80) != 0;
+			final int opcode = head & 0x0F;
+			final int lengthByte = in.readUnsignedByte();
+			final boolean masked = (lengthByte & 0x80) != 0;
+			long length = lengthByte & 0x7F;
+
+			if (length == 126) {
+				length = in.readUnsignedShort();
+			} else if (length == 127) {
+				length = in.readLong();
+			}
+
+			final long messageLength = length + (message != null ? message.size() : 0);
+
+			if (length < 0 || messageLength > maxLength || messageLength > Integer.MAX_VALUE - 8) {
+				throw new StreamCorruptedException("WebSocket message exceeds the maximum length: " + messageLength);
+			}
+
+			final byte[] mask = masked ? new byte[4] : null;
+
+			if (masked) {
+				in.readFully(mask);
+			}
+
+			final byte[] payload = new byte[(int) length];
+			in.readFully(payload);
+
+			if (masked) {
+				for (int i = 0; i < payload.length; i++) {
+					payload[i] ^= mask[i & 3];
+				}
+			}
+
+			switch (opcode) {
+				case PING:
+					writeFrame(PONG, payload);
+					break;
+				case PONG:
+					break;
+				case CLOSE:
+					if (!closed) {
+						closed = true;
+						writeFrame(CLOSE, payload);
+					}
+
+					return null;
+				case TEXT:
+				case BINARY:
+					if (message != null) {
+						throw new StreamCorruptedException("WebSocket message started before the previous message ended");
+					}
+
+					if (fin) {
+						return payload;
+					}
+
+					message = new ByteArrayOutputStream();
+					message.write(payload);
+					break;
+				case CONTINUATION:
+					if (message == null) {
+						throw new StreamCorruptedException("WebSocket continuation frame without a message");
+					}
+
+					message.write(payload);
+
+					if (fin) {
+						return message.toByteArray();
+					}
+					break;
+				default:
+					throw new StreamCorruptedException("Unsupported WebSocket opcode: " + opcode);
+			}
+		}
+	}
+
+
+	/**
+	 * Writes the payload as binary message. Messages of concurrent threads don't interleave.
+	 *
+	 * @param payload the payload
+	 * @throws IOException if the message could not be written
+	 */
+	public void write(final byte[] payload) throws IOException {
+		if (closed) {
+			throw new EOFException("WebSocket has been closed");
+		}
+
+		writeFrame(BINARY, payload);
+	}
+
+
+	private void writeFrame(final int opcode, final byte[] payload) throws IOException {
+		final byte[] head = new byte[14];
+		int headLength = 2;
+		head[0] = (byte) (0x80 | opcode);
+
+		if (payload.length < 126) {
+			head[1] = (byte) payload.length;
+		} else if (payload.length <= 0xFFFF) {
+			head[1] = 126;
+			head[2] = (byte) (payload.length >>> 8);
+			head[3] = (byte) payload.length;
+			headLength = 4;
+		} else {
+			head[1] = 127;
+
+			for (int i = 0; i < 8; i++) {
+				head[2 + i] = (byte) ((long) payload.length >>> 56 - 8 * i);
+			}
+
+			headLength = 10;
+		}
+
+		byte[] content = payload;
+
+		if (client) {
+			final byte[] mask = new byte[4];
+			ThreadLocalRandom.current().nextBytes(mask);
+			head[1] |= 0x80;
+			System.arraycopy(mask, 0, head, headLength, 4);
+			headLength += 4;
+			content = new byte[payload.length];
+
+			for (int i = 0; i < content.length; i++) {
+				content[i] = (byte) (payload[i] ^ mask[i & 3]);
+			}
+		}
+
+		synchronized (out) {
+			out.write(head, 0, headLength);
+			out.write(content);
+			out.flush();
+		}
+	}
+
+
+	/**
+	 * Sends a close frame to the peer unless the connection has already been closed. The
+	 * underlying connection must be closed by the caller.
+	 */
+	@Override
+	public void close() {
+		if (!closed) {
+			closed = true;
+
+			try {
+				writeFrame(CLOSE, new byte[] { 0x03, (byte) 0xE8 });
+			} catch (final IOException e) {
+				// the peer is gone already
+			}
+		}
+	}
+}
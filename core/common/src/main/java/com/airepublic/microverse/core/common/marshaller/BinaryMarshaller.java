@@ -13,11 +13,16 @@
 */
 package com.airepublic.microverse.core.common.marshaller;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 
 import org.apache.commons.lang3.SerializationUtils;
 
+import com.airepublic.microverse.core.exception.ServiceException;
+
 /**
  * Marshaller supporting serialization as binary Java objects.
  *
@@ -32,6 +37,19 @@ public class BinaryMarshaller implements IMarshaller {
 	}
 
 
+	@Override
+	public void serialize(final Serializable object, final OutputStream outputStream) throws ServiceException {
+		try {
+			// not closed, as this would close the output-stream
+			final ObjectOutputStream out = new ObjectOutputStream(outputStream);
+			out.writeObject(object);
+			out.flush();
+		} catch (final IOException e) {
+			throw new ServiceException("Could not serialize object: " + object, e);
+		}
+	}
+
+
 	@Override
 	public <T> T deserialize(final InputStream inputStream, final Class<T> clazz) {
 		return SerializationUtils.deserialize(inputStream);
@@ -14,8 +14,10 @@
 */
 package com.airepublic.microverse.core.common.marshaller;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.Serializable;
+import java.io.OutputStream;
+import java.io.Serializable;
 
 import com.airepublic.microverse.core.exception.ServiceException;
 
@@ -34,6 +36,22 @@ public interface IMarshaller {
    */
   public byte[] serialize(Serializable object) throws ServiceException;
 
+  /**
+   * Serializes the specified {@link Serializable} object to the output-stream. The output-stream
+   * is not closed. Marshallers should override this to write the object without building the
+   * serialized bytes in memory first.
+   * 
+   * @param object the {@link Serializable} object
+   * @param outputStream the output-stream
+   */
+  public default void serialize(final Serializable object, final OutputStream outputStream) throws ServiceException {
+    try {
+      outputStream.write(serialize(object));
+    } catch (final IOException e) {
+      throw new ServiceException("Could not write serialized object: " + object, e);
+    }
+  }
+
   /**
    * Deserializes the object from the input-stream.
    * 
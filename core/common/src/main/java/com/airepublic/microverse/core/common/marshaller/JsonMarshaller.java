@@ -14,9 +14,11 @@
 package com.airepublic.microverse.core.common.marshaller;
 
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 
 import com.airepublic.microverse.core.exception.ServiceException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
@@ -39,6 +41,16 @@ public class JsonMarshaller implements IMarshaller {
 	}
 
 
+	@Override
+	public void serialize(final Serializable object, final OutputStream outputStream) throws ServiceException {
+		try {
+			mapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(outputStream, object);
+		} catch (final Exception e) {
+			throw new ServiceException("Could not serialize object: " + object, e);
+		}
+	}
+
+
 	@Override
 	public <T> T deserialize(final InputStream inputStream, final Class<T> clazz) throws ServiceException {
 		try {
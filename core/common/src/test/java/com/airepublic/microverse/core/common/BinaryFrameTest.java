@@ -0,0 +1,133 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class BinaryFrameTest {
+
+	@Test
+	public void testWriteAndRead() throws Exception {
+		final byte[] content = "content".getBytes(StandardCharsets.UTF_8);
+		final BinaryFrame frame = BinaryFrame.read(new BinaryFrame(42, BinaryFrame.REQUEST, new String[] { "/service/1.0", "application/json", "", "HIGH", "ümläut" }, 1500L, content).toByteArray());
+
+		assertThat(frame.getRequestId()).isEqualTo(42);
+		assertThat(frame.getType()).isEqualTo(BinaryFrame.REQUEST);
+		assertThat(frame.getAttribute(0)).isEqualTo("/service/1.0");
+		assertThat(frame.getAttribute(1)).isEqualTo("application/json");
+		assertThat(frame.getAttribute(2)).isNull();
+		assertThat(frame.getAttribute(3)).isEqualTo("HIGH");
+		assertThat(frame.getAttribute(4)).isEqualTo("ümläut");
+		assertThat(frame.getAttribute(5)).isNull();
+		assertThat(frame.getValue()).isEqualTo(1500L);
+		assertThat(frame.getContent()).isEqualTo(content);
+	}
+
+
+	@Test
+	public void testWriteAndReadWithoutAttributesAndContent() throws Exception {
+		final byte[] bytes = new BinaryFrame(7, BinaryFrame.END, new String[0], -1L, null).toByteArray();
+		final BinaryFrame frame = BinaryFrame.read(bytes);
+
+		assertThat(bytes.length).isEqualTo(18);
+		assertThat(frame.getType()).isEqualTo(BinaryFrame.END);
+		assertThat(frame.getAttribute(0)).isNull();
+		assertThat(frame.getValue()).isEqualTo(-1L);
+		assertThat(frame.getContent()).isEmpty();
+	}
+
+
+	@Test
+	public void testReadConsecutiveFrames() throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new BinaryFrame(1, BinaryFrame.RESULT, new String[] { "application/json" }, 0L, "1".getBytes(StandardCharsets.UTF_8)).write(out);
+		new BinaryFrame(2, BinaryFrame.UNAVAILABLE, new String[] { "overloaded" }, 5L, null).write(out);
+
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+		final BinaryFrame first = BinaryFrame.read(in, 1024);
+		final BinaryFrame second = BinaryFrame.read(in, 1024);
+
+		assertThat(first.getRequestId()).isEqualTo(1);
+		assertThat(new String(first.getContent(), StandardCharsets.UTF_8)).isEqualTo("1");
+		assertThat(second.getRequestId()).isEqualTo(2);
+		assertThat(second.getAttribute(0)).isEqualTo("overloaded");
+		assertThat(second.getValue()).isEqualTo(5L);
+
+		try {
+			BinaryFrame.read(in, 1024);
+			fail("The stream has ended");
+		} catch (final EOFException e) {
+			// expected
+		}
+	}
+
+
+	@Test
+	public void testRejectFrameExceedingMaxLength() throws Exception {
+		final byte[] bytes = new BinaryFrame(1, BinaryFrame.RESULT, new String[0], 0L, new byte[100]).toByteArray();
+
+		assertThat(BinaryFrame.read(new DataInputStream(new ByteArrayInputStream(bytes)), bytes.length - 4).getContent()).hasSize(100);
+		assertCorrupted(bytes, bytes.length - 5);
+	}
+
+
+	@Test
+	public void testRejectCorruptedFrames() throws Exception {
+		// shorter than the fixed fields
+		assertCorrupted(ByteBuffer.allocate(4).putInt(13).array(), 1024);
+		// negative length
+		assertCorrupted(ByteBuffer.allocate(4).putInt(-1).array(), 1024);
+
+		// attribute longer than the frame
+		final byte[] bytes = new BinaryFrame(1, BinaryFrame.ERROR, new String[] { "message" }, 0L, null).toByteArray();
+		bytes[11] = (byte) 0xFF;
+		assertCorrupted(bytes, 1024);
+	}
+
+
+	@Test
+	public void testRejectTruncatedFrame() throws Exception {
+		final byte[] bytes = new BinaryFrame(1, BinaryFrame.RESULT, new String[] { "application/json" }, 0L, new byte[10]).toByteArray();
+
+		try {
+			BinaryFrame.read(new DataInputStream(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1))), 1024);
+			fail("The frame is truncated");
+		} catch (final EOFException e) {
+			// expected
+		}
+	}
+
+
+	private void assertCorrupted(final byte[] bytes, final long maxLength) throws IOException {
+		try {
+			BinaryFrame.read(new DataInputStream(new ByteArrayInputStream(bytes)), maxLength);
+			fail("The frame should have been rejected");
+		} catch (final StreamCorruptedException e) {
+			// expected
+		}
+	}
+}
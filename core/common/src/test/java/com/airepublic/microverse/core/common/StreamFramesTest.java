@@ -0,0 +1,145 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.airepublic.microverse.core.common.marshaller.IMarshaller;
+import com.airepublic.microverse.core.common.marshaller.JsonMarshaller;
+
+public class StreamFramesTest {
+	private final IMarshaller marshaller = new JsonMarshaller();
+	private final AtomicInteger closed = new AtomicInteger();
+
+
+	private byte[] write(final Iterator<?> elements) throws IOException {
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		StreamFrames.write(elements, marshaller, outputStream);
+
+		return outputStream.toByteArray();
+	}
+
+
+	private <T> List<T> readAll(final byte[] frames, final Class<T> elementType) {
+		final Iterator<T> iterator = StreamFrames.read(new ByteArrayInputStream(frames), marshaller, elementType, closed::incrementAndGet);
+		final List<T> elements = new ArrayList<>();
+		iterator.forEachRemaining(elements::add);
+
+		return elements;
+	}
+
+
+	@Test
+	public void testElementsRoundTrip() throws Exception {
+		final byte[] frames = write(Arrays.asList("a", "bc", "def").iterator());
+
+		assertThat(readAll(frames, String.class)).containsExactly("a", "bc", "def");
+		assertThat(closed.get()).isEqualTo(1);
+	}
+
+
+	@Test
+	public void testEmptyStreamOnlyHasEndFrame() throws Exception {
+		final byte[] frames = write(Collections.emptyIterator());
+
+		assertThat(frames).containsExactly((byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff);
+		assertThat(readAll(frames, String.class)).isEmpty();
+		assertThat(closed.get()).isEqualTo(1);
+	}
+
+
+	@Test
+	public void testFailedStreamEndsWithErrorFrame() throws Exception {
+		final Iterator<String> failing = new Iterator<String>() {
+			private int count = 0;
+
+
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+
+
+			@Override
+			public String next() {
+				if (count++ == 1) {
+					throw new IllegalStateException("database gone");
+				}
+
+				return "first";
+			}
+		};
+
+		final Iterator<String> iterator = StreamFrames.read(new ByteArrayInputStream(write(failing)), marshaller, String.class, closed::incrementAndGet);
+
+		assertThat(iterator.next()).isEqualTo("first");
+
+		try {
+			iterator.hasNext();
+			fail("The error frame must fail the stream");
+		} catch (final IllegalStateException e) {
+			assertThat(e.getMessage()).contains("database gone");
+		}
+
+		assertThat(closed.get()).isEqualTo(1);
+	}
+
+
+	@Test
+	public void testTruncatedStreamFails() throws Exception {
+		final byte[] frames = write(Arrays.asList("a", "b").iterator());
+		final Iterator<String> iterator = StreamFrames.read(new ByteArrayInputStream(Arrays.copyOf(frames, frames.length - 6)), marshaller, String.class, closed::incrementAndGet);
+
+		assertThat(iterator.next()).isEqualTo("a");
+
+		try {
+			iterator.hasNext();
+			fail("A truncated stream must fail");
+		} catch (final UncheckedIOException e) {
+			assertThat(closed.get()).isEqualTo(1);
+		}
+	}
+
+
+	@Test
+	public void testFlushesFirstElementImmediately() throws Exception {
+		final List<Integer> flushedSizes = new ArrayList<>();
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream() {
+			@Override
+			public void flush() {
+				flushedSizes.add(size());
+			}
+		};
+
+		StreamFrames.write(Arrays.asList("a", "b", "c").iterator(), marshaller, outputStream);
+
+		// the first element and the end of the stream
+		assertThat(flushedSizes).hasSize(2);
+		assertThat(flushedSizes.get(0)).isLessThan(flushedSizes.get(1));
+	}
+}
@@ -0,0 +1,193 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.junit.Test;
+
+public class WebSocketTest {
+	private static byte[] bytes(final String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+
+	/** Creates an unmasked frame with a payload shorter than 126 bytes. */
+	private static byte[] frame(final boolean fin, final int opcode, final byte[] payload) {
+		final byte[] frame = new byte[2 + payload.length];
+		frame[0] = (byte) ((fin ? 0x80 : 0) | opcode);
+		frame[1] = (byte) payload.length;
+		System.arraycopy(payload, 0, frame, 2, payload.length);
+
+		return frame;
+	}
+
+
+	private static byte[] concat(final byte[]... frames) {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		for (final byte[] frame : frames) {
+			bytes.write(frame, 0, frame.length);
+		}
+
+		return bytes.toByteArray();
+	}
+
+
+	private static WebSocket server(final byte[] input, final ByteArrayOutputStream output) {
+		return new WebSocket(new ByteArrayInputStream(input), output, false);
+	}
+
+
+	@Test
+	public void testHandshakeKeys() {
+		// the example of RFC 6455
+		assertThat(WebSocket.acceptKey("dGhlIHNhbXBsZSBub25jZQ==")).isEqualTo("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=");
+		assertThat(WebSocket.acceptKey(" dGhlIHNhbXBsZSBub25jZQ== ")).isEqualTo("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=");
+
+		assertThat(Base64.getDecoder().decode(WebSocket.createKey())).hasSize(16);
+		assertThat(WebSocket.createKey()).isNotEqualTo(WebSocket.createKey());
+	}
+
+
+	@Test
+	public void testClientMasksAndServerUnmasks() throws Exception {
+		final ByteArrayOutputStream clientOutput = new ByteArrayOutputStream();
+		final byte[] payload = bytes("masked payload");
+
+		new WebSocket(new ByteArrayInputStream(new byte[0]), clientOutput, true).write(payload);
+		final byte[] frame = clientOutput.toByteArray();
+
+		assertThat(frame[0] & 0xFF).isEqualTo(0x82);
+		assertThat(frame[1] & 0x80).isEqualTo(0x80);
+		assertThat(frame[1] & 0x7F).isEqualTo(payload.length);
+		assertThat(frame).hasSize(2 + 4 + payload.length);
+		assertThat(Arrays.copyOfRange(frame, 6, frame.length)).isNotEqualTo(payload);
+
+		assertThat(server(frame, new ByteArrayOutputStream()).read(1024)).isEqualTo(payload);
+	}
+
+
+	@Test
+	public void testServerDoesNotMask() throws Exception {
+		final ByteArrayOutputStream serverOutput = new ByteArrayOutputStream();
+		final byte[] payload = bytes("plain payload");
+
+		server(new byte[0], serverOutput).write(payload);
+
+		assertThat(serverOutput.toByteArray()).isEqualTo(frame(true, 0x2, payload));
+	}
+
+
+	@Test
+	public void testExtendedPayloadLengths() throws Exception {
+		for (final int length : new int[] { 125, 126, 0xFFFF, 0x10000 }) {
+			final ByteArrayOutputStream clientOutput = new ByteArrayOutputStream();
+			final byte[] payload = new byte[length];
+			Arrays.fill(payload, (byte) 7);
+
+			new WebSocket(new ByteArrayInputStream(new byte[0]), clientOutput, true).write(payload);
+
+			assertThat(server(clientOutput.toByteArray(), new ByteArrayOutputStream()).read(length)).isEqualTo(payload);
+		}
+	}
+
+
+	@Test
+	public void testReassemblesFragmentedMessages() throws Exception {
+		final byte[] input = concat(frame(false, 0x2, bytes("frag")), frame(false, 0x0, bytes("men")), frame(true, 0x0, bytes("ted")), frame(true, 0x2, bytes("next")));
+		final WebSocket webSocket = server(input, new ByteArrayOutputStream());
+
+		assertThat(webSocket.read(1024)).isEqualTo(bytes("fragmented"));
+		assertThat(webSocket.read(1024)).isEqualTo(bytes("next"));
+	}
+
+
+	@Test
+	public void testRejectsFragmentedMessagesExceedingTheMaximumLength() throws Exception {
+		final byte[] input = concat(frame(false, 0x2, bytes("12345")), frame(true, 0x0, bytes("67890")));
+
+		try {
+			server(input, new ByteArrayOutputStream()).read(8);
+			fail("The message exceeds the maximum length");
+		} catch (final StreamCorruptedException e) {
+			assertThat(e.getMessage()).contains("10");
+		}
+	}
+
+
+	@Test(expected = StreamCorruptedException.class)
+	public void testRejectsContinuationWithoutMessage() throws Exception {
+		server(frame(true, 0x0, bytes("x")), new ByteArrayOutputStream()).read(1024);
+	}
+
+
+	@Test
+	public void testAnswersPingsWithinFragmentedMessages() throws Exception {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final byte[] input = concat(frame(false, 0x2, bytes("a")), frame(true, 0x9, bytes("ping")), frame(true, 0xA, bytes("pong")), frame(true, 0x0, bytes("b")));
+
+		assertThat(server(input, output).read(1024)).isEqualTo(bytes("ab"));
+		assertThat(output.toByteArray()).isEqualTo(frame(true, 0xA, bytes("ping")));
+	}
+
+
+	@Test
+	public void testEchoesCloseAndRejectsFurtherWrites() throws Exception {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final byte[] status = { 0x03, (byte) 0xE8 };
+		final WebSocket webSocket = server(frame(true, 0x8, status), output);
+
+		assertThat(webSocket.read(1024)).isNull();
+		assertThat(output.toByteArray()).isEqualTo(frame(true, 0x8, status));
+
+		// the close frame is only sent once
+		webSocket.close();
+		assertThat(output.size()).isEqualTo(4);
+
+		try {
+			webSocket.write(bytes("late"));
+			fail("The WebSocket has been closed");
+		} catch (final EOFException e) {
+			// expected
+		}
+	}
+
+
+	@Test
+	public void testCloseSendsNormalClosure() {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final WebSocket webSocket = server(new byte[0], output);
+
+		webSocket.close();
+		webSocket.close();
+
+		assertThat(output.toByteArray()).isEqualTo(frame(true, 0x8, new byte[] { 0x03, (byte) 0xE8 }));
+	}
+
+
+	@Test(expected = EOFException.class)
+	public void testConnectionEndingWithinAFrame() throws Exception {
+		server(Arrays.copyOf(frame(true, 0x2, bytes("truncated")), 5), new ByteArrayOutputStream()).read(1024);
+	}
+}
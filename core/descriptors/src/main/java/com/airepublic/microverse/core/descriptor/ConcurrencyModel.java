@@ -0,0 +1,56 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.descriptor;
+
+/**
+ * The concurrency models of a service declared with <code>service-concurrency</code> in the
+ * <code>microservice.txt</code> of the service-bundle. It determines how many instances of the
+ * service-class process the concurrent requests.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public enum ConcurrencyModel {
+	/** One instance processes all requests, so the service-class must be thread-safe. */
+	SINGLETON,
+	/**
+	 * A bounded pool of instances of which each processes one request at a time. Requests wait for
+	 * a free instance if all are busy.
+	 */
+	POOLED,
+	/**
+	 * Each platform worker thread gets its own instance. Virtual worker threads and callers in the
+	 * same JVM borrow an instance which is used by one thread at a time.
+	 */
+	THREAD;
+
+
+	/**
+	 * Parses the concurrency model from its name.
+	 *
+	 * @param name the name of the concurrency model (may be <code>null</code>)
+	 * @return the {@link ConcurrencyModel} or {@link #SINGLETON} if the name is unknown
+	 */
+	public static ConcurrencyModel parse(final String name) {
+		if (name != null) {
+			for (final ConcurrencyModel model : values()) {
+				if (model.name().equalsIgnoreCase(name.trim())) {
+					return model;
+				}
+			}
+		}
+
+		return SINGLETON;
+	}
+}
@@ -14,6 +14,7 @@
 package com.airepublic.microverse.core.descriptor;
 
 import java.io.Serializable;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 
 import org.apache.commons.lang3.SerializationUtils;
@@ -27,6 +28,9 @@ import org.apache.commons.lang3.SerializationUtils;
 public class MethodCall implements Serializable {
 	private static final long serialVersionUID = -6050997247296881913L;
 	private String methodName;
+	private String signature;
+	private int methodIndex = -1;
+	private int signatureHash;
 	private ArrayList<byte[]> parameters;
 
 
@@ -34,23 +38,95 @@ public class MethodCall implements Serializable {
 	}
 
 
-	private MethodCall(final String methodName, final ArrayList<byte[]> parameters) {
+	private MethodCall(final String methodName, final String signature, final ArrayList<byte[]> parameters) {
 		this.methodName = methodName;
+		this.signature = signature;
 		this.parameters = parameters;
 	}
 
 
+	private MethodCall(final int methodIndex, final int signatureHash, final ArrayList<byte[]> parameters) {
+		this.methodIndex = methodIndex;
+		this.signatureHash = signatureHash;
+		this.parameters = parameters;
+	}
+
+
+	/**
+	 * Creates a {@link MethodCall} for the specified method name. The service resolves the method
+	 * by its name and the parameters, so overloaded methods might not be resolved unambiguously.
+	 *
+	 * @param methodName the method name
+	 * @param parameters the parameters (may be <code>null</code> for no parameters)
+	 * @return the {@link MethodCall}
+	 */
 	public static MethodCall create(final String methodName, final Object[] parameters) {
+		return new MethodCall(methodName, null, serializeParameters(methodName, parameters));
+	}
+
+
+	/**
+	 * Creates a {@link MethodCall} for the specified service-interface method. The call carries
+	 * the method signature, so the service can resolve overloaded methods and primitive parameter
+	 * types unambiguously.
+	 *
+	 * @param method the service-interface method
+	 * @param parameters the parameters (may be <code>null</code> for no parameters)
+	 * @return the {@link MethodCall}
+	 */
+	public static MethodCall create(final Method method, final Object[] parameters) {
+		return new MethodCall(method.getName(), MethodDescriptor.getSignature(method), serializeParameters(method.getName(), parameters));
+	}
+
+
+	/**
+	 * Creates a {@link MethodCall} for the method with the specified {@link MethodDescriptor}. The
+	 * call only carries the method index and the signature hash instead of the method name, so the
+	 * service can dispatch it by index.
+	 *
+	 * @param methodDescriptor the indexed {@link MethodDescriptor}
+	 * @param parameters the parameters (may be <code>null</code> for no parameters)
+	 * @return the {@link MethodCall}
+	 */
+	public static MethodCall create(final MethodDescriptor methodDescriptor, final Object[] parameters) {
+		return new MethodCall(methodDescriptor.getIndex(), methodDescriptor.getSignatureHash(), serializeParameters(methodDescriptor.getMethodName(), parameters));
+	}
+
+
+	/**
+	 * Creates a {@link MethodCall} from the fields of a call whose parameters have already been
+	 * serialized, e.g. by a service-client in another classloader.
+	 *
+	 * @param methodIndex the method index or -1
+	 * @param signatureHash the signature hash of the method with the method index
+	 * @param methodName the method name (may be <code>null</code> if called by index)
+	 * @param signature the method signature (may be <code>null</code>)
+	 * @param parameters the serialized parameters
+	 * @return the {@link MethodCall}
+	 */
+	public static MethodCall create(final int methodIndex, final int signatureHash, final String methodName, final String signature, final ArrayList<byte[]> parameters) {
+		final MethodCall call = new MethodCall(methodName, signature, parameters);
+		call.methodIndex = methodIndex;
+		call.signatureHash = signatureHash;
+
+		return call;
+	}
+
+
+	private static ArrayList<byte[]> serializeParameters(final String methodName, final Object[] parameters) {
 		final ArrayList<byte[]> params = new ArrayList<>();
 
-		for (final Object param : parameters) {
-			if (param instanceof Serializable) {
-				params.add(SerializationUtils.serialize((Serializable) param));
-			} else {
-				throw new RuntimeException("Parameter " + param + " for method " + methodName + " does not implement Serializable");
+		if (parameters != null) {
+			for (final Object param : parameters) {
+				if (param == null || param instanceof Serializable) {
+					params.add(SerializationUtils.serialize((Serializable) param));
+				} else {
+					throw new RuntimeException("Parameter " + param + " for method " + methodName + " does not implement Serializable");
+				}
 			}
 		}
-		return new MethodCall(methodName, params);
+
+		return params;
 	}
 
 
@@ -59,6 +135,36 @@ public class MethodCall implements Serializable {
 	}
 
 
+	/**
+	 * Gets the method signature, e.g. <code>sayHello(java.lang.String)</code>.
+	 *
+	 * @return the signature or <code>null</code> if the call was created only by method name
+	 */
+	public final String getSignature() {
+		return signature;
+	}
+
+
+	/**
+	 * Gets the index of the method in the {@link ServiceDescriptor}.
+	 *
+	 * @return the method index or -1 if the call was not created by index
+	 */
+	public final int getMethodIndex() {
+		return methodIndex;
+	}
+
+
+	/**
+	 * Gets the signature hash of the method with the method index.
+	 *
+	 * @return the signature hash
+	 */
+	public final int getSignatureHash() {
+		return signatureHash;
+	}
+
+
 	public final ArrayList<byte[]> getParameters() {
 		return parameters;
 	}
@@ -68,8 +174,10 @@ public class MethodCall implements Serializable {
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
+		result = prime * result + methodIndex;
 		result = prime * result + ((methodName == null) ? 0 : methodName.hashCode());
 		result = prime * result + ((parameters == null) ? 0 : parameters.hashCode());
+		result = prime * result + ((signature == null) ? 0 : signature.hashCode());
 		return result;
 	}
 
@@ -86,6 +194,9 @@ public class MethodCall implements Serializable {
 			return false;
 		}
 		final MethodCall other = (MethodCall) obj;
+		if (methodIndex != other.methodIndex || signatureHash != other.signatureHash) {
+			return false;
+		}
 		if (methodName == null) {
 			if (other.methodName != null) {
 				return false;
@@ -100,13 +211,20 @@ public class MethodCall implements Serializable {
 		} else if (!parameters.equals(other.parameters)) {
 			return false;
 		}
+		if (signature == null) {
+			if (other.signature != null) {
+				return false;
+			}
+		} else if (!signature.equals(other.signature)) {
+			return false;
+		}
 		return true;
 	}
 
 
 	@Override
 	public String toString() {
-		return "MethodCall [methodName=" + methodName + ", parameters=" + parameters + "]";
+		return "MethodCall [methodName=" + methodName + ", signature=" + signature + ", methodIndex=" + methodIndex + ", parameters=" + parameters + "]";
 	}
 
 }
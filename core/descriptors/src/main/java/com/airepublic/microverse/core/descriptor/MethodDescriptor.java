@@ -20,28 +20,91 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import com.airepublic.microverse.core.service.api.CacheResult;
+import com.airepublic.microverse.core.service.api.OneWay;
+import com.airepublic.microverse.core.service.api.ResultStream;
+import com.airepublic.microverse.core.service.api.SingleFlight;
+import com.airepublic.microverse.core.service.api.Subscribe;
+import com.airepublic.microverse.core.service.api.WarmUp;
+
 public final class MethodDescriptor implements Serializable {
   private static final long serialVersionUID = 4910474995954882588L;
   private String returnType;
   private String methodName;
+  private String signature;
+  private int index = -1;
+  private int signatureHash;
+  private boolean singleFlight;
+  private long cacheTtl;
+  private boolean warmUp;
+  private boolean oneWay;
+  private String topic;
   private Map<String, String> params;
 
   private MethodDescriptor() {}
 
-  private MethodDescriptor(final String returnType, final String methodName, final Map<String, String> params) {
+  private MethodDescriptor(final String returnType, final String methodName, final String signature, final int index, final boolean singleFlight, final long cacheTtl, final boolean warmUp, final boolean oneWay, final String topic, final Map<String, String> params) {
     this.returnType = returnType;
     this.methodName = methodName;
+    this.signature = signature;
+    this.index = index;
+    this.singleFlight = singleFlight;
+    this.cacheTtl = cacheTtl;
+    this.warmUp = warmUp;
+    this.oneWay = oneWay;
+    this.topic = topic;
+    signatureHash = (returnType + " " + signature).hashCode();
     this.params = Collections.unmodifiableMap(params);
   }
 
   public static final MethodDescriptor create(final Method method) {
+    return create(method, -1);
+  }
+
+  /**
+   * Creates a {@link MethodDescriptor} with the specified index which identifies the method on the
+   * wire.
+   *
+   * @param method the {@link Method}
+   * @param index the index of the method in the {@link ServiceDescriptor}
+   * @return the {@link MethodDescriptor}
+   */
+  public static final MethodDescriptor create(final Method method, final int index) {
     final Map<String, String> params = new LinkedHashMap<>();
 
     for (final Parameter param : method.getParameters()) {
       params.put(param.getName(), param.getType().getName());
     }
 
-    return new MethodDescriptor(method.getReturnType().getName(), method.getName(), params);
+    final CacheResult cacheResult = method.getAnnotation(CacheResult.class);
+    final long cacheTtl = cacheResult != null ? cacheResult.unit().toMillis(cacheResult.value()) : 0L;
+    final Subscribe subscribe = method.getAnnotation(Subscribe.class);
+    final String topic = subscribe != null && method.getParameterCount() == 1 ? subscribe.value() : null;
+
+    return new MethodDescriptor(method.getReturnType().getName(), method.getName(), getSignature(method), index, method.isAnnotationPresent(SingleFlight.class), cacheTtl, method.isAnnotationPresent(WarmUp.class), method.getReturnType() == void.class && method.isAnnotationPresent(OneWay.class), topic, params);
+  }
+
+  /**
+   * Builds the signature of the method consisting of the method name and its parameter types, e.g.
+   * <code>sayHello(java.lang.String)</code>. The signature identifies a method unambiguously even
+   * if it is overloaded.
+   *
+   * @param method the {@link Method}
+   * @return the signature
+   */
+  public static final String getSignature(final Method method) {
+    final StringBuilder buf = new StringBuilder(method.getName()).append('(');
+    final Class<?>[] parameterTypes = method.getParameterTypes();
+
+    for (int i = 0; i < parameterTypes.length; i++) {
+      if (i > 0) {
+        buf.append(',');
+      }
+
+      buf.append(parameterTypes[i].getName());
+    }
+
+    return buf.append(')').toString();
   }
 
   public String getReturnType() {
@@ -52,6 +115,86 @@ public final class MethodDescriptor implements Serializable {
     return methodName;
   }
 
+  public String getSignature() {
+    return signature;
+  }
+
+  /**
+   * Gets the index of the method in the {@link ServiceDescriptor}.
+   *
+   * @return the index or -1 if the method is not indexed
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * Gets the hash of the signature and return type to verify that client and service agree on the
+   * method for an index.
+   *
+   * @return the signature hash
+   */
+  public int getSignatureHash() {
+    return signatureHash;
+  }
+
+  /**
+   * Checks whether concurrent identical calls of the method may share a single execution.
+   *
+   * @return <code>true</code> if the method is annotated with {@link SingleFlight}
+   */
+  public boolean isSingleFlight() {
+    return singleFlight;
+  }
+
+  /**
+   * Gets the time to live in milliseconds of cached results of the method.
+   *
+   * @return the time to live or 0 if results are not cached
+   */
+  public long getCacheTtl() {
+    return cacheTtl;
+  }
+
+  /**
+   * Checks whether the method may be called to warm up a newly deployed service.
+   *
+   * @return <code>true</code> if the method is annotated with {@link WarmUp}
+   */
+  public boolean isWarmUp() {
+    return warmUp;
+  }
+
+  /**
+   * Checks whether calls of the method are sent one-way without waiting for the service.
+   *
+   * @return <code>true</code> if the method returns <code>void</code> and is annotated with
+   *         {@link OneWay}
+   */
+  public boolean isOneWay() {
+    return oneWay;
+  }
+
+  /**
+   * Gets the topic whose events are delivered to the method.
+   *
+   * @return the topic or <code>null</code> if the method is not annotated with {@link Subscribe}
+   *         or doesn't have exactly one parameter
+   */
+  public String getTopic() {
+    return topic;
+  }
+
+  /**
+   * Checks whether the method returns an element stream which is sent element by element.
+   *
+   * @return <code>true</code> if the method returns an {@link java.util.Iterator},
+   *         {@link java.util.stream.Stream} or {@link java.util.concurrent.Flow.Publisher}
+   */
+  public boolean isStreaming() {
+    return ResultStream.isStreamType(returnType);
+  }
+
   public Map<String, String> getParams() {
     return params;
   }
@@ -61,6 +204,9 @@ public final class MethodDescriptor implements Serializable {
     final int prime = 31;
     int result = 1;
     result = prime * result + ((methodName == null) ? 0 : methodName.hashCode());
+    result = prime * result + ((signature == null) ? 0 : signature.hashCode());
+    result = prime * result + index;
+    result = prime * result + signatureHash;
     result = prime * result + ((params == null) ? 0 : params.hashCode());
     return result;
   }
@@ -84,6 +230,19 @@ public final class MethodDescriptor implements Serializable {
     } else if (!methodName.equals(other.methodName)) {
       return false;
     }
+    if (signature == null) {
+      if (other.signature != null) {
+        return false;
+      }
+    } else if (!signature.equals(other.signature)) {
+      return false;
+    }
+    if (index != other.index) {
+      return false;
+    }
+    if (signatureHash != other.signatureHash) {
+      return false;
+    }
     if (params == null) {
       if (other.params != null) {
         return false;
@@ -96,7 +255,7 @@ public final class MethodDescriptor implements Serializable {
 
   @Override
   public String toString() {
-    return "MethodDescriptor [returnType=" + returnType + ", methodName=" + methodName + ", params=" + params + "]";
+    return "MethodDescriptor [returnType=" + returnType + ", methodName=" + methodName + ", signature=" + signature + ", index=" + index + ", singleFlight=" + singleFlight + ", cacheTtl=" + cacheTtl + ", warmUp=" + warmUp + ", oneWay=" + oneWay + ", topic=" + topic + ", params=" + params + "]";
   }
 
 }
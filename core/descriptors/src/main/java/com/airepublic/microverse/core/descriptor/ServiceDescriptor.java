@@ -14,7 +14,10 @@
 package com.airepublic.microverse.core.descriptor;
 
 import java.io.Serializable;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 
 import com.airepublic.microverse.core.exception.ServiceException;
@@ -33,6 +36,10 @@ public class ServiceDescriptor extends AbstractDescriptor implements Serializabl
 	private WebCall serviceUri;
 	private String serviceClass;
 	private String serviceInterface;
+	private ConcurrencyModel concurrencyModel = ConcurrencyModel.SINGLETON;
+	private int poolSize;
+	private int binaryPort;
+	private int webSocketPort;
 
 	private final List<MethodDescriptor> methods = new ArrayList<>();
 
@@ -88,11 +95,60 @@ public class ServiceDescriptor extends AbstractDescriptor implements Serializabl
 	}
 
 
+	/**
+	 * Adds the specified service-interface methods ordered by their signature, so that every
+	 * method gets a stable index independent of the order the JVM reports the methods in. The
+	 * indexes always start at 0, so adding the methods again replaces the indexed methods added
+	 * before. Methods with the same signature get only one index.
+	 *
+	 * @param serviceInterfaceMethods the service-interface methods
+	 */
+	public final void addMethods(final Method[] serviceInterfaceMethods) {
+		final Method[] sorted = serviceInterfaceMethods.clone();
+		Arrays.sort(sorted, Comparator.comparing(MethodDescriptor::getSignature));
+
+		final List<MethodDescriptor> indexedMethods = new ArrayList<>(sorted.length);
+		String previousSignature = null;
+		int index = 0;
+
+		for (final Method method : sorted) {
+			final String signature = MethodDescriptor.getSignature(method);
+
+			// methods inherited from several super-interfaces are reported once per interface
+			if (!signature.equals(previousSignature)) {
+				indexedMethods.add(MethodDescriptor.create(method, index++));
+				previousSignature = signature;
+			}
+		}
+
+		// the indexed methods are kept at the start of the list to be found by their index
+		methods.removeIf(method -> method.getIndex() >= 0);
+		methods.addAll(0, indexedMethods);
+	}
+
+
 	public final List<MethodDescriptor> getMethods() {
 		return methods;
 	}
 
 
+	/**
+	 * Gets the {@link MethodDescriptor} with the specified index.
+	 *
+	 * @param index the method index
+	 * @return the {@link MethodDescriptor} or <code>null</code> if the index is unknown
+	 */
+	public final MethodDescriptor getMethod(final int index) {
+		if (index < 0 || index >= methods.size()) {
+			return null;
+		}
+
+		final MethodDescriptor method = methods.get(index);
+
+		return method.getIndex() == index ? method : null;
+	}
+
+
 	public final WebCall getServiceUri() {
 		return serviceUri;
 	}
@@ -108,6 +164,71 @@ public class ServiceDescriptor extends AbstractDescriptor implements Serializabl
 	}
 
 
+	/**
+	 * Gets the {@link ConcurrencyModel} of the service.
+	 *
+	 * @return the {@link ConcurrencyModel}
+	 */
+	public ConcurrencyModel getConcurrencyModel() {
+		return concurrencyModel;
+	}
+
+
+	public void setConcurrencyModel(final ConcurrencyModel concurrencyModel) {
+		this.concurrencyModel = concurrencyModel;
+	}
+
+
+	/**
+	 * Gets the maximum number of instances of the service-class if the service is
+	 * {@link ConcurrencyModel#POOLED}.
+	 *
+	 * @return the pool size
+	 */
+	public int getPoolSize() {
+		return poolSize;
+	}
+
+
+	public void setPoolSize(final int poolSize) {
+		this.poolSize = poolSize;
+	}
+
+
+	/**
+	 * Gets the port of the binary endpoint of the service-server which serves the service on the
+	 * same host next to the HTTP service-URI. The binary protocol is not encrypted, so it is not
+	 * offered for services using SSL.
+	 *
+	 * @return the binary port or 0 if the service is only served via HTTP
+	 */
+	public int getBinaryPort() {
+		return binaryPort;
+	}
+
+
+	public void setBinaryPort(final int binaryPort) {
+		this.binaryPort = binaryPort;
+	}
+
+
+	/**
+	 * Gets the port on which the service-server accepts WebSocket sessions with the service on
+	 * the same host. The sessions are not encrypted, so they are not offered for services using
+	 * SSL.
+	 *
+	 * @return the WebSocket port or 0 if the service-server doesn't offer sessions
+	 */
+	public int getWebSocketPort() {
+		return webSocketPort;
+	}
+
+
+	public void setWebSocketPort(final int webSocketPort) {
+		this.webSocketPort = webSocketPort;
+	}
+
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -182,7 +303,7 @@ public class ServiceDescriptor extends AbstractDescriptor implements Serializabl
 
 	@Override
 	public String toString() {
-		return "ServiceDescriptor [id=" + id + ", version=" + version + ", serviceUri=" + serviceUri + ", serviceClass=" + serviceClass + ", serviceInterface=" + serviceInterface + ", methods=" + methods + "]";
+		return "ServiceDescriptor [id=" + id + ", version=" + version + ", serviceUri=" + serviceUri + ", serviceClass=" + serviceClass + ", serviceInterface=" + serviceInterface + ", concurrencyModel=" + concurrencyModel + ", poolSize=" + poolSize + ", binaryPort=" + binaryPort + ", webSocketPort=" + webSocketPort + ", methods=" + methods + "]";
 	}
 
 }
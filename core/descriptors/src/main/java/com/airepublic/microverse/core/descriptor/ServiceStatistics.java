@@ -0,0 +1,390 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.descriptor;
+
+import java.io.Serializable;
+
+/**
+ * Snapshot of the request processing statistics of a service on a service-server.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class ServiceStatistics implements Serializable {
+	private static final long serialVersionUID = 2793487620943176561L;
+	private String serviceId;
+	private String serviceVersion;
+	private int workerThreads;
+	private int activeWorkers;
+	private int queueSize;
+	private int queueCapacity;
+	private long completedRequests;
+	private long rejectedRequests;
+	private long shedRequests;
+	private long singleFlightRequests;
+	private long coalescedRequests;
+	private long cacheHits;
+	private long cacheMisses;
+	private long cacheSize;
+	private ConcurrencyModel concurrencyModel;
+	private int serviceInstances;
+	private int busyInstances;
+	private long instanceWaits;
+	private long queueDelay;
+	private long serviceTime;
+	private boolean overloaded;
+	private double utilization;
+
+
+	public ServiceStatistics() {
+	}
+
+
+	/**
+	 * Gets the service-id.
+	 *
+	 * @return the service-id
+	 */
+	public String getServiceId() {
+		return serviceId;
+	}
+
+
+	public void setServiceId(final String serviceId) {
+		this.serviceId = serviceId;
+	}
+
+
+	/**
+	 * Gets the service-version.
+	 *
+	 * @return the service-version
+	 */
+	public String getServiceVersion() {
+		return serviceVersion;
+	}
+
+
+	public void setServiceVersion(final String serviceVersion) {
+		this.serviceVersion = serviceVersion;
+	}
+
+
+	/**
+	 * Gets the number of worker threads of the service.
+	 *
+	 * @return the number of worker threads of the service
+	 */
+	public int getWorkerThreads() {
+		return workerThreads;
+	}
+
+
+	public void setWorkerThreads(final int workerThreads) {
+		this.workerThreads = workerThreads;
+	}
+
+
+	/**
+	 * Gets the number of worker threads currently processing requests.
+	 *
+	 * @return the number of worker threads currently processing requests
+	 */
+	public int getActiveWorkers() {
+		return activeWorkers;
+	}
+
+
+	public void setActiveWorkers(final int activeWorkers) {
+		this.activeWorkers = activeWorkers;
+	}
+
+
+	/**
+	 * Gets the number of requests waiting in the queue.
+	 *
+	 * @return the number of requests waiting in the queue
+	 */
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+
+	public void setQueueSize(final int queueSize) {
+		this.queueSize = queueSize;
+	}
+
+
+	/**
+	 * Gets the maximum number of requests waiting in the queue.
+	 *
+	 * @return the maximum number of requests waiting in the queue
+	 */
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+
+	public void setQueueCapacity(final int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+
+
+	/**
+	 * Gets the number of processed requests.
+	 *
+	 * @return the number of processed requests
+	 */
+	public long getCompletedRequests() {
+		return completedRequests;
+	}
+
+
+	public void setCompletedRequests(final long completedRequests) {
+		this.completedRequests = completedRequests;
+	}
+
+
+	/**
+	 * Gets the number of requests rejected because the queue was full.
+	 *
+	 * @return the number of requests rejected because the queue was full
+	 */
+	public long getRejectedRequests() {
+		return rejectedRequests;
+	}
+
+
+	public void setRejectedRequests(final long rejectedRequests) {
+		this.rejectedRequests = rejectedRequests;
+	}
+
+
+	/**
+	 * Gets the number of requests rejected by the admission control.
+	 *
+	 * @return the number of requests rejected by the admission control
+	 */
+	public long getShedRequests() {
+		return shedRequests;
+	}
+
+
+	public void setShedRequests(final long shedRequests) {
+		this.shedRequests = shedRequests;
+	}
+
+
+	/**
+	 * Gets the number of requests to single-flight methods.
+	 *
+	 * @return the number of requests to single-flight methods
+	 */
+	public long getSingleFlightRequests() {
+		return singleFlightRequests;
+	}
+
+
+	public void setSingleFlightRequests(final long singleFlightRequests) {
+		this.singleFlightRequests = singleFlightRequests;
+	}
+
+
+	/**
+	 * Gets the number of requests to single-flight methods which were answered with the result of
+	 * an identical request already in flight. Relative to the single-flight requests this is the
+	 * coalescing rate.
+	 *
+	 * @return the number of coalesced requests
+	 */
+	public long getCoalescedRequests() {
+		return coalescedRequests;
+	}
+
+
+	public void setCoalescedRequests(final long coalescedRequests) {
+		this.coalescedRequests = coalescedRequests;
+	}
+
+
+	/**
+	 * Gets the number of requests answered from the result cache.
+	 *
+	 * @return the number of cache hits
+	 */
+	public long getCacheHits() {
+		return cacheHits;
+	}
+
+
+	public void setCacheHits(final long cacheHits) {
+		this.cacheHits = cacheHits;
+	}
+
+
+	/**
+	 * Gets the number of requests to cached methods which had to invoke the service.
+	 *
+	 * @return the number of cache misses
+	 */
+	public long getCacheMisses() {
+		return cacheMisses;
+	}
+
+
+	public void setCacheMisses(final long cacheMisses) {
+		this.cacheMisses = cacheMisses;
+	}
+
+
+	/**
+	 * Gets the number of bytes of the cached results.
+	 *
+	 * @return the cache size in bytes
+	 */
+	public long getCacheSize() {
+		return cacheSize;
+	}
+
+
+	public void setCacheSize(final long cacheSize) {
+		this.cacheSize = cacheSize;
+	}
+
+
+	/**
+	 * Gets the {@link ConcurrencyModel} of the service.
+	 *
+	 * @return the {@link ConcurrencyModel}
+	 */
+	public ConcurrencyModel getConcurrencyModel() {
+		return concurrencyModel;
+	}
+
+
+	public void setConcurrencyModel(final ConcurrencyModel concurrencyModel) {
+		this.concurrencyModel = concurrencyModel;
+	}
+
+
+	/**
+	 * Gets the number of instances of the service-class created to process requests.
+	 *
+	 * @return the number of service instances
+	 */
+	public int getServiceInstances() {
+		return serviceInstances;
+	}
+
+
+	public void setServiceInstances(final int serviceInstances) {
+		this.serviceInstances = serviceInstances;
+	}
+
+
+	/**
+	 * Gets the number of pooled instances of the service-class currently processing a request.
+	 *
+	 * @return the number of busy instances
+	 */
+	public int getBusyInstances() {
+		return busyInstances;
+	}
+
+
+	public void setBusyInstances(final int busyInstances) {
+		this.busyInstances = busyInstances;
+	}
+
+
+	/**
+	 * Gets the number of requests which had to wait for a pooled instance of the service-class.
+	 *
+	 * @return the number of instance waits
+	 */
+	public long getInstanceWaits() {
+		return instanceWaits;
+	}
+
+
+	public void setInstanceWaits(final long instanceWaits) {
+		this.instanceWaits = instanceWaits;
+	}
+
+
+	/**
+	 * Gets the average time in milliseconds requests wait for a worker thread.
+	 *
+	 * @return the average time in milliseconds requests wait for a worker thread
+	 */
+	public long getQueueDelay() {
+		return queueDelay;
+	}
+
+
+	public void setQueueDelay(final long queueDelay) {
+		this.queueDelay = queueDelay;
+	}
+
+
+	/**
+	 * Gets the average time in milliseconds to process a request.
+	 *
+	 * @return the average time in milliseconds to process a request
+	 */
+	public long getServiceTime() {
+		return serviceTime;
+	}
+
+
+	public void setServiceTime(final long serviceTime) {
+		this.serviceTime = serviceTime;
+	}
+
+
+	/**
+	 * Gets whether the service is currently overloaded.
+	 *
+	 * @return whether the service is currently overloaded
+	 */
+	public boolean isOverloaded() {
+		return overloaded;
+	}
+
+
+	public void setOverloaded(final boolean overloaded) {
+		this.overloaded = overloaded;
+	}
+
+
+	/**
+	 * Gets the ratio of active worker threads to worker threads.
+	 *
+	 * @return the ratio of active worker threads to worker threads
+	 */
+	public double getUtilization() {
+		return utilization;
+	}
+
+
+	public void setUtilization(final double utilization) {
+		this.utilization = utilization;
+	}
+
+
+	@Override
+	public String toString() {
+		return "ServiceStatistics [serviceId=" + serviceId + ", serviceVersion=" + serviceVersion + ", workerThreads=" + workerThreads + ", activeWorkers=" + activeWorkers + ", queueSize=" + queueSize + ", queueCapacity=" + queueCapacity + ", completedRequests=" + completedRequests + ", rejectedRequests=" + rejectedRequests + ", shedRequests=" + shedRequests + ", singleFlightRequests=" + singleFlightRequests + ", coalescedRequests=" + coalescedRequests + ", cacheHits=" + cacheHits + ", cacheMisses=" + cacheMisses + ", cacheSize=" + cacheSize + ", concurrencyModel=" + concurrencyModel + ", serviceInstances=" + serviceInstances + ", busyInstances=" + busyInstances + ", instanceWaits=" + instanceWaits + ", queueDelay=" + queueDelay + ", serviceTime=" + serviceTime + ", overloaded=" + overloaded + ", utilization=" + utilization + "]";
+	}
+}
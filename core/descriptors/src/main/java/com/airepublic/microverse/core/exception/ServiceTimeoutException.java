@@ -0,0 +1,46 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.exception;
+
+/**
+ * Exception signaling that the deadline of a service call has passed before the call could be
+ * completed.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class ServiceTimeoutException extends ServiceException {
+	private static final long serialVersionUID = 5186092553183375227L;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param msg the message
+	 */
+	public ServiceTimeoutException(final String msg) {
+		super(msg);
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param msg the message
+	 * @param cause the cause
+	 */
+	public ServiceTimeoutException(final String msg, final Throwable cause) {
+		super(msg, cause);
+	}
+}
@@ -0,0 +1,49 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.exception;
+
+/**
+ * Exception signaling that a service is overloaded and did not accept the request. The request
+ * was not processed and may be retried on another instance of the service or after the
+ * retry-after period.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class ServiceUnavailableException extends ServiceException {
+	private static final long serialVersionUID = -3161830364409361094L;
+	private final int retryAfter;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param msg the message
+	 * @param retryAfter the seconds after which the request may be retried
+	 */
+	public ServiceUnavailableException(final String msg, final int retryAfter) {
+		super(msg);
+		this.retryAfter = retryAfter;
+	}
+
+
+	/**
+	 * Gets the seconds after which the request may be retried.
+	 *
+	 * @return the seconds to wait before retrying
+	 */
+	public int getRetryAfter() {
+		return retryAfter;
+	}
+}
@@ -0,0 +1,49 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.descriptor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+public class MethodDescriptorTest {
+	public interface Api {
+		String read(int id);
+
+
+		String read(String key);
+	}
+
+
+	@Test
+	public void testEqualsComparesTheSignature() throws Exception {
+		final Method readById = Api.class.getMethod("read", int.class);
+		final Method readByKey = Api.class.getMethod("read", String.class);
+
+		assertThat(MethodDescriptor.create(readById, 0)).isEqualTo(MethodDescriptor.create(readById, 0));
+		assertThat(MethodDescriptor.create(readById, 0).hashCode()).isEqualTo(MethodDescriptor.create(readById, 0).hashCode());
+		assertThat(MethodDescriptor.create(readById)).isNotEqualTo(MethodDescriptor.create(readByKey));
+	}
+
+
+	@Test
+	public void testEqualsComparesTheIndex() throws Exception {
+		final Method readById = Api.class.getMethod("read", int.class);
+
+		assertThat(MethodDescriptor.create(readById, 0)).isNotEqualTo(MethodDescriptor.create(readById, 1));
+		assertThat(MethodDescriptor.create(readById, 0)).isNotEqualTo(MethodDescriptor.create(readById));
+	}
+}
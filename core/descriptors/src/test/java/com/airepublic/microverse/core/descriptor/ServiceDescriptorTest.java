@@ -0,0 +1,68 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.descriptor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+public class ServiceDescriptorTest {
+	public interface Reader {
+		String read(int id);
+	}
+
+	public interface Writer {
+		void write(String value);
+
+
+		String read(int id);
+	}
+
+	public interface Store extends Reader, Writer {
+		void clear();
+	}
+
+
+	@Test
+	public void testMethodIndexesFollowSignatures() throws Exception {
+		final ServiceDescriptor serviceDescriptor = ServiceDescriptor.create("store", "1", "StoreImpl", Store.class.getName());
+
+		serviceDescriptor.addMethods(Store.class.getMethods());
+
+		assertThat(serviceDescriptor.getMethods()).extracting(MethodDescriptor::getSignature).containsExactly("clear()", "read(int)", "write(java.lang.String)");
+		assertThat(serviceDescriptor.getMethods()).extracting(MethodDescriptor::getIndex).containsExactly(0, 1, 2);
+	}
+
+
+	@Test
+	public void testAddMethodsAgainReplacesIndexedMethods() throws Exception {
+		final ServiceDescriptor serviceDescriptor = ServiceDescriptor.create("store", "1", "StoreImpl", Store.class.getName());
+		final Method clear = Store.class.getMethod("clear");
+
+		serviceDescriptor.addMethod(MethodDescriptor.create(clear));
+		serviceDescriptor.addMethods(Store.class.getMethods());
+		serviceDescriptor.addMethods(Store.class.getMethods());
+
+		assertThat(serviceDescriptor.getMethods()).hasSize(4);
+
+		for (int i = 0; i < 3; i++) {
+			assertThat(serviceDescriptor.getMethod(i).getIndex()).isEqualTo(i);
+		}
+
+		assertThat(serviceDescriptor.getMethod(3)).isNull();
+		assertThat(serviceDescriptor.getMethod(-1)).isNull();
+	}
+}
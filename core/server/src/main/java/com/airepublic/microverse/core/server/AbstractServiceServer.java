@@ -14,11 +14,13 @@
 package com.airepublic.microverse.core.server;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -26,6 +28,10 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -34,7 +40,6 @@ import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.inject.Singleton;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.SerializationUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,12 +49,24 @@ import com.airepublic.microverse.core.common.Configuration;
 import com.airepublic.microverse.core.common.ServiceUtils;
 import com.airepublic.microverse.core.common.marshaller.IMarshaller;
 import com.airepublic.microverse.core.common.marshaller.MarshallerFactory;
+import com.airepublic.microverse.core.descriptor.ConcurrencyModel;
 import com.airepublic.microverse.core.descriptor.MethodCall;
+import com.airepublic.microverse.core.descriptor.MethodDescriptor;
 import com.airepublic.microverse.core.descriptor.RegistryDescriptor;
 import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.descriptor.ServiceStatistics;
 import com.airepublic.microverse.core.descriptor.WebCall;
 import com.airepublic.microverse.core.discovery.RegistryDiscovererService;
 import com.airepublic.microverse.core.exception.ServiceException;
+import com.airepublic.microverse.core.exception.ServiceTimeoutException;
+import com.airepublic.microverse.core.exception.ServiceUnavailableException;
+import com.airepublic.microverse.core.service.api.CacheResult;
+import com.airepublic.microverse.core.service.api.EventBus;
+import com.airepublic.microverse.core.service.api.IServiceInvoker;
+import com.airepublic.microverse.core.service.api.InvocationContext;
+import com.airepublic.microverse.core.service.api.LocalServices;
+import com.airepublic.microverse.core.service.api.Priority;
+import com.airepublic.microverse.core.service.api.ResultStream;
 
 /**
  * Base class for all service-servers.
@@ -60,13 +77,20 @@ import com.airepublic.microverse.core.exception.ServiceException;
 @Singleton
 public abstract class AbstractServiceServer implements Closeable {
 	private final static Logger LOG = LoggerFactory.getLogger(AbstractServiceServer.class);
-	private final Map<String, ServiceContainer> serviceUriMap = new HashMap<>();
+	private final Map<String, ServiceContainer> serviceUriMap = new ConcurrentHashMap<>();
+	/** The {@link LocalServiceInvoker}s registered per service URI, guarded by the serviceUriMap. */
+	private final Map<String, LocalServiceInvoker> localServiceInvokers = new HashMap<>();
+	private volatile boolean acceptingRequests = true;
 	private Path serviceDir;
+	private BinaryServiceTransport binaryTransport;
+	private WebSocketServiceTransport webSocketTransport;
 
 	private static final String SERVICE_ID = "service-id=";
 	private static final String SERVICE_VERSION = "service-version=";
 	private static final String SERVICE_CLASS = "service-class=";
 	private static final String SERVICE_INTERFACE = "service-interface=";
+	private static final String SERVICE_CONCURRENCY = "service-concurrency=";
+	private static final String SERVICE_POOL_SIZE = "service-pool-size=";
 
 
 	/**
@@ -87,6 +111,58 @@ public abstract class AbstractServiceServer implements Closeable {
 			LOG.warn("No deploy directory configured. Please set the system property '" + Configuration.getServiceDeployDir() + "'!");
 			serviceDir = Paths.get(".");
 		}
+
+		startBinaryTransport();
+		startWebSocketTransport();
+
+		// services publish their events with the publisher provided on the classpath
+		if (!EventBus.hasPublisher()) {
+			LOG.warn("No event publisher found on the classpath - services can't publish events!");
+		}
+	}
+
+
+	/**
+	 * Starts serving the services via the binary protocol if a binary port is configured.
+	 */
+	private synchronized void startBinaryTransport() {
+		final int binaryPort = Configuration.getServerBinaryPort();
+
+		if (binaryPort > 0 && binaryTransport == null) {
+			try {
+				binaryTransport = BinaryServiceTransport.start(this, binaryPort);
+				LOG.info("Serving services via the binary protocol on port " + binaryPort);
+			} catch (final IOException e) {
+				LOG.warn("Could not start the binary protocol on port " + binaryPort + " - services are only served via HTTP!", e);
+			}
+		}
+	}
+
+
+	/**
+	 * Starts accepting WebSocket sessions with the services if a WebSocket port is configured.
+	 */
+	private synchronized void startWebSocketTransport() {
+		final int webSocketPort = Configuration.getServerWebSocketPort();
+
+		if (webSocketPort > 0 && webSocketTransport == null) {
+			try {
+				webSocketTransport = WebSocketServiceTransport.start(this, webSocketPort);
+				LOG.info("Accepting service sessions via WebSocket on port " + webSocketPort);
+			} catch (final IOException e) {
+				LOG.warn("Could not accept WebSocket sessions on port " + webSocketPort + "!", e);
+			}
+		}
+	}
+
+
+	/**
+	 * Gets the directory where the service-containers are created.
+	 *
+	 * @return the service directory
+	 */
+	protected Path getServiceDir() {
+		return serviceDir;
 	}
 
 
@@ -110,7 +186,8 @@ public abstract class AbstractServiceServer implements Closeable {
 
 
 	/**
-	 * Adds a service described by the zip file in the input stream.
+	 * Adds a service described by the zip file in the input stream. The zip file is streamed to a
+	 * temporary file and must not exceed {@link Configuration#getServerRequestMaxSize()} bytes.
 	 *
 	 * @param host the host the service is running on
 	 * @param port the port the service is running on
@@ -120,68 +197,157 @@ public abstract class AbstractServiceServer implements Closeable {
 	 * @return the {@link ServiceDescriptor} with all parameters set
 	 */
 	protected ServiceDescriptor addService(final String host, final int port, final boolean useSSL, final InputStream inputStream) throws ServiceException {
-		ServiceDescriptor serviceDescriptor = null;
+		Path serviceBundleZip = null;
 
 		try {
-			synchronized (serviceUriMap) {
-				final byte[] serviceBundleZip = IOUtils.toByteArray(inputStream);
+			// stream the bundle to disk instead of holding it in memory
+			Files.createDirectories(serviceDir);
+			serviceBundleZip = Files.createTempFile(serviceDir, "bundle", ".zip");
 
-				// set server parameters
-				serviceDescriptor = readMicroserviceClass(serviceBundleZip);
+			final long maxSize = Configuration.getServerRequestMaxSize();
+			final byte[] buffer = new byte[8192];
+			long size = 0L;
 
-				serviceDescriptor.setHost(host);
-				serviceDescriptor.setPort(port);
-				serviceDescriptor.setUseSSL(useSSL);
-				serviceDescriptor.setServiceUri(getServiceWebCall(serviceDescriptor.getId(), serviceDescriptor.getVersion()));
-				serviceDescriptor.setHeartbeatUri(getHeartbeatWebCall(serviceDescriptor.getId(), serviceDescriptor.getVersion()));
+			try (OutputStream outputStream = Files.newOutputStream(serviceBundleZip)) {
+				int read;
 
-				// set the supported mime-types available on this server
-				serviceDescriptor.setSupportedMimeTypes(getSupportedMimeTypes());
+				while ((read = inputStream.read(buffer)) != -1) {
+					size += read;
+
+					if (size > maxSize) {
+						throw new ServiceException("Service-bundle exceeds the maximum request size of " + maxSize + " bytes!");
+					}
+
+					outputStream.write(buffer, 0, read);
+				}
+			}
 
-				// create the service-container
-				final ServiceContainer serviceContainer = ServiceContainer.create(serviceDescriptor, serviceBundleZip, serviceDir, getClassLoaderCreator());
+			return addService(host, port, useSSL, serviceBundleZip);
+		} catch (final IOException e) {
+			throw new ServiceException("Service-bundle could not be read!", e);
+		} finally {
+			try {
+				if (serviceBundleZip != null) {
+					Files.deleteIfExists(serviceBundleZip);
+				}
+			} catch (final IOException e) {
+				LOG.warn("Could not delete temporary service-bundle: " + serviceBundleZip, e);
+			}
+		}
+	}
 
-				final String serviceUri = "/" + serviceDescriptor.getServiceUri().getUri();
 
-				// add/swap the uri to the new service
-				final ServiceContainer oldServiceContainer = serviceUriMap.put(serviceUri, serviceContainer);
+	/**
+	 * Adds a service described by the zip file.
+	 *
+	 * @param host the host the service is running on
+	 * @param port the port the service is running on
+	 * @param useSSL flag, whether to use SSL to connect to the service
+	 * @param serviceBundleZip the path to the service-bundle zipfile
+	 * @return the {@link ServiceDescriptor} with all parameters set
+	 */
+	protected ServiceDescriptor addService(final String host, final int port, final boolean useSSL, final Path serviceBundleZip) throws ServiceException {
+		ServiceDescriptor serviceDescriptor = null;
+		ServiceContainer serviceContainer = null;
+		ServiceContainer oldServiceContainer = null;
+
+		try {
+			// set server parameters
+			serviceDescriptor = readMicroserviceClass(serviceBundleZip);
+
+			serviceDescriptor.setHost(host);
+			serviceDescriptor.setPort(port);
+			serviceDescriptor.setUseSSL(useSSL);
+			// the binary and WebSocket transports are not encrypted, so services using SSL are only
+			// served via HTTPS
+			serviceDescriptor.setBinaryPort(binaryTransport != null && !useSSL ? binaryTransport.getPort() : 0);
+			serviceDescriptor.setWebSocketPort(webSocketTransport != null && !useSSL ? webSocketTransport.getPort() : 0);
+			serviceDescriptor.setServiceUri(getServiceWebCall(serviceDescriptor.getId(), serviceDescriptor.getVersion()));
+			serviceDescriptor.setHeartbeatUri(getHeartbeatWebCall(serviceDescriptor.getId(), serviceDescriptor.getVersion()));
+
+			// set the supported mime-types available on this server
+			serviceDescriptor.setSupportedMimeTypes(getSupportedMimeTypes());
+
+			// create the service-container
+			final ServiceContainer newServiceContainer = ServiceContainer.create(serviceDescriptor, serviceBundleZip, serviceDir, getClassLoaderCreator());
+			serviceContainer = newServiceContainer;
+			serviceContainer.initInterceptorChains(ServerInterceptors.get(), call -> process(newServiceContainer, call));
+
+			final String serviceUri = "/" + serviceDescriptor.getServiceUri().getUri();
+
+			// warm up the new service before it receives traffic replaying the calls recorded by
+			// the service it replaces - outside of the lock, so other services can still be
+			// deployed and removed meanwhile
+			final ServiceContainer currentServiceContainer = serviceUriMap.get(serviceUri);
+			serviceContainer.warmUp(currentServiceContainer != null ? currentServiceContainer.getRecordedCalls() : Collections.emptyList());
+
+			synchronized (serviceUriMap) {
+				// add/swap the uri to the new service, the old container only finishes the
+				// requests already routed to it
+				oldServiceContainer = serviceUriMap.put(serviceUri, serviceContainer);
+
+				// let service-clients in this JVM call the service directly
+				final LocalServiceInvoker localServiceInvoker = new LocalServiceInvoker(this, host, port, serviceUri);
+				final LocalServiceInvoker oldLocalServiceInvoker = localServiceInvokers.put(serviceUri, localServiceInvoker);
+				localServiceInvoker.register();
+
+				if (oldLocalServiceInvoker != null && !oldLocalServiceInvoker.equals(localServiceInvoker)) {
+					oldLocalServiceInvoker.unregister();
+				}
+
 				propagateServiceToRegistry(serviceDescriptor, Action.ADD);
 
 				onServiceRegistration(serviceDescriptor);
+			}
 
-				// clean up the old container it it was a replacement
-				if (oldServiceContainer != null) {
-					oldServiceContainer.close();
-					LOG.debug("Service was replaced: " + serviceContainer.getServiceDescriptor());
-				} else {
-					LOG.debug("Service was added: " + serviceContainer.getServiceDescriptor());
-				}
+			// clean up the old container it it was a replacement
+			if (oldServiceContainer != null) {
+				retire(oldServiceContainer, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Configuration.getServerDrainTimeout()));
+				LOG.debug("Service was replaced: " + serviceDescriptor);
+			} else {
+				LOG.debug("Service was added: " + serviceDescriptor);
 			}
 
 			return serviceDescriptor;
 		} catch (final ServiceException e) {
+			closeUnregistered(serviceContainer);
 			throw e;
 		} catch (final Exception e) {
+			closeUnregistered(serviceContainer);
 			throw new ServiceException("Could not add service: " + serviceDescriptor, e);
 		}
 	}
 
 
+	/**
+	 * Closes the {@link ServiceContainer} of a failed deployment unless it has already been put
+	 * into the routing.
+	 *
+	 * @param serviceContainer the {@link ServiceContainer} or <code>null</code>
+	 */
+	private void closeUnregistered(final ServiceContainer serviceContainer) {
+		if (serviceContainer != null && !serviceUriMap.containsValue(serviceContainer)) {
+			serviceContainer.close();
+		}
+	}
+
+
 	protected abstract WebCall getServiceWebCall(String serviceId, String serviceVersion);
 
 
 	protected abstract WebCall getHeartbeatWebCall(String serviceId, String serviceVersion);
 
 
-	private ServiceDescriptor readMicroserviceClass(final byte[] bundleZip) throws ServiceException {
-		final ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(bundleZip));
+	private ServiceDescriptor readMicroserviceClass(final Path bundleZip) throws ServiceException {
 		ZipEntry entry;
 		String id = null;
 		String version = null;
 		String serviceClass = null;
 		String serviceInterface = null;
+		ConcurrencyModel concurrencyModel = ConcurrencyModel.SINGLETON;
+		int poolSize = 0;
 
-		try {
+		try (ZipInputStream zis = new ZipInputStream(Files.newInputStream(bundleZip))) {
 			while ((entry = zis.getNextEntry()) != null) {
 				if (entry.getName().endsWith(Configuration.getAutoDeployServiceDescriptorFilename())) {
 					final BufferedReader reader = new BufferedReader(new InputStreamReader(zis));
@@ -197,6 +363,10 @@ public abstract class AbstractServiceServer implements Closeable {
 							serviceClass = line.substring(SERVICE_CLASS.length()).trim();
 						} else if (line.startsWith(SERVICE_INTERFACE)) {
 							serviceInterface = line.substring(SERVICE_INTERFACE.length()).trim();
+						} else if (line.startsWith(SERVICE_CONCURRENCY)) {
+							concurrencyModel = ConcurrencyModel.parse(line.substring(SERVICE_CONCURRENCY.length()));
+						} else if (line.startsWith(SERVICE_POOL_SIZE)) {
+							poolSize = Integer.parseInt(line.substring(SERVICE_POOL_SIZE.length()).trim());
 						}
 
 						line = reader.readLine();
@@ -209,9 +379,12 @@ public abstract class AbstractServiceServer implements Closeable {
 				zis.closeEntry();
 			}
 
-			zis.close();
+			final ServiceDescriptor serviceDescriptor = ServiceDescriptor.create(id, version, serviceClass, serviceInterface);
+			serviceDescriptor.setConcurrencyModel(concurrencyModel);
+			// by default a pool has an instance for each worker thread
+			serviceDescriptor.setPoolSize(poolSize > 0 ? poolSize : Configuration.getServerWorkerThreads());
 
-			return ServiceDescriptor.create(id, version, serviceClass, serviceInterface);
+			return serviceDescriptor;
 		} catch (final Exception e) {
 			throw new ServiceException("Error reading auto-deploy service-descriptor file '" + Configuration.getAutoDeployServiceDescriptorFilename() + "' from bundle!", e);
 		}
@@ -226,20 +399,12 @@ public abstract class AbstractServiceServer implements Closeable {
 	 */
 	protected void removeService(final String serviceId, final String serviceVersion) throws ServiceException {
 		try {
-			synchronized (serviceUriMap) {
-				ServiceContainer serviceContainer = serviceUriMap.remove("/" + getServiceWebCall(serviceId, serviceVersion).getUri());
+			final ServiceContainer serviceContainer = unregisterService("/" + getServiceWebCall(serviceId, serviceVersion).getUri());
 
-				if (serviceContainer != null) {
-					final ServiceDescriptor serviceDescriptor = serviceContainer.getServiceDescriptor();
-					LOG.info("Shutting down service '" + serviceId + ":" + serviceVersion + "' servicing on '" + serviceDescriptor.getHost() + ":" + serviceDescriptor.getPort() + "/" + serviceDescriptor.getServiceUri() + "'");
-
-					propagateServiceToRegistry(serviceDescriptor, Action.REMOVE);
-					serviceContainer.close();
-					serviceContainer = null;
-					onServiceUnregistration(serviceDescriptor);
-				} else {
-					LOG.warn("Service '" + serviceId + ":" + serviceVersion + "' could not be found and removed!");
-				}
+			if (serviceContainer != null) {
+				retire(serviceContainer, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Configuration.getServerDrainTimeout()));
+			} else {
+				LOG.warn("Service '" + serviceId + ":" + serviceVersion + "' could not be found and removed!");
 			}
 		} catch (final Exception e) {
 			LOG.error("Could not remove service: " + serviceId + ":" + serviceVersion, e);
@@ -248,6 +413,87 @@ public abstract class AbstractServiceServer implements Closeable {
 	}
 
 
+	/**
+	 * Removes the service from the routing and the registries. The {@link ServiceContainer} still
+	 * processes its in-flight requests until it is retired.
+	 *
+	 * @param serviceUri the URI of the service
+	 * @return the removed {@link ServiceContainer} or <code>null</code> if no service was found
+	 * @throws ServiceException if the registries could not be updated
+	 */
+	private ServiceContainer unregisterService(final String serviceUri) throws ServiceException {
+		synchronized (serviceUriMap) {
+			final ServiceContainer serviceContainer = serviceUriMap.remove(serviceUri);
+
+			if (serviceContainer != null) {
+				final ServiceDescriptor serviceDescriptor = serviceContainer.getServiceDescriptor();
+				LOG.info("Shutting down service '" + serviceDescriptor.getId() + ":" + serviceDescriptor.getVersion() + "' servicing on '" + serviceDescriptor.getHost() + ":" + serviceDescriptor.getPort() + "/" + serviceDescriptor.getServiceUri() + "'");
+
+				// unregister with the endpoint the service has been registered with
+				final LocalServiceInvoker localServiceInvoker = localServiceInvokers.remove(serviceUri);
+
+				if (localServiceInvoker != null) {
+					localServiceInvoker.unregister();
+				}
+
+				propagateServiceToRegistry(serviceDescriptor, Action.REMOVE);
+				onServiceUnregistration(serviceDescriptor);
+			}
+
+			return serviceContainer;
+		}
+	}
+
+
+	/**
+	 * Waits until the in-flight requests of the {@link ServiceContainer} are done or the deadline
+	 * has passed and closes the container.
+	 *
+	 * @param serviceContainer the {@link ServiceContainer} which has been removed from the routing
+	 * @param deadline the deadline as {@link System#nanoTime()} value
+	 */
+	private void retire(final ServiceContainer serviceContainer, final long deadline) {
+		final ServiceDescriptor serviceDescriptor = serviceContainer.getServiceDescriptor();
+
+		if (!serviceContainer.drain(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+			LOG.warn("Service '" + serviceDescriptor.getId() + ":" + serviceDescriptor.getVersion() + "' did not finish its in-flight requests in time!");
+		}
+
+		serviceContainer.close();
+	}
+
+
+	/**
+	 * Checks whether a service is registered for the URI.
+	 *
+	 * @param uri the URI
+	 * @return <code>true</code> if a service is registered for the URI
+	 */
+	boolean isServing(final String uri) {
+		return serviceUriMap.containsKey(uri);
+	}
+
+
+	/**
+	 * Gets the {@link ServiceContainer} registered for the URI and registers the request as
+	 * in-flight. New requests are never routed to containers which have been replaced or removed,
+	 * so these only process the requests which were already routed to them and can be drained.
+	 * The request must be released with {@link ServiceContainer#release()}.
+	 *
+	 * @param uri the URI where the service is registered
+	 * @return the {@link ServiceContainer} or <code>null</code> if no service was found
+	 */
+	private ServiceContainer acquireServiceContainer(final String uri) {
+		final ServiceContainer serviceContainer = serviceUriMap.get(uri);
+
+		if (serviceContainer != null && serviceContainer.acquire()) {
+			return serviceContainer;
+		}
+
+		return null;
+	}
+
+
 	/**
 	 * Propagates the service change to the registries.
 	 *
@@ -325,6 +571,77 @@ public abstract class AbstractServiceServer implements Closeable {
 	}
 
 
+	/**
+	 * Executes the task processing a request to the specified URI on the worker threads of the
+	 * service registered for the URI. If no service is registered for the URI or the service is
+	 * overloaded the request is not processed and the rejection handler is called to answer the
+	 * request with the {@link ServiceUnavailableException}, so clients can turn to another
+	 * instance of the service.
+	 *
+	 * <p>
+	 * The {@link Priority} determines the share of the worker threads the request competes for and
+	 * is set in the {@link InvocationContext} while the task is running, so nested service calls
+	 * inherit it. Requests without a priority are scheduled as {@link Priority#NORMAL}, but nested
+	 * calls use the priority of their own methods.
+	 * </p>
+	 * <p>
+	 * The request counts as in-flight for the service from now until it is answered, so a replaced
+	 * or removed service is only closed after its queued requests are done. The task is passed the
+	 * {@link ServiceContainer} the request was admitted to and must process the request with it,
+	 * even if the service has been replaced in the meantime. Requests arriving while the
+	 * service-server is shutting down are rejected.
+	 * </p>
+	 *
+	 * @param uri the URI where the service is registered
+	 * @param priority the {@link Priority} of the request or <code>null</code> if it has none
+	 * @param task the task processing the request with the {@link ServiceContainer}
+	 * @param rejectionHandler the handler to answer rejected requests
+	 */
+	protected void execute(final String uri, final Priority priority, final Consumer<ServiceContainer> task, final Consumer<ServiceUnavailableException> rejectionHandler) {
+		if (!acceptingRequests) {
+			rejectionHandler.accept(new ServiceUnavailableException("Service-server is shutting down: " + uri, 0));
+			return;
+		}
+
+		final ServiceContainer serviceContainer = acquireServiceContainer(uri);
+
+		if (serviceContainer == null) {
+			rejectionHandler.accept(new ServiceUnavailableException("Could not find service for URI " + uri, 0));
+			return;
+		}
+
+		final Runnable prioritizedTask = () -> {
+			// calls without a priority leave nested calls to the priority of their own methods
+			InvocationContext.setPriority(priority);
+
+			try {
+				task.accept(serviceContainer);
+			} finally {
+				InvocationContext.setPriority(null);
+				serviceContainer.release();
+			}
+		};
+
+		serviceContainer.getWorkerPool().execute(prioritizedTask, priority != null ? priority : Priority.NORMAL, e -> {
+			try {
+				rejectionHandler.accept(e);
+			} finally {
+				serviceContainer.release();
+			}
+		});
+	}
+
+
+	/**
+	 * Gets the {@link ServiceStatistics} of all services of this service-server.
+	 *
+	 * @return the list of {@link ServiceStatistics}
+	 */
+	public ArrayList<ServiceStatistics> getServiceStatistics() {
+		return serviceUriMap.values().stream().map(ServiceContainer::getStatistics).collect(Collectors.toCollection(ArrayList::new));
+	}
+
+
 	/**
 	 * Processes the {@link MethodCall} serialized in the input-stream.
 	 *
@@ -334,39 +651,475 @@ public abstract class AbstractServiceServer implements Closeable {
 	 * @throws ServiceException
 	 */
 	protected Serializable process(final String uri, final String mimeType, final InputStream inputStream) throws ServiceException {
+		return process(uri, mimeType, inputStream, null);
+	}
+
+
+	/**
+	 * Processes the {@link MethodCall} serialized in the input-stream if the deadline of the caller
+	 * has not passed yet. The deadline is checked before the request is deserialized and before
+	 * the service is invoked and it is passed on to nested service calls of the service.
+	 *
+	 * @param uri the URI where the service is registered
+	 * @param mimeType the mime-type of the content in the input-stream
+	 * @param inputStream the input-stream containing the serialized {@link MethodCall}
+	 * @param deadline the deadline as {@link System#nanoTime()} value or <code>null</code>
+	 * @throws ServiceTimeoutException if the deadline has passed
+	 * @throws ServiceException
+	 */
+	protected Serializable process(final String uri, final String mimeType, final InputStream inputStream, final Long deadline) throws ServiceException {
+		ServiceContainer serviceContainer = null;
+
+		try {
+			serviceContainer = getServiceContainer(uri, mimeType, deadline);
+			final MethodCall call = MarshallerFactory.get(mimeType).deserialize(inputStream, MethodCall.class);
+
+			return process(serviceContainer, call, uri, deadline, null);
+		} catch (final ServiceTimeoutException e) {
+			LOG.warn(e.getMessage());
+			throw e;
+		} catch (final Throwable e) {
+			LOG.error("Error calling service method!", e);
+			throw new ServiceException("Error calling service method!", e);
+		} finally {
+			if (serviceContainer != null) {
+				serviceContainer.release();
+			}
+		}
+	}
+
+
+	/**
+	 * Processes the {@link MethodCall} serialized in the input-stream and returns the result to be
+	 * serialized with the marshaller for the response mime-type while it is written to the
+	 * response. Results of methods annotated with {@link CacheResult} are serialized once and are
+	 * taken from and stored in the {@link ResultCache} of the service, so a cache hit neither
+	 * invokes the service nor marshals the result. If no response mime-type was requested the
+	 * returned result has no marshaller and must be rejected (and closed) by the caller.
+	 *
+	 * @param uri the URI where the service is registered
+	 * @param mimeType the mime-type of the content in the input-stream
+	 * @param inputStream the input-stream containing the serialized {@link MethodCall}
+	 * @param responseMimeType the mime-type to serialize the result with or <code>null</code>
+	 * @param deadline the deadline as {@link System#nanoTime()} value or <code>null</code>
+	 * @return the {@link ServiceResult} or <code>null</code> if the method returned none
+	 * @throws ServiceTimeoutException if the deadline has passed
+	 * @throws ServiceException
+	 */
+	protected ServiceResult process(final String uri, final String mimeType, final InputStream inputStream, final String responseMimeType, final Long deadline) throws ServiceException {
+		final ServiceContainer serviceContainer = getServiceContainer(uri, mimeType, deadline);
+
+		try {
+			return process(serviceContainer, mimeType, inputStream, responseMimeType, deadline);
+		} finally {
+			serviceContainer.release();
+		}
+	}
+
+
+	/**
+	 * Processes the {@link MethodCall} serialized in the input-stream with the
+	 * {@link ServiceContainer} the request has been admitted to by
+	 * {@link #execute(String, Priority, Consumer, Consumer)} like
+	 * {@link #process(String, String, InputStream, String, Long)}.
+	 *
+	 * @param serviceContainer the {@link ServiceContainer} the request is in-flight for
+	 * @param mimeType the mime-type of the content in the input-stream
+	 * @param inputStream the input-stream containing the serialized {@link MethodCall}
+	 * @param responseMimeType the mime-type to serialize the result with or <code>null</code>
+	 * @param deadline the deadline as {@link System#nanoTime()} value or <code>null</code>
+	 * @return the {@link ServiceResult} or <code>null</code> if the method returned none
+	 * @throws ServiceTimeoutException if the deadline has passed
+	 * @throws ServiceException
+	 */
+	protected ServiceResult process(final ServiceContainer serviceContainer, final String mimeType, final InputStream inputStream, final String responseMimeType, final Long deadline) throws ServiceException {
+		final String uri = "/" + serviceContainer.getServiceDescriptor().getServiceUri().getUri();
+
 		try {
-			final IMarshaller marshaller = MarshallerFactory.get(mimeType);
+			checkDeadline(uri, deadline);
+
+			final IMarshaller requestMarshaller = MarshallerFactory.get(mimeType);
 
-			if (marshaller == null) {
+			if (requestMarshaller == null) {
 				LOG.error("Could not find marshaller for content-type " + mimeType);
 				throw new ServiceException("Could not find marshaller for content-type " + mimeType);
 			}
 
-			// check if its a service call
-			final ServiceContainer serviceContainer = serviceUriMap.get(uri);
+			final MethodCall call = requestMarshaller.deserialize(inputStream, MethodCall.class);
+			final IMarshaller marshaller = responseMimeType != null ? MarshallerFactory.get(responseMimeType) : null;
+
+			if (marshaller == null && responseMimeType != null) {
+				LOG.error("No marshaller found for mime-type: " + responseMimeType);
+				throw new ServiceException("No marshaller to serialize the response found for mime-type: " + responseMimeType);
+			}
+
+			// results of cached methods are looked up and stored at the end of the interceptor chain
+			final CachingTarget.Request request = marshaller != null ? new CachingTarget.Request(marshaller) : null;
+			final Serializable result = process(serviceContainer, call, uri, deadline, request);
+
+			if (result == null) {
+				return null;
+			}
+
+			if (result instanceof ResultStream) {
+				// the service stays in-flight until the element stream has been written
+				serviceContainer.acquire();
+
+				return ServiceResult.of((ResultStream) result, marshaller, serviceContainer::release);
+			}
+
+			final byte[] serializedResult = request != null ? request.getSerializedResult(result) : null;
+
+			if (serializedResult != null) {
+				return ServiceResult.of(serializedResult);
+			}
+
+			return ServiceResult.of(result, marshaller);
+		} catch (final ServiceTimeoutException e) {
+			LOG.warn(e.getMessage());
+			throw e;
+		} catch (final Throwable e) {
+			LOG.error("Error calling service method!", e);
+			throw new ServiceException("Error calling service method!", e);
+		}
+	}
+
+
+	/**
+	 * Queues the batch of one-way calls serialized in the input-stream for execution by the worker
+	 * threads of the service, so the request can be acknowledged without waiting for the service.
+	 * The calls of a batch are executed in order by one worker thread. As no caller waits for them
+	 * they have no deadline and their failures are only logged.
+	 *
+	 * @param uri the URI where the service is registered
+	 * @param mimeType the mime-type of the content in the input-stream
+	 * @param inputStream the input-stream containing the serialized {@link MethodCall}s
+	 * @param priority the {@link Priority} of the calls
+	 * @return the number of queued calls
+	 * @throws ServiceUnavailableException if the service-server is shutting down or the service is
+	 *         overloaded
+	 * @throws ServiceException if no marshaller or service could be found or the calls could not
+	 *         be deserialized
+	 */
+	protected int processOneWay(final String uri, final String mimeType, final InputStream inputStream, final Priority priority) throws ServiceException {
+		final IMarshaller marshaller = MarshallerFactory.get(mimeType);
+
+		if (marshaller == null) {
+			LOG.error("Could not find marshaller for content-type " + mimeType);
+			throw new ServiceException("Could not find marshaller for content-type " + mimeType);
+		}
+
+		if (!isServing(uri)) {
+			LOG.error("Could not find service for URI " + uri);
+			throw new ServiceException("Could not find service for URI " + uri);
+		}
+
+		final MethodCall[] calls = marshaller.deserialize(inputStream, MethodCall[].class);
+		final ServiceUnavailableException[] rejection = new ServiceUnavailableException[1];
+
+		execute(uri, priority, serviceContainer -> processOneWay(serviceContainer, uri, calls), e -> {
+			LOG.warn("Rejected " + calls.length + " one-way calls to " + uri + ": " + e.getMessage());
+			rejection[0] = e;
+		});
+
+		// calls rejected right away are sent again by the client
+		if (rejection[0] != null) {
+			throw rejection[0];
+		}
+
+		return calls.length;
+	}
+
+
+	/**
+	 * Executes the batch of one-way calls in order.
+	 *
+	 * @param serviceContainer the {@link ServiceContainer} the batch has been admitted to
+	 * @param uri the URI where the service is registered
+	 * @param calls the {@link MethodCall}s
+	 */
+	private void processOneWay(final ServiceContainer serviceContainer, final String uri, final MethodCall[] calls) {
+		for (final MethodCall call : calls) {
+			try {
+				process(serviceContainer, call, uri, null, null);
+			} catch (final Throwable e) {
+				LOG.error("Error calling one-way service method " + call + "!", e);
+			}
+		}
+	}
+
+
+	/**
+	 * Gets the {@link ServiceContainer} for the request if the deadline has not passed and the
+	 * content can be deserialized. The request is registered as in-flight and must be released
+	 * with {@link ServiceContainer#release()}.
+	 *
+	 * @param uri the URI where the service is registered
+	 * @param mimeType the mime-type of the request content
+	 * @param deadline the deadline or <code>null</code>
+	 * @return the {@link ServiceContainer}
+	 * @throws ServiceException if no marshaller or service could be found or the deadline has
+	 *         passed
+	 */
+	private ServiceContainer getServiceContainer(final String uri, final String mimeType, final Long deadline) throws ServiceException {
+		checkDeadline(uri, deadline);
+
+		final IMarshaller marshaller = MarshallerFactory.get(mimeType);
+
+		if (marshaller == null) {
+			LOG.error("Could not find marshaller for content-type " + mimeType);
+			throw new ServiceException("Could not find marshaller for content-type " + mimeType);
+		}
+
+		// check if its a service call
+		final ServiceContainer serviceContainer = acquireServiceContainer(uri);
+
+		// if a service was found
+		if (serviceContainer == null) {
+			LOG.error("Could not find service for URI " + uri);
+			throw new ServiceException("Could not find service for URI " + uri);
+		}
+
+		LOG.info("Found service '" + serviceContainer.getServiceDescriptor() + "' to process request!");
+
+		return serviceContainer;
+	}
+
+
+	/**
+	 * Gets the {@link MethodDescriptor} of the called method if the call carries a matching method
+	 * index.
+	 *
+	 * @param serviceContainer the {@link ServiceContainer}
+	 * @param call the {@link MethodCall}
+	 * @return the {@link MethodDescriptor} or <code>null</code>
+	 */
+	private MethodDescriptor getMethodDescriptor(final ServiceContainer serviceContainer, final MethodCall call) {
+		final MethodDescriptor methodDescriptor = serviceContainer.getServiceDescriptor().getMethod(call.getMethodIndex());
+
+		if (methodDescriptor != null && methodDescriptor.getSignatureHash() == call.getSignatureHash()) {
+			return methodDescriptor;
+		}
+
+		return null;
+	}
+
+
+	/**
+	 * Gets the serialized {@link ServiceDescriptor} with all service methods indexed of the service
+	 * currently served at the URI.
+	 *
+	 * @param uri the URI where the service is registered
+	 * @return the serialized {@link ServiceDescriptor}
+	 * @throws IllegalStateException if the service has been removed
+	 */
+	byte[] getSerializedServiceDescriptor(final String uri) {
+		final ServiceContainer serviceContainer = serviceUriMap.get(uri);
+
+		if (serviceContainer == null) {
+			throw new IllegalStateException("Could not find service for URI " + uri);
+		}
+
+		return serviceContainer.getService().getSerializedServiceDescriptor();
+	}
+
+
+	/**
+	 * Processes the {@link MethodCall} of a service-client running in the same JVM on the calling
+	 * thread within the deadline of its {@link InvocationContext}. The parameters have already been
+	 * serialized by the client, so they are deserialized by the service-container classloader. The
+	 * call is admitted by the {@link ServiceWorkerPool} of the service like a queued request, see
+	 * {@link #processLocal(String, MethodCall, Object[])}.
+	 *
+	 * @param uri the URI where the service is registered
+	 * @param call the {@link MethodCall}
+	 * @return the result
+	 * @throws ServiceUnavailableException if the service-server is shutting down or the service
+	 *         has been removed
+	 * @throws ServiceTimeoutException if the deadline has passed
+	 * @throws ServiceException if the call failed
+	 */
+	Serializable processLocal(final String uri, final MethodCall call) throws ServiceException {
+		return processLocal(uri, call, null);
+	}
+
+
+	/**
+	 * Processes the call of a service-client running in the same JVM on the calling thread within
+	 * the deadline of its {@link InvocationContext}. The arguments are passed to the service as they
+	 * are if the service-container shares their classes and the call is neither intercepted,
+	 * recorded for warm-ups nor coalesced, which all work on the serialized call. Otherwise they are
+	 * serialized and deserialized by the service-container classloader.
+	 * <p>
+	 * The call doesn't wait in the queue of the service, but it is rejected while the service is
+	 * overloaded and if as many calling threads as worker threads run the service already, so
+	 * local callers can't exceed the concurrency of the service. Results of {@link CacheResult}
+	 * methods are neither taken from nor stored in the {@link ResultCache}, which holds serialized
+	 * results, as local calls pass the result objects.
+	 * </p>
+	 *
+	 * @param uri the URI where the service is registered
+	 * @param call the {@link MethodCall} or, if arguments are passed, the called method only
+	 * @param arguments the arguments or <code>null</code> if they are serialized in the call
+	 * @return the result
+	 * @throws ServiceUnavailableException if the service-server is shutting down, the service has
+	 *         been removed or rejected the call
+	 * @throws ServiceTimeoutException if the deadline has passed
+	 * @throws ServiceException if the call failed
+	 */
+	Serializable processLocal(final String uri, final MethodCall call, final Object[] arguments) throws ServiceException {
+		if (!acceptingRequests) {
+			throw new ServiceUnavailableException("Service-server is shutting down: " + uri, 0);
+		}
+
+		final ServiceContainer serviceContainer = acquireServiceContainer(uri);
+
+		if (serviceContainer == null) {
+			throw new ServiceUnavailableException("Could not find service for URI " + uri, 0);
+		}
+
+		try {
+			serviceContainer.getWorkerPool().admitCaller(InvocationContext.getPriority());
+		} catch (final ServiceUnavailableException e) {
+			serviceContainer.release();
+			throw e;
+		}
+
+		final Long deadline = InvocationContext.getDeadline();
+
+		try {
+			if (arguments == null) {
+				return process(serviceContainer, call, uri, deadline, null);
+			}
+
+			if (isPassedDirectly(serviceContainer, call, arguments)) {
+				checkDeadline(uri, deadline);
+				InvocationContext.setDeadline(deadline);
 
-			// if a service was found
-			if (serviceContainer == null) {
-				LOG.error("Could not find service for URI " + uri);
-				throw new ServiceException("Could not find service for URI " + uri);
+				return serviceContainer.getService().invokeDirect(call.getMethodIndex(), call.getSignatureHash(), call.getMethodName(), call.getSignature(), arguments);
 			}
 
-			LOG.info("Found service '" + serviceContainer.getServiceDescriptor() + "' to process request!");
+			final ArrayList<byte[]> parameters = new ArrayList<>(arguments.length);
 
-			// call the service method
-			final MethodCall call = marshaller.deserialize(inputStream, MethodCall.class);
+			for (final Object argument : arguments) {
+				parameters.add(SerializationUtils.serialize((Serializable) argument));
+			}
 
-			return process(serviceContainer, call);
+			return process(serviceContainer, MethodCall.create(call.getMethodIndex(), call.getSignatureHash(), call.getMethodName(), call.getSignature(), parameters), uri, deadline, null);
+		} catch (final ServiceTimeoutException e) {
+			LOG.warn(e.getMessage());
+			throw e;
 		} catch (final Throwable e) {
 			LOG.error("Error calling service method!", e);
 			throw new ServiceException("Error calling service method!", e);
+		} finally {
+			// the caller continues on this thread with its own deadline
+			InvocationContext.setDeadline(deadline);
+			serviceContainer.getWorkerPool().releaseCaller();
+			serviceContainer.release();
 		}
+	}
 
+
+	/**
+	 * Checks whether the arguments of a call in the same JVM can be passed to the service without
+	 * serializing them.
+	 *
+	 * @param serviceContainer the {@link ServiceContainer}
+	 * @param call the {@link MethodCall} carrying the called method
+	 * @param arguments the arguments
+	 * @return <code>true</code> if the arguments can be passed as they are
+	 */
+	private boolean isPassedDirectly(final ServiceContainer serviceContainer, final MethodCall call, final Object[] arguments) {
+		final MethodDescriptor methodDescriptor = getMethodDescriptor(serviceContainer, call);
+
+		if (methodDescriptor == null || methodDescriptor.isWarmUp() || methodDescriptor.isSingleFlight() || serviceContainer.getInterceptorChain(call) != null) {
+			return false;
+		}
+
+		final ClassLoader classLoader = serviceContainer.getClassLoader();
+
+		for (final Object argument : arguments) {
+			if (!LocalServices.isShared(argument, classLoader)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Invokes the {@link MethodCall} within the deadline of the caller through the chain of
+	 * {@link IServerInterceptor}s of the called method.
+	 *
+	 * @param serviceContainer the {@link ServiceContainer}
+	 * @param call the {@link MethodCall}
+	 * @param uri the URI of the request
+	 * @param deadline the deadline or <code>null</code>
+	 * @param request the {@link CachingTarget.Request} to cache the results of cached methods with
+	 *        or <code>null</code> if the results are not serialized
+	 * @return the result or a {@link CachedResult}
+	 * @throws Throwable
+	 */
+	private Serializable process(final ServiceContainer serviceContainer, final MethodCall call, final String uri, final Long deadline, final CachingTarget.Request request) throws Throwable {
+		checkDeadline(uri, deadline);
+
+		// calls of services in the same JVM made by the service bind their own request
+		final CachingTarget.Request callerRequest = CachingTarget.bind(request);
+
+		try {
+			InvocationContext.setDeadline(deadline);
+
+			return serviceContainer.invoke(call);
+		} finally {
+			InvocationContext.setDeadline(null);
+			CachingTarget.bind(callerRequest);
+		}
 	}
 
 
 	/**
-	 * Processes the {@link MethodCall} on the specified {@link Service}.
+	 * Invalidates the cached results of the specified service. The standalone and event-loop
+	 * servers don't offer an endpoint for it, as it would be unauthenticated, so applications
+	 * call it from their own secured administration.
+	 *
+	 * @param serviceId the service-id
+	 * @param serviceVersion the service-version
+	 * @return <code>true</code> if the service was found
+	 */
+	public boolean invalidateCache(final String serviceId, final String serviceVersion) {
+		final ServiceContainer serviceContainer = serviceUriMap.get("/" + getServiceWebCall(serviceId, serviceVersion).getUri());
+
+		if (serviceContainer == null) {
+			LOG.warn("Service '" + serviceId + ":" + serviceVersion + "' could not be found to invalidate its cache!");
+			return false;
+		}
+
+		serviceContainer.getResultCache().invalidate();
+		LOG.info("Invalidated cache of service '" + serviceId + ":" + serviceVersion + "'");
+
+		return true;
+	}
+
+
+	/**
+	 * Checks whether the deadline of the request has passed.
+	 *
+	 * @param uri the URI of the request
+	 * @param deadline the deadline or <code>null</code>
+	 * @throws ServiceTimeoutException if the deadline has passed
+	 */
+	private void checkDeadline(final String uri, final Long deadline) throws ServiceTimeoutException {
+		if (deadline != null && System.nanoTime() - deadline >= 0) {
+			throw new ServiceTimeoutException("Dropped request to " + uri + " as the deadline of the caller has passed!");
+		}
+	}
+
+
+	/**
+	 * Processes the {@link MethodCall} on the specified {@link Service}. Concurrent identical calls
+	 * of single-flight methods share one execution.
 	 *
 	 * @param service the {@link Service}
 	 * @param call the {@link MethodCall}
@@ -374,9 +1127,21 @@ public abstract class AbstractServiceServer implements Closeable {
 	 */
 	private Serializable process(final ServiceContainer serviceContainer, final MethodCall call) throws Throwable {
 		LOG.info("Calling method: " + call + " on service: " + serviceContainer.getServiceDescriptor());
-		final Object service = serviceContainer.getService();
+		// pass the decoded call directly to the service in the service-container classloader
+		final IServiceInvoker service = serviceContainer.getService();
+		final Callable<Serializable> execution = () -> service.invoke(call.getMethodIndex(), call.getSignatureHash(), call.getMethodName(), call.getSignature(), call.getParameters());
+		final MethodDescriptor methodDescriptor = getMethodDescriptor(serviceContainer, call);
+		final Serializable result;
+
+		if (methodDescriptor != null && methodDescriptor.isWarmUp()) {
+			serviceContainer.recordCall(call);
+		}
 
-		final Serializable result = (Serializable) service.getClass().getMethod("invoke", byte[].class).invoke(service, SerializationUtils.serialize(call));
+		if (methodDescriptor != null && methodDescriptor.isSingleFlight() && !methodDescriptor.isStreaming()) {
+			result = serviceContainer.getCallCoalescer().execute(call, execution);
+		} else {
+			result = execution.call();
+		}
 
 		LOG.info("Method: " + call + " on service: " + serviceContainer.getServiceDescriptor() + " returned: " + result);
 
@@ -384,18 +1149,68 @@ public abstract class AbstractServiceServer implements Closeable {
 	}
 
 
+	/**
+	 * Stops accepting new requests. Requests which are already queued or being processed are
+	 * still answered.
+	 */
+	protected void stopAcceptingRequests() {
+		acceptingRequests = false;
+	}
+
+
+	/**
+	 * Starts accepting new requests again after the service-server has been stopped.
+	 */
+	protected void startAcceptingRequests() {
+		acceptingRequests = true;
+		startBinaryTransport();
+		startWebSocketTransport();
+	}
+
+
+	/**
+	 * Shuts down all services gracefully. New requests are rejected, all services are removed from
+	 * the registries and their in-flight requests are drained within the drain timeout before the
+	 * services and the binary and WebSocket transports are closed.
+	 */
 	@PreDestroy
 	@Override
 	public synchronized void close() {
-		for (final ServiceContainer serviceContainer : new ArrayList<ServiceContainer>(serviceUriMap.values())) {
-			final ServiceDescriptor serviceDescriptor = serviceContainer.getServiceDescriptor();
+		stopAcceptingRequests();
+
+		final List<ServiceContainer> serviceContainers = new ArrayList<>();
+
+		for (final String serviceUri : new ArrayList<>(serviceUriMap.keySet())) {
+			try {
+				final ServiceContainer serviceContainer = unregisterService(serviceUri);
+
+				if (serviceContainer != null) {
+					serviceContainers.add(serviceContainer);
+				}
+			} catch (final Exception e) {
+				LOG.error("Could not unregister service: " + serviceUri + " on closing the server!", e);
+			}
+		}
 
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Configuration.getServerDrainTimeout());
+
+		for (final ServiceContainer serviceContainer : serviceContainers) {
 			try {
-				removeService(serviceDescriptor.getId(), serviceDescriptor.getVersion());
-			} catch (final ServiceException e) {
-				LOG.error("Could not remove service: " + serviceDescriptor + " on closing the server!", e);
+				retire(serviceContainer, deadline);
+			} catch (final Exception e) {
+				LOG.error("Could not remove service: " + serviceContainer.getServiceDescriptor() + " on closing the server!", e);
 			}
 		}
+
+		if (binaryTransport != null) {
+			binaryTransport.close();
+			binaryTransport = null;
+		}
+
+		if (webSocketTransport != null) {
+			webSocketTransport.close();
+			webSocketTransport = null;
+		}
 	}
 
 
@@ -413,8 +1228,8 @@ public abstract class AbstractServiceServer implements Closeable {
 	 * This method should be called by a monitoring service to check whether this service-server is
 	 * still running.
 	 *
-	 * @return OK response
+	 * @return OK response in the form of the service-server, e.g. the HTTP status
 	 */
-	public abstract <T> T heartbeat();
+	public abstract Object heartbeat();
 
 }
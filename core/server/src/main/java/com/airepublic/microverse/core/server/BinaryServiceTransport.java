@@ -0,0 +1,261 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.microverse.core.common.BinaryFrame;
+import com.airepublic.microverse.core.common.Configuration;
+import com.airepublic.microverse.core.common.VirtualThreads;
+import com.airepublic.microverse.core.exception.ServiceTimeoutException;
+import com.airepublic.microverse.core.exception.ServiceUnavailableException;
+import com.airepublic.microverse.core.service.api.Priority;
+
+/**
+ * Serves the services of an {@link AbstractServiceServer} via the binary protocol of
+ * {@link BinaryFrame}s on a separate port. Each connection is read by its own thread which hands
+ * the requests over to the worker threads of the called services, so the requests of a connection
+ * are processed concurrently and their responses are written as soon as they are ready. Results
+ * are sent in one frame, so element streams are collected before they are sent. Batches of
+ * one-way calls are queued by the connection thread and acknowledged right away.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class BinaryServiceTransport implements Closeable {
+	private final static Logger LOG = LoggerFactory.getLogger(BinaryServiceTransport.class);
+	private final AbstractServiceServer server;
+	private final ServerSocket serverSocket;
+	private final ThreadFactory threadFactory;
+	private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+	private volatile boolean closed;
+
+
+	/**
+	 * Creates the transport listening on the specified port and starts accepting connections.
+	 *
+	 * @param server the {@link AbstractServiceServer} processing the requests
+	 * @param port the port
+	 * @return the {@link BinaryServiceTransport}
+	 * @throws IOException if the port could not be bound
+	 */
+	public static BinaryServiceTransport start(final AbstractServiceServer server, final int port) throws IOException {
+		final BinaryServiceTransport transport = new BinaryServiceTransport(server, port);
+		transport.threadFactory.newThread(transport::accept).start();
+
+		return transport;
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param server the {@link AbstractServiceServer} processing the requests
+	 * @param port the port
+	 * @throws IOException if the port could not be bound
+	 */
+	private BinaryServiceTransport(final AbstractServiceServer server, final int port) throws IOException {
+		this.server = server;
+		serverSocket = new ServerSocket();
+		serverSocket.setReuseAddress(true);
+		serverSocket.bind(new InetSocketAddress(port));
+		threadFactory = VirtualThreads.newThreadFactory("microverse-binary-", r -> {
+			final Thread thread = new Thread(r, "microverse-binary");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+
+	/**
+	 * Gets the port the transport listens on.
+	 *
+	 * @return the port
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+
+	/**
+	 * Accepts connections until the transport is closed.
+	 */
+	private void accept() {
+		while (!closed) {
+			try {
+				final Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				connections.add(socket);
+				threadFactory.newThread(() -> serve(socket)).start();
+			} catch (final IOException e) {
+				if (!closed) {
+					LOG.warn("Error accepting binary connection: " + e.getMessage());
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Reads the requests of the connection and dispatches them until the connection is closed.
+	 *
+	 * @param socket the {@link Socket} of the connection
+	 */
+	private void serve(final Socket socket) {
+		try {
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			final OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+			final long maxLength = Configuration.getServerRequestMaxSize() + 64 * 1024;
+
+			while (!closed) {
+				final BinaryFrame request = BinaryFrame.read(in, maxLength);
+
+				if (request.getType() == BinaryFrame.REQUEST) {
+					dispatch(request, out);
+				} else if (request.getType() == BinaryFrame.ONE_WAY) {
+					dispatchOneWay(request, out);
+				} else {
+					throw new IOException("Unexpected frame type: " + request.getType());
+				}
+			}
+		} catch (final EOFException | SocketException e) {
+			// connection closed
+		} catch (final IOException e) {
+			LOG.warn("Error reading binary connection: " + e.getMessage());
+		} finally {
+			connections.remove(socket);
+
+			try {
+				socket.close();
+			} catch (final IOException e) {
+				// close quietly
+			}
+		}
+	}
+
+
+	/**
+	 * Hands the request over to the worker threads of the called service.
+	 *
+	 * @param request the request frame
+	 * @param out the output-stream of the connection
+	 */
+	private void dispatch(final BinaryFrame request, final OutputStream out) {
+		final int requestId = request.getRequestId();
+		final String uri = request.getAttribute(0);
+		final Priority priority = Priority.parse(request.getAttribute(3), null);
+		final Long deadline = request.getValue() >= 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(request.getValue()) : null;
+
+		server.execute(uri, priority, serviceContainer -> {
+			BinaryFrame response;
+
+			try (ServiceResult result = server.process(serviceContainer, request.getAttribute(1), new ByteArrayInputStream(request.getContent()), request.getAttribute(2), deadline)) {
+				if (result == null) {
+					response = new BinaryFrame(requestId, BinaryFrame.RESULT, new String[] { "" }, 0L, null);
+				} else {
+					response = new BinaryFrame(requestId, BinaryFrame.RESULT, new String[] { request.getAttribute(2) }, 0L, result.toByteArray());
+				}
+			} catch (final ServiceTimeoutException e) {
+				response = new BinaryFrame(requestId, BinaryFrame.TIMEOUT, new String[] { e.getMessage() }, 0L, null);
+			} catch (final Throwable e) {
+				response = new BinaryFrame(requestId, BinaryFrame.ERROR, new String[] { "Error calling service method: " + e.getMessage() }, 0L, null);
+			}
+
+			write(response, out);
+		}, e -> write(new BinaryFrame(requestId, BinaryFrame.UNAVAILABLE, new String[] { e.getMessage() }, e.getRetryAfter(), null), out));
+	}
+
+
+	/**
+	 * Queues the batch of one-way calls for the worker threads of the called service and answers
+	 * the request right away.
+	 *
+	 * @param request the one-way frame
+	 * @param out the output-stream of the connection
+	 */
+	private void dispatchOneWay(final BinaryFrame request, final OutputStream out) {
+		final int requestId = request.getRequestId();
+		BinaryFrame response;
+
+		try {
+			server.processOneWay(request.getAttribute(0), request.getAttribute(1), new ByteArrayInputStream(request.getContent()), Priority.parse(request.getAttribute(2), null));
+			response = new BinaryFrame(requestId, BinaryFrame.RESULT, new String[] { "" }, 0L, null);
+		} catch (final ServiceUnavailableException e) {
+			response = new BinaryFrame(requestId, BinaryFrame.UNAVAILABLE, new String[] { e.getMessage() }, e.getRetryAfter(), null);
+		} catch (final Throwable e) {
+			response = new BinaryFrame(requestId, BinaryFrame.ERROR, new String[] { "Error queueing one-way calls: " + e.getMessage() }, 0L, null);
+		}
+
+		write(response, out);
+	}
+
+
+	/**
+	 * Writes the response frame to the connection.
+	 *
+	 * @param response the response frame
+	 * @param out the output-stream of the connection
+	 */
+	private void write(final BinaryFrame response, final OutputStream out) {
+		try {
+			synchronized (out) {
+				response.write(out);
+				out.flush();
+			}
+		} catch (final IOException e) {
+			LOG.debug("Could not write binary response: " + e.getMessage());
+		}
+	}
+
+
+	/**
+	 * Stops accepting connections and closes all open connections.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+
+		try {
+			serverSocket.close();
+		} catch (final IOException e) {
+			// close quietly
+		}
+
+		for (final Socket socket : connections) {
+			try {
+				socket.close();
+			} catch (final IOException e) {
+				// close quietly
+			}
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of direct {@link ByteBuffer}s of a fixed size used to consume and produce request and
+ * response content without allocating new buffers for each request. Only up to the maximum
+ * number of buffers are kept in the pool, additional buffers are left to the garbage collector.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class ByteBufferPool {
+	private final int bufferSize;
+	private final int maxPooledBuffers;
+	private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pooledBuffers = new AtomicInteger();
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param bufferSize the size of the buffers
+	 * @param maxPooledBuffers the maximum number of buffers kept in the pool
+	 */
+	public ByteBufferPool(final int bufferSize, final int maxPooledBuffers) {
+		this.bufferSize = bufferSize;
+		this.maxPooledBuffers = maxPooledBuffers;
+	}
+
+
+	/**
+	 * Gets a cleared buffer from the pool or allocates a new one.
+	 *
+	 * @return the {@link ByteBuffer}
+	 */
+	public ByteBuffer acquire() {
+		final ByteBuffer buffer = buffers.poll();
+
+		if (buffer == null) {
+			return ByteBuffer.allocateDirect(bufferSize);
+		}
+
+		pooledBuffers.decrementAndGet();
+		buffer.clear();
+
+		return buffer;
+	}
+
+
+	/**
+	 * Returns the buffer to the pool. The buffer must not be used afterwards.
+	 *
+	 * @param buffer the {@link ByteBuffer}
+	 */
+	public void release(final ByteBuffer buffer) {
+		if (buffer.capacity() != bufferSize || !buffer.isDirect()) {
+			return;
+		}
+
+		if (pooledBuffers.incrementAndGet() <= maxPooledBuffers) {
+			buffers.offer(buffer);
+		} else {
+			pooledBuffers.decrementAndGet();
+		}
+	}
+
+
+	/**
+	 * Gets the size of the buffers.
+	 *
+	 * @return the buffer size
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+}
@@ -0,0 +1,53 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import java.io.Serializable;
+
+import com.airepublic.microverse.core.descriptor.MethodCall;
+import com.airepublic.microverse.core.service.api.CacheResult;
+
+/**
+ * The result of a call of a {@link CacheResult} method answered from the {@link ResultCache}.
+ * {@link IServerInterceptor}s receive it from {@link ServerInvocation#proceed(MethodCall)} instead
+ * of the result of the service, as cached results are kept serialized with the mime-type of the
+ * response.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public final class CachedResult implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private final byte[] serializedResult;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param serializedResult the serialized result
+	 */
+	CachedResult(final byte[] serializedResult) {
+		this.serializedResult = serializedResult;
+	}
+
+
+	/**
+	 * Gets the result serialized with the mime-type of the response.
+	 *
+	 * @return the serialized result
+	 */
+	public byte[] getSerializedResult() {
+		return serializedResult;
+	}
+}
@@ -0,0 +1,141 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import java.io.Serializable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.microverse.core.common.marshaller.IMarshaller;
+import com.airepublic.microverse.core.descriptor.MethodCall;
+import com.airepublic.microverse.core.descriptor.MethodDescriptor;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.service.api.CacheResult;
+
+/**
+ * The target at the end of the chains of {@link IServerInterceptor}s of a service which answers
+ * the calls of {@link CacheResult} methods from the {@link ResultCache}. So cache hits pass
+ * through the interceptors like any other call and are keyed by the call the interceptors pass
+ * on. Results are only cached for requests bound to the calling thread with
+ * {@link #bind(Request)}, which determine the mime-type the results are cached with.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+final class CachingTarget implements ServerInvocation.Target {
+	private final static Logger LOG = LoggerFactory.getLogger(CachingTarget.class);
+	private final static ThreadLocal<Request> REQUEST = new ThreadLocal<>();
+	private final ServiceDescriptor serviceDescriptor;
+	private final ResultCache resultCache;
+	private final ServerInvocation.Target target;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param serviceDescriptor the {@link ServiceDescriptor} of the service
+	 * @param resultCache the {@link ResultCache} of the service
+	 * @param target the invocation of the service
+	 */
+	CachingTarget(final ServiceDescriptor serviceDescriptor, final ResultCache resultCache, final ServerInvocation.Target target) {
+		this.serviceDescriptor = serviceDescriptor;
+		this.resultCache = resultCache;
+		this.target = target;
+	}
+
+
+	/**
+	 * Binds the request to the calling thread.
+	 *
+	 * @param request the {@link Request} or <code>null</code> if the results of the calls on this
+	 *        thread are not cached
+	 * @return the {@link Request} previously bound to the calling thread or <code>null</code>
+	 */
+	static Request bind(final Request request) {
+		final Request previous = REQUEST.get();
+
+		if (request != null) {
+			REQUEST.set(request);
+		} else {
+			REQUEST.remove();
+		}
+
+		return previous;
+	}
+
+
+	@Override
+	public Serializable invoke(final MethodCall call) throws Throwable {
+		final Request request = REQUEST.get();
+		final MethodDescriptor methodDescriptor = serviceDescriptor.getMethod(call.getMethodIndex());
+
+		if (request == null || methodDescriptor == null || methodDescriptor.getSignatureHash() != call.getSignatureHash() || methodDescriptor.getCacheTtl() <= 0L || methodDescriptor.isStreaming()) {
+			return target.invoke(call);
+		}
+
+		final CallKey cacheKey = new CallKey(call.getMethodIndex(), call.getParameters(), request.marshaller.getMimeType());
+		final byte[] cachedResult = resultCache.get(cacheKey);
+
+		if (cachedResult != null) {
+			LOG.debug("Method: {} on service: {} answered from cache", call, serviceDescriptor.getServiceUri());
+			return new CachedResult(cachedResult);
+		}
+
+		final Serializable result = target.invoke(call);
+
+		if (result != null) {
+			request.result = result;
+			request.serializedResult = request.marshaller.serialize(result);
+			resultCache.put(cacheKey, request.serializedResult, methodDescriptor.getCacheTtl());
+		}
+
+		return result;
+	}
+
+	/**
+	 * A request whose results are cached serialized with the marshaller of its response.
+	 */
+	static final class Request {
+		private final IMarshaller marshaller;
+		private Serializable result;
+		private byte[] serializedResult;
+
+
+		/**
+		 * Constructor.
+		 *
+		 * @param marshaller the {@link IMarshaller} of the response
+		 */
+		Request(final IMarshaller marshaller) {
+			this.marshaller = marshaller;
+		}
+
+
+		/**
+		 * Gets the serialized result if the result returned by the interceptors is the one
+		 * answered from or stored in the cache, so it needn't be serialized again.
+		 *
+		 * @param result the result returned by the interceptors
+		 * @return the serialized result or <code>null</code> if the result has to be serialized
+		 */
+		byte[] getSerializedResult(final Serializable result) {
+			if (result instanceof CachedResult) {
+				return ((CachedResult) result).getSerializedResult();
+			}
+
+			return result == this.result ? serializedResult : null;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.airepublic.microverse.core.descriptor.MethodCall;
+import com.airepublic.microverse.core.descriptor.ServiceStatistics;
+import com.airepublic.microverse.core.exception.ServiceTimeoutException;
+import com.airepublic.microverse.core.service.api.InvocationContext;
+import com.airepublic.microverse.core.service.api.SingleFlight;
+
+/**
+ * Coalesces concurrent identical calls of {@link SingleFlight} methods of a service. The first
+ * call is executed and all identical calls arriving while it is in flight wait for and share its
+ * result or exception. Calls are identical if they have the same method index and the same
+ * serialized parameters, see {@link CallKey}.
+ * <p>
+ * The waiting calls block the worker threads they run on until the result is available or their
+ * deadline has passed, as the transports answer a request when its worker returns. Coalescing
+ * saves the executions of the service, not worker threads: a burst of identical calls still takes
+ * as many workers as calls while the first one is in flight, so the admission of the
+ * {@link ServiceWorkerPool} applies to them as to any other request. With virtual threads a
+ * waiting call only occupies a virtual thread. Calls without a deadline wait as long as the call
+ * in flight takes.
+ * </p>
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class CallCoalescer {
+	private final Map<CallKey, CompletableFuture<Serializable>> inFlight = new ConcurrentHashMap<>();
+	private final AtomicLong singleFlightRequests = new AtomicLong();
+	private final AtomicLong coalescedRequests = new AtomicLong();
+
+
+	/**
+	 * Executes the call or waits for the result of an identical call in flight. Waiting calls
+	 * block the calling thread within the deadline in the {@link InvocationContext}.
+	 *
+	 * @param call the {@link MethodCall}
+	 * @param execution the execution of the call
+	 * @return the result of the call
+	 * @throws ServiceTimeoutException if the deadline passed while waiting for the call in flight
+	 * @throws Throwable the exception thrown by the execution
+	 */
+	public Serializable execute(final MethodCall call, final Callable<Serializable> execution) throws Throwable {
+		singleFlightRequests.incrementAndGet();
+
+		final CallKey key = new CallKey(call.getMethodIndex(), call.getParameters(), null);
+		final CompletableFuture<Serializable> future = new CompletableFuture<>();
+		final CompletableFuture<Serializable> leader = inFlight.putIfAbsent(key, future);
+
+		if (leader != null) {
+			coalescedRequests.incrementAndGet();
+			return await(leader);
+		}
+
+		try {
+			final Serializable result = execution.call();
+			future.complete(result);
+			return result;
+		} catch (final Throwable t) {
+			future.completeExceptionally(t);
+			throw t;
+		} finally {
+			inFlight.remove(key, future);
+		}
+	}
+
+
+	/**
+	 * Waits for the result of the call in flight within the remaining time of the
+	 * {@link InvocationContext}.
+	 *
+	 * @param leader the future of the call in flight
+	 * @return the result
+	 * @throws Throwable the exception of the call in flight
+	 */
+	private Serializable await(final CompletableFuture<Serializable> leader) throws Throwable {
+		final long remaining = InvocationContext.getRemaining(TimeUnit.NANOSECONDS);
+
+		try {
+			if (remaining == Long.MAX_VALUE) {
+				return leader.get();
+			}
+
+			return leader.get(remaining, TimeUnit.NANOSECONDS);
+		} catch (final ExecutionException e) {
+			throw e.getCause();
+		} catch (final TimeoutException e) {
+			throw new ServiceTimeoutException("Deadline has passed while waiting for an identical call in flight!");
+		}
+	}
+
+
+	/**
+	 * Adds the coalescing counters to the {@link ServiceStatistics}.
+	 *
+	 * @param statistics the {@link ServiceStatistics}
+	 * @return the {@link ServiceStatistics}
+	 */
+	public ServiceStatistics addStatistics(final ServiceStatistics statistics) {
+		statistics.setSingleFlightRequests(singleFlightRequests.get());
+		statistics.setCoalescedRequests(coalescedRequests.get());
+
+		return statistics;
+	}
+}
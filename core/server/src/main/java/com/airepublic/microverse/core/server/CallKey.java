@@ -0,0 +1,125 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Identifies a call by its method index, its serialized parameters and optionally the mime-type of
+ * its serialized result. The parameters are only hashed once and compared byte by byte on a hash
+ * collision.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+final class CallKey {
+	private final int methodIndex;
+	private final List<byte[]> parameters;
+	private final String mimeType;
+	private final int hash;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param methodIndex the method index
+	 * @param parameters the serialized parameters
+	 * @param mimeType the mime-type of the result or <code>null</code>
+	 */
+	CallKey(final int methodIndex, final List<byte[]> parameters, final String mimeType) {
+		this.methodIndex = methodIndex;
+		this.parameters = parameters;
+		this.mimeType = mimeType;
+
+		int hash = 31 * methodIndex + Objects.hashCode(mimeType);
+
+		if (parameters != null) {
+			for (final byte[] parameter : parameters) {
+				hash = 31 * hash + Arrays.hashCode(parameter);
+			}
+		}
+
+		this.hash = hash;
+	}
+
+
+	/**
+	 * Gets the method index.
+	 *
+	 * @return the method index
+	 */
+	int getMethodIndex() {
+		return methodIndex;
+	}
+
+
+	/**
+	 * Gets the number of bytes of the serialized parameters.
+	 *
+	 * @return the number of bytes
+	 */
+	int getParameterSize() {
+		int size = 0;
+
+		if (parameters != null) {
+			for (final byte[] parameter : parameters) {
+				size += parameter != null ? parameter.length : 0;
+			}
+		}
+
+		return size;
+	}
+
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+
+		if (!(obj instanceof CallKey)) {
+			return false;
+		}
+
+		final CallKey other = (CallKey) obj;
+
+		if (hash != other.hash || methodIndex != other.methodIndex || !Objects.equals(mimeType, other.mimeType)) {
+			return false;
+		}
+
+		if (parameters == null || other.parameters == null) {
+			return parameters == other.parameters;
+		}
+
+		if (parameters.size() != other.parameters.size()) {
+			return false;
+		}
+
+		for (int i = 0; i < parameters.size(); i++) {
+			if (!Arrays.equals(parameters.get(i), other.parameters.get(i))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
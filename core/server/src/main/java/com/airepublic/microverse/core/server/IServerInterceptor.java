@@ -0,0 +1,45 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import java.io.Serializable;
+import java.util.ServiceLoader;
+
+import com.airepublic.microverse.core.descriptor.MethodCall;
+
+/**
+ * Interceptor around the calls processed by a service-server. Implementations are discovered via
+ * {@link ServiceLoader} by listing them in
+ * <code>META-INF/services/com.airepublic.microverse.core.server.IServerInterceptor</code> or are
+ * added with {@link ServerInterceptors#addInterceptor(IServerInterceptor)}. Interceptors are
+ * shared by all services and called concurrently, so they must be thread-safe.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public interface IServerInterceptor {
+	/**
+	 * Intercepts the call of a service method. The call is continued by
+	 * {@link ServerInvocation#proceed(MethodCall)}, which may be skipped to answer the call
+	 * without invoking the service. Calls of cached methods answered from the cache pass through
+	 * the interceptors as well, for them {@link ServerInvocation#proceed(MethodCall)} returns a
+	 * {@link CachedResult}.
+	 *
+	 * @param invocation the {@link ServerInvocation} of the called method
+	 * @param call the {@link MethodCall}
+	 * @return the result of the call
+	 * @throws Throwable if the call failed
+	 */
+	Serializable intercept(ServerInvocation invocation, MethodCall call) throws Throwable;
+}
@@ -0,0 +1,120 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import com.airepublic.microverse.core.descriptor.MethodCall;
+import com.airepublic.microverse.core.service.api.IServiceInvoker;
+import com.airepublic.microverse.core.service.api.LocalServices;
+
+/**
+ * The {@link IServiceInvoker} registered with the {@link LocalServices} for a service of an
+ * {@link AbstractServiceServer}. Calls of service-clients in the same JVM are processed like
+ * requests of remote clients, but on the calling thread and without marshalling the
+ * {@link MethodCall}. Arguments of classes shared with the service-container are not even
+ * serialized. The invoker keeps the endpoint it is registered with, so it is unregistered with the
+ * same key. Invokers are equal if they route to the same service of the same service-server.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+class LocalServiceInvoker implements IServiceInvoker {
+	private final AbstractServiceServer server;
+	private final String host;
+	private final int port;
+	private final String uri;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param server the {@link AbstractServiceServer} serving the service
+	 * @param host the host the service is served on
+	 * @param port the port the service is served on
+	 * @param uri the URI of the service
+	 */
+	LocalServiceInvoker(final AbstractServiceServer server, final String host, final int port, final String uri) {
+		this.server = server;
+		this.host = host;
+		this.port = port;
+		this.uri = uri;
+	}
+
+
+	/**
+	 * Registers this invoker with the {@link LocalServices}.
+	 */
+	void register() {
+		LocalServices.register(host, port, uri, this);
+	}
+
+
+	/**
+	 * Unregisters this invoker from the {@link LocalServices} if it has not been replaced.
+	 */
+	void unregister() {
+		LocalServices.unregister(host, port, uri, this);
+	}
+
+
+	@Override
+	public byte[] getSerializedServiceDescriptor() {
+		return server.getSerializedServiceDescriptor(uri);
+	}
+
+
+	@Override
+	public Serializable invoke(final int methodIndex, final int signatureHash, final String methodName, final String signature, final List<byte[]> parameters) throws Exception {
+		final MethodCall call = MethodCall.create(methodIndex, signatureHash, methodName, signature, parameters != null ? new ArrayList<>(parameters) : new ArrayList<>());
+
+		return server.processLocal(uri, call);
+	}
+
+
+	@Override
+	public Serializable invokeDirect(final int methodIndex, final int signatureHash, final String methodName, final String signature, final Object[] parameters) throws Exception {
+		final MethodCall call = MethodCall.create(methodIndex, signatureHash, methodName, signature, new ArrayList<>());
+
+		return server.processLocal(uri, call, parameters != null ? parameters : new Object[0]);
+	}
+
+
+	@Override
+	public void close() {
+	}
+
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * System.identityHashCode(server) + uri.hashCode()) + port;
+	}
+
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof LocalServiceInvoker)) {
+			return false;
+		}
+		final LocalServiceInvoker other = (LocalServiceInvoker) obj;
+
+		return server == other.server && port == other.port && uri.equals(other.uri) && Objects.equals(host, other.host);
+	}
+}
@@ -0,0 +1,373 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.airepublic.microverse.core.descriptor.ServiceStatistics;
+import com.airepublic.microverse.core.service.api.CacheResult;
+
+/**
+ * Cache of the serialized results of the {@link CacheResult} methods of a service. Results are
+ * cached per mime-type, so a cache hit neither invokes the service nor marshals the result.
+ * <p>
+ * The cache is bounded by the number of bytes of the cached keys and results. New results enter a
+ * small LRU window. Results evicted from the window are only admitted to the main LRU area if they
+ * have been requested more often than the result they would replace, which is estimated with a
+ * count-min sketch of the recent request frequencies (W-TinyLFU). This keeps results of one-off
+ * calls from flushing the frequently requested ones.
+ * </p>
+ * <p>
+ * As every lookup updates the LRU order and the sketch, the cache is split by the hash of the keys
+ * into up to {@value #MAX_SEGMENTS} independently locked segments of at least
+ * {@value #MIN_SEGMENT_BYTES} bytes, so concurrent calls of a service rarely wait for each other.
+ * </p>
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class ResultCache {
+	/** The estimated overhead in bytes of an entry. */
+	private final static int ENTRY_OVERHEAD = 64;
+	/** The maximum number of segments. */
+	private final static int MAX_SEGMENTS = 16;
+	/** The minimum number of bytes of a segment. */
+	private final static long MIN_SEGMENT_BYTES = 1024L * 1024L;
+	private final long maxBytes;
+	private final Segment[] segments;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxBytes the maximum number of bytes of the cached entries or 0 to disable the cache
+	 */
+	public ResultCache(final long maxBytes) {
+		this.maxBytes = Math.max(0L, maxBytes);
+
+		final int segmentCount = Integer.highestOneBit((int) Math.max(1L, Math.min(MAX_SEGMENTS, this.maxBytes / MIN_SEGMENT_BYTES)));
+		segments = new Segment[segmentCount];
+
+		for (int i = 0; i < segmentCount; i++) {
+			segments[i] = new Segment(this.maxBytes / segmentCount);
+		}
+	}
+
+
+	/**
+	 * Gets the cached serialized result of the call.
+	 *
+	 * @param key the {@link CallKey} of the call including the mime-type of the result
+	 * @return the serialized result or <code>null</code> if it is not cached or expired
+	 */
+	byte[] get(final CallKey key) {
+		if (maxBytes == 0L) {
+			return null;
+		}
+
+		final byte[] value = segmentFor(key).get(key);
+
+		if (value != null) {
+			hits.increment();
+		} else {
+			misses.increment();
+		}
+
+		return value;
+	}
+
+
+	/**
+	 * Caches the serialized result of the call for the time to live. Results larger than a segment
+	 * of the cache are not cached.
+	 *
+	 * @param key the {@link CallKey} of the call including the mime-type of the result
+	 * @param value the serialized result
+	 * @param ttl the time to live in milliseconds
+	 */
+	void put(final CallKey key, final byte[] value, final long ttl) {
+		if (maxBytes == 0L) {
+			return;
+		}
+
+		segmentFor(key).put(key, new Entry(value, key.getParameterSize() + value.length + ENTRY_OVERHEAD, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl)));
+	}
+
+
+	/**
+	 * Gets the segment the key belongs to.
+	 *
+	 * @param key the {@link CallKey}
+	 * @return the {@link Segment}
+	 */
+	private Segment segmentFor(final CallKey key) {
+		// spread the hash so similar keys are distributed over the segments
+		final int hash = key.hashCode() * 0x9e3779b9;
+
+		return segments[(hash >>> 16) & segments.length - 1];
+	}
+
+
+	/**
+	 * Removes all cached results.
+	 */
+	public void invalidate() {
+		for (final Segment segment : segments) {
+			segment.invalidate();
+		}
+	}
+
+
+	/**
+	 * Gets the number of bytes of the cached entries.
+	 *
+	 * @return the number of bytes
+	 */
+	long size() {
+		long size = 0L;
+
+		for (final Segment segment : segments) {
+			size += segment.size();
+		}
+
+		return size;
+	}
+
+
+	/**
+	 * Adds the cache counters to the {@link ServiceStatistics}.
+	 *
+	 * @param statistics the {@link ServiceStatistics}
+	 * @return the {@link ServiceStatistics}
+	 */
+	public ServiceStatistics addStatistics(final ServiceStatistics statistics) {
+		statistics.setCacheHits(hits.sum());
+		statistics.setCacheMisses(misses.sum());
+		statistics.setCacheSize(size());
+
+		return statistics;
+	}
+
+	/**
+	 * A segment of the cache with its own window, main area and frequency sketch.
+	 */
+	private final static class Segment {
+		private final long maxBytes;
+		private final long windowMaxBytes;
+		private final LinkedHashMap<CallKey, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+		private final LinkedHashMap<CallKey, Entry> main = new LinkedHashMap<>(16, 0.75f, true);
+		private final FrequencySketch sketch = new FrequencySketch();
+		private long windowBytes;
+		private long mainBytes;
+
+
+		Segment(final long maxBytes) {
+			this.maxBytes = maxBytes;
+			windowMaxBytes = Math.max(1L, maxBytes / 100L);
+		}
+
+
+		synchronized byte[] get(final CallKey key) {
+			sketch.increment(key);
+
+			Entry entry = window.get(key);
+
+			if (entry == null) {
+				entry = main.get(key);
+			}
+
+			if (entry != null) {
+				if (System.nanoTime() - entry.expiryTime < 0) {
+					return entry.value;
+				}
+
+				remove(key);
+			}
+
+			return null;
+		}
+
+
+		synchronized void put(final CallKey key, final Entry entry) {
+			if (entry.size > maxBytes - windowMaxBytes) {
+				return;
+			}
+
+			remove(key);
+			window.put(key, entry);
+			windowBytes += entry.size;
+
+			// move the least recently used entries of the window to the main area
+			final Iterator<Map.Entry<CallKey, Entry>> it = window.entrySet().iterator();
+
+			while (windowBytes > windowMaxBytes && it.hasNext()) {
+				final Map.Entry<CallKey, Entry> candidate = it.next();
+				it.remove();
+				windowBytes -= candidate.getValue().size;
+				admit(candidate.getKey(), candidate.getValue());
+			}
+		}
+
+
+		/**
+		 * Admits the candidate evicted from the window to the main area if it is requested more
+		 * often than each of the least recently used entries it would replace. The victims are
+		 * only evicted once the candidate has won against all of them.
+		 *
+		 * @param key the key of the candidate
+		 * @param candidate the candidate {@link Entry}
+		 */
+		private void admit(final CallKey key, final Entry candidate) {
+			final long mainMaxBytes = maxBytes - windowMaxBytes;
+			final int frequency = sketch.frequency(key);
+			final long now = System.nanoTime();
+			final Iterator<Map.Entry<CallKey, Entry>> victims = main.entrySet().iterator();
+			long freedBytes = 0L;
+			int victimCount = 0;
+
+			while (mainBytes - freedBytes + candidate.size > mainMaxBytes) {
+				final Map.Entry<CallKey, Entry> victim = victims.next();
+
+				// expired entries are always replaced
+				if (now - victim.getValue().expiryTime < 0 && sketch.frequency(victim.getKey()) >= frequency) {
+					return;
+				}
+
+				freedBytes += victim.getValue().size;
+				victimCount++;
+			}
+
+			final Iterator<Map.Entry<CallKey, Entry>> it = main.entrySet().iterator();
+
+			for (int i = 0; i < victimCount; i++) {
+				mainBytes -= it.next().getValue().size;
+				it.remove();
+			}
+
+			main.put(key, candidate);
+			mainBytes += candidate.size;
+		}
+
+
+		private void remove(final CallKey key) {
+			Entry entry = window.remove(key);
+
+			if (entry != null) {
+				windowBytes -= entry.size;
+			}
+
+			entry = main.remove(key);
+
+			if (entry != null) {
+				mainBytes -= entry.size;
+			}
+		}
+
+
+		synchronized void invalidate() {
+			window.clear();
+			main.clear();
+			windowBytes = 0L;
+			mainBytes = 0L;
+		}
+
+
+		synchronized long size() {
+			return windowBytes + mainBytes;
+		}
+	}
+
+	/**
+	 * A cached serialized result.
+	 */
+	private final static class Entry {
+		private final byte[] value;
+		private final long size;
+		private final long expiryTime;
+
+
+		Entry(final byte[] value, final long size, final long expiryTime) {
+			this.value = value;
+			this.size = size;
+			this.expiryTime = expiryTime;
+		}
+	}
+
+	/**
+	 * Count-min sketch estimating the recent request frequency of the keys. The counters saturate
+	 * at 15 and are halved periodically, so the frequencies age.
+	 */
+	private final static class FrequencySketch {
+		private final static int DEPTH = 4;
+		private final static int WIDTH = 4096;
+		private final static int MAX_COUNT = 15;
+		private final static int[] SEEDS = { 0x97cb3127, 0xc2b2ae35, 0x85ebca6b, 0x27d4eb2f };
+		private final byte[][] counters = new byte[DEPTH][WIDTH];
+		private int additions;
+
+
+		void increment(final Object key) {
+			final int hash = key.hashCode();
+
+			for (int i = 0; i < DEPTH; i++) {
+				final int index = indexOf(hash, i);
+
+				if (counters[i][index] < MAX_COUNT) {
+					counters[i][index]++;
+				}
+			}
+
+			if (++additions >= WIDTH * 10) {
+				reset();
+			}
+		}
+
+
+		int frequency(final Object key) {
+			final int hash = key.hashCode();
+			int frequency = MAX_COUNT;
+
+			for (int i = 0; i < DEPTH; i++) {
+				frequency = Math.min(frequency, counters[i][indexOf(hash, i)]);
+			}
+
+			return frequency;
+		}
+
+
+		private int indexOf(final int hash, final int row) {
+			int h = (hash ^ SEEDS[row]) * SEEDS[row];
+			h ^= h >>> 16;
+
+			return h & WIDTH - 1;
+		}
+
+
+		private void reset() {
+			for (final byte[] row : counters) {
+				for (int i = 0; i < row.length; i++) {
+					row[i] >>= 1;
+				}
+			}
+
+			additions /= 2;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provider of the {@link IServerInterceptor}s discovered via {@link ServiceLoader}. The
+ * interceptors are called in the order they are listed, followed by the ones added
+ * programmatically. Changes only apply to services deployed afterwards.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class ServerInterceptors {
+	private final static Logger LOG = LoggerFactory.getLogger(ServerInterceptors.class);
+	private static ServiceLoader<IServerInterceptor> loader = ServiceLoader.load(IServerInterceptor.class, ServerInterceptors.class.getClassLoader());
+	private static List<IServerInterceptor> interceptors = new CopyOnWriteArrayList<>();
+
+	static {
+		try {
+			final Iterator<IServerInterceptor> iterator = loader.iterator();
+
+			while (iterator.hasNext()) {
+				interceptors.add(iterator.next());
+			}
+		} catch (final ServiceConfigurationError serviceError) {
+			LOG.error("Could not load the registered IServerInterceptors!", serviceError);
+		}
+	}
+
+
+	/**
+	 * Gets the registered {@link IServerInterceptor}s in the order they are called.
+	 *
+	 * @return the {@link IServerInterceptor}s
+	 */
+	public static IServerInterceptor[] get() {
+		return interceptors.toArray(new IServerInterceptor[0]);
+	}
+
+
+	/**
+	 * Adds an {@link IServerInterceptor} to be called after the registered ones.
+	 *
+	 * @param interceptor the {@link IServerInterceptor}
+	 */
+	public static void addInterceptor(final IServerInterceptor interceptor) {
+		interceptors.add(interceptor);
+	}
+
+
+	/**
+	 * Removes all registered {@link IServerInterceptor}s.
+	 */
+	public static void clear() {
+		interceptors.clear();
+	}
+}
@@ -0,0 +1,122 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import java.io.Serializable;
+
+import com.airepublic.microverse.core.descriptor.MethodCall;
+import com.airepublic.microverse.core.descriptor.MethodDescriptor;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+
+/**
+ * A link of the chain of {@link IServerInterceptor}s around the calls of a service method. The
+ * chains are built once per method when the service is deployed, so a call passes through the
+ * interceptors without creating any objects.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public final class ServerInvocation {
+	private final ServiceDescriptor serviceDescriptor;
+	private final MethodDescriptor methodDescriptor;
+	private final IServerInterceptor interceptor;
+	private final ServerInvocation next;
+	private final Target target;
+
+	/**
+	 * The invocation of the service at the end of the chain.
+	 */
+	interface Target {
+		Serializable invoke(MethodCall call) throws Throwable;
+	}
+
+
+	/**
+	 * Builds the chain of the specified interceptors around the target.
+	 *
+	 * @param serviceDescriptor the {@link ServiceDescriptor} of the called service
+	 * @param methodDescriptor the {@link MethodDescriptor} of the method or <code>null</code> for
+	 *        calls which don't carry a method index
+	 * @param interceptors the {@link IServerInterceptor}s in the order they are called
+	 * @param target the invocation of the service
+	 * @return the first link of the chain
+	 */
+	static ServerInvocation create(final ServiceDescriptor serviceDescriptor, final MethodDescriptor methodDescriptor, final IServerInterceptor[] interceptors, final Target target) {
+		ServerInvocation chain = new ServerInvocation(serviceDescriptor, methodDescriptor, null, null, target);
+
+		for (int i = interceptors.length - 1; i >= 0; i--) {
+			chain = new ServerInvocation(serviceDescriptor, methodDescriptor, interceptors[i], chain, target);
+		}
+
+		return chain;
+	}
+
+
+	private ServerInvocation(final ServiceDescriptor serviceDescriptor, final MethodDescriptor methodDescriptor, final IServerInterceptor interceptor, final ServerInvocation next, final Target target) {
+		this.serviceDescriptor = serviceDescriptor;
+		this.methodDescriptor = methodDescriptor;
+		this.interceptor = interceptor;
+		this.next = next;
+		this.target = target;
+	}
+
+
+	/**
+	 * Gets the {@link ServiceDescriptor} of the called service.
+	 *
+	 * @return the {@link ServiceDescriptor}
+	 */
+	public ServiceDescriptor getServiceDescriptor() {
+		return serviceDescriptor;
+	}
+
+
+	/**
+	 * Gets the {@link MethodDescriptor} of the called method.
+	 *
+	 * @return the {@link MethodDescriptor} or <code>null</code> if the call doesn't carry a method
+	 *         index
+	 */
+	public MethodDescriptor getMethodDescriptor() {
+		return methodDescriptor;
+	}
+
+
+	/**
+	 * Continues the call with the next interceptor or invokes the service.
+	 *
+	 * @param call the {@link MethodCall}
+	 * @return the result of the call
+	 * @throws Throwable if the call failed
+	 */
+	public Serializable proceed(final MethodCall call) throws Throwable {
+		return next.invoke(call);
+	}
+
+
+	/**
+	 * Calls the interceptor of this link or invokes the service at the end of the chain.
+	 *
+	 * @param call the {@link MethodCall}
+	 * @return the result of the call
+	 * @throws Throwable if the call failed
+	 */
+	Serializable invoke(final MethodCall call) throws Throwable {
+		if (interceptor == null) {
+			return target.invoke(call);
+		}
+
+		return interceptor.intercept(this, call);
+	}
+}
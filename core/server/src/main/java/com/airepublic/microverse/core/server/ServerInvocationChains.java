@@ -0,0 +1,70 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import com.airepublic.microverse.core.descriptor.MethodCall;
+import com.airepublic.microverse.core.descriptor.MethodDescriptor;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+
+/**
+ * The chains of {@link IServerInterceptor}s around the methods of a service. Each method has its
+ * own chain carrying its {@link MethodDescriptor}. Calls which don't carry a valid method index or
+ * whose signature hash doesn't match the method at the index pass through a fallback chain without
+ * a {@link MethodDescriptor}.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+final class ServerInvocationChains {
+	private final ServerInvocation[] chains;
+	private final ServerInvocation fallback;
+
+
+	/**
+	 * Builds the chains of the specified {@link IServerInterceptor}s around the target for each
+	 * method of the service and the fallback chain.
+	 *
+	 * @param serviceDescriptor the {@link ServiceDescriptor} of the service
+	 * @param interceptors the {@link IServerInterceptor}s in the order they are called
+	 * @param target the invocation of the service
+	 */
+	ServerInvocationChains(final ServiceDescriptor serviceDescriptor, final IServerInterceptor[] interceptors, final ServerInvocation.Target target) {
+		chains = new ServerInvocation[serviceDescriptor.getMethods().size()];
+
+		for (final MethodDescriptor methodDescriptor : serviceDescriptor.getMethods()) {
+			if (methodDescriptor.getIndex() >= 0 && methodDescriptor.getIndex() < chains.length) {
+				chains[methodDescriptor.getIndex()] = ServerInvocation.create(serviceDescriptor, methodDescriptor, interceptors, target);
+			}
+		}
+
+		fallback = ServerInvocation.create(serviceDescriptor, null, interceptors, target);
+	}
+
+
+	/**
+	 * Gets the chain for the called method.
+	 *
+	 * @param call the {@link MethodCall}
+	 * @return the chain of the method or the fallback chain
+	 */
+	ServerInvocation get(final MethodCall call) {
+		final int index = call.getMethodIndex();
+
+		if (index >= 0 && index < chains.length && chains[index] != null && chains[index].getMethodDescriptor().getSignatureHash() == call.getSignatureHash()) {
+			return chains[index];
+		}
+
+		return fallback;
+	}
+}
@@ -0,0 +1,55 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import com.airepublic.microverse.core.service.api.IServiceInvoker;
+
+/**
+ * Parent classloader for service-containers which shares the service-api classes of the
+ * service-server with the service-container. All other classes are delegated to the specified
+ * parent classloader, so the service-container stays isolated from the service-server.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class ServiceApiClassLoader extends ClassLoader {
+	private static final String SERVICE_API_PACKAGE = IServiceInvoker.class.getPackage().getName() + ".";
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param parent the parent classloader for all non service-api classes (may be
+	 *        <code>null</code> for the bootstrap classloader)
+	 */
+	public ServiceApiClassLoader(final ClassLoader parent) {
+		super(parent);
+	}
+
+
+	@Override
+	protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+		if (name.startsWith(SERVICE_API_PACKAGE)) {
+			final Class<?> serviceApiClass = IServiceInvoker.class.getClassLoader().loadClass(name);
+
+			if (resolve) {
+				resolveClass(serviceApiClass);
+			}
+
+			return serviceApiClass;
+		}
+
+		return super.loadClass(name, resolve);
+	}
+}
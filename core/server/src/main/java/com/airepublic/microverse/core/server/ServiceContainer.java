@@ -17,6 +17,8 @@ import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.FileVisitResult;
@@ -25,7 +27,12 @@ import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -33,8 +40,12 @@ import org.apache.commons.lang3.SerializationUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.airepublic.microverse.core.common.Configuration;
+import com.airepublic.microverse.core.descriptor.MethodCall;
 import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.descriptor.ServiceStatistics;
 import com.airepublic.microverse.core.exception.ServiceException;
+import com.airepublic.microverse.core.service.api.IServiceInvoker;
 
 /**
  * The container to run the service independently from the other classloaders.
@@ -47,9 +58,21 @@ public class ServiceContainer implements Closeable {
 
 	private URLClassLoader classLoader;
 	private ServiceDescriptor serviceDescriptor;
-	private Object service;
+	private IServiceInvoker service;
+	private ServiceWorkerPool workerPool;
+	private final CallCoalescer callCoalescer = new CallCoalescer();
+	private final ResultCache resultCache = new ResultCache(Configuration.getServerCacheSize());
+	private final AtomicInteger inFlightRequests = new AtomicInteger();
+	private final Object drainLock = new Object();
+	private volatile boolean closed = false;
+	/** The maximum number of recorded calls to warm up the next deployment of the service. */
+	private final static int MAX_RECORDED_CALLS = 32;
+	private final ConcurrentLinkedDeque<MethodCall> recordedCalls = new ConcurrentLinkedDeque<>();
+	private final AtomicInteger recordedCallCount = new AtomicInteger();
 	private final Path containerDirectory;
 	private final Object syncClassloading = new Object();
+	private ServerInvocationChains interceptorChains;
+	private ServerInvocation.Target target;
 
 
 	/**
@@ -64,6 +87,43 @@ public class ServiceContainer implements Closeable {
 	 * @throws ServiceException
 	 */
 	public static ServiceContainer create(final ServiceDescriptor serviceDescriptor, final byte[] serviceBundleZip, final Path serviceDir, final IClassLoaderCreator classLoaderCreator) throws ServiceException {
+		return create(serviceDescriptor, serviceBundleZip != null ? new ByteArrayInputStream(serviceBundleZip) : null, serviceDir, classLoaderCreator);
+	}
+
+
+	/**
+	 * Creates a {@link ServiceContainer} for the specified {@link ServiceDescriptor} by decoding
+	 * all files in the service-bundle zip file and creating the service. The bundle is streamed
+	 * from the file, so it is never held in memory as a whole.
+	 *
+	 * @param serviceDescriptor the {@link ServiceDescriptor}
+	 * @param serviceBundleZip the path to the service-bundle zip
+	 * @param serviceDir the root directory where the container directory will be created
+	 * @param classLoaderCreator the classloader
+	 * @return the {@link ServiceContainer}
+	 * @throws ServiceException
+	 */
+	public static ServiceContainer create(final ServiceDescriptor serviceDescriptor, final Path serviceBundleZip, final Path serviceDir, final IClassLoaderCreator classLoaderCreator) throws ServiceException {
+		try (InputStream inputStream = Files.newInputStream(serviceBundleZip)) {
+			return create(serviceDescriptor, inputStream, serviceDir, classLoaderCreator);
+		} catch (final IOException e) {
+			throw new ServiceException("Service-bundle could not be read: " + serviceBundleZip, e);
+		}
+	}
+
+
+	/**
+	 * Creates a {@link ServiceContainer} for the specified {@link ServiceDescriptor} by decoding
+	 * all files in the service-bundle zip stream and creating the service.
+	 *
+	 * @param serviceDescriptor the {@link ServiceDescriptor}
+	 * @param serviceBundleZip the input-stream of the service-bundle zip
+	 * @param serviceDir the root directory where the container directory will be created
+	 * @param classLoaderCreator the classloader
+	 * @return the {@link ServiceContainer}
+	 * @throws ServiceException
+	 */
+	private static ServiceContainer create(final ServiceDescriptor serviceDescriptor, final InputStream serviceBundleZip, final Path serviceDir, final IClassLoaderCreator classLoaderCreator) throws ServiceException {
 		final Path containerDirectory = serviceDir.resolve(serviceDescriptor.getId() + "-" + serviceDescriptor.getVersion() + "_" + System.nanoTime());
 
 		try {
@@ -91,13 +151,26 @@ public class ServiceContainer implements Closeable {
 	 * @throws ServiceException
 	 */
 	protected static URL[] writeServiceLibraries(final Path libDir, final byte[] serviceBundleZip) throws ServiceException {
+		return writeServiceLibraries(libDir, serviceBundleZip != null ? new ByteArrayInputStream(serviceBundleZip) : null);
+	}
+
+
+	/**
+	 * Creates the service-lib directory and writes all libraries which are needed by the service
+	 * reading the service-bundle zip entry by entry from the input-stream.
+	 *
+	 * @param libDir the path to the service-lib directory to create
+	 * @param serviceBundleZip the input-stream of the service-bundle zip
+	 * @throws ServiceException
+	 */
+	protected static URL[] writeServiceLibraries(final Path libDir, final InputStream serviceBundleZip) throws ServiceException {
 		// write jars and set lib dir
 		final List<URL> urls = new ArrayList<URL>();
 
 		if (serviceBundleZip != null) {
 			try {
 				// write bundle libs
-				ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(serviceBundleZip));
+				ZipInputStream zis = new ZipInputStream(serviceBundleZip);
 				ZipEntry entry;
 
 				while ((entry = zis.getNextEntry()) != null) {
@@ -164,11 +237,12 @@ public class ServiceContainer implements Closeable {
 			synchronized (syncClassloading) {
 				final ClassLoader orig = Thread.currentThread().getContextClassLoader();
 				Thread.currentThread().setContextClassLoader(classLoader);
-				service = classLoader.loadClass("com.airepublic.microverse.core.service.Service").getConstructor(byte[].class).newInstance(SerializationUtils.serialize(serviceDescriptor));
+				service = (IServiceInvoker) classLoader.loadClass(IServiceInvoker.SERVICE_CLASS_NAME).getConstructor(byte[].class).newInstance(SerializationUtils.serialize(serviceDescriptor));
 				Thread.currentThread().setContextClassLoader(orig);
 			}
 
-			this.serviceDescriptor = SerializationUtils.deserialize((byte[]) service.getClass().getMethod("getSerializedServiceDescriptor", new Class[] {}).invoke(service, new Object[] {}));
+			this.serviceDescriptor = SerializationUtils.deserialize(service.getSerializedServiceDescriptor());
+			workerPool = new ServiceWorkerPool(this.serviceDescriptor, Configuration.getServerWorkerThreads(), Configuration.getServerWorkerQueueSize(), Configuration.getServerAdmissionTarget(), Configuration.getServerAdmissionInterval());
 		} catch (final Exception e) {
 			try {
 				// close to release resources and delete container-directory
@@ -192,16 +266,250 @@ public class ServiceContainer implements Closeable {
 	}
 
 
-	public final Object getService() {
+	/**
+	 * Gets the {@link IServiceInvoker} of the service running in this container.
+	 *
+	 * @return the {@link IServiceInvoker}
+	 */
+	public final IServiceInvoker getService() {
 		return service;
 	}
 
 
+	/**
+	 * Gets the classloader of the service-container.
+	 *
+	 * @return the classloader
+	 */
+	ClassLoader getClassLoader() {
+		return classLoader;
+	}
+
+
+	/**
+	 * Gets the {@link ServiceWorkerPool} processing the requests of the service.
+	 *
+	 * @return the {@link ServiceWorkerPool}
+	 */
+	public final ServiceWorkerPool getWorkerPool() {
+		return workerPool;
+	}
+
+
+	/**
+	 * Gets the {@link CallCoalescer} for the single-flight methods of the service.
+	 *
+	 * @return the {@link CallCoalescer}
+	 */
+	public final CallCoalescer getCallCoalescer() {
+		return callCoalescer;
+	}
+
+
+	/**
+	 * Gets the {@link ResultCache} for the cached methods of the service. It is created empty with
+	 * each container, so a redeployed service never answers with results of its predecessor.
+	 *
+	 * @return the {@link ResultCache}
+	 */
+	public final ResultCache getResultCache() {
+		return resultCache;
+	}
+
+
+	/**
+	 * Builds the chains of the specified {@link IServerInterceptor}s around the target for each
+	 * method of the service and one for calls which don't carry a method index. The target answers
+	 * the calls of cached methods from the {@link ResultCache}, so cache hits pass through the
+	 * interceptors as well. Without interceptors no chains are built.
+	 *
+	 * @param interceptors the {@link IServerInterceptor}s in the order they are called
+	 * @param target the invocation of the service
+	 */
+	void initInterceptorChains(final IServerInterceptor[] interceptors, final ServerInvocation.Target target) {
+		this.target = new CachingTarget(serviceDescriptor, resultCache, target);
+
+		if (interceptors.length == 0) {
+			return;
+		}
+
+		interceptorChains = new ServerInvocationChains(serviceDescriptor, interceptors, this.target);
+	}
+
+
+	/**
+	 * Invokes the call through the chain of {@link IServerInterceptor}s of the called method or
+	 * directly if there are no interceptors.
+	 *
+	 * @param call the {@link MethodCall}
+	 * @return the result of the call
+	 * @throws Throwable if the call failed
+	 */
+	Serializable invoke(final MethodCall call) throws Throwable {
+		final ServerInvocationChains chains = interceptorChains;
+
+		if (chains != null) {
+			return chains.get(call).invoke(call);
+		}
+
+		return target.invoke(call);
+	}
+
+
+	/**
+	 * Gets the chain of {@link IServerInterceptor}s for the called method.
+	 *
+	 * @param call the {@link MethodCall}
+	 * @return the first link of the chain or <code>null</code> if there are no interceptors
+	 */
+	public ServerInvocation getInterceptorChain(final MethodCall call) {
+		final ServerInvocationChains chains = interceptorChains;
+
+		return chains != null ? chains.get(call) : null;
+	}
+
+
+	/**
+	 * Registers a request which is queued for or being processed by the service. Each successful
+	 * call must be followed by a call to {@link #release()} once the request is done.
+	 *
+	 * @return <code>true</code> if the request was registered or <code>false</code> if the
+	 *         container is already closed
+	 */
+	public boolean acquire() {
+		inFlightRequests.incrementAndGet();
+
+		if (closed) {
+			release();
+			return false;
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Releases a request registered by {@link #acquire()}.
+	 */
+	public void release() {
+		if (inFlightRequests.decrementAndGet() == 0) {
+			synchronized (drainLock) {
+				drainLock.notifyAll();
+			}
+		}
+	}
+
+
+	/**
+	 * Gets the number of requests queued for or being processed by the service.
+	 *
+	 * @return the number of in-flight requests
+	 */
+	public int getInFlightRequests() {
+		return inFlightRequests.get();
+	}
+
+
+	/**
+	 * Waits until all in-flight requests are done or the timeout elapsed. The container must have
+	 * been removed from the routing before, so no new requests arrive.
+	 *
+	 * @param timeout the maximum time to wait
+	 * @param unit the {@link TimeUnit} of the timeout
+	 * @return <code>true</code> if all requests are done
+	 */
+	public boolean drain(final long timeout, final TimeUnit unit) {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+		synchronized (drainLock) {
+			long remaining = deadline - System.nanoTime();
+
+			while (inFlightRequests.get() > 0 && remaining > 0) {
+				try {
+					TimeUnit.NANOSECONDS.timedWait(drainLock, remaining);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+
+				remaining = deadline - System.nanoTime();
+			}
+		}
+
+		return inFlightRequests.get() == 0;
+	}
+
+
+	/**
+	 * Records a call of a warm-up method, so it can be replayed to warm up the next deployment of
+	 * the service. Only the most recent calls are kept.
+	 *
+	 * @param call the {@link MethodCall}
+	 */
+	public void recordCall(final MethodCall call) {
+		recordedCalls.addFirst(call);
+
+		if (recordedCallCount.incrementAndGet() > MAX_RECORDED_CALLS && recordedCalls.pollLast() != null) {
+			recordedCallCount.decrementAndGet();
+		}
+	}
+
+
+	/**
+	 * Gets the recently recorded calls of the warm-up methods.
+	 *
+	 * @return the recorded {@link MethodCall}s
+	 */
+	public Collection<MethodCall> getRecordedCalls() {
+		return new ArrayList<>(recordedCalls);
+	}
+
+
+	/**
+	 * Warms up the service before it receives traffic, see {@link ServiceWarmUp}.
+	 *
+	 * @param recordedCalls the calls recorded on the previous deployment of the service
+	 */
+	public void warmUp(final Collection<MethodCall> recordedCalls) {
+		ServiceWarmUp.warmUp(service, serviceDescriptor, recordedCalls, Configuration.getServerWarmUpTimeout(), Configuration.getServerWarmUpRounds());
+	}
+
+
+	/**
+	 * Gets the current {@link ServiceStatistics} of the service.
+	 *
+	 * @return the {@link ServiceStatistics}
+	 */
+	public ServiceStatistics getStatistics() {
+		final ServiceStatistics statistics = resultCache.addStatistics(callCoalescer.addStatistics(workerPool.getStatistics()));
+		final Map<String, Long> instanceStatistics = service.getInstanceStatistics();
+
+		statistics.setConcurrencyModel(serviceDescriptor.getConcurrencyModel());
+		statistics.setServiceInstances(instanceStatistics.getOrDefault(IServiceInvoker.STATISTICS_INSTANCES, 0L).intValue());
+		statistics.setBusyInstances(instanceStatistics.getOrDefault(IServiceInvoker.STATISTICS_BUSY_INSTANCES, 0L).intValue());
+		statistics.setInstanceWaits(instanceStatistics.getOrDefault(IServiceInvoker.STATISTICS_INSTANCE_WAITS, 0L));
+
+		return statistics;
+	}
+
+
 	@Override
 	public synchronized void close() {
+		closed = true;
+
+		if (inFlightRequests.get() > 0) {
+			LOG.warn("Closing service with " + inFlightRequests.get() + " requests still in flight: " + serviceDescriptor);
+		}
+
+		if (workerPool != null) {
+			workerPool.shutdown();
+		}
+
+		resultCache.invalidate();
+
 		try {
 			if (service != null) {
-				service.getClass().getMethod("close", new Class[] {}).invoke(service, new Object[] {});
+				service.close();
 			}
 		} catch (final Exception e) {
 			LOG.error("Error closing service: " + serviceDescriptor, e);
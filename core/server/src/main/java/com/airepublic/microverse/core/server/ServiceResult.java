@@ -0,0 +1,211 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.microverse.core.common.StreamFrames;
+import com.airepublic.microverse.core.common.marshaller.IMarshaller;
+import com.airepublic.microverse.core.exception.ServiceException;
+import com.airepublic.microverse.core.service.api.ResultStream;
+
+/**
+ * The result of a service call which is either already serialized (e.g. taken from the
+ * {@link ResultCache}) or is serialized with its marshaller while it is written to the response,
+ * so the serialized result never needs to be held in memory as a whole. Element streams are
+ * written element by element as {@link StreamFrames} while they are produced by the service. The
+ * result must be closed after it has been written to release the resources of an element stream.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public final class ServiceResult implements Closeable {
+	private static final Logger LOG = LoggerFactory.getLogger(ServiceResult.class);
+	private final byte[] serializedResult;
+	private final Serializable result;
+	private final IMarshaller marshaller;
+	private final Runnable onClose;
+	private final AtomicBoolean closed = new AtomicBoolean(false);
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param serializedResult the serialized result or <code>null</code>
+	 * @param result the result or <code>null</code>
+	 * @param marshaller the marshaller to serialize the result or <code>null</code>
+	 * @param onClose the action to run when the result is closed or <code>null</code>
+	 */
+	private ServiceResult(final byte[] serializedResult, final Serializable result, final IMarshaller marshaller, final Runnable onClose) {
+		this.serializedResult = serializedResult;
+		this.result = result;
+		this.marshaller = marshaller;
+		this.onClose = onClose;
+	}
+
+
+	/**
+	 * Creates a {@link ServiceResult} for the already serialized result.
+	 *
+	 * @param serializedResult the serialized result
+	 * @return the {@link ServiceResult}
+	 */
+	public static ServiceResult of(final byte[] serializedResult) {
+		return new ServiceResult(serializedResult, null, null, null);
+	}
+
+
+	/**
+	 * Creates a {@link ServiceResult} for the result which is serialized with the marshaller when
+	 * it is written.
+	 *
+	 * @param result the result
+	 * @param marshaller the marshaller
+	 * @return the {@link ServiceResult}
+	 */
+	public static ServiceResult of(final Serializable result, final IMarshaller marshaller) {
+		return new ServiceResult(null, result, marshaller, null);
+	}
+
+
+	/**
+	 * Creates a {@link ServiceResult} for the element stream whose elements are serialized with the
+	 * marshaller when they are written.
+	 *
+	 * @param stream the {@link ResultStream}
+	 * @param marshaller the marshaller
+	 * @param onClose the action to run after the stream has been closed
+	 * @return the {@link ServiceResult}
+	 */
+	public static ServiceResult of(final ResultStream stream, final IMarshaller marshaller, final Runnable onClose) {
+		return new ServiceResult(null, stream, marshaller, onClose);
+	}
+
+
+	/**
+	 * Checks whether the result is already serialized.
+	 *
+	 * @return <code>true</code> if {@link #getSerializedResult()} returns the serialized result
+	 */
+	public boolean isSerialized() {
+		return serializedResult != null;
+	}
+
+
+	/**
+	 * Gets the serialized result if the result is already serialized.
+	 *
+	 * @return the serialized result or <code>null</code>
+	 */
+	public byte[] getSerializedResult() {
+		return serializedResult;
+	}
+
+
+	/**
+	 * Gets the element stream if the result is one.
+	 *
+	 * @return the {@link ResultStream} or <code>null</code> if the result is no element stream
+	 */
+	public ResultStream getResultStream() {
+		return result instanceof ResultStream ? (ResultStream) result : null;
+	}
+
+
+	/**
+	 * Gets the marshaller to serialize the result or the elements of the element stream with.
+	 *
+	 * @return the marshaller or <code>null</code> if the result is already serialized or no
+	 *         response mime-type was requested
+	 */
+	public IMarshaller getMarshaller() {
+		return marshaller;
+	}
+
+
+	/**
+	 * Writes the serialized result to the output-stream. The output-stream is not closed.
+	 *
+	 * @param outputStream the output-stream
+	 * @throws IOException if the result could not be serialized or written
+	 */
+	public void writeTo(final OutputStream outputStream) throws IOException {
+		if (serializedResult != null) {
+			outputStream.write(serializedResult);
+		} else if (marshaller == null) {
+			throw new IOException("No marshaller to serialize the result!");
+		} else {
+			try {
+				if (result instanceof ResultStream) {
+					StreamFrames.write((ResultStream) result, marshaller, outputStream);
+				} else {
+					marshaller.serialize(result, outputStream);
+				}
+			} catch (final ServiceException e) {
+				throw new IOException(e.getMessage(), e);
+			}
+		}
+	}
+
+
+	/**
+	 * Gets the serialized result as byte array, serializing the result if necessary.
+	 *
+	 * @return the serialized result
+	 * @throws ServiceException if the result could not be serialized
+	 */
+	public byte[] toByteArray() throws ServiceException {
+		if (serializedResult != null) {
+			return serializedResult;
+		}
+
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+		try {
+			writeTo(outputStream);
+		} catch (final IOException e) {
+			throw new ServiceException("Could not serialize result!", e);
+		}
+
+		return outputStream.toByteArray();
+	}
+
+
+	@Override
+	public void close() {
+		if (!closed.compareAndSet(false, true)) {
+			return;
+		}
+
+		if (result instanceof ResultStream) {
+			try {
+				((ResultStream) result).close();
+			} catch (final RuntimeException e) {
+				LOG.warn("Error closing result stream!", e);
+			}
+		}
+
+		if (onClose != null) {
+			onClose.run();
+		}
+	}
+}
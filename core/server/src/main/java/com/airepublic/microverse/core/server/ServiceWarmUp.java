@@ -0,0 +1,201 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.microverse.core.descriptor.MethodCall;
+import com.airepublic.microverse.core.descriptor.MethodDescriptor;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.service.api.IServiceInvoker;
+import com.airepublic.microverse.core.service.api.InvocationContext;
+import com.airepublic.microverse.core.service.api.ResultStream;
+import com.airepublic.microverse.core.service.api.WarmUp;
+
+/**
+ * Warms up a newly created service by calling its {@link WarmUp} methods in rounds until the
+ * latency of a round has stabilized, the maximum number of rounds is reached or the timeout has
+ * elapsed. This lets the classes be loaded, the CDI proxies be created and the hot paths be
+ * compiled before the service receives traffic. The deadline of the warm-up is set in the
+ * {@link InvocationContext} of each call, so calls to other services or long running methods stop
+ * once the timeout has elapsed, and no further call is started after it.
+ * <p>
+ * The calls recorded on the previous deployment of the service are replayed if their methods are
+ * still {@link WarmUp} methods. Otherwise synthetic calls with default arguments are used.
+ * </p>
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class ServiceWarmUp {
+	private final static Logger LOG = LoggerFactory.getLogger(ServiceWarmUp.class);
+	/** The minimum number of rounds before the latency is considered stable. */
+	private final static int MIN_ROUNDS = 10;
+	/** The number of consecutive rounds whose latency must be within the tolerance. */
+	private final static int STABLE_ROUNDS = 3;
+	/** The relative latency change between rounds which is considered stable. */
+	private final static double TOLERANCE = 0.1;
+	private final static Map<String, Serializable> DEFAULT_VALUES = new HashMap<>();
+
+	static {
+		DEFAULT_VALUES.put("boolean", false);
+		DEFAULT_VALUES.put("byte", (byte) 0);
+		DEFAULT_VALUES.put("short", (short) 0);
+		DEFAULT_VALUES.put("char", (char) 0);
+		DEFAULT_VALUES.put("int", 0);
+		DEFAULT_VALUES.put("long", 0L);
+		DEFAULT_VALUES.put("float", 0f);
+		DEFAULT_VALUES.put("double", 0d);
+		DEFAULT_VALUES.put(Boolean.class.getName(), false);
+		DEFAULT_VALUES.put(Byte.class.getName(), (byte) 0);
+		DEFAULT_VALUES.put(Short.class.getName(), (short) 0);
+		DEFAULT_VALUES.put(Character.class.getName(), (char) 0);
+		DEFAULT_VALUES.put(Integer.class.getName(), 0);
+		DEFAULT_VALUES.put(Long.class.getName(), 0L);
+		DEFAULT_VALUES.put(Float.class.getName(), 0f);
+		DEFAULT_VALUES.put(Double.class.getName(), 0d);
+		DEFAULT_VALUES.put(String.class.getName(), "");
+	}
+
+
+	/**
+	 * Warms up the service.
+	 *
+	 * @param service the {@link IServiceInvoker} of the service
+	 * @param serviceDescriptor the {@link ServiceDescriptor} of the service
+	 * @param recordedCalls the calls recorded on the previous deployment of the service
+	 * @param timeout the maximum time in milliseconds to warm up
+	 * @param maxRounds the maximum number of rounds
+	 * @return the number of rounds performed
+	 */
+	public static int warmUp(final IServiceInvoker service, final ServiceDescriptor serviceDescriptor, final Collection<MethodCall> recordedCalls, final long timeout, final int maxRounds) {
+		final List<MethodCall> calls = getWarmUpCalls(serviceDescriptor, recordedCalls);
+
+		if (calls.isEmpty() || timeout <= 0L) {
+			return 0;
+		}
+
+		final long start = System.nanoTime();
+		final long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeout);
+		long previousRoundTime = 0L;
+		int stableRounds = 0;
+		int rounds = 0;
+		final Long callerDeadline = InvocationContext.getDeadline();
+
+		try {
+			while (rounds < maxRounds && System.nanoTime() - deadline < 0) {
+				final long roundStart = System.nanoTime();
+
+				for (final MethodCall call : calls) {
+					if (System.nanoTime() - deadline >= 0) {
+						break;
+					}
+
+					InvocationContext.setDeadline(deadline);
+
+					try {
+						final Serializable result = service.invoke(call.getMethodIndex(), call.getSignatureHash(), call.getMethodName(), call.getSignature(), call.getParameters());
+
+						// element streams are not consumed, but their resources must be released
+						if (result instanceof ResultStream) {
+							((ResultStream) result).close();
+						}
+					} catch (final Exception e) {
+						// the call still warms up the code paths
+						LOG.trace("Warm-up call " + call + " failed", e);
+					}
+				}
+
+				final long roundTime = System.nanoTime() - roundStart;
+				rounds++;
+
+				if (previousRoundTime > 0L && Math.abs(roundTime - previousRoundTime) <= previousRoundTime * TOLERANCE) {
+					stableRounds++;
+				} else {
+					stableRounds = 0;
+				}
+
+				previousRoundTime = roundTime;
+
+				if (rounds >= MIN_ROUNDS && stableRounds >= STABLE_ROUNDS) {
+					break;
+				}
+			}
+		} finally {
+			InvocationContext.setDeadline(callerDeadline);
+		}
+
+		LOG.info("Warmed up service " + serviceDescriptor.getId() + ":" + serviceDescriptor.getVersion() + " with " + rounds + " rounds of " + calls.size() + " calls in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+
+		return rounds;
+	}
+
+
+	/**
+	 * Gets the calls to warm up the service with. Recorded calls are only used if they match a
+	 * {@link WarmUp} method of the service.
+	 *
+	 * @param serviceDescriptor the {@link ServiceDescriptor}
+	 * @param recordedCalls the recorded calls
+	 * @return the list of calls
+	 */
+	static List<MethodCall> getWarmUpCalls(final ServiceDescriptor serviceDescriptor, final Collection<MethodCall> recordedCalls) {
+		final List<MethodCall> calls = new ArrayList<>();
+
+		for (final MethodCall call : recordedCalls) {
+			final MethodDescriptor methodDescriptor = serviceDescriptor.getMethod(call.getMethodIndex());
+
+			if (methodDescriptor != null && methodDescriptor.isWarmUp() && methodDescriptor.getSignatureHash() == call.getSignatureHash()) {
+				calls.add(call);
+			}
+		}
+
+		if (calls.isEmpty()) {
+			for (final MethodDescriptor methodDescriptor : serviceDescriptor.getMethods()) {
+				if (methodDescriptor.isWarmUp() && methodDescriptor.getIndex() >= 0) {
+					calls.add(createSyntheticCall(methodDescriptor));
+				}
+			}
+		}
+
+		return calls;
+	}
+
+
+	/**
+	 * Creates a call of the method with default arguments.
+	 *
+	 * @param methodDescriptor the {@link MethodDescriptor}
+	 * @return the {@link MethodCall}
+	 */
+	private static MethodCall createSyntheticCall(final MethodDescriptor methodDescriptor) {
+		final Object[] parameters = new Object[methodDescriptor.getParams().size()];
+		int i = 0;
+
+		for (final String type : methodDescriptor.getParams().values()) {
+			parameters[i++] = DEFAULT_VALUES.get(type);
+		}
+
+		return MethodCall.create(methodDescriptor, parameters);
+	}
+}
@@ -0,0 +1,297 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongBinaryOperator;
+
+import com.airepublic.microverse.core.common.VirtualThreads;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.descriptor.ServiceStatistics;
+import com.airepublic.microverse.core.exception.ServiceUnavailableException;
+import com.airepublic.microverse.core.service.api.Priority;
+
+/**
+ * A bounded pool of worker threads with a bounded queue which processes the requests of a single
+ * service. Each service gets its own pool so that a slow service can only exhaust its own workers
+ * and not those of other services or the I/O threads of the service-server.
+ * <p>
+ * The pool sheds load before the queue is full. If the queue has not been empty during the last
+ * admission interval the service is considered overloaded and requests may only wait for the
+ * admission target instead of the whole interval. Requests which waited longer are rejected when
+ * they are dequeued and new requests are rejected right away if the estimated queueing delay
+ * already exceeds the target. This keeps the queueing delay of the accepted requests short, so
+ * they can still be answered in time. Low priority requests are rejected right away while the
+ * service is overloaded.
+ * </p>
+ * <p>
+ * Queued requests are taken from the {@link WeightedFairQueue} according to the weights of their
+ * {@link Priority} classes.
+ * </p>
+ * <p>
+ * Calls of service-clients in the same JVM run on the calling thread instead of a worker. They are
+ * admitted by {@link #admitCaller(Priority)} like queued requests while the service isn't
+ * overloaded and only as long as no more calling threads than worker threads run the service.
+ * </p>
+ * <p>
+ * If virtual threads are enabled the workers are virtual threads, so blocking calls of the service
+ * don't occupy a platform thread and a much higher number of workers can be configured.
+ * </p>
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class ServiceWorkerPool {
+	/** Adds a sample to an exponentially weighted moving average with a weight of 1/8. */
+	private static final LongBinaryOperator MOVING_AVERAGE = (average, sample) -> average + (sample - average) / 8;
+	private final ServiceDescriptor serviceDescriptor;
+	private final ThreadPoolExecutor executor;
+	private final WeightedFairQueue<Runnable> queue;
+	private final int workerThreads;
+	private final int queueCapacity;
+	private final long targetNanos;
+	private final long intervalNanos;
+	private volatile long lastEmptyTime = System.nanoTime();
+	private final AtomicLong serviceTimeNanos = new AtomicLong();
+	private final AtomicLong queueDelayNanos = new AtomicLong();
+	private final AtomicLong rejectedRequests = new AtomicLong();
+	private final AtomicLong shedRequests = new AtomicLong();
+	private final AtomicInteger callerThreads = new AtomicInteger();
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param serviceDescriptor the {@link ServiceDescriptor} of the service
+	 * @param workerThreads the number of worker threads
+	 * @param queueCapacity the maximum number of requests waiting for a worker thread
+	 * @param targetMillis the maximum queueing delay while the service is overloaded
+	 * @param intervalMillis the interval the queue must have been empty once, otherwise the service
+	 *        is overloaded
+	 */
+	public ServiceWorkerPool(final ServiceDescriptor serviceDescriptor, final int workerThreads, final int queueCapacity, final long targetMillis, final long intervalMillis) {
+		this(serviceDescriptor, workerThreads, queueCapacity, targetMillis, intervalMillis, VirtualThreads.isEnabled());
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param serviceDescriptor the {@link ServiceDescriptor} of the service
+	 * @param workerThreads the number of worker threads
+	 * @param queueCapacity the maximum number of requests waiting for a worker thread
+	 * @param targetMillis the maximum queueing delay while the service is overloaded
+	 * @param intervalMillis the interval the queue must have been empty once, otherwise the service
+	 *        is overloaded
+	 * @param virtualThreads whether the workers are virtual threads (must be supported by the JVM)
+	 */
+	public ServiceWorkerPool(final ServiceDescriptor serviceDescriptor, final int workerThreads, final int queueCapacity, final long targetMillis, final long intervalMillis, final boolean virtualThreads) {
+		this.serviceDescriptor = serviceDescriptor;
+		this.workerThreads = Math.max(1, workerThreads);
+		this.queueCapacity = Math.max(1, queueCapacity);
+		targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+		intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(targetMillis, intervalMillis));
+
+		// services with thread-confined instances recognize their workers by the prefix
+		final String threadPrefix = "microverse-" + serviceDescriptor.getId() + "-" + serviceDescriptor.getVersion() + "-worker-";
+		final AtomicInteger threadCount = new AtomicInteger();
+		final ThreadFactory threadFactory = virtualThreads ? VirtualThreads.newVirtualThreadFactory(threadPrefix) : runnable -> {
+			final Thread thread = new Thread(runnable, threadPrefix + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+
+		final int[] weights = new int[Priority.values().length];
+
+		for (final Priority priority : Priority.values()) {
+			weights[priority.ordinal()] = priority.getWeight();
+		}
+
+		queue = new WeightedFairQueue<>(this.queueCapacity, weights, task -> ((QueuedTask) task).priority.ordinal());
+		executor = new ThreadPoolExecutor(this.workerThreads, this.workerThreads, 60L, TimeUnit.SECONDS, queue, threadFactory);
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+
+	/**
+	 * Queues the task for execution by a worker thread. If the service is overloaded the task is
+	 * not executed but the rejection handler is called, either directly or when the task is
+	 * dequeued.
+	 *
+	 * @param task the task
+	 * @param priority the {@link Priority} of the task
+	 * @param rejectionHandler the handler called with the {@link ServiceUnavailableException} if
+	 *        the task is rejected
+	 */
+	public void execute(final Runnable task, final Priority priority, final Consumer<ServiceUnavailableException> rejectionHandler) {
+		final long now = System.nanoTime();
+		final int queueSize = queue.size();
+
+		if (queueSize == 0) {
+			lastEmptyTime = now;
+		} else if (isOverloaded(now) && (priority == Priority.LOW || estimateQueueDelay(queueSize) > targetNanos)) {
+			shedRequests.incrementAndGet();
+			rejectionHandler.accept(createUnavailableException("Service is overloaded"));
+			return;
+		}
+
+		try {
+			executor.execute(new QueuedTask(task, priority, rejectionHandler, now));
+		} catch (final RejectedExecutionException e) {
+			rejectedRequests.incrementAndGet();
+			rejectionHandler.accept(createUnavailableException("Service request queue is full"));
+		}
+	}
+
+
+	/**
+	 * Admits a call which runs on the calling thread instead of a worker thread. The call is
+	 * rejected if the service is overloaded like a queued request or if as many calling threads as
+	 * worker threads run the service already. An admitted call must be released with
+	 * {@link #releaseCaller()}.
+	 *
+	 * @param priority the {@link Priority} of the call
+	 * @throws ServiceUnavailableException if the call is rejected
+	 */
+	public void admitCaller(final Priority priority) throws ServiceUnavailableException {
+		final long now = System.nanoTime();
+		final int queueSize = queue.size();
+
+		if (queueSize == 0) {
+			lastEmptyTime = now;
+		} else if (isOverloaded(now) && (priority == Priority.LOW || estimateQueueDelay(queueSize) > targetNanos)) {
+			shedRequests.incrementAndGet();
+			throw createUnavailableException("Service is overloaded");
+		}
+
+		if (callerThreads.incrementAndGet() > workerThreads) {
+			callerThreads.decrementAndGet();
+			rejectedRequests.incrementAndGet();
+			throw createUnavailableException("Service is busy with calls in the same JVM");
+		}
+	}
+
+
+	/**
+	 * Releases a call admitted by {@link #admitCaller(Priority)}.
+	 */
+	public void releaseCaller() {
+		callerThreads.decrementAndGet();
+	}
+
+
+	private boolean isOverloaded(final long now) {
+		return now - lastEmptyTime > intervalNanos;
+	}
+
+
+	private long estimateQueueDelay(final int queueSize) {
+		return queueSize * serviceTimeNanos.get() / workerThreads;
+	}
+
+
+	private ServiceUnavailableException createUnavailableException(final String reason) {
+		final long delay = Math.max(estimateQueueDelay(queue.size()), intervalNanos);
+		final int retryAfter = (int) Math.max(1L, TimeUnit.NANOSECONDS.toSeconds(delay + TimeUnit.SECONDS.toNanos(1) - 1));
+
+		return new ServiceUnavailableException(reason + ": " + serviceDescriptor.getId() + ":" + serviceDescriptor.getVersion(), retryAfter);
+	}
+
+
+	/**
+	 * Gets a snapshot of the {@link ServiceStatistics} of this pool.
+	 *
+	 * @return the {@link ServiceStatistics}
+	 */
+	public ServiceStatistics getStatistics() {
+		final ServiceStatistics statistics = new ServiceStatistics();
+		final int activeWorkers = executor.getActiveCount();
+
+		statistics.setServiceId(serviceDescriptor.getId());
+		statistics.setServiceVersion(serviceDescriptor.getVersion());
+		statistics.setWorkerThreads(workerThreads);
+		statistics.setActiveWorkers(activeWorkers);
+		statistics.setQueueSize(queue.size());
+		statistics.setQueueCapacity(queueCapacity);
+		statistics.setCompletedRequests(executor.getCompletedTaskCount());
+		statistics.setRejectedRequests(rejectedRequests.get());
+		statistics.setShedRequests(shedRequests.get());
+		statistics.setQueueDelay(TimeUnit.NANOSECONDS.toMillis(queueDelayNanos.get()));
+		statistics.setServiceTime(TimeUnit.NANOSECONDS.toMillis(serviceTimeNanos.get()));
+		statistics.setOverloaded(isOverloaded(System.nanoTime()) && !queue.isEmpty());
+		statistics.setUtilization((double) activeWorkers / workerThreads);
+
+		return statistics;
+	}
+
+
+	/**
+	 * Shuts down the pool. Already queued requests are still processed.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+
+	/**
+	 * A queued task which checks its queueing delay before it is executed.
+	 */
+	private class QueuedTask implements Runnable {
+		private final Runnable task;
+		private final Priority priority;
+		private final Consumer<ServiceUnavailableException> rejectionHandler;
+		private final long enqueueTime;
+
+
+		QueuedTask(final Runnable task, final Priority priority, final Consumer<ServiceUnavailableException> rejectionHandler, final long enqueueTime) {
+			this.task = task;
+			this.priority = priority;
+			this.rejectionHandler = rejectionHandler;
+			this.enqueueTime = enqueueTime;
+		}
+
+
+		@Override
+		public void run() {
+			final long startTime = System.nanoTime();
+			final long queueDelay = startTime - enqueueTime;
+
+			// the averages are updated by all worker threads concurrently
+			queueDelayNanos.accumulateAndGet(queueDelay, MOVING_AVERAGE);
+
+			if (queue.isEmpty()) {
+				lastEmptyTime = startTime;
+			}
+
+			// drop requests which waited too long, their callers are likely to have given up
+			if (queueDelay > (isOverloaded(startTime) ? targetNanos : intervalNanos)) {
+				shedRequests.incrementAndGet();
+				rejectionHandler.accept(createUnavailableException("Service is overloaded"));
+				return;
+			}
+
+			try {
+				task.run();
+			} finally {
+				serviceTimeNanos.accumulateAndGet(System.nanoTime() - startTime, MOVING_AVERAGE);
+			}
+		}
+	}
+}
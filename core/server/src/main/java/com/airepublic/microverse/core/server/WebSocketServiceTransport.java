@@ -0,0 +1,628 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.microverse.core.common.BinaryFrame;
+import com.airepublic.microverse.core.common.Configuration;
+import com.airepublic.microverse.core.common.VirtualThreads;
+import com.airepublic.microverse.core.common.WebSocket;
+import com.airepublic.microverse.core.common.marshaller.IMarshaller;
+import com.airepublic.microverse.core.common.marshaller.MarshallerFactory;
+import com.airepublic.microverse.core.exception.ServiceException;
+import com.airepublic.microverse.core.exception.ServiceTimeoutException;
+import com.airepublic.microverse.core.service.api.InvocationContext;
+import com.airepublic.microverse.core.service.api.Priority;
+import com.airepublic.microverse.core.service.api.ResultStream;
+import com.airepublic.microverse.core.service.api.ServiceSession;
+
+/**
+ * Accepts WebSocket sessions with the services of an {@link AbstractServiceServer} on a separate
+ * port. A client opens a session by upgrading a <code>GET</code> request to the service-URI and
+ * then exchanges {@link BinaryFrame}s, one per WebSocket message, with the service: calls are
+ * processed concurrently by the worker threads of the service and answered as soon as they are
+ * ready, element streams are sent element by element and the service may push events to the
+ * client through the {@link ServiceSession}.
+ * <p>
+ * Element streams and events are flow controlled by the credits the client grants, so a service
+ * producing faster than the client consumes is slowed down instead of filling up the connection.
+ * Events exceeding the credits are queued per session up to
+ * {@link Configuration#getServerWebSocketEventsCapacity()} and rejected beyond, so pushing an event
+ * never blocks the service.
+ * </p>
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class WebSocketServiceTransport implements Closeable {
+	private final static Logger LOG = LoggerFactory.getLogger(WebSocketServiceTransport.class);
+	private static final int MAX_HEADER_SIZE = 8192;
+	private final AbstractServiceServer server;
+	private final ServerSocket serverSocket;
+	private final ThreadFactory threadFactory;
+	private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+	private final AtomicLong nextSessionId = new AtomicLong();
+	private volatile boolean closed;
+
+
+	/**
+	 * Creates the transport listening on the specified port and starts accepting connections.
+	 *
+	 * @param server the {@link AbstractServiceServer} processing the requests
+	 * @param port the port
+	 * @return the {@link WebSocketServiceTransport}
+	 * @throws IOException if the port could not be bound
+	 */
+	public static WebSocketServiceTransport start(final AbstractServiceServer server, final int port) throws IOException {
+		final WebSocketServiceTransport transport = new WebSocketServiceTransport(server, port);
+		transport.threadFactory.newThread(transport::accept).start();
+
+		return transport;
+	}
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param server the {@link AbstractServiceServer} processing the requests
+	 * @param port the port
+	 * @throws IOException if the port could not be bound
+	 */
+	private WebSocketServiceTransport(final AbstractServiceServer server, final int port) throws IOException {
+		this.server = server;
+		serverSocket = new ServerSocket();
+		serverSocket.setReuseAddress(true);
+		serverSocket.bind(new InetSocketAddress(port));
+		threadFactory = VirtualThreads.newThreadFactory("microverse-session-", r -> {
+			final Thread thread = new Thread(r, "microverse-session");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+
+	/**
+	 * Gets the port the transport listens on.
+	 *
+	 * @return the port
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+
+	/**
+	 * Accepts connections until the transport is closed.
+	 */
+	private void accept() {
+		while (!closed) {
+			try {
+				final Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				threadFactory.newThread(() -> serve(socket)).start();
+			} catch (final IOException e) {
+				if (!closed) {
+					LOG.warn("Error accepting WebSocket connection: " + e.getMessage());
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Performs the WebSocket handshake and serves the session until it is closed.
+	 *
+	 * @param socket the {@link Socket} of the connection
+	 */
+	private void serve(final Socket socket) {
+		Session session = null;
+
+		try {
+			final InputStream in = new BufferedInputStream(socket.getInputStream());
+			final OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+			final String requestLine = readLine(in);
+			final Map<String, String> headers = new HashMap<>();
+			String line;
+
+			while (!(line = readLine(in)).isEmpty()) {
+				final int colon = line.indexOf(':');
+
+				if (colon > 0) {
+					headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+				}
+			}
+
+			final String[] request = requestLine.split(" ");
+			final String key = headers.get("sec-websocket-key");
+
+			if (request.length < 2 || !request[0].equals("GET") || key == null || !"websocket".equalsIgnoreCase(headers.get("upgrade"))) {
+				respond(out, "400 Bad Request");
+				return;
+			}
+
+			final int query = request[1].indexOf('?');
+			final String uri = query >= 0 ? request[1].substring(0, query) : request[1];
+
+			if (!server.isServing(uri)) {
+				respond(out, "404 Not Found");
+				return;
+			}
+
+			final String eventMimeType = headers.get("accept");
+			final IMarshaller eventMarshaller = eventMimeType != null ? MarshallerFactory.get(eventMimeType) : null;
+
+			if (eventMarshaller == null) {
+				respond(out, "406 Not Acceptable");
+				return;
+			}
+
+			out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\nSec-WebSocket-Accept: " + WebSocket.acceptKey(key) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+
+			session = new Session(String.valueOf(nextSessionId.incrementAndGet()), uri, socket, new WebSocket(in, out, false), eventMarshaller);
+			sessions.add(session);
+
+			if (closed) {
+				return;
+			}
+
+			LOG.debug("Opened session " + session.getId() + " with service " + uri);
+			session.read();
+		} catch (final EOFException | SocketException e) {
+			// connection closed
+		} catch (final IOException e) {
+			LOG.warn("Error reading WebSocket connection: " + e.getMessage());
+		} finally {
+			if (session != null) {
+				session.close();
+			} else {
+				try {
+					socket.close();
+				} catch (final IOException e) {
+					// close quietly
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Reads a line of the handshake request.
+	 *
+	 * @param in the input-stream
+	 * @return the line without the line break
+	 * @throws IOException if the line could not be read or the header is too large
+	 */
+	private String readLine(final InputStream in) throws IOException {
+		final ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+		int b;
+
+		while ((b = in.read()) != '\n') {
+			if (b < 0) {
+				throw new EOFException("Connection closed during the WebSocket handshake");
+			}
+
+			if (b != '\r') {
+				line.write(b);
+			}
+
+			if (line.size() > MAX_HEADER_SIZE) {
+				throw new IOException("WebSocket handshake header too large");
+			}
+		}
+
+		return line.toString(StandardCharsets.US_ASCII.name());
+	}
+
+
+	/**
+	 * Answers a handshake request which can't be upgraded.
+	 *
+	 * @param out the output-stream
+	 * @param status the HTTP status
+	 * @throws IOException if the response could not be written
+	 */
+	private void respond(final OutputStream out, final String status) throws IOException {
+		out.write(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+		out.flush();
+	}
+
+
+	/**
+	 * Stops accepting connections and closes all open sessions.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+
+		try {
+			serverSocket.close();
+		} catch (final IOException e) {
+			// close quietly
+		}
+
+		for (final Session session : sessions) {
+			session.close();
+		}
+	}
+
+
+	/**
+	 * A session with a service. The frames of the client are read by the thread which accepted the
+	 * session, element streams are sent by their own thread each, so a stream waiting for credits
+	 * blocks neither the session nor a worker thread of the service.
+	 */
+	private final class Session implements ServiceSession {
+		private final String id;
+		private final String uri;
+		private final Socket socket;
+		private final WebSocket webSocket;
+		private final IMarshaller eventMarshaller;
+		private final int eventsCapacity = Math.max(1, Configuration.getServerWebSocketEventsCapacity());
+		/** The serialized events waiting for credits, guarded by itself. */
+		private final Deque<byte[]> pendingEvents = new ArrayDeque<>();
+		/** The number of events the client accepts, guarded by the pendingEvents. */
+		private long eventCredits;
+		/** Whether a thread is sending the pending events, guarded by the pendingEvents. */
+		private boolean sendingEvents;
+		private final Map<Integer, Semaphore> streamCredits = new ConcurrentHashMap<>();
+		private final Map<Integer, Thread> streams = new ConcurrentHashMap<>();
+		private final AtomicBoolean open = new AtomicBoolean(true);
+
+
+		/**
+		 * Constructor.
+		 *
+		 * @param id the session id
+		 * @param uri the URI of the service
+		 * @param socket the {@link Socket} of the connection
+		 * @param webSocket the {@link WebSocket} of the connection
+		 * @param eventMarshaller the marshaller to serialize events with
+		 */
+		Session(final String id, final String uri, final Socket socket, final WebSocket webSocket, final IMarshaller eventMarshaller) {
+			this.id = id;
+			this.uri = uri;
+			this.socket = socket;
+			this.webSocket = webSocket;
+			this.eventMarshaller = eventMarshaller;
+		}
+
+
+		@Override
+		public String getId() {
+			return id;
+		}
+
+
+		@Override
+		public boolean isOpen() {
+			return open.get();
+		}
+
+
+		/**
+		 * Reads the frames of the client until the session is closed.
+		 *
+		 * @throws IOException if the connection failed
+		 */
+		void read() throws IOException {
+			final long maxLength = Configuration.getServerRequestMaxSize() + 64 * 1024;
+			byte[] message;
+
+			while (isOpen() && (message = webSocket.read(maxLength)) != null) {
+				final BinaryFrame frame = BinaryFrame.read(message);
+
+				switch (frame.getType()) {
+					case BinaryFrame.REQUEST:
+						dispatch(frame);
+						break;
+					case BinaryFrame.CREDIT:
+						if (frame.getRequestId() == 0) {
+							synchronized (pendingEvents) {
+								eventCredits = Math.min(eventCredits + Math.max(0L, frame.getValue()), Integer.MAX_VALUE);
+							}
+
+							sendEvents();
+							break;
+						}
+
+						final Semaphore credits = streamCredits.get(frame.getRequestId());
+
+						// cap the outstanding credits, so repeated grants can't overflow the
+						// semaphore - only this thread releases credits
+						if (credits != null && frame.getValue() > 0L) {
+							credits.release((int) Math.min(frame.getValue(), Integer.MAX_VALUE - credits.availablePermits()));
+						}
+						break;
+					case BinaryFrame.CANCEL:
+						final Thread stream = streams.get(frame.getRequestId());
+
+						if (stream != null) {
+							stream.interrupt();
+						}
+						break;
+					default:
+						throw new IOException("Unexpected frame type: " + frame.getType());
+				}
+			}
+		}
+
+
+		/**
+		 * Hands the request over to the worker threads of the service.
+		 *
+		 * @param request the request frame
+		 */
+		private void dispatch(final BinaryFrame request) {
+			final int requestId = request.getRequestId();
+			final Priority priority = Priority.parse(request.getAttribute(3), null);
+			final Long deadline = request.getValue() >= 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(request.getValue()) : null;
+			final int window;
+
+			try {
+				window = parseWindow(request.getAttribute(4));
+			} catch (final NumberFormatException e) {
+				send(new BinaryFrame(requestId, BinaryFrame.ERROR, new String[] { "Invalid window: " + request.getAttribute(4) }, 0L, null));
+				return;
+			}
+
+			server.execute(uri, priority, serviceContainer -> {
+				ServiceResult result = null;
+				InvocationContext.setSession(this);
+
+				try {
+					result = server.process(serviceContainer, request.getAttribute(1), new ByteArrayInputStream(request.getContent()), request.getAttribute(2), deadline);
+
+					if (result == null) {
+						send(new BinaryFrame(requestId, BinaryFrame.RESULT, new String[] { "" }, 0L, null));
+					} else if (result.getResultStream() != null) {
+						streamCredits.put(requestId, new Semaphore(window));
+						final ServiceResult streamResult = result;
+						result = null;
+
+						final Thread stream = threadFactory.newThread(() -> stream(requestId, request.getAttribute(2), streamResult));
+						streams.put(requestId, stream);
+						stream.start();
+					} else {
+						send(new BinaryFrame(requestId, BinaryFrame.RESULT, new String[] { request.getAttribute(2) }, 0L, result.toByteArray()));
+					}
+				} catch (final ServiceTimeoutException e) {
+					send(new BinaryFrame(requestId, BinaryFrame.TIMEOUT, new String[] { e.getMessage() }, 0L, null));
+				} catch (final Throwable e) {
+					send(new BinaryFrame(requestId, BinaryFrame.ERROR, new String[] { "Error calling service method: " + e.getMessage() }, 0L, null));
+				} finally {
+					InvocationContext.setSession(null);
+
+					if (result != null) {
+						result.close();
+					}
+				}
+			}, e -> send(new BinaryFrame(requestId, BinaryFrame.UNAVAILABLE, new String[] { e.getMessage() }, e.getRetryAfter(), null)));
+		}
+
+
+		/**
+		 * Parses the number of elements of a result stream the client initially accepts.
+		 *
+		 * @param window the window requested by the client or <code>null</code> for the default
+		 * @return the window
+		 * @throws NumberFormatException if the window is not a number or negative
+		 */
+		private int parseWindow(final String window) {
+			if (window == null) {
+				return Configuration.getClientSessionWindow();
+			}
+
+			final int value = Integer.parseInt(window);
+
+			if (value < 0) {
+				throw new NumberFormatException("Negative window: " + window);
+			}
+
+			return value;
+		}
+
+
+		/**
+		 * Sends the elements of the element stream as far as the client has granted credits and
+		 * terminates the stream with an end or error frame. The stream is cancelled by
+		 * interrupting the thread.
+		 *
+		 * @param requestId the request-id
+		 * @param mimeType the mime-type of the elements
+		 * @param result the {@link ServiceResult} with the element stream
+		 */
+		private void stream(final int requestId, final String mimeType, final ServiceResult result) {
+			final Semaphore credits = streamCredits.get(requestId);
+			final Iterator<Object> elements = result.getResultStream();
+			final IMarshaller marshaller = result.getMarshaller();
+
+			try {
+				while (elements.hasNext()) {
+					final Object element = elements.next();
+
+					if (element != null && !(element instanceof Serializable)) {
+						throw new ServiceException("Element of the result stream is not serializable: " + element.getClass().getName());
+					}
+
+					final byte[] content = marshaller.serialize((Serializable) element);
+					credits.acquire();
+
+					if (!isOpen()) {
+						return;
+					}
+
+					send(new BinaryFrame(requestId, BinaryFrame.ELEMENT, new String[] { mimeType }, 0L, content));
+				}
+
+				send(new BinaryFrame(requestId, BinaryFrame.END, new String[0], 0L, null));
+			} catch (final InterruptedException e) {
+				// the client cancelled the stream or the session was closed
+			} catch (final Exception e) {
+				if (isOpen() && !Thread.currentThread().isInterrupted()) {
+					LOG.error("Error producing result stream!", e);
+					send(new BinaryFrame(requestId, BinaryFrame.ERROR, new String[] { "The result stream failed: " + e.getMessage() }, 0L, null));
+				}
+			} finally {
+				streams.remove(requestId);
+				streamCredits.remove(requestId);
+				result.close();
+			}
+		}
+
+
+		@Override
+		public boolean push(final Serializable event) {
+			final byte[] content;
+
+			try {
+				content = eventMarshaller.serialize(event);
+			} catch (final ServiceException e) {
+				throw new IllegalArgumentException("The event could not be serialized: " + event, e);
+			}
+
+			synchronized (pendingEvents) {
+				if (!isOpen()) {
+					return false;
+				}
+
+				if (pendingEvents.size() >= eventsCapacity) {
+					LOG.debug("Rejected event for session " + id + " as the client is " + eventsCapacity + " events behind");
+					return false;
+				}
+
+				pendingEvents.add(content);
+			}
+
+			sendEvents();
+
+			return true;
+		}
+
+
+		/**
+		 * Sends the pending events as far as the client has granted credits. Only one thread sends
+		 * at a time, so the events keep their order.
+		 */
+		private void sendEvents() {
+			synchronized (pendingEvents) {
+				if (sendingEvents) {
+					return;
+				}
+
+				sendingEvents = true;
+			}
+
+			boolean sent = true;
+
+			try {
+				while (sent) {
+					final byte[] content;
+
+					synchronized (pendingEvents) {
+						if (eventCredits == 0L || pendingEvents.isEmpty() || !isOpen()) {
+							sendingEvents = false;
+							return;
+						}
+
+						eventCredits--;
+						content = pendingEvents.poll();
+					}
+
+					sent = send(new BinaryFrame(0, BinaryFrame.EVENT, new String[] { eventMarshaller.getMimeType() }, 0L, content));
+				}
+			} finally {
+				synchronized (pendingEvents) {
+					sendingEvents = false;
+				}
+			}
+		}
+
+
+		/**
+		 * Sends the frame to the client. The session is closed if the frame could not be sent.
+		 *
+		 * @param frame the {@link BinaryFrame}
+		 * @return <code>true</code> if the frame was sent
+		 */
+		private boolean send(final BinaryFrame frame) {
+			try {
+				webSocket.write(frame.toByteArray());
+				return true;
+			} catch (final IOException e) {
+				LOG.debug("Could not write to session " + id + ": " + e.getMessage());
+				close();
+				return false;
+			}
+		}
+
+
+		@Override
+		public void close() {
+			if (!open.compareAndSet(true, false)) {
+				return;
+			}
+
+			sessions.remove(this);
+			webSocket.close();
+
+			try {
+				socket.close();
+			} catch (final IOException e) {
+				// close quietly
+			}
+
+			synchronized (pendingEvents) {
+				pendingEvents.clear();
+			}
+
+			// wake up the streams waiting for credits
+			for (final Thread stream : streams.values()) {
+				stream.interrupt();
+			}
+
+			LOG.debug("Closed session " + id + " with service " + uri);
+		}
+	}
+}
@@ -0,0 +1,371 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * A bounded {@link BlockingQueue} which keeps a FIFO queue per class and takes the elements from
+ * the classes in proportion to their weights (smooth weighted round-robin). A class with a high
+ * weight gets most of the takes while it has elements, but a class with a low weight is never
+ * starved and gets all takes when the other classes are empty.
+ * <p>
+ * Each {@link ServiceWorkerPool} has its own queue, so the classes are only weighed against each
+ * other within the requests of one service and not across services.
+ * </p>
+ *
+ * @author Torsten Oltmanns
+ *
+ * @param <E> the element type
+ */
+public class WeightedFairQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+	private final ToIntFunction<E> classifier;
+	private final int[] weights;
+	private final int[] currentWeights;
+	private final ArrayDeque<E>[] queues;
+	private final int capacity;
+	private int count;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity the maximum number of elements of all classes
+	 * @param weights the weights of the classes
+	 * @param classifier the function returning the class index of an element
+	 */
+	public WeightedFairQueue(final int capacity, final int[] weights, final ToIntFunction<E> classifier) {
+		this.capacity = capacity;
+		this.weights = weights.clone();
+		this.classifier = classifier;
+		currentWeights = new int[weights.length];
+		queues = newQueues(weights.length);
+	}
+
+
+	/**
+	 * Creates the empty FIFO queues of the classes.
+	 *
+	 * @param classes the number of classes
+	 * @return the queues
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E> ArrayDeque<E>[] newQueues(final int classes) {
+		final ArrayDeque<E>[] queues = (ArrayDeque<E>[]) new ArrayDeque<?>[classes];
+
+		for (int i = 0; i < queues.length; i++) {
+			queues[i] = new ArrayDeque<>();
+		}
+
+		return queues;
+	}
+
+
+	@Override
+	public boolean offer(final E e) {
+		lock.lock();
+
+		try {
+			if (count >= capacity) {
+				return false;
+			}
+
+			enqueue(e);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	@Override
+	public void put(final E e) throws InterruptedException {
+		lock.lockInterruptibly();
+
+		try {
+			while (count >= capacity) {
+				notFull.await();
+			}
+
+			enqueue(e);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	@Override
+	public boolean offer(final E e, final long timeout, final TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+
+		try {
+			while (count >= capacity) {
+				if (nanos <= 0) {
+					return false;
+				}
+
+				nanos = notFull.awaitNanos(nanos);
+			}
+
+			enqueue(e);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Enqueues the element. Must be called while holding the lock and with a count less than the
+	 * capacity.
+	 *
+	 * @param e the element
+	 */
+	private void enqueue(final E e) {
+		queues[classifier.applyAsInt(e)].addLast(e);
+		count++;
+		notEmpty.signal();
+	}
+
+
+	/**
+	 * Selects the class the next element is taken from without changing the current weights. Must
+	 * be called while holding the lock and with a count greater than zero.
+	 *
+	 * @return the class index
+	 */
+	private int select() {
+		int selected = -1;
+
+		for (int i = 0; i < queues.length; i++) {
+			if (!queues[i].isEmpty() && (selected < 0 || currentWeights[i] + weights[i] > currentWeights[selected] + weights[selected])) {
+				selected = i;
+			}
+		}
+
+		return selected;
+	}
+
+
+	/**
+	 * Dequeues the next element. Must be called while holding the lock and with a count greater
+	 * than zero.
+	 *
+	 * @return the next element
+	 */
+	private E dequeue() {
+		final int selected = select();
+		int totalWeight = 0;
+
+		for (int i = 0; i < queues.length; i++) {
+			if (!queues[i].isEmpty()) {
+				currentWeights[i] += weights[i];
+				totalWeight += weights[i];
+			}
+		}
+
+		currentWeights[selected] -= totalWeight;
+		count--;
+		notFull.signal();
+
+		return queues[selected].pollFirst();
+	}
+
+
+	@Override
+	public E poll() {
+		lock.lock();
+
+		try {
+			return count > 0 ? dequeue() : null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	@Override
+	public E take() throws InterruptedException {
+		lock.lockInterruptibly();
+
+		try {
+			while (count == 0) {
+				notEmpty.await();
+			}
+
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	@Override
+	public E poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+
+		try {
+			while (count == 0) {
+				if (nanos <= 0) {
+					return null;
+				}
+
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Returns the element the next {@link #poll()} would return without removing it.
+	 */
+	@Override
+	public E peek() {
+		lock.lock();
+
+		try {
+			return count > 0 ? queues[select()].peekFirst() : null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	@Override
+	public int size() {
+		lock.lock();
+
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Gets the number of elements of the specified class.
+	 *
+	 * @param classIndex the class index
+	 * @return the number of elements
+	 */
+	public int size(final int classIndex) {
+		lock.lock();
+
+		try {
+			return queues[classIndex].size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	@Override
+	public int remainingCapacity() {
+		lock.lock();
+
+		try {
+			return capacity - count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	@Override
+	public boolean remove(final Object o) {
+		lock.lock();
+
+		try {
+			for (final ArrayDeque<E> queue : queues) {
+				if (queue.remove(o)) {
+					count--;
+					notFull.signal();
+					return true;
+				}
+			}
+
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	@Override
+	public int drainTo(final Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+
+	@Override
+	public int drainTo(final Collection<? super E> c, final int maxElements) {
+		lock.lock();
+
+		try {
+			int drained = 0;
+
+			while (count > 0 && drained < maxElements) {
+				c.add(dequeue());
+				drained++;
+			}
+
+			return drained;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Returns an iterator over a snapshot of the elements. Removing elements through the iterator
+	 * is not supported.
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		lock.lock();
+
+		try {
+			final List<E> snapshot = new ArrayList<>(count);
+
+			for (final ArrayDeque<E> queue : queues) {
+				snapshot.addAll(queue);
+			}
+
+			return Collections.unmodifiableList(snapshot).iterator();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.airepublic.microverse.core.descriptor.MethodCall;
+import com.airepublic.microverse.core.descriptor.ServiceStatistics;
+import com.airepublic.microverse.core.exception.ServiceTimeoutException;
+import com.airepublic.microverse.core.service.api.InvocationContext;
+
+public class CallCoalescerTest {
+	private final CallCoalescer coalescer = new CallCoalescer();
+	private final AtomicInteger executions = new AtomicInteger();
+	private final CountDownLatch started = new CountDownLatch(1);
+	private final CountDownLatch finish = new CountDownLatch(1);
+
+
+	@After
+	public void tearDown() {
+		finish.countDown();
+		InvocationContext.setDeadline(null);
+	}
+
+
+	private static MethodCall call(final int parameter) {
+		return MethodCall.create(0, 0, "load", "(I)Ljava/lang/String;", new ArrayList<>(Arrays.asList(new byte[] { (byte) parameter })));
+	}
+
+
+	/** Executes the call, which blocks until it is finished, on another thread. */
+	private CompletableFuture<Serializable> executeBlocking(final MethodCall call, final Serializable result) {
+		final CompletableFuture<Serializable> future = new CompletableFuture<>();
+
+		new Thread(() -> {
+			try {
+				future.complete(coalescer.execute(call, () -> {
+					executions.incrementAndGet();
+					started.countDown();
+					finish.await(5L, TimeUnit.SECONDS);
+
+					if (result == null) {
+						throw new IllegalStateException("failed");
+					}
+
+					return result;
+				}));
+			} catch (final Throwable t) {
+				future.completeExceptionally(t);
+			}
+		}).start();
+
+		return future;
+	}
+
+
+	private void awaitCoalesced() throws InterruptedException {
+		final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+
+		while (coalescer.addStatistics(new ServiceStatistics()).getCoalescedRequests() == 0L && System.nanoTime() < end) {
+			Thread.sleep(10L);
+		}
+	}
+
+
+	@Test
+	public void testIdenticalCallsShareTheExecutionInFlight() throws Throwable {
+		final CompletableFuture<Serializable> leader = executeBlocking(call(1), "result");
+		assertThat(started.await(5L, TimeUnit.SECONDS)).isTrue();
+
+		final CompletableFuture<Serializable> follower = executeBlocking(call(1), "other");
+		awaitCoalesced();
+		finish.countDown();
+
+		assertThat(leader.get(5L, TimeUnit.SECONDS)).isEqualTo("result");
+		assertThat(follower.get(5L, TimeUnit.SECONDS)).isEqualTo("result");
+		assertThat(executions.get()).isEqualTo(1);
+
+		final ServiceStatistics statistics = coalescer.addStatistics(new ServiceStatistics());
+		assertThat(statistics.getSingleFlightRequests()).isEqualTo(2L);
+		assertThat(statistics.getCoalescedRequests()).isEqualTo(1L);
+
+		// the call is executed again once the call in flight is done
+		assertThat(coalescer.execute(call(1), () -> "again")).isEqualTo("again");
+	}
+
+
+	@Test
+	public void testWaitingCallsShareTheException() throws Throwable {
+		final CompletableFuture<Serializable> leader = executeBlocking(call(1), null);
+		assertThat(started.await(5L, TimeUnit.SECONDS)).isTrue();
+
+		final CompletableFuture<Serializable> follower = executeBlocking(call(1), "result");
+		awaitCoalesced();
+		finish.countDown();
+
+		for (final CompletableFuture<Serializable> future : Arrays.asList(leader, follower)) {
+			try {
+				future.join();
+				throw new AssertionError("Call didn't fail");
+			} catch (final RuntimeException e) {
+				assertThat(e.getCause()).isInstanceOf(IllegalStateException.class).hasMessage("failed");
+			}
+		}
+
+		assertThat(executions.get()).isEqualTo(1);
+	}
+
+
+	@Test
+	public void testCallsWithOtherParametersAreNotCoalesced() throws Throwable {
+		executeBlocking(call(1), "result");
+		assertThat(started.await(5L, TimeUnit.SECONDS)).isTrue();
+
+		assertThat(coalescer.execute(call(2), () -> "other")).isEqualTo("other");
+	}
+
+
+	@Test(expected = ServiceTimeoutException.class)
+	public void testWaitingCallRespectsTheDeadline() throws Throwable {
+		executeBlocking(call(1), "result");
+		assertThat(started.await(5L, TimeUnit.SECONDS)).isTrue();
+
+		InvocationContext.setTimeout(50L, TimeUnit.MILLISECONDS);
+		coalescer.execute(call(1), () -> "other");
+	}
+}
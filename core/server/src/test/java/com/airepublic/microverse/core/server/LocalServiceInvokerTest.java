@@ -0,0 +1,177 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.descriptor.WebCall;
+import com.airepublic.microverse.core.exception.ServiceUnavailableException;
+import com.airepublic.microverse.core.service.api.IServiceInvoker;
+import com.airepublic.microverse.core.service.api.LocalServices;
+
+public class LocalServiceInvokerTest {
+	/** A value whose class is loaded by the test classloader. */
+	public static class Value implements Serializable {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/** Service-server without services. */
+	private static class EmptyServiceServer extends AbstractServiceServer {
+		@Override
+		protected IClassLoaderCreator getClassLoaderCreator() {
+			return null;
+		}
+
+
+		@Override
+		protected WebCall getServiceWebCall(final String serviceId, final String serviceVersion) {
+			return null;
+		}
+
+
+		@Override
+		protected WebCall getHeartbeatWebCall(final String serviceId, final String serviceVersion) {
+			return null;
+		}
+
+
+		@Override
+		protected void onServiceRegistration(final ServiceDescriptor serviceDescriptor) {
+		}
+
+
+		@Override
+		protected void onServiceUnregistration(final ServiceDescriptor serviceDescriptor) {
+		}
+
+
+		@Override
+		public Object heartbeat() {
+			return null;
+		}
+	}
+
+	/** Records the serialized parameters passed to the service. */
+	private static class RecordingService implements IServiceInvoker {
+		private final List<Object> parameters = new ArrayList<>();
+
+
+		@Override
+		public byte[] getSerializedServiceDescriptor() {
+			return null;
+		}
+
+
+		@Override
+		public Serializable invoke(final int methodIndex, final int signatureHash, final String methodName, final String signature, final List<byte[]> serializedParameters) throws Exception {
+			for (final byte[] serializedParameter : serializedParameters) {
+				try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serializedParameter))) {
+					parameters.add(in.readObject());
+				}
+			}
+
+			return methodName;
+		}
+
+
+		@Override
+		public void close() {
+		}
+	}
+
+
+	@Test
+	public void testUnregistersWithTheRegisteredEndpoint() {
+		final AbstractServiceServer server = new EmptyServiceServer();
+		final LocalServiceInvoker invoker = new LocalServiceInvoker(server, "localhost", 8080, "/test/1");
+
+		invoker.register();
+		assertThat(LocalServices.get("localhost", 8080, "test/1")).isSameAs(invoker);
+
+		// an invoker for another endpoint of the same service doesn't remove the registration
+		new LocalServiceInvoker(server, "127.0.0.1", 8080, "/test/1").unregister();
+		assertThat(LocalServices.get("localhost", 8080, "test/1")).isSameAs(invoker);
+
+		new LocalServiceInvoker(server, "localhost", 8080, "/test/1").unregister();
+		assertThat(LocalServices.get("localhost", 8080, "test/1")).isNull();
+	}
+
+
+	@Test(expected = IllegalStateException.class)
+	public void testServiceDescriptorOfRemovedService() {
+		new LocalServiceInvoker(new EmptyServiceServer(), "localhost", 8080, "/test/1").getSerializedServiceDescriptor();
+	}
+
+
+	@Test(expected = ServiceUnavailableException.class)
+	public void testInvokeDirectOfRemovedService() throws Exception {
+		new LocalServiceInvoker(new EmptyServiceServer(), "localhost", 8080, "/test/1").invokeDirect(0, 0, null, null, new Object[] { "x" });
+	}
+
+
+	@Test
+	public void testDefaultInvokeDirectSerializesParameters() throws Exception {
+		final RecordingService service = new RecordingService();
+		final Value value = new Value();
+
+		assertThat(service.invokeDirect(-1, 0, "put", null, new Object[] { "x", value, TimeUnit.SECONDS })).isEqualTo("put");
+		assertThat(service.parameters).hasSize(3);
+		assertThat(service.parameters.get(0)).isEqualTo("x");
+		assertThat(service.parameters.get(1)).isInstanceOf(Value.class).isNotSameAs(value);
+		assertThat(service.parameters.get(2)).isSameAs(TimeUnit.SECONDS);
+	}
+
+
+	@Test
+	public void testSharedValues() throws Exception {
+		final ClassLoader classLoader = getClass().getClassLoader();
+
+		assertThat(LocalServices.isShared(null, classLoader)).isTrue();
+		assertThat(LocalServices.isShared("x", classLoader)).isTrue();
+		assertThat(LocalServices.isShared(42L, classLoader)).isTrue();
+		assertThat(LocalServices.isShared(TimeUnit.SECONDS, classLoader)).isTrue();
+		assertThat(LocalServices.isShared(new Value(), classLoader)).isTrue();
+
+		// mutable JDK values and arrays are copied
+		assertThat(LocalServices.isShared(new ArrayList<>(), classLoader)).isFalse();
+		assertThat(LocalServices.isShared(new Value[0], classLoader)).isFalse();
+	}
+
+
+	@Test
+	public void testValuesOfSeparatelyLoadedClassesAreNotShared() throws Exception {
+		final URL classes = Value.class.getProtectionDomain().getCodeSource().getLocation();
+
+		try (URLClassLoader classLoader = new URLClassLoader(new URL[] { classes }, null)) {
+			assertThat(LocalServices.isShared(new Value(), classLoader)).isFalse();
+			assertThat(LocalServices.isShared("x", classLoader)).isTrue();
+		}
+
+		try (URLClassLoader classLoader = new URLClassLoader(new URL[0], null)) {
+			assertThat(LocalServices.isShared(new Value(), classLoader)).isFalse();
+		}
+	}
+}
@@ -0,0 +1,204 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.airepublic.microverse.core.descriptor.ServiceStatistics;
+
+public class ResultCacheTest {
+	private static CallKey key(final int parameter, final String mimeType) {
+		return new CallKey(0, Arrays.asList(new byte[] { (byte) parameter, (byte) (parameter >> 8) }), mimeType);
+	}
+
+
+	@Test
+	public void testCachesPerMimeTypeAndCountsHitsAndMisses() {
+		final ResultCache cache = new ResultCache(1024L * 1024L);
+
+		assertThat(cache.get(key(1, "application/json"))).isNull();
+
+		cache.put(key(1, "application/json"), new byte[] { 1 }, 60000L);
+
+		assertThat(cache.get(key(1, "application/json"))).containsExactly((byte) 1);
+		assertThat(cache.get(key(1, "application/x-java-serialized-object"))).isNull();
+		assertThat(cache.get(key(2, "application/json"))).isNull();
+
+		final ServiceStatistics statistics = cache.addStatistics(new ServiceStatistics());
+		assertThat(statistics.getCacheHits()).isEqualTo(1L);
+		assertThat(statistics.getCacheMisses()).isEqualTo(3L);
+		assertThat(statistics.getCacheSize()).isGreaterThan(0L);
+	}
+
+
+	@Test
+	public void testExpiresEntries() throws Exception {
+		final ResultCache cache = new ResultCache(1024L * 1024L);
+		cache.put(key(1, "application/json"), new byte[] { 1 }, 1L);
+
+		TimeUnit.MILLISECONDS.sleep(10L);
+
+		assertThat(cache.get(key(1, "application/json"))).isNull();
+		assertThat(cache.size()).isZero();
+	}
+
+
+	@Test
+	public void testDisabledAndInvalidated() {
+		final ResultCache disabled = new ResultCache(0L);
+		disabled.put(key(1, "application/json"), new byte[] { 1 }, 60000L);
+		assertThat(disabled.get(key(1, "application/json"))).isNull();
+
+		final ResultCache cache = new ResultCache(64L * 1024L * 1024L);
+
+		for (int i = 0; i < 100; i++) {
+			cache.put(key(i, "application/json"), new byte[] { 1 }, 60000L);
+		}
+
+		cache.invalidate();
+
+		assertThat(cache.size()).isZero();
+
+		for (int i = 0; i < 100; i++) {
+			assertThat(cache.get(key(i, "application/json"))).isNull();
+		}
+	}
+
+
+	@Test
+	public void testStaysBoundedAndKeepsFrequentlyRequestedResults() {
+		final long maxBytes = 1024L * 1024L;
+		final ResultCache cache = new ResultCache(maxBytes);
+		final byte[] value = new byte[1024];
+
+		// fill the cache with frequently requested results
+		for (int i = 0; i < 500; i++) {
+			cache.put(key(i, "application/json"), value, 60000L);
+		}
+
+		for (int round = 0; round < 5; round++) {
+			for (int i = 0; i < 500; i++) {
+				cache.get(key(i, "application/json"));
+			}
+		}
+
+		// scan once with many one-off results
+		for (int i = 10000; i < 30000; i++) {
+			cache.get(key(i, "application/json"));
+			cache.put(key(i, "application/json"), value, 60000L);
+		}
+
+		assertThat(cache.size()).isLessThanOrEqualTo(maxBytes);
+
+		int retained = 0;
+
+		for (int i = 0; i < 500; i++) {
+			if (cache.get(key(i, "application/json")) != null) {
+				retained++;
+			}
+		}
+
+		// a plain LRU cache would have lost all of them
+		assertThat(retained).isGreaterThan(400);
+	}
+
+
+	@Test
+	public void testRejectedCandidateEvictsNothing() {
+		final ResultCache cache = new ResultCache(1024L * 1024L);
+		final byte[] value = new byte[10000];
+
+		for (int i = 0; i < 100; i++) {
+			cache.put(key(i, "application/json"), value, 60000L);
+		}
+
+		// the least recently used results 0-4 are cold, the others are requested frequently
+		for (int round = 0; round < 3; round++) {
+			for (int i = 5; i < 100; i++) {
+				cache.get(key(i, "application/json"));
+			}
+		}
+
+		final long size = cache.size();
+
+		// a candidate requested once which would have to replace the cold results and a frequent one
+		cache.get(key(1000, "application/json"));
+		cache.put(key(1000, "application/json"), new byte[100000], 60000L);
+
+		assertThat(cache.size()).isLessThanOrEqualTo(size);
+
+		for (int i = 0; i < 5; i++) {
+			assertThat(cache.get(key(i, "application/json"))).isNotNull();
+		}
+
+		assertThat(cache.get(key(1000, "application/json"))).isNull();
+	}
+
+
+	@Test
+	public void testDoesNotCacheResultsLargerThanASegment() {
+		final ResultCache cache = new ResultCache(32L * 1024L * 1024L);
+		cache.put(key(1, "application/json"), new byte[4 * 1024 * 1024], 60000L);
+
+		assertThat(cache.get(key(1, "application/json"))).isNull();
+
+		cache.put(key(2, "application/json"), new byte[512 * 1024], 60000L);
+
+		assertThat(cache.get(key(2, "application/json"))).hasSize(512 * 1024);
+	}
+
+
+	@Test
+	public void testConcurrentAccessStaysBounded() throws Exception {
+		final long maxBytes = 16L * 1024L * 1024L;
+		final ResultCache cache = new ResultCache(maxBytes);
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		try {
+			final Future<?>[] futures = new Future<?>[8];
+
+			for (int t = 0; t < futures.length; t++) {
+				final int offset = t * 10000;
+				futures[t] = executor.submit(() -> {
+					for (int i = 0; i < 10000; i++) {
+						final CallKey key = key(offset + i % 2000, "application/json");
+
+						if (cache.get(key) == null) {
+							cache.put(key, new byte[4096], 60000L);
+						}
+					}
+				});
+			}
+
+			for (final Future<?> future : futures) {
+				future.get(30L, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		final ServiceStatistics statistics = cache.addStatistics(new ServiceStatistics());
+		assertThat(statistics.getCacheHits() + statistics.getCacheMisses()).isEqualTo(80000L);
+		assertThat(statistics.getCacheHits()).isGreaterThan(0L);
+		assertThat(cache.size()).isLessThanOrEqualTo(maxBytes);
+	}
+}
@@ -0,0 +1,273 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static com.airepublic.microverse.core.server.TestServiceDescriptors.method;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.airepublic.microverse.core.common.marshaller.BinaryMarshaller;
+import com.airepublic.microverse.core.descriptor.MethodCall;
+import com.airepublic.microverse.core.descriptor.MethodDescriptor;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.service.api.CacheResult;
+
+public class ServerInvocationTest {
+	public interface Api {
+		String echo(String value);
+
+
+		int ping(int count);
+
+
+		@CacheResult(60)
+		String lookup(String key);
+	}
+
+	/** Records the calls passing through and continues them. */
+	private static class RecordingInterceptor implements IServerInterceptor {
+		private final String name;
+		private final List<String> log;
+
+
+		RecordingInterceptor(final String name, final List<String> log) {
+			this.name = name;
+			this.log = log;
+		}
+
+
+		@Override
+		public Serializable intercept(final ServerInvocation invocation, final MethodCall call) throws Throwable {
+			log.add(name + " before");
+			final Serializable result = invocation.proceed(call);
+			log.add(name + " after");
+
+			return result;
+		}
+	}
+
+
+	@After
+	public void tearDown() {
+		ServerInterceptors.clear();
+	}
+
+
+	@Test
+	public void testCallsTheInterceptorsInOrderAroundTheTarget() throws Throwable {
+		final ServiceDescriptor serviceDescriptor = TestServiceDescriptors.create(Api.class);
+		final List<String> log = new ArrayList<>();
+		final IServerInterceptor[] interceptors = { new RecordingInterceptor("outer", log), new RecordingInterceptor("inner", log) };
+		final ServerInvocation chain = ServerInvocation.create(serviceDescriptor, method(serviceDescriptor, "echo"), interceptors, call -> {
+			log.add("target");
+			return "result";
+		});
+
+		final Serializable result = chain.invoke(MethodCall.create(method(serviceDescriptor, "echo"), new Object[] { "a" }));
+
+		assertThat(result).isEqualTo("result");
+		assertThat(log).containsExactly("outer before", "inner before", "target", "inner after", "outer after");
+	}
+
+
+	@Test
+	public void testInvokesTheTargetWithoutInterceptors() throws Throwable {
+		final ServiceDescriptor serviceDescriptor = TestServiceDescriptors.create(Api.class);
+		final MethodCall call = MethodCall.create(method(serviceDescriptor, "echo"), new Object[] { "a" });
+		final List<MethodCall> received = new ArrayList<>();
+		final ServerInvocation chain = ServerInvocation.create(serviceDescriptor, method(serviceDescriptor, "echo"), new IServerInterceptor[0], c -> {
+			received.add(c);
+			return "result";
+		});
+
+		assertThat(chain.invoke(call)).isEqualTo("result");
+		assertThat(received).containsExactly(call);
+	}
+
+
+	@Test
+	public void testProceedPassesTheCallOfTheInterceptor() throws Throwable {
+		final ServiceDescriptor serviceDescriptor = TestServiceDescriptors.create(Api.class);
+		final MethodCall replaced = MethodCall.create(method(serviceDescriptor, "echo"), new Object[] { "b" });
+		final List<MethodCall> received = new ArrayList<>();
+		final IServerInterceptor[] interceptors = { (invocation, call) -> invocation.proceed(replaced) };
+		final ServerInvocation chain = ServerInvocation.create(serviceDescriptor, method(serviceDescriptor, "echo"), interceptors, call -> {
+			received.add(call);
+			return "result";
+		});
+
+		chain.invoke(MethodCall.create(method(serviceDescriptor, "echo"), new Object[] { "a" }));
+
+		assertThat(received).containsExactly(replaced);
+	}
+
+
+	@Test
+	public void testInterceptorCanAnswerWithoutInvokingTheTarget() throws Throwable {
+		final ServiceDescriptor serviceDescriptor = TestServiceDescriptors.create(Api.class);
+		final List<String> log = new ArrayList<>();
+		final IServerInterceptor[] interceptors = { new RecordingInterceptor("outer", log), (invocation, call) -> "cached", new RecordingInterceptor("inner", log) };
+		final ServerInvocation chain = ServerInvocation.create(serviceDescriptor, method(serviceDescriptor, "echo"), interceptors, call -> {
+			log.add("target");
+			return "result";
+		});
+
+		final Serializable result = chain.invoke(MethodCall.create(method(serviceDescriptor, "echo"), new Object[] { "a" }));
+
+		assertThat(result).isEqualTo("cached");
+		assertThat(log).containsExactly("outer before", "outer after");
+	}
+
+
+	@Test
+	public void testCachedResultsPassThroughTheInterceptors() throws Throwable {
+		final ServiceDescriptor serviceDescriptor = TestServiceDescriptors.create(Api.class);
+		final List<String> log = new ArrayList<>();
+		final AtomicInteger invocations = new AtomicInteger();
+		final IServerInterceptor[] interceptors = { new RecordingInterceptor("audit", log) };
+		final ServerInvocationChains chains = new ServerInvocationChains(serviceDescriptor, interceptors, new CachingTarget(serviceDescriptor, new ResultCache(1024L * 1024L), call -> {
+			invocations.incrementAndGet();
+			return "value";
+		}));
+		final MethodCall call = MethodCall.create(method(serviceDescriptor, "lookup"), new Object[] { "key" });
+		final CachingTarget.Request first = new CachingTarget.Request(new BinaryMarshaller());
+		final CachingTarget.Request second = new CachingTarget.Request(new BinaryMarshaller());
+		final Serializable firstResult;
+		final Serializable secondResult;
+
+		CachingTarget.bind(first);
+
+		try {
+			firstResult = chains.get(call).invoke(call);
+			CachingTarget.bind(second);
+			secondResult = chains.get(call).invoke(call);
+		} finally {
+			CachingTarget.bind(null);
+		}
+
+		assertThat(invocations.get()).isEqualTo(1);
+		assertThat(log).containsExactly("audit before", "audit after", "audit before", "audit after");
+		assertThat(firstResult).isEqualTo("value");
+		assertThat(secondResult).isInstanceOf(CachedResult.class);
+		assertThat(second.getSerializedResult(secondResult)).isEqualTo(first.getSerializedResult(firstResult));
+		assertThat(new BinaryMarshaller().deserialize(second.getSerializedResult(secondResult), String.class)).isEqualTo("value");
+	}
+
+
+	@Test
+	public void testCachesTheCallPassedOnByTheInterceptors() throws Throwable {
+		final ServiceDescriptor serviceDescriptor = TestServiceDescriptors.create(Api.class);
+		final MethodDescriptor lookup = method(serviceDescriptor, "lookup");
+		final MethodCall tenantCall = MethodCall.create(lookup, new Object[] { "tenant" });
+		final List<MethodCall> received = new ArrayList<>();
+		// rewrites all keys to a tenant specific key
+		final IServerInterceptor[] interceptors = { (invocation, call) -> invocation.proceed(tenantCall) };
+		final ServerInvocationChains chains = new ServerInvocationChains(serviceDescriptor, interceptors, new CachingTarget(serviceDescriptor, new ResultCache(1024L * 1024L), call -> {
+			received.add(call);
+			return "value";
+		}));
+
+		CachingTarget.bind(new CachingTarget.Request(new BinaryMarshaller()));
+
+		try {
+			for (final String key : Arrays.asList("a", "b")) {
+				final MethodCall call = MethodCall.create(lookup, new Object[] { key });
+				chains.get(call).invoke(call);
+			}
+		} finally {
+			CachingTarget.bind(null);
+		}
+
+		assertThat(received).containsExactly(tenantCall);
+	}
+
+
+	@Test
+	public void testDoesNotCacheWithoutABoundRequest() throws Throwable {
+		final ServiceDescriptor serviceDescriptor = TestServiceDescriptors.create(Api.class);
+		final AtomicInteger invocations = new AtomicInteger();
+		final CachingTarget target = new CachingTarget(serviceDescriptor, new ResultCache(1024L * 1024L), call -> {
+			invocations.incrementAndGet();
+			return "value";
+		});
+		final MethodCall call = MethodCall.create(method(serviceDescriptor, "lookup"), new Object[] { "key" });
+
+		assertThat(target.invoke(call)).isEqualTo("value");
+		assertThat(target.invoke(call)).isEqualTo("value");
+		assertThat(invocations.get()).isEqualTo(2);
+	}
+
+
+	@Test
+	public void testSelectsTheChainOfTheCalledMethod() throws Throwable {
+		final ServiceDescriptor serviceDescriptor = TestServiceDescriptors.create(Api.class);
+		final ServerInvocationChains chains = new ServerInvocationChains(serviceDescriptor, new IServerInterceptor[] { (invocation, call) -> invocation.proceed(call) }, call -> null);
+
+		for (final String methodName : Arrays.asList("echo", "ping", "lookup")) {
+			final MethodDescriptor methodDescriptor = method(serviceDescriptor, methodName);
+			final MethodCall call = MethodCall.create(methodDescriptor.getIndex(), methodDescriptor.getSignatureHash(), methodName, methodDescriptor.getSignature(), new ArrayList<>());
+
+			assertThat(chains.get(call).getMethodDescriptor()).isSameAs(methodDescriptor);
+			assertThat(chains.get(call).getServiceDescriptor()).isSameAs(serviceDescriptor);
+		}
+	}
+
+
+	@Test
+	public void testFallsBackIfTheSignatureHashDoesNotMatch() throws Throwable {
+		final ServiceDescriptor serviceDescriptor = TestServiceDescriptors.create(Api.class);
+		final ServerInvocationChains chains = new ServerInvocationChains(serviceDescriptor, new IServerInterceptor[] { (invocation, call) -> invocation.proceed(call) }, call -> "result");
+		final MethodDescriptor echo = method(serviceDescriptor, "echo");
+		final MethodCall call = MethodCall.create(echo.getIndex(), echo.getSignatureHash() + 1, "echo", echo.getSignature(), new ArrayList<>());
+
+		assertThat(chains.get(call).getMethodDescriptor()).isNull();
+		assertThat(chains.get(call).invoke(call)).isEqualTo("result");
+	}
+
+
+	@Test
+	public void testFallsBackIfTheMethodIndexIsUnknown() {
+		final ServiceDescriptor serviceDescriptor = TestServiceDescriptors.create(Api.class);
+		final ServerInvocationChains chains = new ServerInvocationChains(serviceDescriptor, new IServerInterceptor[] { (invocation, call) -> invocation.proceed(call) }, call -> null);
+		final MethodDescriptor echo = method(serviceDescriptor, "echo");
+
+		assertThat(chains.get(MethodCall.create("echo", new Object[] { "a" })).getMethodDescriptor()).isNull();
+		assertThat(chains.get(MethodCall.create(-1, echo.getSignatureHash(), "echo", echo.getSignature(), new ArrayList<>())).getMethodDescriptor()).isNull();
+		assertThat(chains.get(MethodCall.create(serviceDescriptor.getMethods().size(), echo.getSignatureHash(), "echo", echo.getSignature(), new ArrayList<>())).getMethodDescriptor()).isNull();
+	}
+
+
+	@Test
+	public void testAddedInterceptorsAreCalledAfterTheRegisteredOnes() {
+		final IServerInterceptor first = (invocation, call) -> invocation.proceed(call);
+		final IServerInterceptor second = (invocation, call) -> invocation.proceed(call);
+		final int registered = ServerInterceptors.get().length;
+
+		ServerInterceptors.addInterceptor(first);
+		ServerInterceptors.addInterceptor(second);
+
+		final IServerInterceptor[] interceptors = ServerInterceptors.get();
+		assertThat(interceptors).hasSize(registered + 2);
+		assertThat(interceptors[registered]).isSameAs(first);
+		assertThat(interceptors[registered + 1]).isSameAs(second);
+	}
+}
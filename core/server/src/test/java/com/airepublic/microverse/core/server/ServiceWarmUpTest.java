@@ -0,0 +1,166 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static com.airepublic.microverse.core.server.TestServiceDescriptors.method;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.airepublic.microverse.core.descriptor.MethodCall;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.service.api.IServiceInvoker;
+import com.airepublic.microverse.core.service.api.InvocationContext;
+import com.airepublic.microverse.core.service.api.WarmUp;
+
+public class ServiceWarmUpTest {
+	public interface Api {
+		@WarmUp
+		String echo(String value);
+
+
+		@WarmUp
+		int ping(int count);
+
+
+		void write(String value);
+	}
+
+	/** Counts the invocations and fails them as a service that is not ready yet. */
+	private static class FailingService implements IServiceInvoker {
+		private final AtomicInteger invocations = new AtomicInteger();
+
+
+		@Override
+		public byte[] getSerializedServiceDescriptor() {
+			return null;
+		}
+
+
+		@Override
+		public Serializable invoke(final int methodIndex, final int signatureHash, final String methodName, final String signature, final List<byte[]> parameters) throws Exception {
+			invocations.incrementAndGet();
+			throw new IllegalStateException("not ready");
+		}
+
+
+		@Override
+		public void close() {
+		}
+	}
+
+
+	/** Records the deadline of each invocation and takes longer than the warm-up timeout. */
+	private static class SlowService implements IServiceInvoker {
+		private final List<Long> deadlines = new CopyOnWriteArrayList<>();
+
+
+		@Override
+		public byte[] getSerializedServiceDescriptor() {
+			return null;
+		}
+
+
+		@Override
+		public Serializable invoke(final int methodIndex, final int signatureHash, final String methodName, final String signature, final List<byte[]> parameters) throws Exception {
+			deadlines.add(InvocationContext.getDeadline());
+			Thread.sleep(100L);
+			return null;
+		}
+
+
+		@Override
+		public void close() {
+		}
+	}
+
+
+	private static MethodCall call(final ServiceDescriptor serviceDescriptor, final String methodName, final Object parameter) {
+		return MethodCall.create(method(serviceDescriptor, methodName), new Object[] { parameter });
+	}
+
+
+	@Test
+	public void testReplaysOnlyRecordedCallsOfWarmUpMethods() {
+		final ServiceDescriptor serviceDescriptor = TestServiceDescriptors.create(Api.class);
+		final MethodCall ping = call(serviceDescriptor, "ping", 5);
+		final MethodCall write = call(serviceDescriptor, "write", "x");
+		final MethodCall stale = MethodCall.create(ping.getMethodIndex(), ping.getSignatureHash() + 1, "ping", ping.getSignature(), ping.getParameters());
+
+		final List<MethodCall> calls = ServiceWarmUp.getWarmUpCalls(serviceDescriptor, Arrays.asList(ping, write, stale));
+
+		assertThat(calls).containsExactly(ping);
+	}
+
+
+	@Test
+	public void testUsesSyntheticCallsWithoutRecordedCalls() {
+		final ServiceDescriptor serviceDescriptor = TestServiceDescriptors.create(Api.class);
+		final List<MethodCall> calls = ServiceWarmUp.getWarmUpCalls(serviceDescriptor, Collections.emptyList());
+
+		assertThat(calls).extracting(MethodCall::getMethodIndex).containsOnly(method(serviceDescriptor, "echo").getIndex(), method(serviceDescriptor, "ping").getIndex());
+		assertThat(calls).hasSize(2);
+
+		for (final MethodCall call : calls) {
+			assertThat(call.getParameters()).hasSize(1);
+		}
+	}
+
+
+	@Test
+	public void testStopsAtMaxRoundsAndToleratesFailingCalls() throws Exception {
+		final FailingService service = new FailingService();
+
+		final int rounds = ServiceWarmUp.warmUp(service, TestServiceDescriptors.create(Api.class), Collections.emptyList(), 10000L, 3);
+
+		assertThat(rounds).isEqualTo(3);
+		assertThat(service.invocations.get()).isEqualTo(6);
+	}
+
+
+	@Test
+	public void testSetsTheWarmUpDeadlineForEachCall() throws Exception {
+		final SlowService service = new SlowService();
+		final long start = System.nanoTime();
+
+		final int rounds = ServiceWarmUp.warmUp(service, TestServiceDescriptors.create(Api.class), Collections.emptyList(), 50L, 3);
+		final long end = System.nanoTime();
+
+		// the second call of the round is not started after the timeout
+		assertThat(rounds).isEqualTo(1);
+		assertThat(service.deadlines).hasSize(1);
+		assertThat(service.deadlines.get(0)).isNotNull();
+		// the deadline passed while the call was running
+		assertThat(service.deadlines.get(0) - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50L));
+		assertThat(service.deadlines.get(0)).isLessThan(end);
+		assertThat(InvocationContext.getDeadline()).isNull();
+	}
+
+
+	@Test
+	public void testDisabledWithoutTimeout() throws Exception {
+		final FailingService service = new FailingService();
+
+		assertThat(ServiceWarmUp.warmUp(service, TestServiceDescriptors.create(Api.class), Collections.emptyList(), 0L, 3)).isZero();
+		assertThat(service.invocations.get()).isZero();
+	}
+}
@@ -0,0 +1,85 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.exception.ServiceUnavailableException;
+import com.airepublic.microverse.core.service.api.Priority;
+
+public class ServiceWorkerPoolTest {
+	private static ServiceWorkerPool createPool(final int workerThreads) {
+		return new ServiceWorkerPool(ServiceDescriptor.create("api", "1", "ApiImpl", "Api"), workerThreads, 10, 5L, 100L, false);
+	}
+
+
+	@Test
+	public void testAdmitsNoMoreCallersThanWorkers() throws Exception {
+		final ServiceWorkerPool pool = createPool(2);
+
+		pool.admitCaller(Priority.NORMAL);
+		pool.admitCaller(null);
+
+		try {
+			pool.admitCaller(Priority.HIGH);
+			throw new AssertionError("Caller was admitted");
+		} catch (final ServiceUnavailableException e) {
+			assertThat(e.getRetryAfter()).isPositive();
+		}
+
+		pool.releaseCaller();
+		pool.admitCaller(Priority.HIGH);
+
+		assertThat(pool.getStatistics().getRejectedRequests()).isEqualTo(1L);
+		pool.shutdown();
+	}
+
+
+	@Test
+	public void testRejectsLowPriorityCallersWhileOverloaded() throws Exception {
+		final ServiceWorkerPool pool = createPool(1);
+		final CountDownLatch blocked = new CountDownLatch(1);
+
+		// the worker is blocked, so the queue isn't emptied for longer than the interval
+		pool.execute(() -> {
+			try {
+				blocked.await(5L, TimeUnit.SECONDS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, Priority.NORMAL, e -> {
+		});
+		pool.execute(() -> {
+		}, Priority.NORMAL, e -> {
+		});
+		Thread.sleep(200L);
+
+		try {
+			pool.admitCaller(Priority.LOW);
+			throw new AssertionError("Caller was admitted");
+		} catch (final ServiceUnavailableException e) {
+			assertThat(e.getMessage()).startsWith("Service is overloaded");
+		}
+
+		pool.admitCaller(Priority.HIGH);
+		blocked.countDown();
+		pool.shutdown();
+	}
+}
@@ -0,0 +1,51 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import com.airepublic.microverse.core.descriptor.MethodDescriptor;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+
+/**
+ * Creates the {@link ServiceDescriptor}s of the test service interfaces.
+ */
+final class TestServiceDescriptors {
+	private TestServiceDescriptors() {
+	}
+
+
+	/**
+	 * Creates the {@link ServiceDescriptor} of the specified service interface.
+	 *
+	 * @param serviceInterface the service interface
+	 * @return the {@link ServiceDescriptor} with the methods of the interface
+	 */
+	static ServiceDescriptor create(final Class<?> serviceInterface) {
+		final ServiceDescriptor serviceDescriptor = ServiceDescriptor.create("api", "1", "ApiImpl", serviceInterface.getName());
+		serviceDescriptor.addMethods(serviceInterface.getMethods());
+
+		return serviceDescriptor;
+	}
+
+
+	/**
+	 * Gets the {@link MethodDescriptor} of the method with the specified name.
+	 *
+	 * @param serviceDescriptor the {@link ServiceDescriptor}
+	 * @param methodName the method name
+	 * @return the {@link MethodDescriptor}
+	 */
+	static MethodDescriptor method(final ServiceDescriptor serviceDescriptor, final String methodName) {
+		return serviceDescriptor.getMethods().stream().filter(m -> m.getMethodName().equals(methodName)).findFirst().get();
+	}
+}
@@ -0,0 +1,136 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class WeightedFairQueueTest {
+	/** Elements are encoded as class * 1000 + sequence number. */
+	private static WeightedFairQueue<Integer> create(final int capacity, final int... weights) {
+		return new WeightedFairQueue<>(capacity, weights, e -> e / 1000);
+	}
+
+
+	@Test
+	public void testTakesInProportionToWeights() {
+		final WeightedFairQueue<Integer> queue = create(100, 3, 1);
+
+		for (int i = 0; i < 8; i++) {
+			queue.offer(i);
+			queue.offer(1000 + i);
+		}
+
+		final List<Integer> classes = new ArrayList<>();
+
+		for (int i = 0; i < 8; i++) {
+			classes.add(queue.poll() / 1000);
+		}
+
+		assertThat(classes).containsExactly(0, 0, 1, 0, 0, 0, 1, 0);
+	}
+
+
+	@Test
+	public void testKeepsFifoOrderPerClassAndDoesNotStarveLowWeights() {
+		final WeightedFairQueue<Integer> queue = create(100, 8, 1);
+
+		for (int i = 0; i < 20; i++) {
+			queue.offer(i);
+		}
+
+		queue.offer(1000);
+		queue.offer(1001);
+
+		final List<Integer> taken = new ArrayList<>();
+		Integer e;
+
+		while ((e = queue.poll()) != null) {
+			taken.add(e);
+		}
+
+		assertThat(taken).hasSize(22);
+		assertThat(taken.indexOf(1000)).isLessThan(10);
+		assertThat(taken.indexOf(1000)).isLessThan(taken.indexOf(1001));
+		assertThat(taken.stream().filter(i -> i < 1000).collect(Collectors.toList())).isSorted();
+	}
+
+
+	@Test
+	public void testPeekReturnsTheElementOfTheNextPoll() {
+		final WeightedFairQueue<Integer> queue = create(100, 1, 4, 2);
+
+		for (int i = 0; i < 5; i++) {
+			queue.offer(i);
+			queue.offer(1000 + i);
+			queue.offer(2000 + i);
+		}
+
+		while (!queue.isEmpty()) {
+			final Integer peeked = queue.peek();
+
+			assertThat(queue.poll()).isEqualTo(peeked);
+		}
+
+		assertThat(queue.peek()).isNull();
+	}
+
+
+	@Test
+	public void testOfferRespectsCapacity() throws Exception {
+		final WeightedFairQueue<Integer> queue = create(2, 1, 1);
+
+		assertThat(queue.offer(0)).isTrue();
+		assertThat(queue.offer(1000)).isTrue();
+		assertThat(queue.offer(1)).isFalse();
+		assertThat(queue.remainingCapacity()).isEqualTo(0);
+
+		final long start = System.nanoTime();
+
+		assertThat(queue.offer(1, 50, TimeUnit.MILLISECONDS)).isFalse();
+		assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+	}
+
+
+	@Test(timeout = 5000)
+	public void testPutBlocksUntilAnElementIsTaken() throws Exception {
+		final WeightedFairQueue<Integer> queue = create(1, 1);
+		final CountDownLatch putDone = new CountDownLatch(1);
+
+		queue.put(0);
+
+		final Thread producer = new Thread(() -> {
+			try {
+				queue.put(1);
+				putDone.countDown();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		producer.start();
+
+		assertThat(putDone.await(100, TimeUnit.MILLISECONDS)).isFalse();
+		assertThat(queue.take()).isEqualTo(0);
+		assertThat(putDone.await(1, TimeUnit.SECONDS)).isTrue();
+		assertThat(queue.take()).isEqualTo(1);
+		producer.join();
+	}
+}
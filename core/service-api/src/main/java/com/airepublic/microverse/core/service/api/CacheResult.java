@@ -0,0 +1,49 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.service.api;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Marks a service-interface method whose serialized results may be cached by the service-server
+ * for the specified time to live. Calls with identical arguments within that time are answered
+ * from the cache without invoking the service, so the method should be free of side-effects.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface CacheResult {
+	/**
+	 * The time to live of the cached results.
+	 *
+	 * @return the time to live
+	 */
+	long value();
+
+
+	/**
+	 * The {@link TimeUnit} of the time to live.
+	 *
+	 * @return the {@link TimeUnit}
+	 */
+	TimeUnit unit() default TimeUnit.SECONDS;
+}
@@ -0,0 +1,129 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.service.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Topic based event bus between the services of the cluster. Events published to a topic are
+ * delivered asynchronously to the service-interface methods annotated with {@link Subscribe} for
+ * the topic of all deployed services.
+ * <p>
+ * As this class is shared between the service-server and the service-containers, services publish
+ * with the publisher of their service-server. Unless a publisher has been installed, the first
+ * {@link IEventPublisher} provided via {@link ServiceLoader} is used, e.g. the one of the
+ * microverse client module.
+ * </p>
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public final class EventBus {
+	private static volatile IEventPublisher publisher;
+	private static boolean providerLoaded;
+
+
+	private EventBus() {
+	}
+
+
+	/**
+	 * Installs the {@link IEventPublisher} used to publish events.
+	 *
+	 * @param eventPublisher the {@link IEventPublisher}
+	 */
+	public static void setPublisher(final IEventPublisher eventPublisher) {
+		publisher = eventPublisher;
+	}
+
+
+	/**
+	 * Checks whether an {@link IEventPublisher} has been installed.
+	 *
+	 * @return <code>true</code> if events can be published
+	 */
+	public static boolean hasPublisher() {
+		return getPublisher() != null;
+	}
+
+
+	/**
+	 * Gets the installed {@link IEventPublisher}. If none has been installed, the first provider
+	 * found by the {@link ServiceLoader} is installed.
+	 *
+	 * @return the {@link IEventPublisher} or <code>null</code> if there is none
+	 */
+	private static IEventPublisher getPublisher() {
+		IEventPublisher eventPublisher = publisher;
+
+		if (eventPublisher == null) {
+			synchronized (EventBus.class) {
+				if (publisher == null && !providerLoaded) {
+					providerLoaded = true;
+
+					try {
+						final Iterator<IEventPublisher> providers = ServiceLoader.load(IEventPublisher.class, EventBus.class.getClassLoader()).iterator();
+
+						if (providers.hasNext()) {
+							publisher = providers.next();
+						}
+					} catch (final ServiceConfigurationError e) {
+						// no usable provider, so events can only be published after installing one
+					}
+				}
+
+				eventPublisher = publisher;
+			}
+		}
+
+		return eventPublisher;
+	}
+
+
+	/**
+	 * Publishes the event to the subscribers of the topic. The event is serialized right away and
+	 * delivered in the background.
+	 *
+	 * @param topic the topic
+	 * @param event the event
+	 * @return <code>true</code> if the event was queued, <code>false</code> if it was dropped
+	 *         because the publisher is overloaded
+	 * @throws IllegalStateException if no {@link IEventPublisher} has been installed
+	 * @throws UncheckedIOException if the event could not be serialized
+	 */
+	public static boolean publish(final String topic, final Serializable event) {
+		final IEventPublisher eventPublisher = getPublisher();
+
+		if (eventPublisher == null) {
+			throw new IllegalStateException("No event publisher has been installed to publish to topic: " + topic);
+		}
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(event);
+		} catch (final IOException e) {
+			throw new UncheckedIOException("The event for topic '" + topic + "' could not be serialized", e);
+		}
+
+		return eventPublisher.publish(topic, bytes.toByteArray());
+	}
+}
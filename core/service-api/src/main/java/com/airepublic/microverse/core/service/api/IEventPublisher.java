@@ -0,0 +1,35 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.service.api;
+
+/**
+ * Publishes serialized events to the subscribers of their topic. The microverse runtime provides
+ * its implementation via {@link java.util.ServiceLoader} or installs it with
+ * {@link EventBus#setPublisher(IEventPublisher)}. Only JDK types are
+ * passed, as the events may be loaded by the classloader of a service-container.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public interface IEventPublisher {
+	/**
+	 * Queues the event to be delivered to the subscribers of the topic.
+	 *
+	 * @param topic the topic
+	 * @param serializedEvent the serialized event
+	 * @return <code>true</code> if the event was queued, <code>false</code> if it was dropped
+	 *         because the publisher is overloaded
+	 */
+	boolean publish(String topic, byte[] serializedEvent);
+}
@@ -0,0 +1,112 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.service.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interface of the service running inside a service-container. The interface is loaded by the
+ * service-server classloader and shared with the service-container classloader, so the
+ * service-server can call the service directly without reflection. Only JDK types are passed, as
+ * all other classes are loaded separately by the service-container.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public interface IServiceInvoker extends Closeable {
+	/**
+	 * The name of the class implementing the {@link IServiceInvoker} in the service-container.
+	 */
+	String SERVICE_CLASS_NAME = "com.airepublic.microverse.core.service.Service";
+	/** Instance statistics key of the number of created instances of the service-class. */
+	String STATISTICS_INSTANCES = "instances";
+	/** Instance statistics key of the number of instances currently processing a request. */
+	String STATISTICS_BUSY_INSTANCES = "busyInstances";
+	/** Instance statistics key of the number of requests which had to wait for an instance. */
+	String STATISTICS_INSTANCE_WAITS = "instanceWaits";
+
+
+	/**
+	 * Gets the serialized service-descriptor with all service methods indexed.
+	 *
+	 * @return the serialized service-descriptor
+	 */
+	byte[] getSerializedServiceDescriptor();
+
+
+	/**
+	 * Invokes a service method. The method is resolved by the method index if it is not negative,
+	 * otherwise by its signature or name.
+	 *
+	 * @param methodIndex the method index or -1
+	 * @param signatureHash the signature hash of the method with the method index
+	 * @param methodName the method name (may be <code>null</code> if called by index)
+	 * @param signature the method signature (may be <code>null</code>)
+	 * @param parameters the serialized parameters (may be <code>null</code>)
+	 * @return the result of the method
+	 * @throws Exception if the method could not be resolved or threw an exception
+	 */
+	Serializable invoke(int methodIndex, int signatureHash, String methodName, String signature, List<byte[]> parameters) throws Exception;
+
+
+	/**
+	 * Invokes a service method with the parameters as they are. This is used for calls within the
+	 * JVM whose parameters are of classes the service-container resolves to the same classes (see
+	 * {@link LocalServices#isShared(Object, ClassLoader)}). By default the parameters are
+	 * serialized and passed to {@link #invoke(int, int, String, String, List)}.
+	 *
+	 * @param methodIndex the method index or -1
+	 * @param signatureHash the signature hash of the method with the method index
+	 * @param methodName the method name (may be <code>null</code> if called by index)
+	 * @param signature the method signature (may be <code>null</code>)
+	 * @param parameters the parameters (may be <code>null</code>)
+	 * @return the result of the method
+	 * @throws Exception if the method could not be resolved or threw an exception
+	 */
+	default Serializable invokeDirect(final int methodIndex, final int signatureHash, final String methodName, final String signature, final Object[] parameters) throws Exception {
+		final List<byte[]> serializedParameters = new ArrayList<>();
+
+		if (parameters != null) {
+			for (final Object parameter : parameters) {
+				final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+				try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+					out.writeObject(parameter);
+				}
+
+				serializedParameters.add(bytes.toByteArray());
+			}
+		}
+
+		return invoke(methodIndex, signatureHash, methodName, signature, serializedParameters);
+	}
+
+
+	/**
+	 * Gets the statistics of the instances of the service-class, e.g. the number of created and
+	 * busy instances, keyed by their name.
+	 *
+	 * @return the instance statistics
+	 */
+	default Map<String, Long> getInstanceStatistics() {
+		return Collections.emptyMap();
+	}
+}
@@ -0,0 +1,152 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.service.api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Context of the service invocation processed by the current thread. The service-server sets the
+ * deadline and priority of the request before it invokes the service, so service-clients used
+ * inside the service pass the remaining time and the priority on to nested service calls. Clients
+ * may also set a deadline or priority before calling a service to apply it to that call.
+ * <p>
+ * As this class is shared between the service-server and the service-containers, the context is
+ * visible on both sides of the classloader boundary.
+ * </p>
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public final class InvocationContext {
+	private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+	private static final ThreadLocal<Priority> PRIORITY = new ThreadLocal<>();
+	private static final ThreadLocal<ServiceSession> SESSION = new ThreadLocal<>();
+
+
+	private InvocationContext() {
+	}
+
+
+	/**
+	 * Sets the deadline of the current invocation as {@link System#nanoTime()} value.
+	 *
+	 * @param deadline the deadline or <code>null</code> to remove it
+	 */
+	public static void setDeadline(final Long deadline) {
+		if (deadline == null) {
+			DEADLINE.remove();
+		} else {
+			DEADLINE.set(deadline);
+		}
+	}
+
+
+	/**
+	 * Sets the deadline of the current invocation to the specified timeout from now.
+	 *
+	 * @param timeout the timeout
+	 * @param unit the {@link TimeUnit} of the timeout
+	 */
+	public static void setTimeout(final long timeout, final TimeUnit unit) {
+		DEADLINE.set(System.nanoTime() + unit.toNanos(timeout));
+	}
+
+
+	/**
+	 * Gets the deadline of the current invocation as {@link System#nanoTime()} value.
+	 *
+	 * @return the deadline or <code>null</code> if no deadline is set
+	 */
+	public static Long getDeadline() {
+		return DEADLINE.get();
+	}
+
+
+	/**
+	 * Gets the time remaining until the deadline of the current invocation.
+	 *
+	 * @param unit the {@link TimeUnit} of the result
+	 * @return the remaining time which is negative if the deadline has passed or
+	 *         {@link Long#MAX_VALUE} if no deadline is set
+	 */
+	public static long getRemaining(final TimeUnit unit) {
+		final Long deadline = DEADLINE.get();
+
+		if (deadline == null) {
+			return Long.MAX_VALUE;
+		}
+
+		return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+	}
+
+
+	/**
+	 * Sets the {@link Priority} of the current invocation.
+	 *
+	 * @param priority the {@link Priority} or <code>null</code> to remove it
+	 */
+	public static void setPriority(final Priority priority) {
+		if (priority == null) {
+			PRIORITY.remove();
+		} else {
+			PRIORITY.set(priority);
+		}
+	}
+
+
+	/**
+	 * Gets the {@link Priority} of the current invocation.
+	 *
+	 * @return the {@link Priority} or <code>null</code> if no priority is set
+	 */
+	public static Priority getPriority() {
+		return PRIORITY.get();
+	}
+
+
+	/**
+	 * Sets the {@link ServiceSession} the current invocation was received on.
+	 *
+	 * @param session the {@link ServiceSession} or <code>null</code> to remove it
+	 */
+	public static void setSession(final ServiceSession session) {
+		if (session == null) {
+			SESSION.remove();
+		} else {
+			SESSION.set(session);
+		}
+	}
+
+
+	/**
+	 * Gets the {@link ServiceSession} the current invocation was received on. Services may keep
+	 * the session to push events to the client later on.
+	 *
+	 * @return the {@link ServiceSession} or <code>null</code> if the service was not called via a
+	 *         session
+	 */
+	public static ServiceSession getSession() {
+		return SESSION.get();
+	}
+
+
+	/**
+	 * Clears the context of the current thread.
+	 */
+	public static void clear() {
+		DEADLINE.remove();
+		PRIORITY.remove();
+		SESSION.remove();
+	}
+}
@@ -0,0 +1,121 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.service.api;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the services deployed on the service-servers running in this JVM. Service-servers
+ * register an {@link IServiceInvoker} for each service they serve, so service-clients in the same
+ * JVM can dispatch calls directly into the service-container instead of sending them over the
+ * network.
+ * <p>
+ * As this class is shared between the service-server and the service-containers, services calling
+ * other services on the same service-server find them here as well.
+ * </p>
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public final class LocalServices {
+	private static final Map<String, IServiceInvoker> SERVICES = new ConcurrentHashMap<>();
+
+
+	private LocalServices() {
+	}
+
+
+	/**
+	 * Registers the {@link IServiceInvoker} for the service served at the specified endpoint.
+	 *
+	 * @param host the host of the service-server
+	 * @param port the port of the service-server
+	 * @param uri the URI of the service
+	 * @param invoker the {@link IServiceInvoker} dispatching calls to the service
+	 */
+	public static void register(final String host, final int port, final String uri, final IServiceInvoker invoker) {
+		SERVICES.put(key(host, port, uri), invoker);
+	}
+
+
+	/**
+	 * Unregisters the {@link IServiceInvoker} of the service served at the specified endpoint if
+	 * it has not been replaced in the meantime.
+	 *
+	 * @param host the host of the service-server
+	 * @param port the port of the service-server
+	 * @param uri the URI of the service
+	 * @param invoker the registered {@link IServiceInvoker}
+	 */
+	public static void unregister(final String host, final int port, final String uri, final IServiceInvoker invoker) {
+		SERVICES.remove(key(host, port, uri), invoker);
+	}
+
+
+	/**
+	 * Gets the {@link IServiceInvoker} of the service served at the specified endpoint.
+	 *
+	 * @param host the host of the service-server
+	 * @param port the port of the service-server
+	 * @param uri the URI of the service
+	 * @return the {@link IServiceInvoker} or <code>null</code> if the service is not served in
+	 *         this JVM
+	 */
+	public static IServiceInvoker get(final String host, final int port, final String uri) {
+		if (SERVICES.isEmpty()) {
+			return null;
+		}
+
+		return SERVICES.get(key(host, port, uri));
+	}
+
+
+	/**
+	 * Checks whether the value can be passed as it is between a service-client and a service in
+	 * this JVM whose classes are loaded by different classloaders. This is the case for immutable
+	 * JDK values and objects of non-array classes which the other classloader resolves to the same
+	 * class. All other values have to be copied by serialization.
+	 *
+	 * @param value the value (may be <code>null</code>)
+	 * @param classLoader the classloader of the receiving side
+	 * @return <code>true</code> if the value can be passed as it is
+	 */
+	public static boolean isShared(final Object value, final ClassLoader classLoader) {
+		if (value == null) {
+			return true;
+		}
+
+		final Class<?> valueClass = value.getClass();
+
+		if (valueClass.getClassLoader() == null) {
+			return value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Character || value instanceof Enum;
+		}
+
+		if (valueClass.isArray()) {
+			return false;
+		}
+
+		try {
+			return Class.forName(valueClass.getName(), false, classLoader) == valueClass;
+		} catch (final ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+
+	private static String key(final String host, final int port, final String uri) {
+		return host + ":" + port + (uri.startsWith("/") ? uri : "/" + uri);
+	}
+}
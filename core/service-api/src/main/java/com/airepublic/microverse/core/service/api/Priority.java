@@ -0,0 +1,80 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.service.api;
+
+/**
+ * The priority classes of service calls. The service-server shares the worker threads of a
+ * service between the classes according to their weights, so high priority calls keep a low
+ * latency while low priority calls use the remaining capacity.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public enum Priority {
+	/** Interactive calls which need a low latency. */
+	HIGH(8),
+	/** The default for all calls. */
+	NORMAL(4),
+	/** Background calls like batch jobs. */
+	LOW(1);
+
+	private final int weight;
+
+
+	private Priority(final int weight) {
+		this.weight = weight;
+	}
+
+
+	/**
+	 * Gets the share of the worker threads of this class relative to the other classes.
+	 *
+	 * @return the weight
+	 */
+	public int getWeight() {
+		return weight;
+	}
+
+
+	/**
+	 * Parses the priority from its name.
+	 *
+	 * @param name the name of the priority (may be <code>null</code>)
+	 * @return the {@link Priority} or {@link #NORMAL} if the name is unknown
+	 */
+	public static Priority parse(final String name) {
+		return parse(name, NORMAL);
+	}
+
+
+	/**
+	 * Parses the priority from its name.
+	 *
+	 * @param name the name of the priority (may be <code>null</code>)
+	 * @param defaultPriority the priority to return if the name is unknown (may be
+	 *        <code>null</code>)
+	 * @return the {@link Priority} or the default priority if the name is unknown
+	 */
+	public static Priority parse(final String name, final Priority defaultPriority) {
+		if (name != null) {
+			for (final Priority priority : values()) {
+				if (priority.name().equalsIgnoreCase(name.trim())) {
+					return priority;
+				}
+			}
+		}
+
+		return defaultPriority;
+	}
+}
@@ -0,0 +1,215 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.service.api;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
+
+/**
+ * The element stream returned by a service method declaring {@link Iterator}, {@link Stream} or
+ * {@link Flow.Publisher} as return type. The service-container wraps the returned stream so the
+ * service-server can pull the elements one by one while it writes them to the response, instead of
+ * marshalling the result as a whole. Publishers are subscribed with a bounded demand, so they only
+ * produce elements as fast as they are written.
+ * <p>
+ * As this class is shared between the service-server and the service-containers, it is only
+ * {@link Serializable} to be returned through the {@link IServiceInvoker} - the elements themselves
+ * are never serialized with it.
+ * </p>
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public final class ResultStream implements Iterator<Object>, AutoCloseable, Serializable {
+	private static final long serialVersionUID = -2716180958741536405L;
+	private final transient Iterator<?> iterator;
+	private final transient Runnable closeable;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param iterator the {@link Iterator} over the elements
+	 * @param closeable closes the resource when the stream is closed or <code>null</code>
+	 */
+	private ResultStream(final Iterator<?> iterator, final Runnable closeable) {
+		this.iterator = iterator;
+		this.closeable = closeable;
+	}
+
+
+	/**
+	 * Checks whether methods with the specified return type return an element stream.
+	 *
+	 * @param typeName the class name of the return type
+	 * @return <code>true</code> if the type is {@link Iterator}, {@link Stream} or
+	 *         {@link Flow.Publisher}
+	 */
+	public static boolean isStreamType(final String typeName) {
+		return Iterator.class.getName().equals(typeName) || Stream.class.getName().equals(typeName) || Flow.Publisher.class.getName().equals(typeName);
+	}
+
+
+	/**
+	 * Wraps the result of a service method if it is an {@link Iterator}, {@link Stream} or
+	 * {@link Flow.Publisher}.
+	 *
+	 * @param result the result of the service method
+	 * @return the {@link ResultStream} or <code>null</code> if the result is no element stream
+	 */
+	public static ResultStream of(final Object result) {
+		if (result instanceof Iterator) {
+			return new ResultStream((Iterator<?>) result, null);
+		} else if (result instanceof Stream) {
+			final Stream<?> stream = (Stream<?>) result;
+			return new ResultStream(stream.iterator(), stream::close);
+		} else if (result instanceof Flow.Publisher) {
+			final PublisherIterator iterator = new PublisherIterator(16);
+			((Flow.Publisher<?>) result).subscribe(iterator);
+			return new ResultStream(iterator, iterator::close);
+		}
+
+		return null;
+	}
+
+
+	@Override
+	public boolean hasNext() {
+		return iterator.hasNext();
+	}
+
+
+	@Override
+	public Object next() {
+		return iterator.next();
+	}
+
+
+	/**
+	 * Closes the {@link Stream} or cancels the subscription to the {@link Flow.Publisher} the
+	 * elements are taken from.
+	 */
+	@Override
+	public void close() {
+		if (closeable != null) {
+			closeable.run();
+		}
+	}
+
+	/**
+	 * Subscriber which pulls the elements of a {@link Flow.Publisher} as {@link Iterator}. It
+	 * requests up to the buffer size of elements and requests more once half of them are consumed.
+	 */
+	private static class PublisherIterator implements Iterator<Object>, Flow.Subscriber<Object>, AutoCloseable {
+		private static final Object COMPLETE = new Object();
+		private final BlockingQueue<Object> queue;
+		private final int bufferSize;
+		private volatile Flow.Subscription subscription;
+		private Object next;
+		private volatile Throwable failure;
+		private int consumed = 0;
+
+
+		/**
+		 * Constructor.
+		 *
+		 * @param bufferSize the maximum number of requested elements not consumed yet
+		 */
+		PublisherIterator(final int bufferSize) {
+			this.bufferSize = bufferSize;
+			// terminal signals need one extra slot
+			queue = new ArrayBlockingQueue<>(bufferSize + 1);
+		}
+
+
+		@Override
+		public void onSubscribe(final Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(bufferSize);
+		}
+
+
+		@Override
+		public void onNext(final Object item) {
+			queue.offer(item);
+		}
+
+
+		@Override
+		public void onError(final Throwable throwable) {
+			failure = throwable;
+			queue.offer(COMPLETE);
+		}
+
+
+		@Override
+		public void onComplete() {
+			queue.offer(COMPLETE);
+		}
+
+
+		@Override
+		public boolean hasNext() {
+			if (next == null) {
+				try {
+					next = queue.take();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for the next element!", e);
+				}
+			}
+
+			if (next == COMPLETE) {
+				if (failure != null) {
+					throw new IllegalStateException("The publisher failed!", failure);
+				}
+
+				return false;
+			}
+
+			return true;
+		}
+
+
+		@Override
+		public Object next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			final Object element = next;
+			next = null;
+
+			if (++consumed == bufferSize / 2) {
+				consumed = 0;
+				subscription.request(bufferSize / 2);
+			}
+
+			return element;
+		}
+
+
+		@Override
+		public void close() {
+			if (subscription != null) {
+				subscription.cancel();
+			}
+		}
+	}
+}
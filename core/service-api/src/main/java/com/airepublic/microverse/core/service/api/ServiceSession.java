@@ -0,0 +1,64 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.service.api;
+
+import java.io.Serializable;
+
+/**
+ * A long-lived WebSocket session between a client and a service. The client sends its calls over
+ * the session and the service may push events to the client at any time. Services get the
+ * session of the current call from {@link InvocationContext#getSession()}.
+ * <p>
+ * The session is flow controlled: the client only accepts a limited number of events it hasn't
+ * consumed yet. Further events are queued up to a limit while the client is falling behind, so
+ * {@link #push(Serializable)} never blocks the service.
+ * </p>
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public interface ServiceSession extends AutoCloseable {
+	/**
+	 * Gets the id of the session which is unique within the service-server.
+	 *
+	 * @return the session id
+	 */
+	String getId();
+
+
+	/**
+	 * Checks whether the session is still open.
+	 *
+	 * @return <code>true</code> if the session is open
+	 */
+	boolean isOpen();
+
+
+	/**
+	 * Pushes the event to the client. The event is sent right away if the client accepts further
+	 * events, otherwise it is queued until the client grants more credits.
+	 *
+	 * @param event the event
+	 * @return <code>false</code> if the session has been closed or the client is too far behind
+	 *         and the event was not queued
+	 */
+	boolean push(Serializable event);
+
+
+	/**
+	 * Closes the session.
+	 */
+	@Override
+	void close();
+}
@@ -0,0 +1,41 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.core.service.api;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Subscribes a service-interface method with exactly one parameter to the events published to a
+ * topic with {@link EventBus#publish(String, java.io.Serializable)}. The subscription is
+ * registered with the service, so every deployed instance of the service receives the events of
+ * the topic as one-way calls of the method.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Subscribe {
+	/**
+	 * The topic of the events.
+	 *
+	 * @return the topic
+	 */
+	String value();
+}
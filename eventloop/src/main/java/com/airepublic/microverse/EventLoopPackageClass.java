@@ -0,0 +1,27 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse;
+
+import com.airepublic.microverse.eventloop.server.EventLoopServiceServerBootstrap;
+
+/**
+ * This class is only used in the {@link EventLoopServiceServerBootstrap} to initialize Weld using
+ * only com.airepublic.microverse.** packages.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class EventLoopPackageClass {
+
+}
@@ -0,0 +1,257 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.eventloop.server;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.microverse.core.server.ByteBufferPool;
+
+/**
+ * A single-threaded event-loop which serves its {@link HttpConnection}s with a {@link Selector}.
+ * The JDK uses epoll for selectors on Linux, kqueue on macOS and the platform specific mechanism
+ * on other systems. Each event-loop reads into one direct buffer, so reading doesn't allocate
+ * per connection. One event-loop may additionally accept new connections and distribute them
+ * round-robin to all event-loops.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class EventLoop implements Runnable {
+	private final static Logger LOG = LoggerFactory.getLogger(EventLoop.class);
+	private final String name;
+	private final Selector selector;
+	private final ByteBuffer readBuffer;
+	private final Consumer<HttpExchange> requestHandler;
+	private final ByteBufferPool bufferPool;
+	private final long maxContentLength;
+	private final int maxPipelinedRequests;
+	private final int maxQueuedBuffers;
+	private final Queue<SocketChannel> newChannels = new ConcurrentLinkedQueue<>();
+	private final Queue<HttpConnection> flushes = new ConcurrentLinkedQueue<>();
+	private EventLoop[] eventLoops;
+	private int nextEventLoop;
+	private volatile Thread thread;
+	private volatile boolean running;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name the name of the event-loop thread
+	 * @param requestHandler the handler for the requests
+	 * @param bufferPool the {@link ByteBufferPool} for streaming responses
+	 * @param maxContentLength the maximum content length of a request
+	 * @param maxPipelinedRequests the maximum number of pending requests per connection
+	 * @param maxQueuedBuffers the maximum number of pooled buffers queued per streaming response
+	 * @throws IOException if the selector could not be opened
+	 */
+	public EventLoop(final String name, final Consumer<HttpExchange> requestHandler, final ByteBufferPool bufferPool, final long maxContentLength, final int maxPipelinedRequests, final int maxQueuedBuffers) throws IOException {
+		this.name = name;
+		this.requestHandler = requestHandler;
+		this.bufferPool = bufferPool;
+		this.maxContentLength = maxContentLength;
+		this.maxPipelinedRequests = maxPipelinedRequests;
+		this.maxQueuedBuffers = maxQueuedBuffers;
+		selector = Selector.open();
+		readBuffer = ByteBuffer.allocateDirect(bufferPool.getBufferSize());
+	}
+
+
+	/**
+	 * Registers the server channel with this event-loop to accept new connections which are
+	 * distributed to the specified event-loops. Must be called before the event-loop is started.
+	 *
+	 * @param serverChannel the {@link ServerSocketChannel}
+	 * @param eventLoops the event-loops to distribute the connections to
+	 * @throws IOException if the channel could not be registered
+	 */
+	public void accept(final ServerSocketChannel serverChannel, final EventLoop[] eventLoops) throws IOException {
+		this.eventLoops = eventLoops;
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+
+	/**
+	 * Starts the event-loop thread.
+	 */
+	public void start() {
+		running = true;
+		thread = new Thread(this, name);
+		thread.start();
+	}
+
+
+	/**
+	 * Stops the event-loop and closes all its connections.
+	 */
+	public void stop() {
+		running = false;
+		selector.wakeup();
+
+		try {
+			if (thread != null && thread != Thread.currentThread()) {
+				thread.join(10000L);
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/**
+	 * Hands a new connection over to this event-loop.
+	 *
+	 * @param channel the {@link SocketChannel}
+	 */
+	void register(final SocketChannel channel) {
+		newChannels.add(channel);
+		selector.wakeup();
+	}
+
+
+	/**
+	 * Requests the connection to be flushed by this event-loop. Threads other than the event-loop
+	 * wake up the selector.
+	 *
+	 * @param connection the {@link HttpConnection}
+	 */
+	void flushLater(final HttpConnection connection) {
+		flushes.add(connection);
+
+		if (Thread.currentThread() != thread) {
+			selector.wakeup();
+		}
+	}
+
+
+	@Override
+	public void run() {
+		while (running) {
+			try {
+				registerNewChannels();
+				flushConnections();
+				selector.select();
+
+				final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+				while (keys.hasNext()) {
+					final SelectionKey key = keys.next();
+					keys.remove();
+
+					if (!key.isValid()) {
+						continue;
+					}
+
+					if (key.isAcceptable()) {
+						acceptConnections((ServerSocketChannel) key.channel());
+					} else {
+						final HttpConnection connection = (HttpConnection) key.attachment();
+
+						if (key.isWritable()) {
+							connection.flush();
+						}
+
+						if (key.isValid() && key.isReadable()) {
+							connection.read(readBuffer);
+						}
+					}
+				}
+			} catch (final Exception e) {
+				LOG.error("Error in event-loop " + name, e);
+			}
+		}
+
+		for (final SelectionKey key : selector.keys()) {
+			if (key.attachment() instanceof HttpConnection) {
+				((HttpConnection) key.attachment()).close();
+			}
+		}
+
+		try {
+			selector.close();
+		} catch (final IOException e) {
+			// close quietly
+		}
+	}
+
+
+	/**
+	 * Accepts all pending connections and distributes them to the event-loops.
+	 *
+	 * @param serverChannel the {@link ServerSocketChannel}
+	 */
+	private void acceptConnections(final ServerSocketChannel serverChannel) {
+		SocketChannel channel;
+
+		try {
+			while ((channel = serverChannel.accept()) != null) {
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				eventLoops[nextEventLoop].register(channel);
+				nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+			}
+		} catch (final IOException e) {
+			LOG.warn("Error accepting connection: " + e.getMessage());
+		}
+	}
+
+
+	/**
+	 * Registers the connections handed over to this event-loop.
+	 */
+	private void registerNewChannels() {
+		SocketChannel channel;
+
+		while ((channel = newChannels.poll()) != null) {
+			try {
+				final SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+				key.attach(new HttpConnection(this, channel, key, requestHandler, bufferPool, maxContentLength, maxPipelinedRequests, maxQueuedBuffers));
+			} catch (final IOException e) {
+				LOG.warn("Error registering connection: " + e.getMessage());
+
+				try {
+					channel.close();
+				} catch (final IOException e1) {
+					// close quietly
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Flushes the connections which have been requested to be flushed.
+	 */
+	private void flushConnections() {
+		HttpConnection connection;
+
+		while ((connection = flushes.poll()) != null) {
+			connection.flush();
+		}
+	}
+}
@@ -0,0 +1,36 @@
+/**
+   
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.eventloop.server;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import com.airepublic.microverse.core.server.IClassLoaderCreator;
+import com.airepublic.microverse.core.server.ServiceApiClassLoader;
+
+/**
+ * A {@link IClassLoaderCreator} for the {@link EventLoopServiceServer}.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class EventLoopClassLoaderCreator implements IClassLoaderCreator {
+
+	@Override
+	public URLClassLoader createClassLoader(final URL... classpathURLs) {
+		return new URLClassLoader(classpathURLs, new ServiceApiClassLoader(null));
+	}
+
+}
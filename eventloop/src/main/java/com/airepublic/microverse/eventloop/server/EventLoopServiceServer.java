@@ -0,0 +1,505 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.eventloop.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.message.BasicHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.microverse.core.common.Configuration;
+import com.airepublic.microverse.core.common.ServiceUtils;
+import com.airepublic.microverse.core.common.marshaller.MarshallerFactory;
+import com.airepublic.microverse.core.descriptor.ServiceCreateDescriptor;
+import com.airepublic.microverse.core.descriptor.ServiceCreateDescriptorList;
+import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.descriptor.ServiceStatistics;
+import com.airepublic.microverse.core.descriptor.WebCall;
+import com.airepublic.microverse.core.exception.ServiceException;
+import com.airepublic.microverse.core.exception.ServiceTimeoutException;
+import com.airepublic.microverse.core.exception.ServiceUnavailableException;
+import com.airepublic.microverse.core.server.AbstractServiceServer;
+import com.airepublic.microverse.core.server.ByteBufferPool;
+import com.airepublic.microverse.core.server.IClassLoaderCreator;
+import com.airepublic.microverse.core.server.ServiceContainer;
+import com.airepublic.microverse.core.server.ServiceResult;
+import com.airepublic.microverse.core.service.api.Priority;
+
+/**
+ * A service-server serving the same URIs as the {@link AbstractServiceServer standalone
+ * service-server} on its own event-loop HTTP/1.1 transport. A configurable number of
+ * {@link EventLoop}s (<code>microverse.server.eventloop.threads</code>) read and write all
+ * connections without blocking, pipelined requests are answered in order and service calls are
+ * processed by the worker threads of the called service (<code>microverse.server.worker.threads
+ * </code>). Request content is read into a direct buffer per event-loop and streamed results are
+ * written from pooled direct buffers. SSL is not supported by this transport.
+ * <p>
+ * The transport is built on <code>java.nio</code> only, so it shares the request limits, buffer
+ * pool and admission control of the core server and doesn't add a network framework to the
+ * dependencies of services deployed on it.
+ * </p>
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class EventLoopServiceServer extends AbstractServiceServer {
+	private final static Logger LOG = LoggerFactory.getLogger(EventLoopServiceServer.class);
+	private final static int MAX_QUEUED_RESPONSE_BUFFERS = 16;
+	private final static int MAX_PIPELINED_REQUESTS = 64;
+	private final IClassLoaderCreator classLoaderCreator = new EventLoopClassLoaderCreator();
+	private final AtomicBoolean running = new AtomicBoolean(false);
+	private int port;
+	private final boolean useSSL = false;
+	private ServerSocketChannel serverChannel;
+	private EventLoop[] eventLoops;
+	private final Set<String> serviceUris = ConcurrentHashMap.newKeySet();
+	private final WebCall heartbeatUri = WebCall.create("heartbeat", "GET");
+	private final WebCall statisticsUri = WebCall.create("statistics", "GET");
+	private final ByteBufferPool bufferPool = new ByteBufferPool(8192, 1024);
+
+
+	/**
+	 * Create a {@link EventLoopServiceServer} on the specified port.
+	 *
+	 * @param port the server port
+	 * @return the {@link EventLoopServiceServer}
+	 * @throws ServiceException
+	 */
+	public final static EventLoopServiceServer create(final int port) throws ServiceException {
+		System.setProperty(Configuration.SERVER_PORT, "" + port);
+		System.setProperty(Configuration.SERVER_USESSL, "false");
+		final EventLoopServiceServer server = new EventLoopServiceServer();
+
+		return server;
+	}
+
+
+	/**
+	 * Constructor for CDI environments. Reads <code>microverse.server.port</code> from
+	 * system-properties.
+	 */
+	private EventLoopServiceServer() {
+		try {
+			final int port = Configuration.getServerPort();
+
+			if (Configuration.getServerUseSSL()) {
+				LOG.warn("SSL is not supported by the event-loop service-server, use the standalone service-server instead!");
+			}
+
+			initialize(port);
+		} catch (final Exception e) {
+			LOG.error("Could not initialize event-loop-service-server on port: " + port, e);
+		}
+	}
+
+
+	public void initialize(final int port) throws ServiceException {
+		this.port = port;
+
+		super.init();
+
+		start();
+
+		loadConfiguredServices();
+	}
+
+
+	/**
+	 * Loads configured services from a directory found by the system property
+	 * 'microverse.service.deploy.dir'. The directory must contain a file 'microverse.config'
+	 * containing a serialized (json)list of {@link ServiceCreateDescriptor}. All configured
+	 * service-bundles must be specified relatively to the config directory.
+	 *
+	 * @throws ServiceException
+	 */
+	protected void loadConfiguredServices() throws ServiceException {
+		try {
+			final String configDirStr = Configuration.getServiceDeployDir();
+
+			if (configDirStr != null) {
+				final Path configDir = Paths.get(configDirStr);
+				final Path configFile = configDir.resolve(Configuration.getAutoDeployDeploymentConfigFilename());
+
+				if (!Files.exists(configFile)) {
+					LOG.warn("Could not auto-load services due to missing configuration file '" + Configuration.getAutoDeployDeploymentConfigFilename() + "' in: " + configDir);
+					return;
+				}
+
+				final ServiceCreateDescriptorList descriptors = MarshallerFactory.get("application/json").deserialize(Files.readAllBytes(configFile), ServiceCreateDescriptorList.class);
+
+				for (final ServiceCreateDescriptor descriptor : descriptors.getDescriptors()) {
+					LOG.info("Deploying service: " + descriptor);
+					addService(configDir.resolve(descriptor.getBundle()));
+				}
+			}
+		} catch (final Exception e) {
+			throw new ServiceException(e);
+		}
+	}
+
+
+	@Override
+	protected IClassLoaderCreator getClassLoaderCreator() {
+		return classLoaderCreator;
+	}
+
+
+	/**
+	 * Starts the event-loops and listens for connections on the server port.
+	 *
+	 * @throws ServiceException if the server could not be started
+	 */
+	public synchronized void start() throws ServiceException {
+		if (running.get()) {
+			return;
+		}
+
+		try {
+			final int threads = Math.max(1, Configuration.getServerEventLoopThreads());
+			eventLoops = new EventLoop[threads];
+
+			for (int i = 0; i < threads; i++) {
+				eventLoops[i] = new EventLoop("microverse-eventloop-" + i, this::handle, bufferPool, Configuration.getServerRequestMaxSize(), MAX_PIPELINED_REQUESTS, MAX_QUEUED_RESPONSE_BUFFERS);
+			}
+
+			serverChannel = ServerSocketChannel.open();
+			serverChannel.bind(new InetSocketAddress(port), 1024);
+			eventLoops[0].accept(serverChannel, eventLoops);
+
+			for (final EventLoop eventLoop : eventLoops) {
+				eventLoop.start();
+			}
+
+			running.set(true);
+			startAcceptingRequests();
+
+			LOG.info("Event-loop service-server listening on port " + port + " with " + threads + " event-loops");
+		} catch (final IOException e) {
+			throw new ServiceException("Service-Server could not be started on port: " + port, e);
+		}
+	}
+
+
+	/**
+	 * Restarts the service server.
+	 *
+	 * @throws ServiceException
+	 */
+	public synchronized void restart() throws ServiceException {
+		if (running.get()) {
+			shutDown();
+			start();
+		}
+	}
+
+
+	/**
+	 * Adds a service which services the specified service-class via the service-interface.
+	 *
+	 * @param bundleZip the path to the service-bundle
+	 * @throws ServiceException
+	 */
+	public void addService(final Path bundleZip) throws ServiceException {
+		try {
+			final String host = InetAddress.getLocalHost().getCanonicalHostName();
+			addService(host, port, useSSL, bundleZip);
+		} catch (final UnknownHostException e) {
+			throw new ServiceException("Localhost could not be resolved!", e);
+		}
+	}
+
+
+	@Override
+	protected WebCall getServiceWebCall(final String serviceId, final String serviceVersion) {
+		return WebCall.create(serviceId + "/" + serviceVersion, "POST");
+	}
+
+
+	@Override
+	protected WebCall getHeartbeatWebCall(final String serviceId, final String serviceVersion) {
+		return heartbeatUri;
+	}
+
+
+	@Override
+	protected void onServiceRegistration(final ServiceDescriptor serviceDescriptor) {
+		serviceUris.add("/" + serviceDescriptor.getServiceUri().getUri());
+	}
+
+
+	@Override
+	protected void onServiceUnregistration(final ServiceDescriptor serviceDescriptor) {
+		serviceUris.remove("/" + serviceDescriptor.getServiceUri().getUri());
+	}
+
+
+	/**
+	 * Handles a request on the event-loop thread. Service calls are handed over to the worker
+	 * threads of the called service, all other requests are answered right away.
+	 *
+	 * @param exchange the {@link HttpExchange}
+	 */
+	private void handle(final HttpExchange exchange) {
+		final String uri = exchange.getRequest().getUri();
+		final int query = uri.indexOf('?');
+		final String path = query < 0 ? uri : uri.substring(0, query);
+
+		if (serviceUris.contains(path)) {
+			processService(exchange, path);
+		} else if (path.equals("/" + heartbeatUri.getUri())) {
+			exchange.submitResponse(heartbeat(), null);
+		} else if (path.equals("/" + statisticsUri.getUri())) {
+			processStatistics(exchange);
+		} else {
+			exchange.submitResponse(HttpStatus.SC_NOT_FOUND, null);
+		}
+	}
+
+
+	/**
+	 * Hands the service call over to the worker threads of the called service. Requests rejected
+	 * by the service are answered with the status 503.
+	 *
+	 * @param exchange the {@link HttpExchange}
+	 * @param path the service URI
+	 */
+	private void processService(final HttpExchange exchange, final String path) {
+		final HttpRequest request = exchange.getRequest();
+		final Long deadline = ServiceUtils.getDeadline(request.getHeader(ServiceUtils.HEADER_TIMEOUT), System.nanoTime());
+		final Priority priority = Priority.parse(request.getHeader(ServiceUtils.HEADER_PRIORITY), null);
+
+		if (request.getHeader(ServiceUtils.HEADER_ONE_WAY) != null) {
+			processOneWay(exchange, path, priority);
+			return;
+		}
+
+		execute(path, priority, serviceContainer -> processServiceCall(exchange, serviceContainer, deadline), e -> {
+			LOG.warn(e.getMessage());
+			exchange.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter()));
+			exchange.submitResponse(HttpStatus.SC_SERVICE_UNAVAILABLE, e.getMessage());
+		});
+	}
+
+
+	/**
+	 * Queues the batch of one-way calls for the worker threads of the called service and answers
+	 * the request with the status 202 right away.
+	 *
+	 * @param exchange the {@link HttpExchange}
+	 * @param path the service URI
+	 * @param priority the {@link Priority} of the calls
+	 */
+	private void processOneWay(final HttpExchange exchange, final String path, final Priority priority) {
+		final String contentType = exchange.getRequest().getHeader(HttpHeaders.CONTENT_TYPE);
+
+		if (contentType == null) {
+			LOG.error("No content-type header specified in request!");
+			exchange.submitResponse(HttpStatus.SC_BAD_REQUEST, "No content-type header specified in request!");
+			return;
+		}
+
+		try {
+			processOneWay(path, contentType, new ByteArrayInputStream(exchange.getRequest().getContent()), priority);
+			exchange.submitResponse(HttpStatus.SC_ACCEPTED, null);
+		} catch (final ServiceUnavailableException e) {
+			exchange.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter()));
+			exchange.submitResponse(HttpStatus.SC_SERVICE_UNAVAILABLE, e.getMessage());
+		} catch (final Throwable e) {
+			LOG.error("Error queueing one-way calls!", e);
+			exchange.submitResponse(HttpStatus.SC_BAD_REQUEST, "Error queueing one-way calls!");
+		}
+	}
+
+
+	/**
+	 * Processes the service call and submits the response. Requests whose deadline has passed are
+	 * answered with the status 504. Results which are already serialized are sent from their byte
+	 * array, all other results are marshalled straight into pooled buffers which are streamed to
+	 * the connection.
+	 *
+	 * @param exchange the {@link HttpExchange}
+	 * @param serviceContainer the {@link ServiceContainer} the request has been admitted to
+	 * @param deadline the deadline as {@link System#nanoTime()} value or <code>null</code>
+	 */
+	private void processServiceCall(final HttpExchange exchange, final ServiceContainer serviceContainer, final Long deadline) {
+		final HttpRequest request = exchange.getRequest();
+		final String contentType = request.getHeader(HttpHeaders.CONTENT_TYPE);
+
+		if (contentType == null) {
+			LOG.error("No content-type header specified in request!");
+			exchange.submitResponse(HttpStatus.SC_BAD_REQUEST, "No content-type header specified in request!");
+			return;
+		}
+
+		// get accept header to determine how to serialize result
+		final String accept = request.getHeader(HttpHeaders.ACCEPT);
+		final String mimeType = ServiceUtils.getMimeTypeForResponse(accept != null ? new BasicHeader(HttpHeaders.ACCEPT, accept) : null);
+		final ServiceResult result;
+
+		try {
+			result = process(serviceContainer, contentType, new ByteArrayInputStream(request.getContent()), mimeType, deadline);
+		} catch (final ServiceTimeoutException e) {
+			exchange.submitResponse(HttpStatus.SC_GATEWAY_TIMEOUT, e.getMessage());
+			return;
+		} catch (final Throwable e) {
+			LOG.error("Error calling service method!", e);
+			exchange.submitResponse(HttpStatus.SC_BAD_REQUEST, "Error calling service method!");
+			return;
+		}
+
+		if (result == null) {
+			exchange.submitResponse(HttpStatus.SC_OK, null);
+			return;
+		}
+
+		if (mimeType == null) {
+			result.close();
+			LOG.error("No accept header specified in request!");
+			exchange.submitResponse(HttpStatus.SC_BAD_REQUEST, "No accept header specified in request!");
+			return;
+		}
+
+		try {
+			if (result.isSerialized()) {
+				exchange.submitResponse(HttpStatus.SC_OK, null, mimeType, result.getSerializedResult());
+			} else {
+				final OutputStream outputStream = exchange.submitStreamingResponse(HttpStatus.SC_OK, mimeType);
+
+				try {
+					result.writeTo(outputStream);
+					outputStream.close();
+				} catch (final Exception e) {
+					LOG.error("Error writing result!", e);
+
+					if (exchange.isSubmitted()) {
+						exchange.abort();
+					} else {
+						// nothing has been sent yet, so the client gets an error status instead of
+						// a broken response
+						exchange.submitResponse(HttpStatus.SC_BAD_REQUEST, "Error calling service method!");
+					}
+				}
+			}
+		} finally {
+			result.close();
+		}
+	}
+
+
+	/**
+	 * Answers the request with the {@link ServiceStatistics} of all services serialized according
+	 * to the accept header (default is JSON).
+	 *
+	 * @param exchange the {@link HttpExchange}
+	 */
+	private void processStatistics(final HttpExchange exchange) {
+		try {
+			final String mimeType = getResponseMimeType(exchange.getRequest());
+			exchange.submitResponse(HttpStatus.SC_OK, null, mimeType, MarshallerFactory.get(mimeType).serialize(getServiceStatistics()));
+		} catch (final Throwable e) {
+			LOG.error("Error serializing service statistics!", e);
+			exchange.submitResponse(HttpStatus.SC_INTERNAL_SERVER_ERROR, null);
+		}
+	}
+
+
+	/**
+	 * Gets the mime-type to serialize a response with according to the accept header of the
+	 * request.
+	 *
+	 * @param request the {@link HttpRequest}
+	 * @return the mime-type (default is JSON)
+	 */
+	private String getResponseMimeType(final HttpRequest request) {
+		final String accept = request.getHeader(HttpHeaders.ACCEPT);
+		final String mimeType = ServiceUtils.getMimeTypeForResponse(accept != null ? new BasicHeader(HttpHeaders.ACCEPT, accept) : null);
+
+		if (mimeType == null || MarshallerFactory.get(mimeType) == null) {
+			return "application/json";
+		}
+
+		return mimeType;
+	}
+
+
+	@Override
+	public Integer heartbeat() {
+		return HttpStatus.SC_OK;
+	}
+
+
+	/**
+	 * Returns <code>true</code> if the server is running and has not been killed.
+	 *
+	 * @return <code>true</code> if the server is running and has not been killed
+	 */
+	public boolean isRunning() {
+		return running.get();
+	}
+
+
+	/**
+	 * Gets the port the server listens on.
+	 *
+	 * @return the port
+	 */
+	public int getPort() {
+		return port;
+	}
+
+
+	/**
+	 * Stops the server and all open sub-processes and disconnects. No new connections are accepted
+	 * and the services finish their in-flight requests before they are closed and the event-loops
+	 * are stopped.
+	 */
+	public synchronized void shutDown() {
+		try {
+			if (serverChannel != null) {
+				serverChannel.close();
+			}
+		} catch (final Exception e) {
+			LOG.warn("Could not stop listening for new connections!", e);
+		}
+
+		try {
+			close();
+		} catch (final Exception e) {
+			LOG.error("Error while shutting down: could not close all services cleanly!", e);
+		}
+
+		running.set(false);
+
+		if (eventLoops != null) {
+			for (final EventLoop eventLoop : eventLoops) {
+				eventLoop.stop();
+			}
+		}
+	}
+}
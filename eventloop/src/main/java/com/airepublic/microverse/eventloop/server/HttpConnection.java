@@ -0,0 +1,223 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.eventloop.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+import org.apache.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.airepublic.microverse.core.server.ByteBufferPool;
+import com.airepublic.microverse.eventloop.server.HttpRequestDecoder.HttpStatusException;
+
+/**
+ * A HTTP/1.1 connection served by an {@link EventLoop}. All methods except {@link #flushLater()}
+ * are only called by the event-loop thread. Requests are decoded as they arrive and handed to the
+ * request handler, pipelined requests are handled concurrently and their {@link HttpExchange
+ * exchanges} are kept in order to write the responses in the order of the requests. Reading is
+ * suspended while the maximum number of exchanges is pending.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class HttpConnection {
+	private final static Logger LOG = LoggerFactory.getLogger(HttpConnection.class);
+	private final EventLoop eventLoop;
+	private final SocketChannel channel;
+	private final SelectionKey key;
+	private final HttpRequestDecoder decoder;
+	private final Consumer<HttpExchange> requestHandler;
+	private final ByteBufferPool bufferPool;
+	private final int maxPipelinedRequests;
+	private final int maxQueuedBuffers;
+	private final ArrayDeque<HttpExchange> exchanges = new ArrayDeque<>();
+	private boolean inputShutdown;
+	private boolean closed;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param eventLoop the {@link EventLoop} serving the connection
+	 * @param channel the {@link SocketChannel}
+	 * @param key the {@link SelectionKey} of the channel
+	 * @param requestHandler the handler for the requests
+	 * @param bufferPool the {@link ByteBufferPool} for streaming responses
+	 * @param maxContentLength the maximum content length of a request
+	 * @param maxPipelinedRequests the maximum number of pending exchanges
+	 * @param maxQueuedBuffers the maximum number of pooled buffers queued per streaming response
+	 */
+	HttpConnection(final EventLoop eventLoop, final SocketChannel channel, final SelectionKey key, final Consumer<HttpExchange> requestHandler, final ByteBufferPool bufferPool, final long maxContentLength, final int maxPipelinedRequests, final int maxQueuedBuffers) {
+		this.eventLoop = eventLoop;
+		this.channel = channel;
+		this.key = key;
+		this.requestHandler = requestHandler;
+		this.bufferPool = bufferPool;
+		this.maxPipelinedRequests = maxPipelinedRequests;
+		this.maxQueuedBuffers = maxQueuedBuffers;
+		decoder = new HttpRequestDecoder(maxContentLength);
+	}
+
+
+	/**
+	 * Reads from the channel into the read buffer of the event-loop and handles all requests
+	 * decoded from the input.
+	 *
+	 * @param readBuffer the read buffer of the event-loop
+	 */
+	void read(final ByteBuffer readBuffer) {
+		try {
+			readBuffer.clear();
+
+			if (channel.read(readBuffer) < 0) {
+				close();
+				return;
+			}
+
+			readBuffer.flip();
+
+			while (readBuffer.hasRemaining() && !inputShutdown) {
+				final HttpRequest request;
+
+				try {
+					request = decoder.decode(readBuffer);
+				} catch (final HttpStatusException e) {
+					inputShutdown = true;
+					final HttpExchange exchange = new HttpExchange(this, null, bufferPool, maxQueuedBuffers);
+					exchanges.add(exchange);
+					exchange.submitResponse(e.getStatus(), e.getMessage());
+					break;
+				}
+
+				if (request == null) {
+					break;
+				}
+
+				final HttpExchange exchange = new HttpExchange(this, request, bufferPool, maxQueuedBuffers);
+				exchanges.add(exchange);
+				inputShutdown = !exchange.isKeepAlive();
+
+				try {
+					requestHandler.accept(exchange);
+				} catch (final Exception e) {
+					LOG.error("Error handling request: " + request, e);
+					exchange.submitResponse(HttpStatus.SC_INTERNAL_SERVER_ERROR, null);
+				}
+			}
+
+			flush();
+		} catch (final IOException e) {
+			LOG.debug("Error reading from connection: " + e.getMessage());
+			close();
+		}
+	}
+
+
+	/**
+	 * Writes the queued buffers of the exchanges in order until the channel doesn't accept more
+	 * data or the next exchange has no queued buffers, and updates the interest of the connection.
+	 */
+	void flush() {
+		if (closed) {
+			return;
+		}
+
+		try {
+			boolean blocked = false;
+
+			while (!exchanges.isEmpty() && !blocked) {
+				final HttpExchange exchange = exchanges.peek();
+				ByteBuffer buffer;
+
+				while ((buffer = exchange.peek()) != null) {
+					channel.write(buffer);
+
+					if (buffer.hasRemaining()) {
+						blocked = true;
+						break;
+					}
+
+					exchange.written();
+				}
+
+				if (blocked || !exchange.isComplete() || exchange.peek() != null) {
+					break;
+				}
+
+				exchanges.poll();
+
+				if (exchange.isClosingConnection()) {
+					close();
+					return;
+				}
+			}
+
+			int interestOps = 0;
+
+			if (blocked) {
+				interestOps |= SelectionKey.OP_WRITE;
+			}
+
+			if (!inputShutdown && exchanges.size() < maxPipelinedRequests) {
+				interestOps |= SelectionKey.OP_READ;
+			}
+
+			if (key.interestOps() != interestOps) {
+				key.interestOps(interestOps);
+			}
+		} catch (final IOException e) {
+			LOG.debug("Error writing to connection: " + e.getMessage());
+			close();
+		}
+	}
+
+
+	/**
+	 * Requests the event-loop to flush this connection. May be called by any thread.
+	 */
+	void flushLater() {
+		eventLoop.flushLater(this);
+	}
+
+
+	/**
+	 * Closes the connection and cancels all pending exchanges.
+	 */
+	void close() {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+
+		for (final HttpExchange exchange : exchanges) {
+			exchange.cancel();
+		}
+
+		exchanges.clear();
+		key.cancel();
+
+		try {
+			channel.close();
+		} catch (final IOException e) {
+			// close quietly
+		}
+	}
+}
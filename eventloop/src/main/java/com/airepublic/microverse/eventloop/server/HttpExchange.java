@@ -0,0 +1,511 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.eventloop.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+
+import com.airepublic.microverse.core.server.ByteBufferPool;
+
+/**
+ * A request and its response on a {@link HttpConnection}. The response may be submitted from any
+ * thread and is queued as buffers which the event-loop writes to the channel once all responses
+ * to preceding requests of the connection have been written, so pipelined requests are answered
+ * in order even if they are processed concurrently. Streaming responses are written chunked from
+ * pooled buffers and the writing thread is blocked while the maximum number of buffers is queued.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class HttpExchange {
+	private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.ISO_8859_1);
+	private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+	private final HttpConnection connection;
+	private final HttpRequest request;
+	private final boolean keepAlive;
+	private final ByteBufferPool bufferPool;
+	private final int maxQueuedBuffers;
+	private final Map<String, String> headers = new LinkedHashMap<>();
+	private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<>();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition writable = lock.newCondition();
+	private ChunkedOutputStream stream;
+	private int streamStatus;
+	private int queuedBuffers;
+	private boolean submitted;
+	private boolean complete;
+	private boolean aborted;
+	private boolean cancelled;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param connection the {@link HttpConnection}
+	 * @param request the {@link HttpRequest} or <code>null</code> if the request could not be
+	 *        decoded
+	 * @param bufferPool the {@link ByteBufferPool} for streaming responses
+	 * @param maxQueuedBuffers the maximum number of pooled buffers queued for writing
+	 */
+	HttpExchange(final HttpConnection connection, final HttpRequest request, final ByteBufferPool bufferPool, final int maxQueuedBuffers) {
+		this.connection = connection;
+		this.request = request;
+		keepAlive = request != null && request.isKeepAlive();
+		this.bufferPool = bufferPool;
+		this.maxQueuedBuffers = maxQueuedBuffers;
+	}
+
+
+	/**
+	 * Gets the {@link HttpRequest}.
+	 *
+	 * @return the {@link HttpRequest}
+	 */
+	public HttpRequest getRequest() {
+		return request;
+	}
+
+
+	/**
+	 * Checks whether the connection is kept open after the response.
+	 *
+	 * @return <code>true</code> if the connection is kept alive
+	 */
+	public boolean isKeepAlive() {
+		return keepAlive;
+	}
+
+
+	/**
+	 * Sets a header of the response. Headers must be set before the response is submitted.
+	 *
+	 * @param name the header name
+	 * @param value the header value
+	 */
+	public void setHeader(final String name, final String value) {
+		headers.put(name, value);
+	}
+
+
+	/**
+	 * Submits a response without content.
+	 *
+	 * @param status the HTTP status
+	 * @param reason the reason phrase or <code>null</code> for the default
+	 */
+	public void submitResponse(final int status, final String reason) {
+		submitResponse(status, reason, null, null);
+	}
+
+
+	/**
+	 * Submits a response with the specified content.
+	 *
+	 * @param status the HTTP status
+	 * @param reason the reason phrase or <code>null</code> for the default
+	 * @param contentType the content-type or <code>null</code> if there is no content
+	 * @param content the content or <code>null</code>
+	 */
+	public void submitResponse(final int status, final String reason, final String contentType, final byte[] content) {
+		if (stream != null && !isSubmitted()) {
+			// replaces a streaming response which failed before its first chunk
+			stream.discard();
+			stream = null;
+			headers.remove("Content-Type");
+			headers.remove("Transfer-Encoding");
+		}
+
+		if (contentType != null) {
+			headers.put("Content-Type", contentType);
+		}
+
+		headers.put("Content-Length", String.valueOf(content != null ? content.length : 0));
+
+		if (content != null && content.length > 0) {
+			enqueue(true, encodeHead(status, reason), ByteBuffer.wrap(content));
+		} else {
+			enqueue(true, encodeHead(status, reason));
+		}
+	}
+
+
+	/**
+	 * Submits a response whose content is written chunked to the returned {@link OutputStream}.
+	 * The status and headers are only queued with the first chunk, so until then
+	 * ({@link #isSubmitted()}) a failure can still be answered with another response. The response
+	 * is complete when the stream is closed. If the content can't be written completely the
+	 * exchange must be {@link #abort() aborted}.
+	 *
+	 * @param status the HTTP status
+	 * @param contentType the content-type
+	 * @return the {@link OutputStream} to write the content to
+	 * @throws IllegalStateException if the response has already been submitted
+	 */
+	public OutputStream submitStreamingResponse(final int status, final String contentType) {
+		if (stream != null || isSubmitted()) {
+			throw new IllegalStateException("Response has already been submitted!");
+		}
+
+		headers.put("Content-Type", contentType);
+		headers.put("Transfer-Encoding", "chunked");
+		streamStatus = status;
+		stream = new ChunkedOutputStream();
+
+		return stream;
+	}
+
+
+	/**
+	 * Checks whether the response has been submitted. A streaming response is submitted with its
+	 * first chunk.
+	 *
+	 * @return <code>true</code> if the response has been submitted
+	 */
+	public boolean isSubmitted() {
+		lock.lock();
+
+		try {
+			return submitted;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Aborts the response. The connection is closed after the already queued buffers have been
+	 * written, so the client notices the incomplete response.
+	 */
+	public void abort() {
+		if (stream != null) {
+			stream.discard();
+		}
+
+		lock.lock();
+
+		try {
+			aborted = true;
+			complete = true;
+		} finally {
+			lock.unlock();
+		}
+
+		connection.flushLater();
+	}
+
+
+	/**
+	 * Encodes the status line and the headers of the response.
+	 *
+	 * @param status the HTTP status
+	 * @param reason the reason phrase or <code>null</code> for the default
+	 * @return the buffer containing the response head
+	 */
+	private ByteBuffer encodeHead(final int status, final String reason) {
+		final StringBuilder head = new StringBuilder(128);
+		final String reasonPhrase = reason != null ? reason : EnglishReasonPhraseCatalog.INSTANCE.getReason(status, Locale.ENGLISH);
+		head.append("HTTP/1.1 ").append(status).append(' ').append(reasonPhrase != null ? reasonPhrase.replaceAll("[\r\n]", " ") : "").append("\r\n");
+
+		if (!keepAlive) {
+			headers.put("Connection", "close");
+		}
+
+		for (final Map.Entry<String, String> header : headers.entrySet()) {
+			head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+		}
+
+		head.append("\r\n");
+
+		return ByteBuffer.wrap(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+
+	/**
+	 * Queues the buffers for writing and notifies the event-loop. If the maximum number of pooled
+	 * buffers is queued, the calling thread is blocked until they have been written.
+	 *
+	 * @param last flag whether these are the last buffers of the response
+	 * @param data the buffers
+	 * @throws IllegalStateException if the response has already been submitted
+	 */
+	private void enqueue(final boolean last, final ByteBuffer... data) {
+		lock.lock();
+
+		try {
+			if (submitted) {
+				throw new IllegalStateException("Response has already been submitted!");
+			}
+
+			submitted = true;
+
+			if (cancelled) {
+				return;
+			}
+
+			for (final ByteBuffer buffer : data) {
+				buffers.add(buffer);
+			}
+
+			complete = last;
+		} finally {
+			lock.unlock();
+		}
+
+		connection.flushLater();
+	}
+
+
+	/**
+	 * Queues a chunk of a streaming response and blocks while the maximum number of pooled
+	 * buffers is queued. The status and headers are queued with the first chunk.
+	 *
+	 * @param chunk the flipped pooled buffer holding the chunk
+	 * @param last flag whether the last chunk should follow
+	 * @throws IOException if the connection has been closed
+	 */
+	private void enqueueChunk(final ByteBuffer chunk, final boolean last) throws IOException {
+		lock.lock();
+
+		try {
+			while (queuedBuffers >= maxQueuedBuffers && !cancelled) {
+				writable.await();
+			}
+
+			if (cancelled) {
+				if (chunk != null) {
+					bufferPool.release(chunk);
+				}
+
+				throw new IOException("Connection has been closed!");
+			}
+
+			if (!submitted) {
+				submitted = true;
+				buffers.add(encodeHead(streamStatus, null));
+			}
+
+			if (chunk != null && chunk.hasRemaining()) {
+				buffers.add(ByteBuffer.wrap((Integer.toHexString(chunk.remaining()) + "\r\n").getBytes(StandardCharsets.ISO_8859_1)));
+				buffers.add(chunk);
+				buffers.add(ByteBuffer.wrap(CRLF));
+				queuedBuffers++;
+			} else if (chunk != null) {
+				bufferPool.release(chunk);
+			}
+
+			if (last) {
+				buffers.add(ByteBuffer.wrap(LAST_CHUNK));
+				complete = true;
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing the response!", e);
+		} finally {
+			lock.unlock();
+		}
+
+		connection.flushLater();
+	}
+
+
+	/**
+	 * Gets the next buffer to write. Called by the event-loop only.
+	 *
+	 * @return the next buffer or <code>null</code> if none is queued
+	 */
+	ByteBuffer peek() {
+		lock.lock();
+
+		try {
+			return buffers.peek();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Removes the buffer which has been written completely and returns it to the pool. Called by
+	 * the event-loop only.
+	 */
+	void written() {
+		lock.lock();
+
+		try {
+			final ByteBuffer buffer = buffers.poll();
+
+			if (buffer != null && buffer.isDirect()) {
+				bufferPool.release(buffer);
+				queuedBuffers--;
+				writable.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Checks whether all buffers of the response have been queued.
+	 *
+	 * @return <code>true</code> if the response is complete
+	 */
+	boolean isComplete() {
+		lock.lock();
+
+		try {
+			return complete;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Checks whether the connection must be closed after this response.
+	 *
+	 * @return <code>true</code> if the connection must be closed
+	 */
+	boolean isClosingConnection() {
+		lock.lock();
+
+		try {
+			return aborted || !keepAlive;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Cancels the exchange as the connection has been closed. The queued buffers are returned to
+	 * the pool and a thread writing the response is released.
+	 */
+	void cancel() {
+		lock.lock();
+
+		try {
+			cancelled = true;
+			complete = true;
+
+			for (final ByteBuffer buffer : buffers) {
+				if (buffer.isDirect()) {
+					bufferPool.release(buffer);
+				}
+			}
+
+			buffers.clear();
+			writable.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes the content into pooled buffers which are queued as chunks whenever they are full or
+	 * the stream is flushed.
+	 */
+	private class ChunkedOutputStream extends OutputStream {
+		private ByteBuffer buffer;
+		private boolean closed;
+
+
+		@Override
+		public void write(final int b) throws IOException {
+			ensureBuffer();
+			buffer.put((byte) b);
+
+			if (!buffer.hasRemaining()) {
+				flush();
+			}
+		}
+
+
+		@Override
+		public void write(final byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				ensureBuffer();
+				final int length = Math.min(len, buffer.remaining());
+				buffer.put(b, off, length);
+				off += length;
+				len -= length;
+
+				if (!buffer.hasRemaining()) {
+					flush();
+				}
+			}
+		}
+
+
+		@Override
+		public void flush() throws IOException {
+			if (buffer != null && buffer.position() > 0) {
+				buffer.flip();
+				final ByteBuffer chunk = buffer;
+				buffer = null;
+				enqueueChunk(chunk, false);
+			}
+		}
+
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+
+				if (buffer != null) {
+					buffer.flip();
+				}
+
+				final ByteBuffer chunk = buffer;
+				buffer = null;
+				enqueueChunk(chunk, true);
+			}
+		}
+
+
+		/**
+		 * Closes the stream without queueing anything and returns the buffer to the pool.
+		 */
+		void discard() {
+			closed = true;
+
+			if (buffer != null) {
+				bufferPool.release(buffer);
+				buffer = null;
+			}
+		}
+
+
+		private void ensureBuffer() throws IOException {
+			if (closed) {
+				throw new IOException("Stream has been closed!");
+			}
+
+			if (buffer == null) {
+				buffer = bufferPool.acquire();
+			}
+		}
+	}
+}
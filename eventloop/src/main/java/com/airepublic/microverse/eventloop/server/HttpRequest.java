@@ -0,0 +1,142 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.eventloop.server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A HTTP/1.1 request decoded by the {@link HttpRequestDecoder} including its complete content.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class HttpRequest {
+	private static final byte[] NO_CONTENT = new byte[0];
+	private final String method;
+	private final String uri;
+	private final String version;
+	private final Map<String, String> headers = new HashMap<>();
+	private byte[] content = NO_CONTENT;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param method the request method
+	 * @param uri the request URI
+	 * @param version the protocol version
+	 */
+	public HttpRequest(final String method, final String uri, final String version) {
+		this.method = method;
+		this.uri = uri;
+		this.version = version;
+	}
+
+
+	/**
+	 * Gets the request method.
+	 *
+	 * @return the request method
+	 */
+	public String getMethod() {
+		return method;
+	}
+
+
+	/**
+	 * Gets the request URI.
+	 *
+	 * @return the request URI
+	 */
+	public String getUri() {
+		return uri;
+	}
+
+
+	/**
+	 * Gets the protocol version.
+	 *
+	 * @return the protocol version
+	 */
+	public String getVersion() {
+		return version;
+	}
+
+
+	/**
+	 * Gets the value of the header with the specified name (case-insensitive).
+	 *
+	 * @param name the header name
+	 * @return the header value or <code>null</code>
+	 */
+	public String getHeader(final String name) {
+		return headers.get(name.toLowerCase());
+	}
+
+
+	/**
+	 * Sets the header with the specified name. Repeated headers are joined by a comma.
+	 *
+	 * @param name the header name
+	 * @param value the header value
+	 */
+	void addHeader(final String name, final String value) {
+		headers.merge(name.toLowerCase(), value, (v1, v2) -> v1 + "," + v2);
+	}
+
+
+	/**
+	 * Gets the content of the request.
+	 *
+	 * @return the content (never <code>null</code>)
+	 */
+	public byte[] getContent() {
+		return content;
+	}
+
+
+	/**
+	 * Sets the content of the request.
+	 *
+	 * @param content the content
+	 */
+	void setContent(final byte[] content) {
+		this.content = content;
+	}
+
+
+	/**
+	 * Checks whether the connection should be kept open after the response to this request.
+	 * HTTP/1.1 connections are persistent unless the client asks to close them, HTTP/1.0
+	 * connections only if the client asks to keep them alive.
+	 *
+	 * @return <code>true</code> if the connection should be kept alive
+	 */
+	public boolean isKeepAlive() {
+		final String connection = getHeader("Connection");
+
+		if ("HTTP/1.0".equals(version)) {
+			return connection != null && connection.equalsIgnoreCase("keep-alive");
+		}
+
+		return connection == null || !connection.equalsIgnoreCase("close");
+	}
+
+
+	@Override
+	public String toString() {
+		return method + " " + uri + " " + version;
+	}
+}
@@ -0,0 +1,216 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.eventloop.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.http.HttpStatus;
+
+/**
+ * Incremental decoder for HTTP/1.1 requests of a connection. The bytes read from the channel are
+ * passed to {@link #decode(ByteBuffer)} in the order they were received and complete requests are
+ * returned one by one, so pipelined requests are decoded from the same input. The content of a
+ * request must be delimited by a <code>Content-Length</code> header, chunked requests are refused.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class HttpRequestDecoder {
+	private static final int MAX_HEAD_SIZE = 16 * 1024;
+	private static final int INITIAL_CONTENT_SIZE = 8 * 1024;
+	private final long maxContentLength;
+	private byte[] head = new byte[1024];
+	private int headLength;
+	private HttpRequest request;
+	private byte[] content;
+	private int contentLength;
+	private int expectedContentLength;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxContentLength the maximum content length of a request
+	 */
+	public HttpRequestDecoder(final long maxContentLength) {
+		this.maxContentLength = maxContentLength;
+	}
+
+
+	/**
+	 * Decodes the next request from the input. The input is consumed up to the end of the request
+	 * or completely if the request is not complete yet, in which case the decoding is continued
+	 * with the next input.
+	 *
+	 * @param in the input
+	 * @return the complete {@link HttpRequest} or <code>null</code> if more input is needed
+	 * @throws HttpStatusException if the request is invalid and must be answered with an error
+	 *         status, the decoder can't be used afterwards
+	 */
+	public HttpRequest decode(final ByteBuffer in) throws HttpStatusException {
+		if (request == null) {
+			while (request == null && in.hasRemaining()) {
+				if (headLength == head.length) {
+					if (head.length >= MAX_HEAD_SIZE) {
+						throw new HttpStatusException(HttpStatus.SC_BAD_REQUEST, "Request head too large");
+					}
+
+					head = Arrays.copyOf(head, head.length * 2);
+				}
+
+				final byte b = in.get();
+				head[headLength++] = b;
+
+				if (b == '\n') {
+					if (headLength <= 2) {
+						// ignore empty lines between pipelined requests
+						headLength = 0;
+					} else if (head[headLength - 2] == '\n' || head[headLength - 2] == '\r' && head[headLength - 3] == '\n') {
+						request = parseHead();
+						headLength = 0;
+					}
+				}
+			}
+
+			if (request == null) {
+				return null;
+			}
+		}
+
+		if (content != null) {
+			while (in.hasRemaining() && contentLength < expectedContentLength) {
+				// the buffer grows with the received content, so a large Content-Length alone
+				// doesn't allocate memory
+				if (contentLength == content.length) {
+					content = Arrays.copyOf(content, (int) Math.min(expectedContentLength, content.length * 2L));
+				}
+
+				final int length = Math.min(in.remaining(), content.length - contentLength);
+				in.get(content, contentLength, length);
+				contentLength += length;
+			}
+
+			if (contentLength < expectedContentLength) {
+				return null;
+			}
+
+			request.setContent(content);
+		}
+
+		final HttpRequest complete = request;
+		request = null;
+		content = null;
+		contentLength = 0;
+		expectedContentLength = 0;
+
+		return complete;
+	}
+
+
+	/**
+	 * Parses the request line and headers and prepares reading the content.
+	 *
+	 * @return the {@link HttpRequest} without content
+	 * @throws HttpStatusException if the request is invalid
+	 */
+	private HttpRequest parseHead() throws HttpStatusException {
+		final String[] lines = new String(head, 0, headLength, StandardCharsets.ISO_8859_1).split("\r?\n");
+		final String[] requestLine = lines[0].split(" ");
+
+		if (requestLine.length != 3) {
+			throw new HttpStatusException(HttpStatus.SC_BAD_REQUEST, "Invalid request line");
+		}
+
+		if (!requestLine[2].startsWith("HTTP/1.")) {
+			throw new HttpStatusException(HttpStatus.SC_HTTP_VERSION_NOT_SUPPORTED, "HTTP version not supported");
+		}
+
+		final HttpRequest request = new HttpRequest(requestLine[0], requestLine[1], requestLine[2]);
+
+		for (int i = 1; i < lines.length; i++) {
+			final int separator = lines[i].indexOf(':');
+
+			if (separator <= 0) {
+				throw new HttpStatusException(HttpStatus.SC_BAD_REQUEST, "Invalid header");
+			}
+
+			request.addHeader(lines[i].substring(0, separator).trim(), lines[i].substring(separator + 1).trim());
+		}
+
+		final String transferEncoding = request.getHeader("Transfer-Encoding");
+
+		if (transferEncoding != null && !transferEncoding.equalsIgnoreCase("identity")) {
+			throw new HttpStatusException(HttpStatus.SC_LENGTH_REQUIRED, "Content-Length required");
+		}
+
+		final String length = request.getHeader("Content-Length");
+
+		if (length != null) {
+			final long contentLength;
+
+			try {
+				contentLength = Long.parseLong(length);
+			} catch (final NumberFormatException e) {
+				throw new HttpStatusException(HttpStatus.SC_BAD_REQUEST, "Invalid Content-Length");
+			}
+
+			if (contentLength < 0) {
+				throw new HttpStatusException(HttpStatus.SC_BAD_REQUEST, "Invalid Content-Length");
+			}
+
+			if (contentLength > maxContentLength || contentLength > Integer.MAX_VALUE - 8) {
+				throw new HttpStatusException(HttpStatus.SC_REQUEST_TOO_LONG, "Request content exceeds " + maxContentLength + " bytes");
+			}
+
+			if (contentLength > 0) {
+				expectedContentLength = (int) contentLength;
+				content = new byte[Math.min(expectedContentLength, INITIAL_CONTENT_SIZE)];
+			}
+		}
+
+		return request;
+	}
+
+	/**
+	 * Signals a request which can't be decoded and must be answered with the status.
+	 */
+	public static class HttpStatusException extends Exception {
+		private static final long serialVersionUID = -2969380418738003493L;
+		private final int status;
+
+
+		/**
+		 * Constructor.
+		 *
+		 * @param status the HTTP status to answer with
+		 * @param message the reason
+		 */
+		public HttpStatusException(final int status, final String message) {
+			super(message);
+			this.status = status;
+		}
+
+
+		/**
+		 * Gets the HTTP status to answer with.
+		 *
+		 * @return the HTTP status
+		 */
+		public int getStatus() {
+			return status;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.eventloop.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.airepublic.microverse.core.server.ByteBufferPool;
+
+public class HttpExchangeTest {
+	private final ByteBufferPool bufferPool = new ByteBufferPool(1024, 16);
+	private EventLoop eventLoop;
+	private HttpConnection connection;
+
+
+	@Before
+	public void setUp() throws Exception {
+		eventLoop = new EventLoop("test", exchange -> {
+		}, bufferPool, 1024, 16, 16);
+		connection = new HttpConnection(eventLoop, null, null, exchange -> {
+		}, bufferPool, 1024, 16, 16);
+	}
+
+
+	@After
+	public void tearDown() {
+		eventLoop.stop();
+	}
+
+
+	@Test
+	public void testStreamingResponseIsSubmittedWithFirstChunk() throws Exception {
+		final HttpExchange exchange = createExchange();
+		final OutputStream out = exchange.submitStreamingResponse(200, "application/json");
+
+		assertThat(exchange.isSubmitted()).isFalse();
+		assertThat(exchange.peek()).isNull();
+
+		out.write("{}".getBytes(StandardCharsets.ISO_8859_1));
+		out.close();
+
+		assertThat(exchange.isSubmitted()).isTrue();
+		assertThat(exchange.isComplete()).isTrue();
+		assertThat(drain(exchange)).startsWith("HTTP/1.1 200 OK\r\n").contains("Transfer-Encoding: chunked\r\n").endsWith("2\r\n{}\r\n0\r\n\r\n");
+	}
+
+
+	@Test
+	public void testFailedStreamingResponseIsReplacedBeforeFirstChunk() throws Exception {
+		final HttpExchange exchange = createExchange();
+		final OutputStream out = exchange.submitStreamingResponse(200, "application/json");
+		out.write('{');
+
+		exchange.submitResponse(400, "Error calling service method!");
+
+		final String response = drain(exchange);
+		assertThat(response).startsWith("HTTP/1.1 400 Error calling service method!\r\n").contains("Content-Length: 0\r\n");
+		assertThat(response).doesNotContain("Transfer-Encoding").doesNotContain("Content-Type");
+		assertThat(exchange.isComplete()).isTrue();
+	}
+
+
+	@Test
+	public void testAbortAfterFirstChunkClosesConnection() throws Exception {
+		final HttpExchange exchange = createExchange();
+		final OutputStream out = exchange.submitStreamingResponse(200, "application/json");
+		out.write('{');
+		out.flush();
+
+		exchange.abort();
+
+		assertThat(drain(exchange)).startsWith("HTTP/1.1 200 OK\r\n").endsWith("1\r\n{\r\n");
+		assertThat(exchange.isClosingConnection()).isTrue();
+	}
+
+
+	private HttpExchange createExchange() {
+		return new HttpExchange(connection, new HttpRequest("POST", "/service/1.0", "HTTP/1.1"), bufferPool, 16);
+	}
+
+
+	/**
+	 * Removes all queued buffers like the event-loop writing them.
+	 *
+	 * @param exchange the {@link HttpExchange}
+	 * @return the queued bytes
+	 */
+	private String drain(final HttpExchange exchange) {
+		final StringBuilder response = new StringBuilder();
+		ByteBuffer buffer;
+
+		while ((buffer = exchange.peek()) != null) {
+			while (buffer.hasRemaining()) {
+				response.append((char) (buffer.get() & 0xFF));
+			}
+
+			exchange.written();
+		}
+
+		return response.toString();
+	}
+}
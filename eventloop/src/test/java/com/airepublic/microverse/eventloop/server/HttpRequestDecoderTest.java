@@ -0,0 +1,125 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.eventloop.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.http.HttpStatus;
+import org.junit.Test;
+
+import com.airepublic.microverse.eventloop.server.HttpRequestDecoder.HttpStatusException;
+
+public class HttpRequestDecoderTest {
+	private final HttpRequestDecoder decoder = new HttpRequestDecoder(64 * 1024);
+
+
+	@Test
+	public void testDecodePipelinedRequests() throws Exception {
+		final ByteBuffer in = bytes("GET /heartbeat HTTP/1.1\r\nHost: localhost\r\n\r\n" + "\r\n" + "POST /service/1.0 HTTP/1.1\r\nContent-Type: application/json\r\nContent-Length: 5\r\n\r\nhello" + "GET /statistics HTTP/1.1\r\n\r\n");
+
+		final HttpRequest first = decoder.decode(in);
+		final HttpRequest second = decoder.decode(in);
+		final HttpRequest third = decoder.decode(in);
+
+		assertThat(first.getMethod()).isEqualTo("GET");
+		assertThat(first.getUri()).isEqualTo("/heartbeat");
+		assertThat(first.getHeader("host")).isEqualTo("localhost");
+		assertThat(second.getUri()).isEqualTo("/service/1.0");
+		assertThat(second.getHeader("Content-Type")).isEqualTo("application/json");
+		assertThat(new String(second.getContent(), StandardCharsets.ISO_8859_1)).isEqualTo("hello");
+		assertThat(third.getUri()).isEqualTo("/statistics");
+		assertThat(decoder.decode(in)).isNull();
+		assertThat(in.hasRemaining()).isFalse();
+	}
+
+
+	@Test
+	public void testDecodePartialReads() throws Exception {
+		final byte[] request = "POST /service/1.0 HTTP/1.1\nContent-Length: 3\n\nabc".getBytes(StandardCharsets.ISO_8859_1);
+
+		for (int i = 0; i < request.length - 1; i++) {
+			assertThat(decoder.decode(ByteBuffer.wrap(request, i, 1))).isNull();
+		}
+
+		final HttpRequest decoded = decoder.decode(ByteBuffer.wrap(request, request.length - 1, 1));
+
+		assertThat(decoded.getUri()).isEqualTo("/service/1.0");
+		assertThat(new String(decoded.getContent(), StandardCharsets.ISO_8859_1)).isEqualTo("abc");
+	}
+
+
+	@Test
+	public void testDecodeContentLargerThanInitialBuffer() throws Exception {
+		final byte[] content = new byte[40000];
+		Arrays.fill(content, (byte) 'x');
+
+		assertThat(decoder.decode(bytes("POST /service/1.0 HTTP/1.1\r\nContent-Length: " + content.length + "\r\n\r\n"))).isNull();
+
+		HttpRequest decoded = null;
+
+		for (int offset = 0; offset < content.length; offset += 3000) {
+			assertThat(decoded).isNull();
+			decoded = decoder.decode(ByteBuffer.wrap(content, offset, Math.min(3000, content.length - offset)));
+		}
+
+		assertThat(decoded.getContent()).isEqualTo(content);
+	}
+
+
+	@Test
+	public void testRejectOversizeContent() throws Exception {
+		assertStatus("POST /service/1.0 HTTP/1.1\r\nContent-Length: 65537\r\n\r\n", HttpStatus.SC_REQUEST_TOO_LONG);
+		assertStatus("POST /service/1.0 HTTP/1.1\r\nContent-Length: 99999999999\r\n\r\n", HttpStatus.SC_REQUEST_TOO_LONG);
+	}
+
+
+	@Test
+	public void testRejectOversizeHead() throws Exception {
+		final char[] value = new char[20000];
+		Arrays.fill(value, 'x');
+
+		assertStatus("GET /heartbeat HTTP/1.1\r\nX-Large: " + new String(value) + "\r\n\r\n", HttpStatus.SC_BAD_REQUEST);
+	}
+
+
+	@Test
+	public void testRejectMalformedHeads() throws Exception {
+		assertStatus("GET /heartbeat\r\n\r\n", HttpStatus.SC_BAD_REQUEST);
+		assertStatus("GET /heartbeat HTTP/2.0\r\n\r\n", HttpStatus.SC_HTTP_VERSION_NOT_SUPPORTED);
+		assertStatus("GET /heartbeat HTTP/1.1\r\nNoSeparator\r\n\r\n", HttpStatus.SC_BAD_REQUEST);
+		assertStatus("POST /service/1.0 HTTP/1.1\r\nContent-Length: abc\r\n\r\n", HttpStatus.SC_BAD_REQUEST);
+		assertStatus("POST /service/1.0 HTTP/1.1\r\nContent-Length: -1\r\n\r\n", HttpStatus.SC_BAD_REQUEST);
+		assertStatus("POST /service/1.0 HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n", HttpStatus.SC_LENGTH_REQUIRED);
+	}
+
+
+	private void assertStatus(final String request, final int status) {
+		try {
+			new HttpRequestDecoder(64 * 1024).decode(bytes(request));
+			fail("Request should have been rejected: " + request);
+		} catch (final HttpStatusException e) {
+			assertThat(e.getStatus()).isEqualTo(status);
+		}
+	}
+
+
+	private ByteBuffer bytes(final String s) {
+		return ByteBuffer.wrap(s.getBytes(StandardCharsets.ISO_8859_1));
+	}
+}
@@ -18,6 +18,7 @@ import java.net.URL;
 import java.net.URLClassLoader;
 
 import com.airepublic.microverse.core.server.IClassLoaderCreator;
+import com.airepublic.microverse.core.server.ServiceApiClassLoader;
 
 /**
  * A {@link IClassLoaderCreator} for the {@link RestServiceServer}.
@@ -29,7 +30,7 @@ public class RestClassLoaderCreator implements IClassLoaderCreator {
 
 	@Override
 	public URLClassLoader createClassLoader(final URL... classpathURLs) {
-		return new URLClassLoader(classpathURLs);
+		return new URLClassLoader(classpathURLs, new ServiceApiClassLoader(ClassLoader.getSystemClassLoader()));
 	}
 
 }
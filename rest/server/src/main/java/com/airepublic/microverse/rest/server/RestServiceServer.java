@@ -13,8 +13,10 @@
 */
 package com.airepublic.microverse.rest.server;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.Serializable;
+import java.io.OutputStream;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Singleton;
@@ -24,23 +26,33 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.airepublic.microverse.core.common.ServiceUtils;
 import com.airepublic.microverse.core.common.marshaller.IMarshaller;
 import com.airepublic.microverse.core.common.marshaller.MarshallerFactory;
 import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
 import com.airepublic.microverse.core.descriptor.WebCall;
 import com.airepublic.microverse.core.exception.ServiceException;
+import com.airepublic.microverse.core.exception.ServiceTimeoutException;
+import com.airepublic.microverse.core.exception.ServiceUnavailableException;
 import com.airepublic.microverse.core.server.AbstractServiceServer;
 import com.airepublic.microverse.core.server.IClassLoaderCreator;
+import com.airepublic.microverse.core.server.ServiceContainer;
+import com.airepublic.microverse.core.server.ServiceResult;
+import com.airepublic.microverse.core.service.api.Priority;
 
 /**
  * Base class for all Service-Servers which provides functionality manage the server and to handle
@@ -170,6 +182,24 @@ public class RestServiceServer extends AbstractServiceServer {
 	}
 
 
+	/**
+	 * Invalidates the cached results of the specified service.
+	 *
+	 * @param serviceId the service-id
+	 * @param serviceVersion the service-version
+	 * @return {@link Response} OK or NOT_FOUND if the service is unknown
+	 */
+	@Path("cache/invalidate/{serviceId}/{serviceVersion : .+}")
+	@POST
+	public Response invalidateServiceCache(final @PathParam("serviceId") String serviceId, final @PathParam("serviceVersion") String serviceVersion) {
+		if (invalidateCache(serviceId, serviceVersion)) {
+			return Response.ok().build();
+		}
+
+		return Response.status(Status.NOT_FOUND).build();
+	}
+
+
 	@Override
 	protected void onServiceRegistration(final ServiceDescriptor serviceDescriptor) {
 	}
@@ -238,18 +268,121 @@ public class RestServiceServer extends AbstractServiceServer {
 
 
 	/**
-	 * Processes the request and answers to the response using the context information.
+	 * Gets the statistics of all services of this service-server.
 	 *
-	 * @param request the request
-	 * @param response the response
-	 * @param context the context
+	 * @param headers the http-headers
+	 * @return the serialized list of statistics
+	 */
+	@Path("statistics")
+	@GET
+	public Response getStatistics(@Context final HttpHeaders headers) {
+		try {
+			String mimeType = getMimeTypeForResponse(headers);
+
+			if (mimeType == null || MarshallerFactory.get(mimeType) == null) {
+				mimeType = MediaType.APPLICATION_JSON;
+			}
+
+			return Response.ok().header(HttpHeaders.CONTENT_TYPE, mimeType).entity(MarshallerFactory.get(mimeType).serialize(getServiceStatistics())).build();
+		} catch (final Exception e) {
+			LOG.error("Error serializing service statistics!", e);
+			return Response.status(Status.INTERNAL_SERVER_ERROR).build();
+		}
+	}
+
+
+	/**
+	 * Processes the request on the worker threads of the called service and resumes the suspended
+	 * response with the result.
+	 *
+	 * @param headers the http-headers
+	 * @param inputStream the request content input stream
+	 * @param uriInfo the uri-info
+	 * @param asyncResponse the suspended response
 	 */
 	@Path("process/{serviceClass : .+}")
 	@POST
-	public Response process(@Context final HttpHeaders headers, final InputStream inputStream, @Context final UriInfo uriInfo) {
+	public void process(@Context final HttpHeaders headers, final InputStream inputStream, @Context final UriInfo uriInfo, @Suspended final AsyncResponse asyncResponse) {
+		// determie the requested service by its URI
+		final String uri = uriInfo.getAbsolutePath().getPath();
+		final Long deadline = ServiceUtils.getDeadline(headers.getHeaderString(ServiceUtils.HEADER_TIMEOUT), System.nanoTime());
+
+		final Priority priority = Priority.parse(headers.getHeaderString(ServiceUtils.HEADER_PRIORITY), null);
+
+		if (headers.getHeaderString(ServiceUtils.HEADER_ONE_WAY) != null) {
+			asyncResponse.resume(processOneWay(uri, headers, inputStream, priority));
+			return;
+		}
+
+		execute(uri, priority, serviceContainer -> resume(asyncResponse, process(serviceContainer, headers, inputStream, deadline)), e -> {
+			LOG.warn(e.getMessage());
+			asyncResponse.resume(Response.status(Status.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, e.getRetryAfter()).entity(e.getMessage()).build());
+		});
+	}
+
+
+	/**
+	 * Resumes the suspended response. A streamed result is closed when the response has been
+	 * completed, even if the client disconnected before the result could be written, so the
+	 * service does not count it as in-flight forever.
+	 *
+	 * @param asyncResponse the suspended response
+	 * @param response the {@link Response}
+	 */
+	private void resume(final AsyncResponse asyncResponse, final Response response) {
+		if (response.getEntity() instanceof ServiceResultOutput) {
+			final ServiceResultOutput output = (ServiceResultOutput) response.getEntity();
+			asyncResponse.register((CompletionCallback) throwable -> output.close());
+
+			if (!asyncResponse.resume(response)) {
+				output.close();
+			}
+		} else {
+			asyncResponse.resume(response);
+		}
+	}
+
+
+	/**
+	 * Queues the batch of one-way calls for the worker threads of the called service and answers
+	 * the request with the status 202 right away.
+	 *
+	 * @param uri the URI where the service is registered
+	 * @param headers the http-headers
+	 * @param inputStream the request content input stream
+	 * @param priority the {@link Priority} of the calls
+	 * @return the {@link Response}
+	 */
+	protected Response processOneWay(final String uri, final HttpHeaders headers, final InputStream inputStream, final Priority priority) {
+		try {
+			if (headers.getMediaType() == null) {
+				LOG.error("No content-type specified in request!");
+				return Response.status(Status.BAD_REQUEST).entity("No content-type specified in request!").build();
+			}
+
+			processOneWay(uri, getMimeTypeFromRequest(headers), inputStream, priority);
+
+			return Response.accepted().build();
+		} catch (final ServiceUnavailableException e) {
+			return Response.status(Status.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, e.getRetryAfter()).entity(e.getMessage()).build();
+		} catch (final Throwable e) {
+			LOG.error("Error queueing one-way calls!", e);
+			return Response.status(Status.BAD_REQUEST).entity("Error queueing one-way calls!").build();
+		}
+	}
+
+
+	/**
+	 * Processes the request and creates the response.
+	 *
+	 * @param serviceContainer the {@link ServiceContainer} the request has been admitted to
+	 * @param headers the http-headers
+	 * @param inputStream the request content input stream
+	 * @param deadline the deadline as {@link System#nanoTime()} value or <code>null</code>
+	 * @return the {@link Response}
+	 */
+	protected Response process(final ServiceContainer serviceContainer, final HttpHeaders headers, final InputStream inputStream, final Long deadline) {
 		try {
-			// determie the requested service by its URI
-			final String uri = uriInfo.getAbsolutePath().getPath();
 			// get mime-types of the request
 			if (headers.getMediaType() == null) {
 				LOG.error("No content-type specified in request!");
@@ -258,30 +391,25 @@ public class RestServiceServer extends AbstractServiceServer {
 
 			final String mimeType = getMimeTypeFromRequest(headers);
 
-			final Serializable result = process(uri, mimeType, inputStream);
+			// use the accept header to determine marshaller for serialization
+			final String returnMimeType = getMimeTypeForResponse(headers);
+			final ServiceResult result = process(serviceContainer, mimeType, inputStream, returnMimeType, deadline);
 
-			// and write the result (if one was returned)
+			// and write the result (if one was returned) - results which are not serialized yet are
+			// streamed to the response
 			if (result != null) {
-				// use the accept header to determine marshaller for
-				// serialization
-				final String returnMimeType = getMimeTypeForResponse(headers);
-
 				if (returnMimeType == null) {
+					result.close();
 					LOG.error("No accept header found in request!");
 					return Response.status(Status.BAD_REQUEST).entity("No accept header found in request!").build();
 				}
 
-				final IMarshaller marshaller = MarshallerFactory.get(returnMimeType);
-
-				if (marshaller == null) {
-					LOG.error("No marshaller found for mime-type: " + mimeType);
-					return Response.status(Status.BAD_REQUEST).entity("No marshaller to serialize respone found for mime-type: " + mimeType).build();
-				}
-
-				return Response.ok().header(HttpHeaders.CONTENT_TYPE, returnMimeType).entity(marshaller.serialize(result)).build();
+				return Response.ok().header(HttpHeaders.CONTENT_TYPE, returnMimeType).entity(result.isSerialized() ? result.getSerializedResult() : new ServiceResultOutput(result)).build();
 			}
 
 			return Response.ok().build();
+		} catch (final ServiceTimeoutException e) {
+			return Response.status(Status.GATEWAY_TIMEOUT).entity(e.getMessage()).build();
 		} catch (final Throwable e) {
 			LOG.error("Error calling service method!", e);
 			return Response.status(Status.BAD_REQUEST).entity("Error calling service method!").build();
@@ -296,11 +424,38 @@ public class RestServiceServer extends AbstractServiceServer {
 	 * @return {@link Response} OK
 	 */
 	@Override
-	@SuppressWarnings("unchecked")
 	@Path("heartbeat")
 	@GET
 	public Response heartbeat() {
 		return Response.ok().build();
 	}
 
+	/**
+	 * {@link StreamingOutput} writing a {@link ServiceResult} which is not serialized yet. The
+	 * result is closed after it has been written or when the response completes without it.
+	 */
+	private static class ServiceResultOutput implements StreamingOutput, Closeable {
+		private final ServiceResult result;
+
+
+		ServiceResultOutput(final ServiceResult result) {
+			this.result = result;
+		}
+
+
+		@Override
+		public void write(final OutputStream outputStream) throws IOException {
+			try {
+				result.writeTo(outputStream);
+			} finally {
+				result.close();
+			}
+		}
+
+
+		@Override
+		public void close() {
+			result.close();
+		}
+	}
 }
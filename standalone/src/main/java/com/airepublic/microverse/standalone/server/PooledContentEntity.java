@@ -0,0 +1,166 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.standalone.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import com.airepublic.microverse.core.server.ByteBufferPool;
+
+/**
+ * An entity holding the request content in flipped buffers of a {@link ByteBufferPool}. The
+ * content is read directly from the buffers without copying it into a contiguous array. The
+ * buffers must be returned to the pool with {@link #release()} once the content has been
+ * consumed.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class PooledContentEntity extends AbstractHttpEntity {
+	private final ByteBufferPool bufferPool;
+	private List<ByteBuffer> buffers;
+	private final long contentLength;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param bufferPool the {@link ByteBufferPool} the buffers belong to
+	 * @param buffers the flipped buffers containing the content
+	 * @param contentType the {@link ContentType} or <code>null</code>
+	 */
+	public PooledContentEntity(final ByteBufferPool bufferPool, final List<ByteBuffer> buffers, final ContentType contentType) {
+		this.bufferPool = bufferPool;
+		this.buffers = buffers;
+		contentLength = buffers.stream().mapToLong(ByteBuffer::remaining).sum();
+
+		if (contentType != null) {
+			setContentType(contentType.toString());
+		}
+	}
+
+
+	@Override
+	public boolean isRepeatable() {
+		return false;
+	}
+
+
+	@Override
+	public long getContentLength() {
+		return contentLength;
+	}
+
+
+	@Override
+	public InputStream getContent() throws IOException {
+		if (buffers == null) {
+			throw new IOException("Content has already been released");
+		}
+
+		return new BufferInputStream(buffers);
+	}
+
+
+	@Override
+	public void writeTo(final OutputStream outstream) throws IOException {
+		final InputStream content = getContent();
+		final byte[] bytes = new byte[bufferPool.getBufferSize()];
+		int read;
+
+		while ((read = content.read(bytes)) != -1) {
+			outstream.write(bytes, 0, read);
+		}
+	}
+
+
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+
+
+	/**
+	 * Returns the buffers to the pool.
+	 */
+	public synchronized void release() {
+		if (buffers != null) {
+			buffers.forEach(bufferPool::release);
+			buffers = null;
+		}
+	}
+
+	/**
+	 * Reads the content of the buffers sequentially.
+	 */
+	private static class BufferInputStream extends InputStream {
+		private final List<ByteBuffer> buffers;
+		private int index = 0;
+
+
+		BufferInputStream(final List<ByteBuffer> buffers) {
+			this.buffers = buffers;
+		}
+
+
+		private ByteBuffer current() {
+			while (index < buffers.size() && !buffers.get(index).hasRemaining()) {
+				index++;
+			}
+
+			return index < buffers.size() ? buffers.get(index) : null;
+		}
+
+
+		@Override
+		public int read() {
+			final ByteBuffer buffer = current();
+
+			return buffer != null ? buffer.get() & 0xFF : -1;
+		}
+
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) {
+			if (len == 0) {
+				return 0;
+			}
+
+			final ByteBuffer buffer = current();
+
+			if (buffer == null) {
+				return -1;
+			}
+
+			final int count = Math.min(len, buffer.remaining());
+			buffer.get(b, off, count);
+
+			return count;
+		}
+
+
+		@Override
+		public int available() {
+			final ByteBuffer buffer = current();
+
+			return buffer != null ? buffer.remaining() : 0;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.standalone.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.ContentTooLongException;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncRequestConsumer;
+import org.apache.http.protocol.HttpContext;
+
+import com.airepublic.microverse.core.server.ByteBufferPool;
+
+/**
+ * Consumes the request content chunk by chunk into buffers of a {@link ByteBufferPool} as it
+ * arrives on the channel. The content is handed over to the request as
+ * {@link PooledContentEntity}, which must be released after processing. Requests exceeding the
+ * maximum content length are failed, so the memory per request stays bounded.
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class PooledRequestConsumer extends AbstractAsyncRequestConsumer<HttpRequest> {
+	private final ByteBufferPool bufferPool;
+	private final long maxContentLength;
+	private final List<ByteBuffer> buffers = new ArrayList<>();
+	private volatile HttpRequest request;
+	private volatile ContentType contentType;
+	private long contentLength = 0L;
+	private boolean handedOver = false;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param bufferPool the {@link ByteBufferPool}
+	 * @param maxContentLength the maximum content length in bytes
+	 */
+	public PooledRequestConsumer(final ByteBufferPool bufferPool, final long maxContentLength) {
+		this.bufferPool = bufferPool;
+		this.maxContentLength = maxContentLength;
+	}
+
+
+	@Override
+	protected void onRequestReceived(final HttpRequest request) {
+		this.request = request;
+	}
+
+
+	@Override
+	protected void onEntityEnclosed(final HttpEntity entity, final ContentType contentType) throws IOException {
+		if (entity.getContentLength() > maxContentLength) {
+			throw new ContentTooLongException("Request content length " + entity.getContentLength() + " exceeds the maximum of " + maxContentLength + " bytes");
+		}
+
+		this.contentType = contentType;
+	}
+
+
+	@Override
+	protected void onContentReceived(final ContentDecoder decoder, final IOControl ioctrl) throws IOException {
+		int read;
+
+		do {
+			ByteBuffer buffer = buffers.isEmpty() ? null : buffers.get(buffers.size() - 1);
+
+			if (buffer == null || !buffer.hasRemaining()) {
+				buffer = bufferPool.acquire();
+				buffers.add(buffer);
+			}
+
+			read = decoder.read(buffer);
+
+			if (read > 0) {
+				contentLength += read;
+
+				if (contentLength > maxContentLength) {
+					throw new ContentTooLongException("Request content exceeds the maximum of " + maxContentLength + " bytes");
+				}
+			}
+		} while (read > 0);
+	}
+
+
+	@Override
+	protected HttpRequest buildResult(final HttpContext context) {
+		if (request instanceof HttpEntityEnclosingRequest) {
+			buffers.forEach(ByteBuffer::flip);
+			((HttpEntityEnclosingRequest) request).setEntity(new PooledContentEntity(bufferPool, buffers, contentType));
+			handedOver = true;
+		}
+
+		return request;
+	}
+
+
+	@Override
+	protected void releaseResources() {
+		if (!handedOver) {
+			buffers.forEach(bufferPool::release);
+		}
+
+		buffers.clear();
+	}
+}
@@ -14,7 +14,8 @@
 package com.airepublic.microverse.standalone.server;
 
 import java.io.IOException;
-import java.io.Serializable;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.URL;
 import java.net.UnknownHostException;
@@ -35,7 +36,11 @@ import org.apache.http.HttpStatus;
 import org.apache.http.client.entity.EntityBuilder;
 import org.apache.http.impl.nio.bootstrap.HttpServer;
 import org.apache.http.impl.nio.bootstrap.ServerBootstrap;
+import org.apache.http.nio.entity.NByteArrayEntity;
 import org.apache.http.nio.protocol.BasicAsyncRequestHandler;
+import org.apache.http.nio.protocol.HttpAsyncExchange;
+import org.apache.http.nio.protocol.HttpAsyncRequestConsumer;
+import org.apache.http.nio.protocol.HttpAsyncRequestHandler;
 import org.apache.http.nio.protocol.UriHttpAsyncRequestHandlerMapper;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.ssl.SSLContexts;
@@ -48,10 +53,17 @@ import com.airepublic.microverse.core.common.marshaller.MarshallerFactory;
 import com.airepublic.microverse.core.descriptor.ServiceCreateDescriptor;
 import com.airepublic.microverse.core.descriptor.ServiceCreateDescriptorList;
 import com.airepublic.microverse.core.descriptor.ServiceDescriptor;
+import com.airepublic.microverse.core.descriptor.ServiceStatistics;
 import com.airepublic.microverse.core.descriptor.WebCall;
 import com.airepublic.microverse.core.exception.ServiceException;
+import com.airepublic.microverse.core.exception.ServiceTimeoutException;
+import com.airepublic.microverse.core.exception.ServiceUnavailableException;
 import com.airepublic.microverse.core.server.AbstractServiceServer;
+import com.airepublic.microverse.core.server.ByteBufferPool;
 import com.airepublic.microverse.core.server.IClassLoaderCreator;
+import com.airepublic.microverse.core.server.ServiceContainer;
+import com.airepublic.microverse.core.server.ServiceResult;
+import com.airepublic.microverse.core.service.api.Priority;
 
 /**
  * Base class for all Service-Servers which provides functionality manage the server and to handle
@@ -62,6 +74,7 @@ import com.airepublic.microverse.core.server.IClassLoaderCreator;
  */
 public class StandaloneServiceServer extends AbstractServiceServer {
 	private final static Logger LOG = LoggerFactory.getLogger(StandaloneServiceServer.class);
+	private final static int MAX_QUEUED_RESPONSE_BUFFERS = 16;
 	private final IClassLoaderCreator classLoaderCreator = new StandaloneClassLoaderCreator();
 	private final AtomicBoolean running = new AtomicBoolean(false);
 	private int port;
@@ -69,6 +82,9 @@ public class StandaloneServiceServer extends AbstractServiceServer {
 	private HttpServer httpServer;
 	private final UriHttpAsyncRequestHandlerMapper requestHandlerMapper = new UriHttpAsyncRequestHandlerMapper();
 	private final WebCall heartbeatUri = WebCall.create("heartbeat", "GET");
+	private final WebCall statisticsUri = WebCall.create("statistics", "GET");
+	private final ServiceRequestHandler serviceRequestHandler = new ServiceRequestHandler();
+	private final ByteBufferPool bufferPool = new ByteBufferPool(8192, 1024);
 
 
 	/**
@@ -218,6 +234,7 @@ public class StandaloneServiceServer extends AbstractServiceServer {
 			bootstrap.setHandlerMapper(requestHandlerMapper);
 
 			requestHandlerMapper.register("/" + heartbeatUri.getUri(), new BasicAsyncRequestHandler((request, response, context) -> process(request, response, context)));
+			requestHandlerMapper.register("/" + statisticsUri.getUri(), new BasicAsyncRequestHandler((request, response, context) -> processStatistics(request, response, context)));
 			// create the server
 			httpServer = bootstrap.create();
 		} catch (final Exception e) {
@@ -228,7 +245,7 @@ public class StandaloneServiceServer extends AbstractServiceServer {
 
 	@Override
 	protected void onServiceRegistration(final ServiceDescriptor serviceDescriptor) {
-		requestHandlerMapper.register("/" + serviceDescriptor.getServiceUri().getUri(), new BasicAsyncRequestHandler((request, response, context) -> process(request, response, context)));
+		requestHandlerMapper.register("/" + serviceDescriptor.getServiceUri().getUri(), serviceRequestHandler);
 	}
 
 
@@ -245,6 +262,8 @@ public class StandaloneServiceServer extends AbstractServiceServer {
 	 */
 	public synchronized void start() throws ServiceException {
 		running.set(true);
+		startAcceptingRequests();
+
 		try {
 			httpServer.start();
 
@@ -281,11 +300,9 @@ public class StandaloneServiceServer extends AbstractServiceServer {
 	public void addService(final Path bundleZip) throws ServiceException {
 		try {
 			final String host = InetAddress.getLocalHost().getCanonicalHostName();
-			addService(host, port, useSSL, Files.newInputStream(bundleZip));
+			addService(host, port, useSSL, bundleZip);
 		} catch (final UnknownHostException e) {
 			throw new ServiceException("Localhost could not be resolved!", e);
-		} catch (final IOException e) {
-			throw new ServiceException("Service-bundle could not be read: " + bundleZip, e);
 		}
 	}
 
@@ -310,6 +327,49 @@ public class StandaloneServiceServer extends AbstractServiceServer {
 	 * @param context the context
 	 */
 	protected void process(final HttpRequest request, final HttpResponse response, final HttpContext context) {
+		process(request, response, context, null);
+	}
+
+
+	/**
+	 * Processes the request and answers to the response using the context information. Requests
+	 * whose deadline has passed are answered with the status 504.
+	 *
+	 * @param request the request
+	 * @param response the response
+	 * @param context the context
+	 * @param deadline the deadline as {@link System#nanoTime()} value or <code>null</code>
+	 */
+	protected void process(final HttpRequest request, final HttpResponse response, final HttpContext context, final Long deadline) {
+		final ServiceResult result = processServiceCall(request, response, null, deadline);
+
+		if (result != null) {
+			try {
+				response.setEntity(EntityBuilder.create().setBinary(result.toByteArray()).build());
+			} catch (final Throwable e) {
+				LOG.error("Error serializing result!", e);
+				response.removeHeaders(HttpHeaders.CONTENT_TYPE);
+				response.setStatusCode(HttpStatus.SC_BAD_REQUEST);
+				response.setReasonPhrase("Error calling service method!");
+			} finally {
+				result.close();
+			}
+		}
+	}
+
+
+	/**
+	 * Processes the request and sets the status and headers of the response. The result is
+	 * returned to be written to the response.
+	 *
+	 * @param request the request
+	 * @param response the response
+	 * @param serviceContainer the {@link ServiceContainer} the request has been admitted to or
+	 *        <code>null</code> to look it up by the request URI
+	 * @param deadline the deadline as {@link System#nanoTime()} value or <code>null</code>
+	 * @return the {@link ServiceResult} or <code>null</code> if the response is complete
+	 */
+	private ServiceResult processServiceCall(final HttpRequest request, final HttpResponse response, final ServiceContainer serviceContainer, final Long deadline) {
 		try {
 			StandaloneServiceServer.LOG.debug("request: " + request.getRequestLine());
 
@@ -320,7 +380,7 @@ public class StandaloneServiceServer extends AbstractServiceServer {
 			if (uri.equals("/heartbeat")) {
 				final Integer status = heartbeat();
 				response.setStatusCode(status);
-				return;
+				return null;
 			}
 
 			final Header contentTypeHeader = request.getFirstHeader(HttpHeaders.CONTENT_TYPE);
@@ -329,37 +389,69 @@ public class StandaloneServiceServer extends AbstractServiceServer {
 				LOG.error("No content-type header specified in request!");
 				response.setStatusCode(HttpStatus.SC_BAD_REQUEST);
 				response.setReasonPhrase("No content-type header specified in request!");
-				return;
+				return null;
 			}
 
-			final Serializable result = process(uri, contentTypeHeader.getValue(), ((HttpEntityEnclosingRequest) request).getEntity().getContent());
+			// get accept header to determine how to serialize result
+			final String mimeType = ServiceUtils.getMimeTypeForResponse(request.getFirstHeader(HttpHeaders.ACCEPT));
+			final InputStream inputStream = ((HttpEntityEnclosingRequest) request).getEntity().getContent();
+			final ServiceResult result = serviceContainer != null ? process(serviceContainer, contentTypeHeader.getValue(), inputStream, mimeType, deadline) : process(uri, contentTypeHeader.getValue(), inputStream, mimeType, deadline);
 
-			// and write the result (if one was returned)
+			// and set the content-type of the result (if one was returned)
 			if (result != null) {
-				// get accept header to determine how to serialize result
-				final String mimeType = ServiceUtils.getMimeTypeForResponse(request.getFirstHeader(HttpHeaders.ACCEPT));
-
 				if (mimeType == null) {
+					result.close();
 					LOG.error("No accept header specified in request!");
 					response.setStatusCode(HttpStatus.SC_BAD_REQUEST);
 					response.setReasonPhrase("No accept header specified in request!");
-					return;
+					return null;
 				}
 
 				response.setHeader(HttpHeaders.CONTENT_TYPE, mimeType);
-				response.setEntity(EntityBuilder.create().setBinary(MarshallerFactory.get(mimeType).serialize(result)).build());
 			}
 
 			response.setStatusCode(HttpStatus.SC_OK);
+
+			return result;
+		} catch (final ServiceTimeoutException e) {
+			response.setStatusCode(HttpStatus.SC_GATEWAY_TIMEOUT);
+			response.setReasonPhrase(e.getMessage());
 		} catch (final Throwable e) {
 			LOG.error("Error calling service method!", e);
 			response.setStatusCode(HttpStatus.SC_BAD_REQUEST);
 			response.setReasonPhrase("Error calling service method!");
 		}
+
+		return null;
+	}
+
+
+	/**
+	 * Answers the request with the {@link ServiceStatistics} of all services serialized according
+	 * to the accept header (default is JSON).
+	 *
+	 * @param request the request
+	 * @param response the response
+	 * @param context the context
+	 */
+	protected void processStatistics(final HttpRequest request, final HttpResponse response, final HttpContext context) {
+		try {
+			String mimeType = ServiceUtils.getMimeTypeForResponse(request.getFirstHeader(HttpHeaders.ACCEPT));
+
+			if (mimeType == null || MarshallerFactory.get(mimeType) == null) {
+				mimeType = "application/json";
+			}
+
+			response.setHeader(HttpHeaders.CONTENT_TYPE, mimeType);
+			response.setEntity(EntityBuilder.create().setBinary(MarshallerFactory.get(mimeType).serialize(getServiceStatistics())).build());
+			response.setStatusCode(HttpStatus.SC_OK);
+		} catch (final Throwable e) {
+			LOG.error("Error serializing service statistics!", e);
+			response.setStatusCode(HttpStatus.SC_INTERNAL_SERVER_ERROR);
+		}
 	}
 
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public Integer heartbeat() {
 		return HttpStatus.SC_OK;
@@ -387,9 +479,19 @@ public class StandaloneServiceServer extends AbstractServiceServer {
 
 
 	/**
-	 * Stops the server and all open sub-processes and disconnects.
+	 * Stops the server and all open sub-processes and disconnects. No new connections are accepted
+	 * and the services finish their in-flight requests before they are closed and the HTTP server
+	 * is shut down.
 	 */
 	public void shutDown() {
+		try {
+			if (httpServer.getEndpoint() != null) {
+				httpServer.getEndpoint().close();
+			}
+		} catch (final Exception e) {
+			LOG.warn("Could not stop listening for new connections!", e);
+		}
+
 		try {
 			close();
 		} catch (final Exception e) {
@@ -404,4 +506,145 @@ public class StandaloneServiceServer extends AbstractServiceServer {
 			// shutdown quietly
 		}
 	}
+
+
+	/**
+	 * Request handler for service calls which hands the request over to the worker threads of the
+	 * called service, so the I/O dispatcher threads are never blocked by service methods. The
+	 * response is submitted asynchronously once the worker has processed the request. Results which
+	 * are already serialized are sent from their byte array, all other results are marshalled by
+	 * the worker straight into pooled buffers which are streamed to the channel.
+	 */
+	private class ServiceRequestHandler implements HttpAsyncRequestHandler<HttpRequest> {
+
+		@Override
+		public HttpAsyncRequestConsumer<HttpRequest> processRequest(final HttpRequest request, final HttpContext context) {
+			return new PooledRequestConsumer(bufferPool, Configuration.getServerRequestMaxSize());
+		}
+
+
+		@Override
+		public void handle(final HttpRequest request, final HttpAsyncExchange httpExchange, final HttpContext context) {
+			final Header timeoutHeader = request.getFirstHeader(ServiceUtils.HEADER_TIMEOUT);
+			final Long deadline = ServiceUtils.getDeadline(timeoutHeader != null ? timeoutHeader.getValue() : null, System.nanoTime());
+			final Header priorityHeader = request.getFirstHeader(ServiceUtils.HEADER_PRIORITY);
+			final Priority priority = Priority.parse(priorityHeader != null ? priorityHeader.getValue() : null, null);
+
+			if (request.containsHeader(ServiceUtils.HEADER_ONE_WAY)) {
+				handleOneWay(request, httpExchange, priority);
+				return;
+			}
+
+			execute(request.getRequestLine().getUri(), priority, serviceContainer -> {
+				final HttpResponse response = httpExchange.getResponse();
+				final ServiceResult result;
+
+				try {
+					result = processServiceCall(request, response, serviceContainer, deadline);
+				} finally {
+					release(request);
+				}
+
+				if (result == null) {
+					httpExchange.submitResponse();
+				} else if (result.isSerialized()) {
+					response.setEntity(new NByteArrayEntity(result.getSerializedResult()));
+					httpExchange.submitResponse();
+				} else {
+					submitStreamingResponse(httpExchange, result);
+				}
+			}, e -> {
+				release(request);
+				LOG.warn(e.getMessage());
+				httpExchange.getResponse().setStatusCode(HttpStatus.SC_SERVICE_UNAVAILABLE);
+				httpExchange.getResponse().setReasonPhrase(e.getMessage());
+				httpExchange.getResponse().setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter()));
+				httpExchange.submitResponse();
+			});
+		}
+
+
+		/**
+		 * Queues the batch of one-way calls for the worker threads of the service and answers the
+		 * request with the status 202 right away.
+		 *
+		 * @param request the request
+		 * @param httpExchange the {@link HttpAsyncExchange}
+		 * @param priority the {@link Priority} of the calls
+		 */
+		private void handleOneWay(final HttpRequest request, final HttpAsyncExchange httpExchange, final Priority priority) {
+			final HttpResponse response = httpExchange.getResponse();
+
+			try {
+				final Header contentTypeHeader = request.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+
+				if (contentTypeHeader == null) {
+					LOG.error("No content-type header specified in request!");
+					response.setStatusCode(HttpStatus.SC_BAD_REQUEST);
+					response.setReasonPhrase("No content-type header specified in request!");
+				} else {
+					processOneWay(request.getRequestLine().getUri(), contentTypeHeader.getValue(), ((HttpEntityEnclosingRequest) request).getEntity().getContent(), priority);
+					response.setStatusCode(HttpStatus.SC_ACCEPTED);
+				}
+			} catch (final ServiceUnavailableException e) {
+				response.setStatusCode(HttpStatus.SC_SERVICE_UNAVAILABLE);
+				response.setReasonPhrase(e.getMessage());
+				response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter()));
+			} catch (final Throwable e) {
+				LOG.error("Error queueing one-way calls!", e);
+				response.setStatusCode(HttpStatus.SC_BAD_REQUEST);
+				response.setReasonPhrase("Error queueing one-way calls!");
+			} finally {
+				release(request);
+			}
+
+			httpExchange.submitResponse();
+		}
+
+
+		/**
+		 * Streams the result into the response. The response is submitted with the first buffer of
+		 * the result, so results which fail within their first buffer are answered with the status
+		 * 400. If the result fails later the connection is closed, as the status has already been
+		 * sent.
+		 *
+		 * @param httpExchange the {@link HttpAsyncExchange}
+		 * @param result the {@link ServiceResult}
+		 */
+		private void submitStreamingResponse(final HttpAsyncExchange httpExchange, final ServiceResult result) {
+			final HttpResponse response = httpExchange.getResponse();
+			final StreamingResponseProducer producer = new StreamingResponseProducer(httpExchange, response.getFirstHeader(HttpHeaders.CONTENT_TYPE).getValue(), bufferPool, MAX_QUEUED_RESPONSE_BUFFERS);
+
+			try {
+				final OutputStream outputStream = producer.getOutputStream();
+				result.writeTo(outputStream);
+				outputStream.close();
+			} catch (final Exception e) {
+				LOG.error("Error writing result!", e);
+				producer.abort(e);
+
+				if (!producer.isSubmitted()) {
+					response.removeHeaders(HttpHeaders.CONTENT_TYPE);
+					response.setEntity(null);
+					response.setStatusCode(HttpStatus.SC_BAD_REQUEST);
+					response.setReasonPhrase("Error calling service method!");
+					httpExchange.submitResponse();
+				}
+			} finally {
+				result.close();
+			}
+		}
+
+
+		/**
+		 * Returns the pooled buffers of the request content.
+		 *
+		 * @param request the request
+		 */
+		private void release(final HttpRequest request) {
+			if (request instanceof HttpEntityEnclosingRequest && ((HttpEntityEnclosingRequest) request).getEntity() instanceof PooledContentEntity) {
+				((PooledContentEntity) ((HttpEntityEnclosingRequest) request).getEntity()).release();
+			}
+		}
+	}
 }
@@ -0,0 +1,386 @@
+/**
+      Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.airepublic.microverse.standalone.server;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.HttpAsyncExchange;
+import org.apache.http.nio.protocol.HttpAsyncResponseProducer;
+import org.apache.http.protocol.HttpContext;
+
+import com.airepublic.microverse.core.server.ByteBufferPool;
+
+/**
+ * {@link HttpAsyncResponseProducer} which streams the response content written to its
+ * {@link OutputStream} by a worker thread into the channel. The content is written into direct
+ * buffers of the {@link ByteBufferPool} which are handed over to the I/O dispatcher thread and
+ * returned to the pool once they are written to the channel. The worker thread is blocked while
+ * the maximum number of buffers are waiting to be written, so a slow client doesn't cause the
+ * whole response to be buffered in memory.
+ * <p>
+ * The response is only submitted to the {@link HttpAsyncExchange} once the first buffer has been
+ * filled or the content is complete, so a failure while producing the first buffer can still be
+ * answered with an error status instead of a truncated response.
+ * </p>
+ *
+ * @author Torsten Oltmanns
+ *
+ */
+public class StreamingResponseProducer implements HttpAsyncResponseProducer {
+	private final HttpAsyncExchange httpExchange;
+	private final HttpResponse response;
+	private final ByteBufferPool bufferPool;
+	private final int maxQueuedBuffers;
+	private final Queue<ByteBuffer> queue = new ArrayDeque<>();
+	private final ContentOutputStream outputStream = new ContentOutputStream();
+	// a lock instead of a monitor, so blocked virtual threads don't pin their carrier thread
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition writable = lock.newCondition();
+	private IOControl ioControl;
+	private boolean completed = false;
+	private boolean closed = false;
+	private volatile boolean submitted = false;
+	private Exception failure;
+
+
+	/**
+	 * Constructor.
+	 *
+	 * @param httpExchange the {@link HttpAsyncExchange} to submit the response with the streamed
+	 *        content to
+	 * @param contentType the content-type of the streamed content
+	 * @param bufferPool the {@link ByteBufferPool} to take the buffers from
+	 * @param maxQueuedBuffers the maximum number of buffers waiting to be written to the channel
+	 */
+	public StreamingResponseProducer(final HttpAsyncExchange httpExchange, final String contentType, final ByteBufferPool bufferPool, final int maxQueuedBuffers) {
+		this.httpExchange = httpExchange;
+		response = httpExchange.getResponse();
+		this.bufferPool = bufferPool;
+		this.maxQueuedBuffers = maxQueuedBuffers;
+
+		// unknown content-length, so the content is sent chunked
+		final BasicHttpEntity entity = new BasicHttpEntity();
+		entity.setContentLength(-1);
+		entity.setChunked(true);
+		entity.setContentType(contentType);
+		response.setEntity(entity);
+	}
+
+
+	/**
+	 * Gets the {@link OutputStream} to write the response content to. Closing the output-stream
+	 * completes the response.
+	 *
+	 * @return the {@link OutputStream}
+	 */
+	public OutputStream getOutputStream() {
+		return outputStream;
+	}
+
+
+	/**
+	 * Checks whether the response has been submitted, i.e. its status may have been sent.
+	 *
+	 * @return <code>true</code> if the response has been submitted
+	 */
+	public boolean isSubmitted() {
+		return submitted;
+	}
+
+
+	/**
+	 * Aborts the response because the content could not be written completely. The connection is
+	 * closed, as the status of the response has already been sent. If the response has not been
+	 * submitted yet, its buffers are released and the caller must answer the request instead.
+	 * Must be called by the thread writing the content.
+	 *
+	 * @param e the cause
+	 */
+	public void abort(final Exception e) {
+		lock.lock();
+
+		try {
+			if (failure == null) {
+				failure = e;
+			}
+
+			requestOutput();
+			writable.signalAll();
+		} finally {
+			lock.unlock();
+		}
+
+		if (!submitted) {
+			outputStream.discard();
+			close();
+		}
+	}
+
+
+	@Override
+	public HttpResponse generateResponse() {
+		return response;
+	}
+
+
+	@Override
+	public void produceContent(final ContentEncoder encoder, final IOControl ioControl) throws IOException {
+		lock.lock();
+
+		try {
+			this.ioControl = ioControl;
+
+			if (failure != null) {
+				throw new IOException("Response content could not be produced!", failure);
+			}
+
+			ByteBuffer buffer;
+
+			while ((buffer = queue.peek()) != null) {
+				encoder.write(buffer);
+
+				if (buffer.hasRemaining()) {
+					// the channel is full - continue when it is writable again
+					return;
+				}
+
+				bufferPool.release(queue.poll());
+				writable.signalAll();
+			}
+
+			if (completed) {
+				encoder.complete();
+			} else {
+				// wait for the worker to write more content
+				ioControl.suspendOutput();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	@Override
+	public void responseCompleted(final HttpContext context) {
+	}
+
+
+	@Override
+	public void failed(final Exception e) {
+		lock.lock();
+
+		try {
+			if (failure == null) {
+				failure = e;
+			}
+
+			writable.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	@Override
+	public void close() {
+		lock.lock();
+
+		try {
+			if (!closed) {
+				closed = true;
+
+				if (failure == null && !completed) {
+					failure = new IOException("Response has been closed!");
+				}
+
+				ByteBuffer buffer;
+
+				while ((buffer = queue.poll()) != null) {
+					bufferPool.release(buffer);
+				}
+
+				writable.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Hands the filled buffer over to the I/O dispatcher thread and blocks while the maximum
+	 * number of buffers are waiting to be written.
+	 *
+	 * @param buffer the filled buffer
+	 * @throws IOException if the response has failed or the thread has been interrupted
+	 */
+	private void enqueue(final ByteBuffer buffer) throws IOException {
+		lock.lock();
+
+		try {
+			while (failure == null && queue.size() >= maxQueuedBuffers) {
+				writable.await();
+			}
+
+			if (failure != null || closed) {
+				bufferPool.release(buffer);
+				throw new IOException("Response could not be written!", failure);
+			}
+
+			buffer.flip();
+			queue.add(buffer);
+			requestOutput();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			bufferPool.release(buffer);
+			throw new InterruptedIOException("Interrupted while writing the response!");
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Submits the response to the exchange when the first content is handed over.
+	 */
+	private void submit() {
+		if (!submitted) {
+			submitted = true;
+			httpExchange.submitResponse(this);
+		}
+	}
+
+
+	/**
+	 * Marks the content as completely written.
+	 */
+	private void complete() {
+		lock.lock();
+
+		try {
+			completed = true;
+			requestOutput();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Requests the I/O dispatcher thread to continue producing content.
+	 */
+	private void requestOutput() {
+		if (ioControl != null) {
+			ioControl.requestOutput();
+		}
+	}
+
+	/**
+	 * Output-stream filling pooled buffers with the written content.
+	 */
+	private class ContentOutputStream extends OutputStream {
+		private ByteBuffer buffer;
+		private boolean streamClosed = false;
+
+
+		@Override
+		public void write(final int b) throws IOException {
+			ensureBuffer().put((byte) b);
+		}
+
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			int offset = off;
+			int remaining = len;
+
+			while (remaining > 0) {
+				final ByteBuffer buffer = ensureBuffer();
+				final int length = Math.min(remaining, buffer.remaining());
+				buffer.put(b, offset, length);
+				offset += length;
+				remaining -= length;
+			}
+		}
+
+
+		@Override
+		public void flush() throws IOException {
+			if (buffer != null && buffer.position() > 0) {
+				final ByteBuffer filled = buffer;
+				buffer = null;
+				submit();
+				enqueue(filled);
+			}
+		}
+
+
+		@Override
+		public void close() throws IOException {
+			if (!streamClosed) {
+				streamClosed = true;
+				flush();
+				submit();
+				complete();
+			}
+		}
+
+
+		/**
+		 * Releases the current buffer without handing it over and closes the stream.
+		 */
+		private void discard() {
+			streamClosed = true;
+
+			if (buffer != null) {
+				bufferPool.release(buffer);
+				buffer = null;
+			}
+		}
+
+
+		/**
+		 * Gets the current buffer with space remaining. A full buffer is handed over first.
+		 *
+		 * @return the buffer
+		 * @throws IOException if the stream is closed or the response has failed
+		 */
+		private ByteBuffer ensureBuffer() throws IOException {
+			if (streamClosed) {
+				throw new IOException("Stream is closed!");
+			}
+
+			if (buffer != null && !buffer.hasRemaining()) {
+				flush();
+			}
+
+			if (buffer == null) {
+				buffer = bufferPool.acquire();
+			}
+
+			return buffer;
+		}
+	}
+}